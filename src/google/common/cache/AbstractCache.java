@@ -20,6 +20,7 @@ import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
 import google.common.collect.ImmutableMap;
 import google.common.collect.Maps;
+import google.common.util.concurrent.LongAdder;
 
 import java.util.Map;
 import java.util.concurrent.Callable;
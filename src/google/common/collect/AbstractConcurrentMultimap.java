@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.GwtIncompatible;
+import google.common.primitives.Ints;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Basic implementation of a concurrent {@code Multimap} whose values for each
+ * key are an immutable collection, replaced as a whole by compare-and-set
+ * operations on a {@link ConcurrentMap}.
+ *
+ * <p>Every modification of the values of one key reads the current collection,
+ * builds its successor, and installs it with {@link ConcurrentMap#replace},
+ * {@link ConcurrentMap#putIfAbsent} or {@link ConcurrentMap#remove}, retrying
+ * if another thread changed it in between, so it is atomic and takes no lock.
+ * Readers never wait, and the views are weakly consistent: each read of the
+ * values of a key, and each iteration over them, sees one snapshot.
+ *
+ * @param <C> the type of the immutable collection of the values of a key
+ */
+@GwtIncompatible("java.util.concurrent")
+abstract class AbstractConcurrentMultimap<K, V, C extends ImmutableCollection<V>>
+    implements Multimap<K, V>, Serializable {
+  final ConcurrentMap<K, C> map;
+
+  AbstractConcurrentMultimap() {
+    this.map = new ConcurrentHashMap<K, C>();
+  }
+
+  /** Returns the empty collection of values. */
+  abstract C emptyValues();
+
+  /**
+   * Returns {@code values} with {@code value} added, or {@code values} itself
+   * if adding it would not change them.
+   */
+  abstract C withValue(C values, V value);
+
+  /**
+   * Returns {@code values} with one occurrence of {@code value} removed, or
+   * {@code values} itself if it does not contain {@code value}.
+   */
+  abstract C withoutValue(C values, @Nullable Object value);
+
+  /** Returns the collection of the given values, as if added in turn. */
+  abstract C copyOfValues(Iterable<? extends V> values);
+
+  /** Returns a live view of the values of {@code key}. */
+  abstract Collection<V> wrapValues(K key);
+
+  /** Returns the current values of {@code key}, which may be empty. */
+  final C values(@Nullable Object key) {
+    C values = (key == null) ? null : map.get(key);
+    return (values == null) ? emptyValues() : values;
+  }
+
+  /**
+   * Replaces the values of {@code key} by {@code update} if they are still
+   * {@code expected}, and returns whether they were. An empty collection
+   * stands for the absence of the key.
+   */
+  @SuppressWarnings("unchecked") // only called with a K when adding values
+  final boolean compareAndSet(Object key, C expected, C update) {
+    if (expected.isEmpty()) {
+      return update.isEmpty()
+          ? !map.containsKey(key)
+          : map.putIfAbsent((K) key, update) == null;
+    }
+    return update.isEmpty()
+        ? map.remove(key, expected)
+        : map.replace((K) key, expected, update);
+  }
+
+  // Query Operations
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The size is the sum of the sizes of the values of each key, read in
+   * turn, and so is not a snapshot of the whole multimap.
+   */
+  public int size() {
+    long size = 0;
+    for (C values : map.values()) {
+      size += values.size();
+    }
+    return Ints.saturatedCast(size);
+  }
+
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  public boolean containsKey(@Nullable Object key) {
+    return key != null && map.containsKey(key);
+  }
+
+  public boolean containsValue(@Nullable Object value) {
+    for (C values : map.values()) {
+      if (values.contains(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean containsEntry(@Nullable Object key, @Nullable Object value) {
+    return values(key).contains(value);
+  }
+
+  // Modification Operations
+
+  /**
+   * Stores a key-value pair in the multimap, atomically.
+   *
+   * @throws NullPointerException if {@code key} or {@code value} is null
+   */
+  public boolean put(K key, V value) {
+    checkNotNull(key);
+    checkNotNull(value);
+    while (true) {
+      C values = values(key);
+      C update = withValue(values, value);
+      if (update == values) {
+        return false;
+      }
+      if (compareAndSet(key, values, update)) {
+        return true;
+      }
+    }
+  }
+
+  /** Removes a single key-value pair from the multimap, atomically. */
+  public boolean remove(@Nullable Object key, @Nullable Object value) {
+    while (true) {
+      C values = values(key);
+      C update = withoutValue(values, value);
+      if (update == values) {
+        return false;
+      }
+      if (compareAndSet(key, values, update)) {
+        return true;
+      }
+    }
+  }
+
+  // Bulk Operations
+
+  /**
+   * Stores a collection of values with the same key, atomically: no reader
+   * sees some of them without the others.
+   *
+   * @throws NullPointerException if {@code key} or any of {@code values} is
+   *     null
+   */
+  public boolean putAll(K key, Iterable<? extends V> values) {
+    checkNotNull(key);
+    ImmutableList<V> toAdd = ImmutableList.copyOf(values);
+    while (true) {
+      C current = values(key);
+      C update = current;
+      for (V value : toAdd) {
+        update = withValue(update, value);
+      }
+      if (update == current) {
+        return false;
+      }
+      if (compareAndSet(key, current, update)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Copies all of another multimap's key-value pairs into this multimap, with
+   * the values of each key added atomically.
+   */
+  public boolean putAll(Multimap<? extends K, ? extends V> multimap) {
+    boolean changed = false;
+    for (Entry<? extends K, ? extends Collection<? extends V>> entry
+        : multimap.asMap().entrySet()) {
+      changed |= putAll(entry.getKey(), entry.getValue());
+    }
+    return changed;
+  }
+
+  /**
+   * Replaces the values of a key, atomically, and returns the values that
+   * were replaced.
+   *
+   * @throws NullPointerException if {@code key} or any of {@code values} is
+   *     null
+   */
+  public C replaceValues(K key, Iterable<? extends V> values) {
+    checkNotNull(key);
+    C update = copyOfValues(values);
+    C old = update.isEmpty() ? map.remove(key) : map.put(key, update);
+    return (old == null) ? emptyValues() : old;
+  }
+
+  /**
+   * Removes all values of a key, atomically, and returns them.
+   */
+  public C removeAll(@Nullable Object key) {
+    C old = (key == null) ? null : map.remove(key);
+    return (old == null) ? emptyValues() : old;
+  }
+
+  /**
+   * Removes the values of each key in turn. Values put concurrently may
+   * remain.
+   */
+  public void clear() {
+    map.clear();
+  }
+
+  // Views
+
+  /**
+   * Returns a view of the values of {@code key}, which reads through to the
+   * multimap. Each read of the view, and each iteration over it, sees a
+   * snapshot of the values, and iterators never throw {@link
+   * java.util.ConcurrentModificationException}. Changes through the view are
+   * atomic operations on the multimap.
+   */
+  public Collection<V> get(K key) {
+    return wrapValues(checkNotNull(key));
+  }
+
+  /**
+   * A view of the values of a key. Concrete multimaps add the {@code Set} or
+   * {@code List} behavior of their values.
+   */
+  class WrappedValues extends AbstractCollection<V> {
+    final K key;
+
+    WrappedValues(K key) {
+      this.key = key;
+    }
+
+    C values() {
+      return AbstractConcurrentMultimap.this.values(key);
+    }
+
+    @Override public int size() {
+      return values().size();
+    }
+
+    @Override public boolean isEmpty() {
+      return !map.containsKey(key);
+    }
+
+    @Override public boolean contains(@Nullable Object o) {
+      return values().contains(o);
+    }
+
+    @Override public boolean containsAll(Collection<?> c) {
+      return values().containsAll(c);
+    }
+
+    @Override public Iterator<V> iterator() {
+      final Iterator<V> iterator = values().iterator();
+      return new Iterator<V>() {
+        V last;
+
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        public V next() {
+          return last = iterator.next();
+        }
+
+        public void remove() {
+          Iterators.checkRemove(last != null);
+          AbstractConcurrentMultimap.this.remove(key, last);
+          last = null;
+        }
+      };
+    }
+
+    @Override public boolean add(V value) {
+      return put(key, value);
+    }
+
+    @Override public boolean addAll(Collection<? extends V> values) {
+      return putAll(key, values);
+    }
+
+    @Override public boolean remove(@Nullable Object o) {
+      return AbstractConcurrentMultimap.this.remove(key, o);
+    }
+
+    @Override public void clear() {
+      AbstractConcurrentMultimap.this.removeAll(key);
+    }
+
+    @Override public Object[] toArray() {
+      return values().toArray();
+    }
+
+    @Override public <T> T[] toArray(T[] array) {
+      return values().toArray(array);
+    }
+
+    @Override public String toString() {
+      return values().toString();
+    }
+  }
+
+  private transient Multiset<K> keys;
+
+  public Multiset<K> keys() {
+    Multiset<K> result = keys;
+    if (result == null) {
+      return keys = new Multimaps.Keys<K, V>() {
+        @Override Multimap<K, V> multimap() {
+          return AbstractConcurrentMultimap.this;
+        }
+      };
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned set is a weakly consistent view of the keys of the map.
+   */
+  public Set<K> keySet() {
+    return map.keySet();
+  }
+
+  private transient Collection<V> valuesCollection;
+
+  public Collection<V> values() {
+    Collection<V> result = valuesCollection;
+    if (result == null) {
+      return valuesCollection = new Multimaps.Values<K, V>() {
+        @Override Multimap<K, V> multimap() {
+          return AbstractConcurrentMultimap.this;
+        }
+      };
+    }
+    return result;
+  }
+
+  private transient Collection<Entry<K, V>> entries;
+
+  public Collection<Entry<K, V>> entries() {
+    Collection<Entry<K, V>> result = entries;
+    return (result == null) ? entries = createEntries() : result;
+  }
+
+  Collection<Entry<K, V>> createEntries() {
+    return new Multimaps.Entries<K, V>() {
+      @Override Multimap<K, V> multimap() {
+        return AbstractConcurrentMultimap.this;
+      }
+
+      @Override public Iterator<Entry<K, V>> iterator() {
+        return entryIterator();
+      }
+    };
+  }
+
+  /**
+   * Returns an iterator over the entries of the values of each key, one
+   * snapshot of the values of a key at a time.
+   */
+  Iterator<Entry<K, V>> entryIterator() {
+    final Iterator<Entry<K, C>> keyIterator = map.entrySet().iterator();
+    return new Iterator<Entry<K, V>>() {
+      K key;
+      Iterator<V> valueIterator = Iterators.emptyIterator();
+      Entry<K, V> last;
+
+      public boolean hasNext() {
+        while (!valueIterator.hasNext() && keyIterator.hasNext()) {
+          Entry<K, C> entry = keyIterator.next();
+          key = entry.getKey();
+          valueIterator = entry.getValue().iterator();
+        }
+        return valueIterator.hasNext();
+      }
+
+      public Entry<K, V> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return last = Maps.immutableEntry(key, valueIterator.next());
+      }
+
+      public void remove() {
+        Iterators.checkRemove(last != null);
+        AbstractConcurrentMultimap.this.remove(last.getKey(), last.getValue());
+        last = null;
+      }
+    };
+  }
+
+  private transient Map<K, Collection<V>> asMap;
+
+  public Map<K, Collection<V>> asMap() {
+    Map<K, Collection<V>> result = asMap;
+    if (result == null) {
+      return asMap = new Multimaps.AsMap<K, V>() {
+        @Override Multimap<K, V> multimap() {
+          return AbstractConcurrentMultimap.this;
+        }
+
+        @Override public int size() {
+          return map.size();
+        }
+
+        @Override Iterator<Entry<K, Collection<V>>> entryIterator() {
+          return new TransformedIterator<K, Entry<K, Collection<V>>>(
+              map.keySet().iterator()) {
+            @Override Entry<K, Collection<V>> transform(K key) {
+              return Maps.immutableEntry(key, wrapValues(key));
+            }
+          };
+        }
+      };
+    }
+    return result;
+  }
+
+  // Comparison and hashing
+
+  /**
+   * Compares the specified object to this multimap for equality, as {@link
+   * Multimap#equals} specifies. The comparison is not atomic.
+   */
+  @Override public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (object instanceof Multimap) {
+      Multimap<?, ?> that = (Multimap<?, ?>) object;
+      return this.map.equals(that.asMap());
+    }
+    return false;
+  }
+
+  @Override public int hashCode() {
+    return map.hashCode();
+  }
+
+  @Override public String toString() {
+    return map.toString();
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -17,6 +17,7 @@
 package google.common.collect;
 
 import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
 import static google.common.base.Preconditions.checkNotNull;
 import static google.common.math.LongMath.binomial;
 
@@ -30,12 +31,17 @@ import google.common.math.IntMath;
 import google.common.primitives.Ints;
 
 import java.util.AbstractCollection;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
 
 import javax.annotation.Nullable;
 
@@ -420,6 +426,10 @@ public final class Collections2 {
    *
    * <p>An empty iterable has only one permutation, which is an empty list.
    *
+   * <p>To compute any permutation directly by its index, or to split the
+   * permutations among workers, use {@link #orderedPermutationList(Iterable,
+   * Comparator)}.
+   *
    * @param elements the original iterable whose elements have to be permuted.
    * @param comparator a comparator for the iterable's elements.
    * @return an immutable {@link java.util.Collection} containing all the different
@@ -574,6 +584,9 @@ public final class Collections2 {
    *
    * <p>An empty collection has only one permutation, which is an empty list.
    *
+   * <p>To compute any permutation directly by its index, or to split the
+   * permutations among workers, use {@link #permutationList}.
+   *
    * @param elements the original collection whose elements have to be permuted.
    * @return an immutable {@link java.util.Collection} containing all the different
    *     permutations of the original collection.
@@ -684,6 +697,391 @@ public final class Collections2 {
     }
   }
 
+  /**
+   * Returns the permutations of the specified {@link Iterable} in
+   * lexicographical order, as {@link Collections2#orderedPermutations(Iterable)}
+   * iterates them, as an immutable random-access list.
+   *
+   * <p>{@code get(i)} computes the {@code i}-th permutation directly, in time
+   * quadratic in the number of elements, without enumerating those before it.
+   * Iterating the list, or any {@linkplain List#subList sublist} of it,
+   * computes only the first permutation that way and each following one
+   * incrementally, so a search can be split among {@code k} workers by giving
+   * each a contiguous sublist: <pre>   {@code
+   *
+   *   List<List<E>> all = orderedPermutationList(elements);
+   *   int chunk = IntMath.divide(all.size(), k, RoundingMode.CEILING);
+   *   for (List<List<E>> part : Lists.partition(all, chunk)) {
+   *     submit(part);
+   *   }}</pre>
+   *
+   * @param elements the original iterable whose elements have to be permuted
+   * @return an immutable list of the different permutations of the original
+   *     iterable
+   * @throws NullPointerException if the specified iterable is null or has any
+   *     null elements
+   * @throws IllegalArgumentException if there are more than {@code
+   *     Integer.MAX_VALUE} permutations
+   * @since 14.0
+   */
+  @Beta public static <E extends Comparable<? super E>>
+      List<List<E>> orderedPermutationList(Iterable<E> elements) {
+    return orderedPermutationList(elements, Ordering.natural());
+  }
+
+  /**
+   * Returns the permutations of the specified {@link Iterable} in the
+   * lexicographical order given by {@code comparator}, as {@link
+   * Collections2#orderedPermutations(Iterable, Comparator)} iterates them, as
+   * an immutable random-access list. As there, elements that compare equal
+   * are considered equal and no new permutations are created by swapping
+   * them; each permutation holds the same elements, in the same order, as the
+   * one that {@code orderedPermutations} returns.
+   *
+   * <p>{@code get(i)} computes the {@code i}-th permutation directly, and
+   * iterating any {@linkplain List#subList sublist} computes only its first
+   * permutation that way, as described in {@link
+   * #orderedPermutationList(Iterable)}.
+   *
+   * @param elements the original iterable whose elements have to be permuted
+   * @param comparator a comparator for the iterable's elements
+   * @return an immutable list of the different permutations of the original
+   *     iterable
+   * @throws NullPointerException if the specified iterable is null, has any
+   *     null elements, or if the specified comparator is null
+   * @throws IllegalArgumentException if there are more than {@code
+   *     Integer.MAX_VALUE} permutations
+   * @since 14.0
+   */
+  @Beta public static <E> List<List<E>> orderedPermutationList(
+      Iterable<E> elements, Comparator<? super E> comparator) {
+    ImmutableList<E> sorted = Ordering.from(comparator).immutableSortedCopy(elements);
+    int[] ranks = new int[sorted.size()];
+    for (int i = 1; i < ranks.length; i++) {
+      ranks[i] = (comparator.compare(sorted.get(i - 1), sorted.get(i)) < 0)
+          ? ranks[i - 1] + 1
+          : ranks[i - 1];
+    }
+    return new PermutationList<E>(sorted, ranks, comparator);
+  }
+
+  /**
+   * Returns all the permutations of the specified {@link Collection} as an
+   * immutable random-access list. The permutations are those of {@link
+   * Collections2#permutations}, but in lexicographical order of the positions
+   * of the elements in the original collection, so that the first is the
+   * collection in its own order and the last is that order reversed.
+   *
+   * <p>If the input collection contains equal elements, some of the
+   * permutations will be equal.
+   *
+   * <p>{@code get(i)} computes the {@code i}-th permutation directly, and
+   * iterating any {@linkplain List#subList sublist} computes only its first
+   * permutation that way, as described in {@link
+   * #orderedPermutationList(Iterable)}.
+   *
+   * @param elements the original collection whose elements have to be permuted
+   * @return an immutable list of all the permutations of the original
+   *     collection
+   * @throws NullPointerException if the specified collection is null or has
+   *     any null elements
+   * @throws IllegalArgumentException if the collection has more than 12
+   *     elements, so that there are more than {@code Integer.MAX_VALUE}
+   *     permutations
+   * @since 14.0
+   */
+  @Beta public static <E> List<List<E>> permutationList(Collection<E> elements) {
+    ImmutableList<E> input = ImmutableList.copyOf(elements);
+    int[] ranks = new int[input.size()];
+    for (int i = 0; i < ranks.length; i++) {
+      ranks[i] = i;
+    }
+    return new PermutationList<E>(input, ranks, null);
+  }
+
+  /**
+   * The permutations of a list of elements with ranks, in the lexicographical
+   * order of the ranks, arranged exactly as {@link OrderedPermutationIterator}
+   * arranges them when it compares elements by rank.
+   *
+   * <p>The ranks of the {@code i}-th permutation are found by choosing each
+   * position's rank in turn: the permutations starting with rank {@code r} are
+   * a fraction {@code count(r) / remaining} of those of the remaining ranks.
+   * Elements of equal rank are told apart by their index in {@code elements}:
+   * each time the iterator moves a position on to its next rank, it rearranges
+   * the elements after that position in a way that depends only on how many
+   * of each rank there are, which {@link #lastArrangement} computes once per
+   * such multiset of ranks.
+   */
+  private static final class PermutationList<E> extends AbstractList<List<E>>
+      implements RandomAccess {
+    // sorted by rank; the first permutation
+    final ImmutableList<E> elements;
+    // the rank of each element, nondecreasing
+    final int[] ranks;
+    // the comparator that gave the ranks, or null if they are all distinct
+    @Nullable final Comparator<? super E> comparator;
+    final int size;
+    // lastArrangement() by the counts of the ranks of the arranged elements
+    final Map<List<Integer>, int[]> lastArrangements = Maps.newHashMap();
+
+    PermutationList(ImmutableList<E> elements, int[] ranks,
+        @Nullable Comparator<? super E> comparator) {
+      this.elements = elements;
+      this.ranks = ranks;
+      this.comparator = comparator;
+      this.size = Ints.checkedCast(permutations(counts()));
+    }
+
+    /** Returns the number of times each rank occurs. */
+    int[] counts() {
+      int[] counts = new int[(ranks.length == 0) ? 0 : ranks[ranks.length - 1] + 1];
+      for (int rank : ranks) {
+        counts[rank]++;
+      }
+      return counts;
+    }
+
+    long permutations(int[] counts) {
+      long permutations = 1;
+      int n = 0;
+      for (int count : counts) {
+        n += count;
+        permutations *= binomial(n, count);
+        checkArgument(isPositiveInt(permutations),
+            "Too many permutations of %s elements", ranks.length);
+      }
+      return permutations;
+    }
+
+    /** Returns the indexes of the elements of the {@code index}-th permutation. */
+    int[] unrank(int index) {
+      int n = ranks.length;
+      int[] permutation = identity(n);
+      int[] counts = counts();
+      long remainder = index;
+      long permutationsOfRest = size;
+      for (int i = 0; i < n; i++) {
+        int remaining = n - i;
+        counts[ranks[permutation[i]]]--;
+        for (int rank = ranks[permutation[i]]; ; rank++) {
+          long startingWithRank =
+              permutationsOfRest * (counts[rank] + 1) / remaining;
+          if (remainder < startingWithRank) {
+            permutationsOfRest = startingWithRank;
+            break;
+          }
+          remainder -= startingWithRank;
+          // skip the permutations starting with this rank, as the iterator does
+          int next = nextBlock(permutation, i, n, ranks, counts);
+          counts[rank]++;
+          counts[next]--;
+          rank = next - 1;
+        }
+      }
+      return permutation;
+    }
+
+    /**
+     * Rearranges {@code permutation[from, to)}, the first arrangement of the
+     * elements with {@code permutation[from]} first, into the first
+     * arrangement with the next greater rank first, as the iterator does, and
+     * returns that rank. {@code counts} are the counts of the ranks of {@code
+     * permutation[from + 1, to)}.
+     */
+    int nextBlock(int[] permutation, int from, int to, int[] rankOf,
+        int[] counts) {
+      int[] last = lastArrangement(counts, to - from - 1);
+      int[] rest = new int[last.length];
+      for (int i = 0; i < last.length; i++) {
+        rest[i] = permutation[from + 1 + last[i]];
+      }
+      System.arraycopy(rest, 0, permutation, from + 1, rest.length);
+      int l = to - 1;
+      while (rankOf[permutation[l]] <= rankOf[permutation[from]]) {
+        l--;
+      }
+      swap(permutation, from, l);
+      reverse(permutation, from + 1, to);
+      return rankOf[permutation[from]];
+    }
+
+    /**
+     * Returns where the iterator leaves {@code size} elements with the given
+     * counts of ranks, starting from their arrangement in ascending order of
+     * rank: the {@code i}-th element of the last permutation is the {@code
+     * last[i]}-th of the first.
+     */
+    int[] lastArrangement(int[] counts, int size) {
+      List<Integer> key = ImmutableList.copyOf(Ints.asList(counts));
+      synchronized (lastArrangements) {
+        int[] cached = lastArrangements.get(key);
+        if (cached != null) {
+          return cached;
+        }
+      }
+      int[] arrangement = identity(size);
+      if (size > 1) {
+        int[] rankOf = new int[size];
+        for (int rank = 0, i = 0; rank < counts.length; rank++) {
+          for (int j = 0; j < counts[rank]; j++) {
+            rankOf[i++] = rank;
+          }
+        }
+        int[] rest = counts.clone();
+        rest[rankOf[0]]--;
+        for (int rank = rankOf[0]; rank < rankOf[size - 1]; ) {
+          int next = nextBlock(arrangement, 0, size, rankOf, rest);
+          rest[rank]++;
+          rest[next]--;
+          rank = next;
+        }
+        int[] last = lastArrangement(rest, size - 1);
+        int[] tail = new int[size - 1];
+        for (int i = 0; i < tail.length; i++) {
+          tail[i] = arrangement[1 + last[i]];
+        }
+        System.arraycopy(tail, 0, arrangement, 1, tail.length);
+      }
+      synchronized (lastArrangements) {
+        lastArrangements.put(key, arrangement);
+      }
+      return arrangement;
+    }
+
+    List<E> toList(int[] permutation) {
+      Object[] array = new Object[permutation.length];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = elements.get(permutation[i]);
+      }
+      return ImmutableList.asImmutableList(array);
+    }
+
+     public List<E> get(int index) {
+      checkElementIndex(index, size);
+      return toList(unrank(index));
+    }
+
+     public int size() {
+      return size;
+    }
+
+     public boolean isEmpty() {
+      return false;
+    }
+
+     public ListIterator<List<E>> listIterator(int index) {
+      return new AbstractIndexedListIterator<List<E>>(size, index) {
+        int[] current;
+        int currentIndex;
+
+         protected List<E> get(int index) {
+          if (current != null && index == currentIndex + 1) {
+            nextPermutation(current);
+          } else {
+            current = unrank(index);
+          }
+          currentIndex = index;
+          return toList(current);
+        }
+      };
+    }
+
+     public boolean contains(@Nullable Object obj) {
+      if (!(obj instanceof List)) {
+        return false;
+      }
+      List<?> list = (List<?>) obj;
+      if (!isPermutation(elements, list)) {
+        return false;
+      }
+      if (comparator == null) {
+        return true;
+      }
+      // Elements of equal rank appear in one order only; find the permutation
+      // with the ranks of the list, and compare.
+      int[] listRanks = new int[list.size()];
+      try {
+        for (int i = 0; i < listRanks.length; i++) {
+          @SuppressWarnings("unchecked") // a ClassCastException means it isn't
+          E element = (E) list.get(i);
+          int index = Collections.binarySearch(elements, element, comparator);
+          if (index < 0) {
+            return false;
+          }
+          listRanks[i] = ranks[index];
+        }
+      } catch (ClassCastException e) {
+        return false;
+      }
+      int[] sortedRanks = listRanks.clone();
+      Arrays.sort(sortedRanks);
+      return Arrays.equals(sortedRanks, ranks)
+          && get(indexOf(listRanks)).equals(list);
+    }
+
+    /** Returns the index of the permutations with the given ranks. */
+    int indexOf(int[] permutationRanks) {
+      int[] counts = counts();
+      long index = 0;
+      long permutationsOfRest = size;
+      for (int i = 0; i < permutationRanks.length; i++) {
+        int remaining = permutationRanks.length - i;
+        for (int rank = 0; rank < permutationRanks[i]; rank++) {
+          index += permutationsOfRest * counts[rank] / remaining;
+        }
+        permutationsOfRest =
+            permutationsOfRest * counts[permutationRanks[i]] / remaining;
+        counts[permutationRanks[i]]--;
+      }
+      return (int) index;
+    }
+
+     public String toString() {
+      return "permutationList(" + elements + ")";
+    }
+
+    /**
+     * Rearranges {@code permutation} into the next one, as {@link
+     * OrderedPermutationIterator} does, if there is one.
+     */
+    void nextPermutation(int[] permutation) {
+      int j = permutation.length - 2;
+      while (j >= 0 && ranks[permutation[j]] >= ranks[permutation[j + 1]]) {
+        j--;
+      }
+      if (j < 0) {
+        return;
+      }
+      int l = permutation.length - 1;
+      while (ranks[permutation[j]] >= ranks[permutation[l]]) {
+        l--;
+      }
+      swap(permutation, j, l);
+      reverse(permutation, j + 1, permutation.length);
+    }
+
+    static int[] identity(int n) {
+      int[] identity = new int[n];
+      for (int i = 0; i < n; i++) {
+        identity[i] = i;
+      }
+      return identity;
+    }
+
+    static void swap(int[] array, int i, int j) {
+      int temp = array[i];
+      array[i] = array[j];
+      array[j] = temp;
+    }
+
+    static void reverse(int[] array, int from, int to) {
+      for (int i = from, j = to - 1; i < j; i++, j--) {
+        swap(array, i, j);
+      }
+    }
+  }
+
   /**
    * Returns {@code true} if the second list is a permutation of the first.
    */
@@ -0,0 +1,644 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkState;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
+import google.common.base.Objects;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link BiMap} that stores each key-value pair once, for bimaps with many
+ * entries. This implementation allows null keys and values. A {@code
+ * CompactHashBiMap} and its inverse are both serializable.
+ *
+ * <p>{@link HashBiMap} keeps two hash maps, so every pair is stored twice, each
+ * time in its own entry object. This class instead keeps the keys, the values
+ * and their hash codes in parallel arrays, with no object per entry, and two
+ * open-addressed {@code int[]} tables, probed linearly, that map key and value
+ * hashes to positions in those arrays. This takes well under half the memory
+ * of a {@code HashBiMap}, and {@code inverse().get()} does exactly the same
+ * work as {@code get()}.
+ *
+ * <p>Removing an entry moves the last entry into its place, so the iteration
+ * order, which is unspecified, may change when entries are removed. The
+ * iterators of the views are fail-fast, and the entries they return reflect
+ * later changes to the value of their key.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible(emulated = true)
+public final class CompactHashBiMap<K, V> extends AbstractMap<K, V>
+    implements BiMap<K, V>, Serializable {
+
+  /**
+   * Returns a new, empty {@code CompactHashBiMap} with the default initial
+   * capacity (16).
+   */
+  public static <K, V> CompactHashBiMap<K, V> create() {
+    return new CompactHashBiMap<K, V>(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new, empty bimap with the specified expected size.
+   *
+   * @param expectedSize the expected number of entries
+   * @throws IllegalArgumentException if the specified expected size is
+   *     negative
+   */
+  public static <K, V> CompactHashBiMap<K, V> create(int expectedSize) {
+    checkArgument(expectedSize >= 0, "expectedSize cannot be negative but was: %s",
+        expectedSize);
+    return new CompactHashBiMap<K, V>(expectedSize);
+  }
+
+  /**
+   * Constructs a new bimap containing initial values from {@code map}. The
+   * bimap is created with an initial capacity sufficient to hold the mappings
+   * in the specified map.
+   *
+   * @throws IllegalArgumentException if {@code map} maps two keys to the same
+   *     value
+   */
+  public static <K, V> CompactHashBiMap<K, V> create(
+      Map<? extends K, ? extends V> map) {
+    CompactHashBiMap<K, V> bimap = create(map.size());
+    bimap.putAll(map);
+    return bimap;
+  }
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int ABSENT = -1;
+
+  // indexes of the two sides of each entry in the arrays below
+  private static final int KEYS = 0;
+  private static final int VALUES = 1;
+
+  // the elements of each side, and their smeared hash codes, by entry
+  private transient Object[][] elements;
+  private transient int[][] hashes;
+  // for each side, 1 + the entry in each table slot, or 0 for empty slots
+  private transient int[][] tables;
+  // 'and' with an int to get a table index
+  private transient int mask;
+  private transient int size;
+  // incremented by changes to the set of keys, for fail-fast iterators
+  private transient int modCount;
+  private transient BiMap<V, K> inverse;
+
+  private CompactHashBiMap(int expectedSize) {
+    init(expectedSize);
+  }
+
+  private void init(int capacity) {
+    elements = new Object[2][capacity];
+    hashes = new int[2][capacity];
+    int tableSize = ImmutableSet.chooseTableSize(Math.max(capacity, 2));
+    tables = new int[2][tableSize];
+    mask = tableSize - 1;
+    size = 0;
+  }
+
+  private static int hash(@Nullable Object o) {
+    return Hashing.smear((o == null) ? 0 : o.hashCode());
+  }
+
+  private static int other(int side) {
+    return 1 - side;
+  }
+
+  /**
+   * Returns the entry with {@code o}, whose smeared hash is {@code hash}, on
+   * the given side, or {@link #ABSENT}.
+   */
+  private int find(int side, @Nullable Object o, int hash) {
+    Object[] sideElements = elements[side];
+    int[] sideHashes = hashes[side];
+    int[] table = tables[side];
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      int entry = table[i] - 1;
+      if (entry < 0) {
+        return ABSENT;
+      }
+      if (sideHashes[entry] == hash && Objects.equal(o, sideElements[entry])) {
+        return entry;
+      }
+    }
+  }
+
+  private int find(int side, @Nullable Object o) {
+    return find(side, o, hash(o));
+  }
+
+  /** Returns the table slot of {@code entry}, which must be present. */
+  private int slotOf(int side, int entry) {
+    int[] table = tables[side];
+    int i = hashes[side][entry] & mask;
+    while (table[i] != entry + 1) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void insert(int side, int entry) {
+    int[] table = tables[side];
+    int i = hashes[side][entry] & mask;
+    while (table[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    table[i] = entry + 1;
+  }
+
+  /**
+   * Empties a table slot, moving later entries of its probe sequence back so
+   * that lookups never need to skip deleted slots.
+   */
+  private void deleteSlot(int side, int slot) {
+    int[] table = tables[side];
+    int[] sideHashes = hashes[side];
+    int hole = slot;
+    int i = slot;
+    while (true) {
+      table[hole] = 0;
+      while (true) {
+        i = (i + 1) & mask;
+        int entry = table[i] - 1;
+        if (entry < 0) {
+          return;
+        }
+        // the entry may fill the hole unless its home slot is in (hole, i]
+        int home = sideHashes[entry] & mask;
+        boolean homeAfterHole = (i > hole)
+            ? (home > hole && home <= i)
+            : (home > hole || home <= i);
+        if (!homeAfterHole) {
+          table[hole] = entry + 1;
+          hole = i;
+          break;
+        }
+      }
+    }
+  }
+
+  /** Replaces the element on one side of {@code entry}. */
+  private void replace(int side, int entry, @Nullable Object o, int hash) {
+    deleteSlot(side, slotOf(side, entry));
+    elements[side][entry] = o;
+    hashes[side][entry] = hash;
+    insert(side, entry);
+  }
+
+  private void removeEntry(int entry) {
+    deleteSlot(KEYS, slotOf(KEYS, entry));
+    deleteSlot(VALUES, slotOf(VALUES, entry));
+    int last = size - 1;
+    for (int side = KEYS; side <= VALUES; side++) {
+      if (entry != last) {
+        // move the last entry into the gap
+        tables[side][slotOf(side, last)] = entry + 1;
+        elements[side][entry] = elements[side][last];
+        hashes[side][entry] = hashes[side][last];
+      }
+      elements[side][last] = null;
+    }
+    size = last;
+    modCount++;
+  }
+
+  private void ensureCapacity(int minCapacity) {
+    int capacity = elements[KEYS].length;
+    if (minCapacity > capacity) {
+      int newCapacity =
+          ImmutableCollection.Builder.expandedCapacity(capacity, minCapacity);
+      for (int side = KEYS; side <= VALUES; side++) {
+        elements[side] = ObjectArrays.arraysCopyOf(elements[side], newCapacity);
+        int[] newHashes = new int[newCapacity];
+        System.arraycopy(hashes[side], 0, newHashes, 0, size);
+        hashes[side] = newHashes;
+      }
+      int tableSize = ImmutableSet.chooseTableSize(newCapacity);
+      if (tableSize > tables[KEYS].length) {
+        tables = new int[2][tableSize];
+        mask = tableSize - 1;
+        for (int entry = 0; entry < size; entry++) {
+          insert(KEYS, entry);
+          insert(VALUES, entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Maps {@code a} to {@code b}, with {@code a} on the given side. Returns the
+   * element previously on the other side of {@code a}.
+   */
+  private Object put(int side, @Nullable Object a, @Nullable Object b, boolean force) {
+    int otherSide = other(side);
+    int aHash = hash(a);
+    int bHash = hash(b);
+    int entry = find(side, a, aHash);
+    if (entry != ABSENT && hashes[otherSide][entry] == bHash
+        && Objects.equal(b, elements[otherSide][entry])) {
+      return b;
+    }
+    int bEntry = find(otherSide, b, bHash);
+    if (bEntry != ABSENT) {
+      checkArgument(force, "value already present: %s", b);
+      removeEntry(bEntry);
+      // removal may have moved the entry with a
+      entry = find(side, a, aHash);
+    }
+    if (entry != ABSENT) {
+      Object oldB = elements[otherSide][entry];
+      replace(otherSide, entry, b, bHash);
+      return oldB;
+    }
+    ensureCapacity(size + 1);
+    entry = size;
+    elements[side][entry] = a;
+    hashes[side][entry] = aHash;
+    elements[otherSide][entry] = b;
+    hashes[otherSide][entry] = bHash;
+    insert(KEYS, entry);
+    insert(VALUES, entry);
+    size++;
+    modCount++;
+    return null;
+  }
+
+  @Nullable private Object get(int side, @Nullable Object o) {
+    int entry = find(side, o);
+    return (entry == ABSENT) ? null : elements[other(side)][entry];
+  }
+
+  @Nullable private Object remove(int side, @Nullable Object o) {
+    int entry = find(side, o);
+    if (entry == ABSENT) {
+      return null;
+    }
+    Object removed = elements[other(side)][entry];
+    removeEntry(entry);
+    return removed;
+  }
+
+  // Map methods
+
+  @SuppressWarnings("unchecked") // only V's are stored as values
+  @Override public V get(@Nullable Object key) {
+    return (V) get(KEYS, key);
+  }
+
+  @Override public boolean containsKey(@Nullable Object key) {
+    return find(KEYS, key) != ABSENT;
+  }
+
+  @Override public boolean containsValue(@Nullable Object value) {
+    return find(VALUES, value) != ABSENT;
+  }
+
+  @SuppressWarnings("unchecked") // only V's are stored as values
+  @Override public V put(@Nullable K key, @Nullable V value) {
+    return (V) put(KEYS, key, value, false);
+  }
+
+  @SuppressWarnings("unchecked") // only V's are stored as values
+  public V forcePut(@Nullable K key, @Nullable V value) {
+    return (V) put(KEYS, key, value, true);
+  }
+
+  @SuppressWarnings("unchecked") // only V's are stored as values
+  @Override public V remove(@Nullable Object key) {
+    return (V) remove(KEYS, key);
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override public void clear() {
+    init(DEFAULT_CAPACITY);
+    modCount++;
+  }
+
+  @Override public Set<K> keySet() {
+    return new SideSet<K>(KEYS);
+  }
+
+  @Override public Set<V> values() {
+    return new SideSet<V>(VALUES);
+  }
+
+  @Override public Set<Entry<K, V>> entrySet() {
+    return new EntrySet<K, V>(KEYS);
+  }
+
+  public BiMap<V, K> inverse() {
+    BiMap<V, K> result = inverse;
+    return (result == null) ? inverse = new Inverse() : result;
+  }
+
+  // Views
+
+  private abstract class Itr<T> implements Iterator<T> {
+    int next = 0;
+    int last = ABSENT;
+    int expectedModCount = modCount;
+
+    abstract T output(int entry);
+
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    public T next() {
+      checkForComodification();
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return output(last);
+    }
+
+    public void remove() {
+      Iterators.checkRemove(last != ABSENT);
+      checkForComodification();
+      removeEntry(last);
+      // the last entry, not yet visited, was moved into the removed one's place
+      next = last;
+      last = ABSENT;
+      expectedModCount = modCount;
+    }
+
+    private void checkForComodification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  /** The elements on one side of the entries: the keys or the values. */
+  private final class SideSet<E> extends AbstractSet<E> {
+    final int side;
+
+    SideSet(int side) {
+      this.side = side;
+    }
+
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public boolean contains(@Nullable Object o) {
+      return find(side, o) != ABSENT;
+    }
+
+    @Override public boolean remove(@Nullable Object o) {
+      int entry = find(side, o);
+      if (entry == ABSENT) {
+        return false;
+      }
+      removeEntry(entry);
+      return true;
+    }
+
+    @Override public void clear() {
+      CompactHashBiMap.this.clear();
+    }
+
+    @Override public Iterator<E> iterator() {
+      return new Itr<E>() {
+        @SuppressWarnings("unchecked") // only E's are on this side
+        @Override E output(int entry) {
+          return (E) elements[side][entry];
+        }
+      };
+    }
+  }
+
+  /**
+   * An entry whose key is on the given side. It reads its value from the bimap,
+   * finding its key again if the entries have moved since it was created.
+   */
+  private final class EntryAt<A, B> extends AbstractMapEntry<A, B> {
+    final int side;
+    final A key;
+    int entry;
+
+    EntryAt(int side, int entry) {
+      this.side = side;
+      this.entry = entry;
+      @SuppressWarnings("unchecked") // only A's are on this side
+      A key = (A) elements[side][entry];
+      this.key = key;
+    }
+
+    private int updateEntry() {
+      if (entry == ABSENT || entry >= size
+          || !Objects.equal(key, elements[side][entry])) {
+        entry = find(side, key);
+      }
+      return entry;
+    }
+
+    @Override public A getKey() {
+      return key;
+    }
+
+    @SuppressWarnings("unchecked") // only B's are on the other side
+    @Override public B getValue() {
+      int current = updateEntry();
+      return (current == ABSENT) ? null : (B) elements[other(side)][current];
+    }
+
+    @Override public B setValue(B value) {
+      int current = updateEntry();
+      checkState(current != ABSENT, "entry no longer in bimap");
+      int otherSide = other(side);
+      @SuppressWarnings("unchecked") // only B's are on the other side
+      B oldValue = (B) elements[otherSide][current];
+      int valueHash = hash(value);
+      if (hashes[otherSide][current] == valueHash && Objects.equal(value, oldValue)) {
+        return value;
+      }
+      checkArgument(find(otherSide, value, valueHash) == ABSENT,
+          "value already present: %s", value);
+      replace(otherSide, current, value, valueHash);
+      return oldValue;
+    }
+  }
+
+  /** The entries, with their keys on the given side. */
+  private final class EntrySet<A, B> extends AbstractSet<Entry<A, B>> {
+    final int side;
+
+    EntrySet(int side) {
+      this.side = side;
+    }
+
+    @Override public int size() {
+      return size;
+    }
+
+    private int find(@Nullable Object o) {
+      if (o instanceof Entry) {
+        Entry<?, ?> e = (Entry<?, ?>) o;
+        int entry = CompactHashBiMap.this.find(side, e.getKey());
+        if (entry != ABSENT
+            && Objects.equal(e.getValue(), elements[other(side)][entry])) {
+          return entry;
+        }
+      }
+      return ABSENT;
+    }
+
+    @Override public boolean contains(@Nullable Object o) {
+      return find(o) != ABSENT;
+    }
+
+    @Override public boolean remove(@Nullable Object o) {
+      int entry = find(o);
+      if (entry == ABSENT) {
+        return false;
+      }
+      removeEntry(entry);
+      return true;
+    }
+
+    @Override public void clear() {
+      CompactHashBiMap.this.clear();
+    }
+
+    @Override public Iterator<Entry<A, B>> iterator() {
+      return new Itr<Entry<A, B>>() {
+        @Override Entry<A, B> output(int entry) {
+          return new EntryAt<A, B>(side, entry);
+        }
+      };
+    }
+  }
+
+  /** The inverse bimap, which looks up entries by value. */
+  private final class Inverse extends AbstractMap<V, K>
+      implements BiMap<V, K>, Serializable {
+
+    @SuppressWarnings("unchecked") // only K's are stored as keys
+    @Override public K get(@Nullable Object value) {
+      return (K) CompactHashBiMap.this.get(VALUES, value);
+    }
+
+    @Override public boolean containsKey(@Nullable Object value) {
+      return find(VALUES, value) != ABSENT;
+    }
+
+    @Override public boolean containsValue(@Nullable Object key) {
+      return find(KEYS, key) != ABSENT;
+    }
+
+    @SuppressWarnings("unchecked") // only K's are stored as keys
+    @Override public K put(@Nullable V value, @Nullable K key) {
+      return (K) CompactHashBiMap.this.put(VALUES, value, key, false);
+    }
+
+    @SuppressWarnings("unchecked") // only K's are stored as keys
+    public K forcePut(@Nullable V value, @Nullable K key) {
+      return (K) CompactHashBiMap.this.put(VALUES, value, key, true);
+    }
+
+    @SuppressWarnings("unchecked") // only K's are stored as keys
+    @Override public K remove(@Nullable Object value) {
+      return (K) CompactHashBiMap.this.remove(VALUES, value);
+    }
+
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public boolean isEmpty() {
+      return size == 0;
+    }
+
+    @Override public void clear() {
+      CompactHashBiMap.this.clear();
+    }
+
+    @Override public Set<V> keySet() {
+      return new SideSet<V>(VALUES);
+    }
+
+    @Override public Set<K> values() {
+      return new SideSet<K>(KEYS);
+    }
+
+    @Override public Set<Entry<V, K>> entrySet() {
+      return new EntrySet<V, K>(VALUES);
+    }
+
+    public BiMap<K, V> inverse() {
+      return CompactHashBiMap.this;
+    }
+
+    Object readResolve() {
+      return CompactHashBiMap.this.inverse();
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /**
+   * @serialData the number of entries, first key, first value, second key,
+   *     second value, and so on.
+   */
+  @GwtIncompatible("java.io.ObjectOutputStream")
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    Serialization.writeMap(this, stream);
+  }
+
+  @GwtIncompatible("java.io.ObjectInputStream")
+  private void readObject(ObjectInputStream stream)
+      throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    int size = Serialization.readCount(stream);
+    init(size);
+    Serialization.populateMap(this, stream, size);
+  }
+
+  @GwtIncompatible("Not needed in emulated source")
+  private static final long serialVersionUID = 0;
+}
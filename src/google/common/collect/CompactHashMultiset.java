@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkState;
+import static google.common.collect.Multisets.checkNonnegative;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
+import google.common.primitives.Ints;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Multiset implementation that keeps its elements and their counts in
+ * parallel arrays indexed by an open-addressed hash table, rather than in a
+ * {@code Map<E, Count>} as {@link HashMultiset} does.
+ *
+ * <p>Each distinct element costs a few array slots instead of a map entry
+ * plus a mutable counter object, which cuts memory use to roughly a third for
+ * workloads with many distinct elements, such as word counting. Iteration
+ * order is unspecified, and may change when elements are removed.
+ *
+ * <p>Null elements are permitted. This class is not thread-safe; see
+ * {@link ConcurrentCompactHashMultiset} for a concurrent equivalent.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible(serializable = true, emulated = true)
+public final class CompactHashMultiset<E> extends AbstractMultiset<E>
+    implements Serializable {
+
+  /**
+   * Creates a new, empty {@code CompactHashMultiset} using the default initial
+   * capacity.
+   */
+  public static <E> CompactHashMultiset<E> create() {
+    return new CompactHashMultiset<E>(ObjectCountHashMap.<E>create());
+  }
+
+  /**
+   * Creates a new, empty {@code CompactHashMultiset} with the specified
+   * expected number of distinct elements.
+   *
+   * @param distinctElements the expected number of distinct elements
+   * @throws IllegalArgumentException if {@code distinctElements} is negative
+   */
+  public static <E> CompactHashMultiset<E> create(int distinctElements) {
+    return new CompactHashMultiset<E>(
+        ObjectCountHashMap.<E>createWithExpectedSize(distinctElements));
+  }
+
+  /**
+   * Creates a new {@code CompactHashMultiset} containing the specified
+   * elements.
+   *
+   * <p>This implementation is highly efficient when {@code elements} is itself
+   * a {@link Multiset}.
+   *
+   * @param elements the elements that the multiset should contain
+   */
+  public static <E> CompactHashMultiset<E> create(Iterable<? extends E> elements) {
+    CompactHashMultiset<E> multiset =
+        create(Multisets.inferDistinctElements(elements));
+    Iterables.addAll(multiset, elements);
+    return multiset;
+  }
+
+  private transient ObjectCountHashMap<E> backingMap;
+
+  /*
+   * Cache the size for efficiency. Using a long lets us avoid the need for
+   * overflow checking and ensures that size() will function correctly even if
+   * the multiset had once been larger than Integer.MAX_VALUE.
+   */
+  private transient long size;
+
+  private CompactHashMultiset(ObjectCountHashMap<E> backingMap) {
+    this.backingMap = backingMap;
+  }
+
+  // Query Operations
+
+  @Override public int size() {
+    return Ints.saturatedCast(size);
+  }
+
+  @Override public boolean isEmpty() {
+    return backingMap.size() == 0;
+  }
+
+  @Override public int count(@Nullable Object element) {
+    return backingMap.get(element);
+  }
+
+  // Modification Operations
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the call would result in more than
+   *     {@link Integer#MAX_VALUE} occurrences of {@code element} in this
+   *     multiset.
+   */
+  @Override public int add(@Nullable E element, int occurrences) {
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(
+        occurrences > 0, "occurrences cannot be negative: %s", occurrences);
+    int index = backingMap.indexOf(element);
+    if (index == -1) {
+      backingMap.put(element, occurrences);
+      size += occurrences;
+      return 0;
+    }
+    int oldCount = backingMap.getValue(index);
+    long newCount = (long) oldCount + (long) occurrences;
+    checkArgument(newCount <= Integer.MAX_VALUE,
+        "too many occurrences: %s", newCount);
+    backingMap.setValue(index, (int) newCount);
+    size += occurrences;
+    return oldCount;
+  }
+
+  @Override public int remove(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(
+        occurrences > 0, "occurrences cannot be negative: %s", occurrences);
+    int index = backingMap.indexOf(element);
+    if (index == -1) {
+      return 0;
+    }
+    int oldCount = backingMap.getValue(index);
+    int numberRemoved;
+    if (oldCount > occurrences) {
+      numberRemoved = occurrences;
+      backingMap.setValue(index, oldCount - occurrences);
+    } else {
+      numberRemoved = oldCount;
+      backingMap.removeEntry(index);
+    }
+    size -= numberRemoved;
+    return oldCount;
+  }
+
+  @Override public int setCount(@Nullable E element, int count) {
+    checkNonnegative(count, "count");
+    int oldCount = (count == 0)
+        ? backingMap.remove(element)
+        : backingMap.put(element, count);
+    size += (count - oldCount);
+    return oldCount;
+  }
+
+  @Override public void clear() {
+    backingMap.clear();
+    size = 0L;
+  }
+
+  // Views
+
+  @Override int distinctElements() {
+    return backingMap.size();
+  }
+
+  @Override public Iterator<E> iterator() {
+    return new Itr<E>() {
+      int occurrencesLeft;
+      boolean canRemove;
+
+      @Override public boolean hasNext() {
+        return occurrencesLeft > 0 || super.hasNext();
+      }
+
+      public E next() {
+        if (occurrencesLeft == 0) {
+          advance();
+          occurrencesLeft = backingMap.getValue(index);
+        }
+        checkForComodification();
+        occurrencesLeft--;
+        canRemove = true;
+        return backingMap.getKey(index);
+      }
+
+      public void remove() {
+        checkState(canRemove,
+            "no calls to next() since the last call to remove()");
+        checkForComodification();
+        int count = backingMap.getValue(index);
+        if (count == 1) {
+          removeCurrent();
+        } else {
+          backingMap.setValue(index, count - 1);
+        }
+        size--;
+        canRemove = false;
+      }
+    };
+  }
+
+  @Override Iterator<Entry<E>> entryIterator() {
+    return new Itr<Entry<E>>() {
+      public Entry<E> next() {
+        advance();
+        return backingMap.getEntry(index);
+      }
+
+      public void remove() {
+        checkState(index != -1 && !removed,
+            "no calls to next() since the last call to remove()");
+        checkForComodification();
+        size -= backingMap.getValue(index);
+        removeCurrent();
+      }
+    };
+  }
+
+  /**
+   * Walks the dense entry arrays of the backing map. Removing the current
+   * entry moves the last entry into its position, so the walk revisits that
+   * position next.
+   */
+  private abstract class Itr<T> implements Iterator<T> {
+    int index = -1;
+    boolean removed;
+    int expectedModCount = backingMap.modCount;
+
+    public boolean hasNext() {
+      return (removed ? index : index + 1) < backingMap.size();
+    }
+
+    void advance() {
+      checkForComodification();
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (removed) {
+        removed = false;
+      } else {
+        index++;
+      }
+    }
+
+    void removeCurrent() {
+      backingMap.removeEntry(index);
+      expectedModCount = backingMap.modCount;
+      removed = true;
+    }
+
+    void checkForComodification() {
+      if (backingMap.modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  /**
+   * @serialData the number of distinct elements, the first element, its count,
+   *     the second element, its count, and so on
+   */
+  @GwtIncompatible("java.io.ObjectOutputStream")
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    Serialization.writeMultiset(this, stream);
+  }
+
+  @GwtIncompatible("java.io.ObjectInputStream")
+  private void readObject(ObjectInputStream stream)
+      throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    int distinctElements = Serialization.readCount(stream);
+    backingMap = ObjectCountHashMap.createWithExpectedSize(distinctElements);
+    Serialization.populateMultiset(this, stream, distinctElements);
+  }
+
+  @GwtIncompatible("Not needed in emulated source.")
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+
+import google.common.annotations.GwtCompatible;
+
+import javax.annotation.Nullable;
+
+/**
+ * The map behind a large {@link ImmutableListMultimap}, which stores all
+ * values in one flat array instead of one {@link ImmutableList} per key.
+ *
+ * <p>The layout is that of a compressed sparse row matrix: the distinct keys
+ * in order, an {@code int[]} of offsets such that the values of the {@code
+ * i}th key are {@code values[offsets[i]]} up to {@code values[offsets[i +
+ * 1]]}, and the values themselves. An open-addressed {@code int[]} table,
+ * probed linearly, maps each key to its position. Per key this costs a key
+ * reference, an offset and a table slot or two, instead of a list object, its
+ * array and a map entry. The lists returned by {@link #get} are views of a
+ * slice of the values array, created on demand.
+ *
+ * <p>{@link ImmutableListMultimap#copyOf} and its builder choose this layout
+ * once a multimap has at least {@link
+ * ImmutableListMultimap#COMPACT_LAYOUT_THRESHOLD} keys.
+ */
+@GwtCompatible(serializable = true)
+final class CompactListMultimapMap<K, V> extends ImmutableMap<K, ImmutableList<V>> {
+
+  // distinct keys, in order
+  private final transient Object[] keys;
+  // values of keys[i] are values[offsets[i]] up to values[offsets[i + 1]]
+  private final transient int[] offsets;
+  private final transient Object[] values;
+  // 1 + the position in keys of the key in each slot, or 0 for empty slots
+  private final transient int[] table;
+  // 'and' with an int to get a table index
+  private final transient int mask;
+  private final transient int keySetHashCode;
+
+  /**
+   * Creates a map from arrays in the layout described above; the arrays must
+   * not be modified afterwards.
+   *
+   * @throws IllegalArgumentException if a key appears more than once
+   */
+  CompactListMultimapMap(Object[] keys, int[] offsets, Object[] values) {
+    this.keys = keys;
+    this.offsets = offsets;
+    this.values = values;
+    int tableSize = ImmutableSet.chooseTableSize(keys.length);
+    checkArgument(tableSize < ImmutableSet.MAX_TABLE_SIZE,
+        "multimap too large: %s keys", keys.length);
+    table = new int[tableSize];
+    mask = tableSize - 1;
+
+    int keySetHashCodeMutable = 0;
+    for (int keyIndex = 0; keyIndex < keys.length; keyIndex++) {
+      Object key = keys[keyIndex];
+      int keyHashCode = key.hashCode();
+      keySetHashCodeMutable += keyHashCode;
+      for (int i = Hashing.smear(keyHashCode); ; i++) {
+        int index = i & mask;
+        int existing = table[index];
+        if (existing == 0) {
+          table[index] = keyIndex + 1;
+          break;
+        }
+        checkArgument(!key.equals(keys[existing - 1]), "duplicate key: %s", key);
+      }
+    }
+    keySetHashCode = keySetHashCodeMutable;
+  }
+
+  /** Returns the position of {@code key} in the key array, or -1. */
+  private int indexOf(@Nullable Object key) {
+    if (key == null) {
+      return -1;
+    }
+    for (int i = Hashing.smear(key.hashCode()); ; i++) {
+      int candidate = table[i & mask];
+      if (candidate == 0) {
+        return -1;
+      }
+      if (key.equals(keys[candidate - 1])) {
+        return candidate - 1;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked") // only K's are stored in keys
+  K keyAt(int keyIndex) {
+    return (K) keys[keyIndex];
+  }
+
+  ImmutableList<V> valuesAt(int keyIndex) {
+    int offset = offsets[keyIndex];
+    return new RegularImmutableList<V>(
+        values, offset, offsets[keyIndex + 1] - offset);
+  }
+
+  /** Returns the total number of values. */
+  int valueCount() {
+    return values.length;
+  }
+
+  public ImmutableList<V> get(@Nullable Object key) {
+    int keyIndex = indexOf(key);
+    return (keyIndex < 0) ? null : valuesAt(keyIndex);
+  }
+
+  public boolean containsKey(@Nullable Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  public boolean isEmpty() {
+    return keys.length == 0;
+  }
+
+  boolean isPartialView() {
+    return false;
+  }
+
+  ImmutableSet<Entry<K, ImmutableList<V>>> createEntrySet() {
+    return new EntrySet();
+  }
+
+  @SuppressWarnings("serial") // uses writeReplace(), not default serialization
+  private class EntrySet extends ImmutableMapEntrySet<K, ImmutableList<V>> {
+    ImmutableMap<K, ImmutableList<V>> map() {
+      return CompactListMultimapMap.this;
+    }
+
+    public UnmodifiableIterator<Entry<K, ImmutableList<V>>> iterator() {
+      return asList().iterator();
+    }
+
+    ImmutableList<Entry<K, ImmutableList<V>>> createAsList() {
+      return new ImmutableAsList<Entry<K, ImmutableList<V>>>() {
+        public Entry<K, ImmutableList<V>> get(int index) {
+          checkElementIndex(index, keys.length);
+          return new ImmutableEntry<K, ImmutableList<V>>(
+              keyAt(index), valuesAt(index));
+        }
+
+        ImmutableCollection<Entry<K, ImmutableList<V>>> delegateCollection() {
+          return EntrySet.this;
+        }
+      };
+    }
+  }
+
+  ImmutableSet<K> createKeySet() {
+    return new ImmutableMapKeySet<K, ImmutableList<V>>(entrySet(), keySetHashCode) {
+      ImmutableMap<K, ImmutableList<V>> map() {
+        return CompactListMultimapMap.this;
+      }
+
+      @Override public UnmodifiableIterator<K> iterator() {
+        return asList().iterator();
+      }
+
+      @Override ImmutableList<K> createAsList() {
+        return ImmutableList.asImmutableList(keys);
+      }
+
+      private static final long serialVersionUID = 0;
+    };
+  }
+
+  // This class is never actually serialized directly, but we have to make the
+  // warning go away (and suppressing would suppress for all nested classes too)
+  private static final long serialVersionUID = 0;
+}
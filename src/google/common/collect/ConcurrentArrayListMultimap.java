@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkElementIndex;
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.base.Preconditions.checkPositionIndex;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtIncompatible;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+/**
+ * A thread-safe {@code ListMultimap} that takes no locks. The values of each
+ * key are held in an immutable list, which every modification replaces as a
+ * whole with a compare-and-set operation on an underlying {@link
+ * java.util.concurrent.ConcurrentHashMap}, so {@code put}, {@code remove},
+ * {@code putAll} of one key, {@code removeAll} and {@code replaceValues} are
+ * atomic, and readers never wait.
+ *
+ * <p>This is the list counterpart of {@link ConcurrentHashMultimap}, and
+ * suits the same workloads: many more reads than writes, and few values per
+ * key. The list returned by {@link #get} reads through to the multimap; each
+ * read of it, and each iteration over it, sees a snapshot of the values of its
+ * key, and its positional modifications are atomic. Since another thread may
+ * change the list between two calls, an index obtained from one call may no
+ * longer be valid in the next.
+ *
+ * <p>The views are weakly consistent. Iterators of the views never throw
+ * {@link java.util.ConcurrentModificationException}, and support {@code
+ * remove}, which removes one occurrence of the last value returned. Operations
+ * that span several keys, such as {@code size}, {@code putAll(Multimap)} or
+ * {@code clear}, are not atomic.
+ *
+ * <p>Keys and values may not be null.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent")
+public final class ConcurrentArrayListMultimap<K, V>
+    extends AbstractConcurrentMultimap<K, V, ImmutableList<V>>
+    implements ListMultimap<K, V> {
+
+  /**
+   * Creates a new, empty {@code ConcurrentArrayListMultimap}.
+   */
+  public static <K, V> ConcurrentArrayListMultimap<K, V> create() {
+    return new ConcurrentArrayListMultimap<K, V>();
+  }
+
+  /**
+   * Constructs a {@code ConcurrentArrayListMultimap} with the same mappings as
+   * the specified multimap.
+   *
+   * @param multimap the multimap whose contents are copied to this multimap
+   * @throws NullPointerException if any key or value in {@code multimap} is
+   *     null
+   */
+  public static <K, V> ConcurrentArrayListMultimap<K, V> create(
+      Multimap<? extends K, ? extends V> multimap) {
+    ConcurrentArrayListMultimap<K, V> result =
+        new ConcurrentArrayListMultimap<K, V>();
+    result.putAll(multimap);
+    return result;
+  }
+
+  private ConcurrentArrayListMultimap() {}
+
+  @Override ImmutableList<V> emptyValues() {
+    return ImmutableList.of();
+  }
+
+  @Override ImmutableList<V> withValue(ImmutableList<V> values, V value) {
+    return new ImmutableList.Builder<V>().addAll(values).add(value).build();
+  }
+
+  @Override ImmutableList<V> withoutValue(
+      ImmutableList<V> values, @Nullable Object value) {
+    int index = values.indexOf(value);
+    return (index < 0) ? values : without(values, index);
+  }
+
+  @Override ImmutableList<V> copyOfValues(Iterable<? extends V> values) {
+    return ImmutableList.copyOf(values);
+  }
+
+  private static <V> ImmutableList<V> without(
+      ImmutableList<V> values, int index) {
+    return new ImmutableList.Builder<V>()
+        .addAll(values.subList(0, index))
+        .addAll(values.subList(index + 1, values.size()))
+        .build();
+  }
+
+  @Override List<V> wrapValues(K key) {
+    return new WrappedList(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned list is a live view, as described in the class
+   * documentation.
+   */
+  @Override public List<V> get(K key) {
+    return (List<V>) super.get(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned list is the immutable snapshot of the removed values.
+   */
+  @Override public ImmutableList<V> removeAll(@Nullable Object key) {
+    return super.removeAll(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned list is the immutable snapshot of the replaced values.
+   */
+  @Override public ImmutableList<V> replaceValues(
+      K key, Iterable<? extends V> values) {
+    return super.replaceValues(key, values);
+  }
+
+  /**
+   * The list view of the values of a key. Reads take a snapshot; positional
+   * modifications retry until they apply to the snapshot they started from.
+   */
+  private class WrappedList extends WrappedValues
+      implements List<V>, RandomAccess {
+    WrappedList(K key) {
+      super(key);
+    }
+
+    public V get(int index) {
+      return values().get(index);
+    }
+
+    public int indexOf(@Nullable Object o) {
+      return values().indexOf(o);
+    }
+
+    public int lastIndexOf(@Nullable Object o) {
+      return values().lastIndexOf(o);
+    }
+
+    public void add(int index, V element) {
+      checkNotNull(element);
+      while (true) {
+        ImmutableList<V> values = values();
+        checkPositionIndex(index, values.size());
+        ImmutableList<V> update = new ImmutableList.Builder<V>()
+            .addAll(values.subList(0, index))
+            .add(element)
+            .addAll(values.subList(index, values.size()))
+            .build();
+        if (compareAndSet(key, values, update)) {
+          return;
+        }
+      }
+    }
+
+    public boolean addAll(int index, Collection<? extends V> c) {
+      ImmutableList<V> toAdd = ImmutableList.copyOf(c);
+      if (toAdd.isEmpty()) {
+        checkPositionIndex(index, size());
+        return false;
+      }
+      while (true) {
+        ImmutableList<V> values = values();
+        checkPositionIndex(index, values.size());
+        ImmutableList<V> update = new ImmutableList.Builder<V>()
+            .addAll(values.subList(0, index))
+            .addAll(toAdd)
+            .addAll(values.subList(index, values.size()))
+            .build();
+        if (compareAndSet(key, values, update)) {
+          return true;
+        }
+      }
+    }
+
+    public V set(int index, V element) {
+      checkNotNull(element);
+      while (true) {
+        ImmutableList<V> values = values();
+        checkElementIndex(index, values.size());
+        ImmutableList<V> update = new ImmutableList.Builder<V>()
+            .addAll(values.subList(0, index))
+            .add(element)
+            .addAll(values.subList(index + 1, values.size()))
+            .build();
+        if (compareAndSet(key, values, update)) {
+          return values.get(index);
+        }
+      }
+    }
+
+    public V remove(int index) {
+      while (true) {
+        ImmutableList<V> values = values();
+        checkElementIndex(index, values.size());
+        if (compareAndSet(key, values, without(values, index))) {
+          return values.get(index);
+        }
+      }
+    }
+
+    public ListIterator<V> listIterator() {
+      return listIterator(0);
+    }
+
+    /**
+     * Returns an unmodifiable iterator over a snapshot of the values.
+     */
+    public ListIterator<V> listIterator(int index) {
+      return values().listIterator(index);
+    }
+
+    /**
+     * Returns an immutable snapshot of the given range of the values.
+     */
+    public List<V> subList(int fromIndex, int toIndex) {
+      return values().subList(fromIndex, toIndex);
+    }
+
+    @Override public boolean equals(@Nullable Object object) {
+      return values().equals(object);
+    }
+
+    @Override public int hashCode() {
+      return values().hashCode();
+    }
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.base.Preconditions.checkState;
+import static google.common.collect.Multisets.checkNonnegative;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtIncompatible;
+import google.common.collect.Serialization.FieldSetter;
+import google.common.primitives.Ints;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A concurrent multiset that keeps its elements and counts in the same
+ * compact parallel-array layout as {@link CompactHashMultiset}, split into
+ * independently locked stripes.
+ *
+ * <p>Each element hashes to one stripe, and every single-element operation
+ * ({@code add}, {@code remove}, {@code setCount}, {@link #removeExactly})
+ * locks only that stripe, so it is atomic and only contends with operations
+ * on elements in the same stripe. Compared to {@link ConcurrentHashMultiset},
+ * no {@code ConcurrentHashMap} entry or {@code AtomicInteger} is allocated
+ * per distinct element.
+ *
+ * <p>Iterators and the {@link #entrySet} and {@link #elementSet} views are
+ * weakly consistent: they copy one stripe at a time, so they never throw
+ * {@link java.util.ConcurrentModificationException}, but may or may not
+ * reflect changes made after the iterator was created. {@link #size} sums the
+ * stripes one at a time and is likewise only a moment-in-time estimate while
+ * other threads are writing.
+ *
+ * <p>Null elements are not supported.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent")
+public final class ConcurrentCompactHashMultiset<E> extends AbstractMultiset<E>
+    implements Serializable {
+
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  private static final int MAX_STRIPES = 1 << 16;
+
+  /** The stripes, each guarded by its own monitor. */
+  private final transient Stripe<E>[] stripes;
+
+  // This constant allows the deserialization code to set a final field. This holder class
+  // makes sure it is not initialized unless an instance is deserialized.
+  private static class FieldSettersHolder {
+    static final FieldSetter<? super ConcurrentCompactHashMultiset<?>> STRIPES_FIELD_SETTER =
+        Serialization.getFieldSetter(ConcurrentCompactHashMultiset.class, "stripes");
+  }
+
+  /**
+   * Creates a new, empty {@code ConcurrentCompactHashMultiset} with the
+   * default number of stripes.
+   */
+  public static <E> ConcurrentCompactHashMultiset<E> create() {
+    return new ConcurrentCompactHashMultiset<E>(DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * Creates a new, empty {@code ConcurrentCompactHashMultiset} with at least
+   * {@code concurrencyLevel} stripes. More stripes reduce contention between
+   * writers at the cost of a little memory per stripe.
+   *
+   * @throws IllegalArgumentException if {@code concurrencyLevel} is not
+   *     positive
+   */
+  public static <E> ConcurrentCompactHashMultiset<E> create(int concurrencyLevel) {
+    checkArgument(concurrencyLevel > 0, "concurrencyLevel must be positive: %s",
+        concurrencyLevel);
+    return new ConcurrentCompactHashMultiset<E>(concurrencyLevel);
+  }
+
+  /**
+   * Creates a new {@code ConcurrentCompactHashMultiset} containing the
+   * specified elements, with the default number of stripes.
+   *
+   * <p>This implementation is highly efficient when {@code elements} is itself
+   * a {@link Multiset}.
+   *
+   * @param elements the elements that the multiset should contain
+   */
+  public static <E> ConcurrentCompactHashMultiset<E> create(Iterable<? extends E> elements) {
+    ConcurrentCompactHashMultiset<E> multiset = create();
+    Iterables.addAll(multiset, elements);
+    return multiset;
+  }
+
+  private ConcurrentCompactHashMultiset(int concurrencyLevel) {
+    this.stripes = newStripes(concurrencyLevel);
+  }
+
+  private static <E> Stripe<E>[] newStripes(int concurrencyLevel) {
+    int stripeCount = 1;
+    while (stripeCount < Math.min(concurrencyLevel, MAX_STRIPES)) {
+      stripeCount <<= 1;
+    }
+    @SuppressWarnings("unchecked") // generic array creation
+    Stripe<E>[] stripes = (Stripe<E>[]) new Stripe<?>[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe<E>();
+    }
+    return stripes;
+  }
+
+  private static final class Stripe<E> {
+    final ObjectCountHashMap<E> map = ObjectCountHashMap.create();
+    long size;
+  }
+
+  private Stripe<E> stripeFor(Object element) {
+    // The stripe takes the top bits, so the per-stripe tables, which use the
+    // low bits, still see well-distributed hashes.
+    int hash = Hashing.smear(element.hashCode());
+    int shift = Integer.numberOfLeadingZeros(stripes.length) + 1;
+    return stripes[(hash >>> shift) & (stripes.length - 1)];
+  }
+
+  // Query Operations
+
+  /**
+   * Returns the number of occurrences of {@code element} in this multiset.
+   *
+   * @param element the element to look for
+   * @return the nonnegative number of occurrences of the element
+   */
+  @Override public int count(@Nullable Object element) {
+    if (element == null) {
+      return 0;
+    }
+    Stripe<E> stripe = stripeFor(element);
+    synchronized (stripe) {
+      return stripe.map.get(element);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If the data in the multiset is modified by any other threads during this method,
+   * it is undefined which (if any) of these modifications will be reflected in the result.
+   */
+  @Override public int size() {
+    long sum = 0L;
+    for (Stripe<E> stripe : stripes) {
+      synchronized (stripe) {
+        sum += stripe.size;
+      }
+    }
+    return Ints.saturatedCast(sum);
+  }
+
+  @Override public boolean isEmpty() {
+    for (Stripe<E> stripe : stripes) {
+      synchronized (stripe) {
+        if (stripe.size != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Note: the superclass toArray() methods assume that size() gives a correct
+   * answer, which ours does not.
+   */
+
+  @Override public Object[] toArray() {
+    return snapshot().toArray();
+  }
+
+  @Override public <T> T[] toArray(T[] array) {
+    return snapshot().toArray(array);
+  }
+
+  private List<E> snapshot() {
+    List<E> list = Lists.newArrayListWithExpectedSize(size());
+    for (Multiset.Entry<E> entry : entrySnapshot()) {
+      E element = entry.getElement();
+      for (int i = entry.getCount(); i > 0; i--) {
+        list.add(element);
+      }
+    }
+    return list;
+  }
+
+  private List<Multiset.Entry<E>> entrySnapshot() {
+    List<Multiset.Entry<E>> list = Lists.newArrayList();
+    for (Stripe<E> stripe : stripes) {
+      addStripeSnapshot(stripe, list);
+    }
+    return list;
+  }
+
+  private static <E> void addStripeSnapshot(Stripe<E> stripe, List<Multiset.Entry<E>> list) {
+    synchronized (stripe) {
+      ObjectCountHashMap<E> map = stripe.map;
+      for (int i = 0; i < map.size(); i++) {
+        list.add(Multisets.immutableEntry(map.getKey(i), map.getValue(i)));
+      }
+    }
+  }
+
+  // Modification Operations
+
+  /**
+   * Adds a number of occurrences of the specified element to this multiset.
+   *
+   * @param element the element to add
+   * @param occurrences the number of occurrences to add
+   * @return the previous count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative, or if
+   *     the resulting amount would exceed {@link Integer#MAX_VALUE}
+   */
+  @Override public int add(E element, int occurrences) {
+    checkNotNull(element);
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(occurrences > 0, "Invalid occurrences: %s", occurrences);
+    Stripe<E> stripe = stripeFor(element);
+    synchronized (stripe) {
+      ObjectCountHashMap<E> map = stripe.map;
+      int index = map.indexOf(element);
+      if (index == -1) {
+        map.put(element, occurrences);
+        stripe.size += occurrences;
+        return 0;
+      }
+      int oldCount = map.getValue(index);
+      long newCount = (long) oldCount + (long) occurrences;
+      checkArgument(newCount <= Integer.MAX_VALUE, "Overflow adding " + occurrences
+          + " occurrences to a count of " + oldCount);
+      map.setValue(index, (int) newCount);
+      stripe.size += occurrences;
+      return oldCount;
+    }
+  }
+
+  /**
+   * Removes a number of occurrences of the specified element from this multiset. If the multiset
+   * contains fewer than this number of occurrences to begin with, all occurrences will be removed.
+   *
+   * @param element the element whose occurrences should be removed
+   * @param occurrences the number of occurrences of the element to remove
+   * @return the count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative
+   */
+  @Override public int remove(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(occurrences > 0, "Invalid occurrences: %s", occurrences);
+    if (element == null) {
+      return 0;
+    }
+    Stripe<E> stripe = stripeFor(element);
+    synchronized (stripe) {
+      ObjectCountHashMap<E> map = stripe.map;
+      int index = map.indexOf(element);
+      if (index == -1) {
+        return 0;
+      }
+      int oldCount = map.getValue(index);
+      if (oldCount > occurrences) {
+        map.setValue(index, oldCount - occurrences);
+        stripe.size -= occurrences;
+      } else {
+        map.removeEntry(index);
+        stripe.size -= oldCount;
+      }
+      return oldCount;
+    }
+  }
+
+  /**
+   * Removes exactly the specified number of occurrences of {@code element}, or makes no
+   * change if this is not possible.
+   *
+   * <p>This method, in contrast to {@link #remove(Object, int)}, has no effect when the
+   * element count is smaller than {@code occurrences}.
+   *
+   * @param element the element to remove
+   * @param occurrences the number of occurrences of {@code element} to remove
+   * @return {@code true} if the removal was possible (including if {@code occurrences} is zero)
+   */
+  public boolean removeExactly(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return true;
+    }
+    checkArgument(occurrences > 0, "Invalid occurrences: %s", occurrences);
+    if (element == null) {
+      return false;
+    }
+    Stripe<E> stripe = stripeFor(element);
+    synchronized (stripe) {
+      ObjectCountHashMap<E> map = stripe.map;
+      int index = map.indexOf(element);
+      if (index == -1 || map.getValue(index) < occurrences) {
+        return false;
+      }
+      int newCount = map.getValue(index) - occurrences;
+      if (newCount == 0) {
+        map.removeEntry(index);
+      } else {
+        map.setValue(index, newCount);
+      }
+      stripe.size -= occurrences;
+      return true;
+    }
+  }
+
+  /**
+   * Adds or removes occurrences of {@code element} such that the {@link #count} of the
+   * element becomes {@code count}.
+   *
+   * @return the count of {@code element} in the multiset before this call
+   * @throws IllegalArgumentException if {@code count} is negative
+   */
+  @Override public int setCount(E element, int count) {
+    checkNotNull(element);
+    checkNonnegative(count, "count");
+    Stripe<E> stripe = stripeFor(element);
+    synchronized (stripe) {
+      int oldCount = (count == 0)
+          ? stripe.map.remove(element)
+          : stripe.map.put(element, count);
+      stripe.size += (count - oldCount);
+      return oldCount;
+    }
+  }
+
+  /**
+   * Sets the number of occurrences of {@code element} to {@code newCount}, but only if
+   * the count is currently {@code expectedOldCount}. If {@code element} does not appear
+   * in the multiset exactly {@code expectedOldCount} times, no changes will be made.
+   *
+   * @return {@code true} if the change was successful. This usually indicates
+   *     that the multiset has been modified, but not always: in the case that
+   *     {@code expectedOldCount == newCount}, the method will return {@code true} if
+   *     the condition was met.
+   * @throws IllegalArgumentException if {@code expectedOldCount} or {@code newCount} is negative
+   */
+  @Override public boolean setCount(E element, int expectedOldCount, int newCount) {
+    checkNotNull(element);
+    checkNonnegative(expectedOldCount, "oldCount");
+    checkNonnegative(newCount, "newCount");
+    Stripe<E> stripe = stripeFor(element);
+    synchronized (stripe) {
+      if (stripe.map.get(element) != expectedOldCount) {
+        return false;
+      }
+      if (newCount == 0) {
+        stripe.map.remove(element);
+      } else {
+        stripe.map.put(element, newCount);
+      }
+      stripe.size += (newCount - expectedOldCount);
+      return true;
+    }
+  }
+
+  @Override public void clear() {
+    for (Stripe<E> stripe : stripes) {
+      synchronized (stripe) {
+        stripe.map.clear();
+        stripe.size = 0L;
+      }
+    }
+  }
+
+  // Views
+
+  private transient EntrySet entrySet;
+
+  @Override public Set<Multiset.Entry<E>> entrySet() {
+    EntrySet result = entrySet;
+    if (result == null) {
+      entrySet = result = new EntrySet();
+    }
+    return result;
+  }
+
+  @Override int distinctElements() {
+    int sum = 0;
+    for (Stripe<E> stripe : stripes) {
+      synchronized (stripe) {
+        sum += stripe.map.size();
+      }
+    }
+    return sum;
+  }
+
+  @Override Iterator<Entry<E>> entryIterator() {
+    return new Iterator<Entry<E>>() {
+      int nextStripe = 0;
+      Iterator<Entry<E>> current = Iterators.emptyIterator();
+      Entry<E> last;
+
+      public boolean hasNext() {
+        while (!current.hasNext()) {
+          if (nextStripe == stripes.length) {
+            return false;
+          }
+          List<Entry<E>> list = Lists.newArrayList();
+          addStripeSnapshot(stripes[nextStripe++], list);
+          current = list.iterator();
+        }
+        return true;
+      }
+
+      public Entry<E> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = current.next();
+        return last;
+      }
+
+      public void remove() {
+        checkState(last != null);
+        ConcurrentCompactHashMultiset.this.setCount(last.getElement(), 0);
+        last = null;
+      }
+    };
+  }
+
+  private class EntrySet extends AbstractMultiset<E>.EntrySet {
+    @Override ConcurrentCompactHashMultiset<E> multiset() {
+      return ConcurrentCompactHashMultiset.this;
+    }
+
+    /*
+     * Note: the superclass toArray() methods assume that size() gives a correct
+     * answer, which ours does not.
+     */
+
+    @Override public Object[] toArray() {
+      return entrySnapshot().toArray();
+    }
+
+    @Override public <T> T[] toArray(T[] array) {
+      return entrySnapshot().toArray(array);
+    }
+
+    @Override public boolean remove(Object object) {
+      if (object instanceof Multiset.Entry) {
+        Multiset.Entry<?> entry = (Multiset.Entry<?>) object;
+        Object element = entry.getElement();
+        int entryCount = entry.getCount();
+        if (entryCount != 0 && element != null) {
+          // Safe as long as we never add a new entry, which we won't.
+          @SuppressWarnings("unchecked")
+          Multiset<Object> multiset = (Multiset) multiset();
+          return multiset.setCount(element, entryCount, 0);
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * @serialData the number of stripes, the number of distinct elements, the
+   *     first element, its count, the second element, its count, and so on
+   */
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    stream.writeInt(stripes.length);
+    List<Multiset.Entry<E>> entries = entrySnapshot();
+    stream.writeInt(entries.size());
+    for (Multiset.Entry<E> entry : entries) {
+      stream.writeObject(entry.getElement());
+      stream.writeInt(entry.getCount());
+    }
+  }
+
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    int stripeCount = stream.readInt();
+    FieldSettersHolder.STRIPES_FIELD_SETTER.set(this, newStripes(stripeCount));
+    int distinctElements = Serialization.readCount(stream);
+    Serialization.populateMultiset(this, stream, distinctElements);
+  }
+
+  private static final long serialVersionUID = 0;
+}
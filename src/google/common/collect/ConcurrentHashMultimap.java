@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtIncompatible;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A thread-safe {@code SetMultimap} that takes no locks. The values of each
+ * key are held in an immutable set, which every modification replaces as a
+ * whole with a compare-and-set operation on an underlying {@link
+ * java.util.concurrent.ConcurrentHashMap}, so {@code put}, {@code remove},
+ * {@code putAll} of one key, {@code removeAll} and {@code replaceValues} are
+ * atomic, and readers never wait.
+ *
+ * <p>This suits registries that are read far more often than they are
+ * modified, such as the handlers of an event bus: unlike {@link
+ * Multimaps#synchronizedSetMultimap}, reads do not contend with one another,
+ * and unlike a multimap built by {@link Multimaps#newSetMultimap} over a
+ * concurrent map, the values of a key are safely shared. Each modification
+ * copies the values of its key, so keys with very many values are better
+ * served by other structures.
+ *
+ * <p>The views are weakly consistent. The set returned by {@link #get} reads
+ * through to the multimap; each read of it, and each iteration over it, sees a
+ * snapshot of the values of its key, in the order they were added. Iterators
+ * of the views never throw {@link java.util.ConcurrentModificationException},
+ * and support {@code remove}. Operations that span several keys, such as
+ * {@code size}, {@code putAll(Multimap)} or {@code clear}, are not atomic.
+ *
+ * <p>Keys and values may not be null.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent")
+public final class ConcurrentHashMultimap<K, V>
+    extends AbstractConcurrentMultimap<K, V, ImmutableSet<V>>
+    implements SetMultimap<K, V> {
+
+  /**
+   * Creates a new, empty {@code ConcurrentHashMultimap}.
+   */
+  public static <K, V> ConcurrentHashMultimap<K, V> create() {
+    return new ConcurrentHashMultimap<K, V>();
+  }
+
+  /**
+   * Constructs a {@code ConcurrentHashMultimap} with the same mappings as the
+   * specified multimap.
+   *
+   * @param multimap the multimap whose contents are copied to this multimap
+   * @throws NullPointerException if any key or value in {@code multimap} is
+   *     null
+   */
+  public static <K, V> ConcurrentHashMultimap<K, V> create(
+      Multimap<? extends K, ? extends V> multimap) {
+    ConcurrentHashMultimap<K, V> result = new ConcurrentHashMultimap<K, V>();
+    result.putAll(multimap);
+    return result;
+  }
+
+  private ConcurrentHashMultimap() {}
+
+  @Override ImmutableSet<V> emptyValues() {
+    return ImmutableSet.of();
+  }
+
+  @Override ImmutableSet<V> withValue(ImmutableSet<V> values, V value) {
+    if (values.contains(value)) {
+      return values;
+    }
+    return new ImmutableSet.Builder<V>().addAll(values).add(value).build();
+  }
+
+  @Override ImmutableSet<V> withoutValue(
+      ImmutableSet<V> values, @Nullable Object value) {
+    if (!values.contains(value)) {
+      return values;
+    }
+    ImmutableSet.Builder<V> builder = ImmutableSet.builder();
+    for (V v : values) {
+      if (!v.equals(value)) {
+        builder.add(v);
+      }
+    }
+    return builder.build();
+  }
+
+  @Override ImmutableSet<V> copyOfValues(Iterable<? extends V> values) {
+    return ImmutableSet.copyOf(values);
+  }
+
+  @Override Set<V> wrapValues(K key) {
+    return new WrappedSet(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned set is a live view, as described in the class
+   * documentation.
+   */
+  @Override public Set<V> get(K key) {
+    return (Set<V>) super.get(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned set is the immutable snapshot of the removed values.
+   */
+  @Override public ImmutableSet<V> removeAll(@Nullable Object key) {
+    return super.removeAll(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned set is the immutable snapshot of the replaced values.
+   */
+  @Override public ImmutableSet<V> replaceValues(
+      K key, Iterable<? extends V> values) {
+    return super.replaceValues(key, values);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Each iteration over the returned set sees a snapshot of the values of
+   * each key in turn.
+   */
+  @Override public Set<Entry<K, V>> entries() {
+    return (Set<Entry<K, V>>) super.entries();
+  }
+
+  @Override Set<Entry<K, V>> createEntries() {
+    return new Multimaps.EntrySet<K, V>() {
+      @Override Multimap<K, V> multimap() {
+        return ConcurrentHashMultimap.this;
+      }
+
+      @Override public Iterator<Entry<K, V>> iterator() {
+        return entryIterator();
+      }
+    };
+  }
+
+  private class WrappedSet extends WrappedValues implements Set<V> {
+    WrappedSet(K key) {
+      super(key);
+    }
+
+    @Override public boolean equals(@Nullable Object object) {
+      return Sets.equalsImpl(this, object);
+    }
+
+    @Override public int hashCode() {
+      return values().hashCode();
+    }
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtIncompatible;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+/**
+ * A thread-safe, bounded collector of the least elements offered to it,
+ * for gathering the top {@code k} elements from many producer threads. Create
+ * one with {@link MinMaxPriorityQueue.Builder#createConcurrent}.
+ *
+ * <p>Instead of one queue behind a global lock, elements are spread over
+ * several stripes, each a bounded {@link MinMaxPriorityQueue} with its own
+ * lock. A thread offers to its home stripe, or to the next stripe whose lock
+ * is free, so producers rarely wait for each other. Once a stripe is full,
+ * its greatest element is published, and any element that is not less than
+ * it is rejected without taking a lock: the stripe already holds {@code
+ * maximumSize} elements that precede it. In the usual case where most offered
+ * elements do not make the cut, offering costs one comparison and no
+ * synchronization.
+ *
+ * <p>The stripes are merged only when the elements are read, with {@link
+ * #snapshot} or {@link #drain}. Since each stripe keeps up to {@code
+ * maximumSize} elements, up to {@code maximumSize} times the number of stripes
+ * elements may be retained in between. Reads are weakly consistent: elements
+ * offered concurrently with a read may or may not be included.
+ *
+ * <p>Null elements are not permitted.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent.locks")
+public final class ConcurrentTopK<E> {
+  private static final int MAX_STRIPES = 64;
+
+  /** A bounded queue, guarded by the lock this stripe extends. */
+  @SuppressWarnings("serial") // never serialized
+  private static final class Stripe<E> extends ReentrantLock {
+    final MinMaxPriorityQueue<E> queue;
+
+    /*
+     * The greatest element of the queue once it is full, or null until then.
+     * Written only while holding the lock, read without it.
+     */
+    @Nullable volatile E bound;
+
+    Stripe(MinMaxPriorityQueue<E> queue) {
+      this.queue = queue;
+    }
+  }
+
+  private final Ordering<E> ordering;
+  private final int maximumSize;
+  private final Stripe<E>[] stripes;
+  private final int mask;
+
+  ConcurrentTopK(Ordering<E> ordering, int maximumSize) {
+    this.ordering = ordering;
+    this.maximumSize = maximumSize;
+    int stripeCount = Math.min(MAX_STRIPES,
+        Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    @SuppressWarnings("unchecked") // generic array creation
+    Stripe<E>[] stripes = (Stripe<E>[]) new Stripe<?>[stripeCount];
+    this.stripes = stripes;
+    this.mask = stripeCount - 1;
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe<E>(MinMaxPriorityQueue.orderedBy(ordering)
+          .maximumSize(maximumSize).<E>create());
+    }
+  }
+
+  /**
+   * Offers {@code element} as one of the least elements.
+   *
+   * @return {@code false} if {@code element} is certainly not among the least
+   *     {@code maximumSize} elements offered so far, {@code true} if it was
+   *     retained (it may still be displaced later)
+   */
+  public boolean offer(E element) {
+    checkNotNull(element);
+    int home = Hashing.smear(System.identityHashCode(Thread.currentThread()));
+    Stripe<E> stripe = null;
+    for (int i = 0; i < stripes.length; i++) {
+      Stripe<E> candidate = stripes[(home + i) & mask];
+      E bound = candidate.bound;
+      if (bound != null && ordering.compare(element, bound) >= 0) {
+        return false;
+      }
+      if (candidate.tryLock()) {
+        stripe = candidate;
+        break;
+      }
+    }
+    if (stripe == null) {
+      stripe = stripes[home & mask];
+      stripe.lock();
+    }
+    try {
+      boolean retained = stripe.queue.offer(element);
+      if (stripe.queue.size() == maximumSize) {
+        stripe.bound = stripe.queue.peekLast();
+      }
+      return retained;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Offers each element of {@code elements}, as by {@link #offer}.
+   */
+  public void offerAll(Iterable<? extends E> elements) {
+    for (E element : elements) {
+      offer(element);
+    }
+  }
+
+  /**
+   * Returns the least {@code maximumSize} elements currently held, in
+   * ascending order, without removing them.
+   */
+  public List<E> snapshot() {
+    TopKSelector<E> selector = TopKSelector.least(maximumSize, ordering);
+    for (Stripe<E> stripe : stripes) {
+      stripe.lock();
+      try {
+        selector.offerAll(stripe.queue);
+      } finally {
+        stripe.unlock();
+      }
+    }
+    return selector.topK();
+  }
+
+  /**
+   * Removes all elements and returns the least {@code maximumSize} of them,
+   * in ascending order. Each stripe is emptied atomically, so an element
+   * offered concurrently is either returned or kept, never lost.
+   */
+  public List<E> drain() {
+    TopKSelector<E> selector = TopKSelector.least(maximumSize, ordering);
+    for (Stripe<E> stripe : stripes) {
+      stripe.lock();
+      try {
+        selector.offerAll(stripe.queue);
+        stripe.queue.clear();
+        stripe.bound = null;
+      } finally {
+        stripe.unlock();
+      }
+    }
+    return selector.topK();
+  }
+
+  /** Returns the number of least elements this collector keeps. */
+  public int maximumSize() {
+    return maximumSize;
+  }
+
+  /** Returns the comparator that determines which elements are least. */
+  public Comparator<? super E> comparator() {
+    return ordering;
+  }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.Beta;
+import google.common.primitives.Doubles;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+/**
+ * A fixed-size table of {@code double} values, indexed by row and column keys
+ * like an {@link ArrayTable}, but storing its cells unboxed in a single
+ * row-major {@code double[]}.
+ *
+ * <p>The allowed row and column keys must be supplied when the table is
+ * created, and every cell has a value, initially {@code 0.0}. Cells may be
+ * addressed by key, with {@link #get} and {@link #put}, or by the position of
+ * the keys in {@link #rowKeyList} and {@link #columnKeyList}, with {@link #at}
+ * and {@link #set}; the latter avoids looking up the keys. Rows and columns
+ * are available as write-through {@code List<Double>} views and can be summed
+ * or filled in bulk. Row operations read consecutive memory and are the
+ * fastest; column operations stride across rows.
+ *
+ * <p>This class is not a {@link Table}: a {@code Table<R, C, Double>} view
+ * would have to box every value it returns. Use {@link ArrayTable} where a
+ * {@code Table} is needed. See {@link LongArrayTable} for {@code long} values.
+ *
+ * <p>Null row keys or column keys are not permitted. Like {@code ArrayTable},
+ * this class is not synchronized.
+ *
+ * @since 14.0
+ */
+@Beta
+public final class DoubleArrayTable<R, C> implements Serializable {
+
+  /**
+   * Creates a table of zeros with the given row and column keys.
+   *
+   * @param rowKeys row keys that may be stored in the generated table
+   * @param columnKeys column keys that may be stored in the generated table
+   * @throws NullPointerException if any of the provided keys is null
+   * @throws IllegalArgumentException if {@code rowKeys} or {@code columnKeys}
+   *     contains duplicates or is empty, or if the table would have more than
+   *     {@code Integer.MAX_VALUE} cells
+   */
+  public static <R, C> DoubleArrayTable<R, C> create(
+      Iterable<? extends R> rowKeys, Iterable<? extends C> columnKeys) {
+    return new DoubleArrayTable<R, C>(rowKeys, columnKeys);
+  }
+
+  /**
+   * Creates a table with the same keys and values as {@code table}.
+   */
+  public static <R, C> DoubleArrayTable<R, C> create(
+      DoubleArrayTable<R, C> table) {
+    return new DoubleArrayTable<R, C>(table);
+  }
+
+  private final ImmutableList<R> rowList;
+  private final ImmutableList<C> columnList;
+  private final ImmutableMap<R, Integer> rowKeyToIndex;
+  private final ImmutableMap<C, Integer> columnKeyToIndex;
+  // the value of (row, column) is at row * columnCount + column
+  private final double[] array;
+  private final int columnCount;
+
+  private DoubleArrayTable(Iterable<? extends R> rowKeys,
+      Iterable<? extends C> columnKeys) {
+    this.rowList = ImmutableList.copyOf(rowKeys);
+    this.columnList = ImmutableList.copyOf(columnKeys);
+    checkArgument(!rowList.isEmpty());
+    checkArgument(!columnList.isEmpty());
+    long cells = (long) rowList.size() * columnList.size();
+    checkArgument(cells <= Integer.MAX_VALUE, "too many cells: %s", cells);
+    rowKeyToIndex = index(rowList);
+    columnKeyToIndex = index(columnList);
+    columnCount = columnList.size();
+    array = new double[(int) cells];
+  }
+
+  private DoubleArrayTable(DoubleArrayTable<R, C> table) {
+    rowList = table.rowList;
+    columnList = table.columnList;
+    rowKeyToIndex = table.rowKeyToIndex;
+    columnKeyToIndex = table.columnKeyToIndex;
+    columnCount = table.columnCount;
+    array = table.array.clone();
+  }
+
+  private static <E> ImmutableMap<E, Integer> index(List<E> list) {
+    ImmutableMap.Builder<E, Integer> builder = ImmutableMap.builder();
+    for (int i = 0; i < list.size(); i++) {
+      builder.put(list.get(i), i);
+    }
+    return builder.build();
+  }
+
+  /** Returns the row keys provided when the table was constructed. */
+  public ImmutableList<R> rowKeyList() {
+    return rowList;
+  }
+
+  /** Returns the column keys provided when the table was constructed. */
+  public ImmutableList<C> columnKeyList() {
+    return columnList;
+  }
+
+  private int rowIndex(Object rowKey) {
+    Integer index = rowKeyToIndex.get(checkNotNull(rowKey));
+    checkArgument(index != null, "Row %s not in %s", rowKey, rowList);
+    return index;
+  }
+
+  private int columnIndex(Object columnKey) {
+    Integer index = columnKeyToIndex.get(checkNotNull(columnKey));
+    checkArgument(index != null, "Column %s not in %s", columnKey, columnList);
+    return index;
+  }
+
+  private int cellIndex(int rowIndex, int columnIndex) {
+    checkElementIndex(rowIndex, rowList.size());
+    checkElementIndex(columnIndex, columnCount);
+    return rowIndex * columnCount + columnIndex;
+  }
+
+  /**
+   * Returns the value of the cell at the given positions in {@link
+   * #rowKeyList} and {@link #columnKeyList}.
+   *
+   * @throws IndexOutOfBoundsException if either index is out of range
+   */
+  public double at(int rowIndex, int columnIndex) {
+    return array[cellIndex(rowIndex, columnIndex)];
+  }
+
+  /**
+   * Sets the value of the cell at the given positions in {@link #rowKeyList}
+   * and {@link #columnKeyList}, returning the previous value.
+   *
+   * @throws IndexOutOfBoundsException if either index is out of range
+   */
+  public double set(int rowIndex, int columnIndex, double value) {
+    int index = cellIndex(rowIndex, columnIndex);
+    double oldValue = array[index];
+    array[index] = value;
+    return oldValue;
+  }
+
+  /**
+   * Returns the value of the cell with the given keys.
+   *
+   * @throws IllegalArgumentException if either key is not one of the keys
+   *     provided when the table was constructed
+   */
+  public double get(Object rowKey, Object columnKey) {
+    return array[rowIndex(rowKey) * columnCount + columnIndex(columnKey)];
+  }
+
+  /**
+   * Sets the value of the cell with the given keys, returning the previous
+   * value.
+   *
+   * @throws IllegalArgumentException if either key is not one of the keys
+   *     provided when the table was constructed
+   */
+  public double put(R rowKey, C columnKey, double value) {
+    return set(rowIndex(rowKey), columnIndex(columnKey), value);
+  }
+
+  /**
+   * Adds {@code delta} to the value of the cell with the given keys, returning
+   * the new value.
+   *
+   * @throws IllegalArgumentException if either key is not one of the keys
+   *     provided when the table was constructed
+   */
+  public double add(R rowKey, C columnKey, double delta) {
+    return array[rowIndex(rowKey) * columnCount + columnIndex(columnKey)] += delta;
+  }
+
+  /**
+   * Returns a view of the row with the given key, in the order of {@link
+   * #columnKeyList}. The view supports {@link List#set}.
+   *
+   * @throws IllegalArgumentException if {@code rowKey} is not one of the row
+   *     keys provided when the table was constructed
+   */
+  public List<Double> row(R rowKey) {
+    return rowAt(rowIndex(rowKey));
+  }
+
+  /**
+   * Returns a view of the row at {@code rowIndex} in {@link #rowKeyList}, in
+   * the order of {@link #columnKeyList}. The view supports {@link List#set}.
+   *
+   * @throws IndexOutOfBoundsException if {@code rowIndex} is out of range
+   */
+  public List<Double> rowAt(int rowIndex) {
+    checkElementIndex(rowIndex, rowList.size());
+    int start = rowIndex * columnCount;
+    return Doubles.asList(array).subList(start, start + columnCount);
+  }
+
+  /**
+   * Returns a view of the column with the given key, in the order of {@link
+   * #rowKeyList}. The view supports {@link List#set}.
+   *
+   * @throws IllegalArgumentException if {@code columnKey} is not one of the
+   *     column keys provided when the table was constructed
+   */
+  public List<Double> column(C columnKey) {
+    return columnAt(columnIndex(columnKey));
+  }
+
+  /**
+   * Returns a view of the column at {@code columnIndex} in {@link
+   * #columnKeyList}, in the order of {@link #rowKeyList}. The view supports
+   * {@link List#set}.
+   *
+   * @throws IndexOutOfBoundsException if {@code columnIndex} is out of range
+   */
+  public List<Double> columnAt(int columnIndex) {
+    checkElementIndex(columnIndex, columnCount);
+    return new Column(columnIndex);
+  }
+
+  private final class Column extends AbstractList<Double>
+      implements RandomAccess, Serializable {
+    final int columnIndex;
+
+    Column(int columnIndex) {
+      this.columnIndex = columnIndex;
+    }
+
+    @Override public Double get(int index) {
+      return at(index, columnIndex);
+    }
+
+    @Override public Double set(int index, Double element) {
+      return DoubleArrayTable.this.set(index, columnIndex, checkNotNull(element));
+    }
+
+    @Override public int size() {
+      return rowList.size();
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /**
+   * Returns the sum of the row at {@code rowIndex} in {@link #rowKeyList}.
+   *
+   * @throws IndexOutOfBoundsException if {@code rowIndex} is out of range
+   */
+  public double rowSum(int rowIndex) {
+    checkElementIndex(rowIndex, rowList.size());
+    double sum = 0;
+    for (int i = rowIndex * columnCount, end = i + columnCount; i < end; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the sum of the column at {@code columnIndex} in {@link
+   * #columnKeyList}.
+   *
+   * @throws IndexOutOfBoundsException if {@code columnIndex} is out of range
+   */
+  public double columnSum(int columnIndex) {
+    checkElementIndex(columnIndex, columnCount);
+    double sum = 0;
+    for (int i = columnIndex; i < array.length; i += columnCount) {
+      sum += array[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the sum of each row, in the order of {@link #rowKeyList}.
+   */
+  public double[] rowSums() {
+    double[] sums = new double[rowList.size()];
+    for (int row = 0; row < sums.length; row++) {
+      sums[row] = rowSum(row);
+    }
+    return sums;
+  }
+
+  /**
+   * Returns the sum of each column, in the order of {@link #columnKeyList}.
+   * The table is read in a single pass over its rows.
+   */
+  public double[] columnSums() {
+    double[] sums = new double[columnCount];
+    for (int start = 0; start < array.length; start += columnCount) {
+      for (int column = 0; column < columnCount; column++) {
+        sums[column] += array[start + column];
+      }
+    }
+    return sums;
+  }
+
+  /** Sets every cell of the table to {@code value}. */
+  public void fill(double value) {
+    Arrays.fill(array, value);
+  }
+
+  /**
+   * Sets every cell of the row at {@code rowIndex} in {@link #rowKeyList} to
+   * {@code value}.
+   *
+   * @throws IndexOutOfBoundsException if {@code rowIndex} is out of range
+   */
+  public void fillRow(int rowIndex, double value) {
+    checkElementIndex(rowIndex, rowList.size());
+    int start = rowIndex * columnCount;
+    Arrays.fill(array, start, start + columnCount, value);
+  }
+
+  /**
+   * Sets every cell of the column at {@code columnIndex} in {@link
+   * #columnKeyList} to {@code value}.
+   *
+   * @throws IndexOutOfBoundsException if {@code columnIndex} is out of range
+   */
+  public void fillColumn(int columnIndex, double value) {
+    checkElementIndex(columnIndex, columnCount);
+    for (int i = columnIndex; i < array.length; i += columnCount) {
+      array[i] = value;
+    }
+  }
+
+  /**
+   * Copies {@code values}, a row-major array of every cell such as one
+   * returned by {@link #toArray}, into the table.
+   *
+   * @throws IllegalArgumentException if {@code values} does not have exactly
+   *     one element per cell
+   */
+  public void setAll(double[] values) {
+    checkArgument(values.length == array.length,
+        "expected %s values but got %s", array.length, values.length);
+    System.arraycopy(values, 0, array, 0, array.length);
+  }
+
+  /**
+   * Returns a copy of every cell of the table in row-major order: the value of
+   * the cell at {@code (rowIndex, columnIndex)} is at {@code rowIndex *
+   * columnKeyList().size() + columnIndex}.
+   */
+  public double[] toArray() {
+    return array.clone();
+  }
+
+  /** Returns the number of cells in the table. */
+  public int size() {
+    return array.length;
+  }
+
+  /**
+   * Returns {@code true} if {@code obj} is a {@code DoubleArrayTable} with the
+   * same row keys, column keys and values, in the same order.
+   */
+  @Override public boolean equals(@Nullable Object obj) {
+    if (obj instanceof DoubleArrayTable) {
+      DoubleArrayTable<?, ?> other = (DoubleArrayTable<?, ?>) obj;
+      return rowList.equals(other.rowList)
+          && columnList.equals(other.columnList)
+          && Arrays.equals(array, other.array);
+    }
+    return false;
+  }
+
+  @Override public int hashCode() {
+    return (31 * rowList.hashCode() + columnList.hashCode()) * 31
+        + Arrays.hashCode(array);
+  }
+
+  /**
+   * Returns the string representation {@code rowMap().toString()} would have
+   * for an equivalent {@link Table}.
+   */
+  @Override public String toString() {
+    StringBuilder builder = new StringBuilder().append('{');
+    for (int row = 0; row < rowList.size(); row++) {
+      if (row > 0) {
+        builder.append(", ");
+      }
+      builder.append(rowList.get(row)).append("={");
+      for (int column = 0; column < columnCount; column++) {
+        if (column > 0) {
+          builder.append(", ");
+        }
+        builder.append(columnList.get(column)).append('=')
+            .append(array[row * columnCount + column]);
+      }
+      builder.append('}');
+    }
+    return builder.append('}').toString();
+  }
+
+  private static final long serialVersionUID = 0;
+}
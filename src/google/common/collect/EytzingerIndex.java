@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import google.common.annotations.GwtCompatible;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A search index over a large sorted list, used by {@link
+ * RegularImmutableSortedSet} in place of a plain binary search.
+ *
+ * <p>A binary search over millions of elements misses the cache on nearly
+ * every probe, because consecutive probes land far apart. This index samples
+ * every {@value #BLOCK_SIZE}th element and stores the samples in Eytzinger
+ * (breadth-first) order: the root at position 1 and the children of position
+ * {@code k} at {@code 2k} and {@code 2k + 1}. The first probes of every search
+ * therefore hit the same few, cache-resident positions, and the later ones
+ * move forward through the array. The search ends with a short binary search
+ * within one block of the sorted list.
+ *
+ * <p>The index adds about one reference and one {@code int} per {@value
+ * #BLOCK_SIZE} elements, and never changes the list itself, so iteration
+ * order is unaffected.
+ */
+@GwtCompatible
+final class EytzingerIndex<E> {
+  /** Lists with at least this many elements get an index. */
+  static final int THRESHOLD = 1 << 14;
+
+  static final int BLOCK_SIZE = 16;
+
+  private final List<E> elements;
+  private final Comparator<? super E> comparator;
+  // samples in Eytzinger order, starting at position 1
+  private final Object[] tree;
+  // index in the sample sequence of each tree position
+  private final int[] sampleNumbers;
+
+  EytzingerIndex(List<E> elements, Comparator<? super E> comparator) {
+    this.elements = elements;
+    this.comparator = comparator;
+    int samples = (elements.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    this.tree = new Object[samples + 1];
+    this.sampleNumbers = new int[samples + 1];
+    fill(1, 0);
+  }
+
+  /**
+   * Fills the subtree rooted at {@code position} with samples in order,
+   * starting at sample {@code next}, and returns the next unused sample.
+   */
+  private int fill(int position, int next) {
+    if (position < tree.length) {
+      next = fill(2 * position, next);
+      tree[position] = elements.get(next * BLOCK_SIZE);
+      sampleNumbers[position] = next;
+      next = fill(2 * position + 1, next + 1);
+    }
+    return next;
+  }
+
+  /**
+   * Returns the index of the first element that is greater than {@code key},
+   * if {@code strict}, or greater than or equal to it otherwise; or the size
+   * of the list if there is none.
+   *
+   * @throws ClassCastException if {@code key} cannot be compared to the elements
+   */
+  int search(Object key, boolean strict) {
+    int threshold = strict ? 0 : -1;
+    int samples = tree.length - 1;
+
+    // Descend the tree, going right past samples that precede the result.
+    int position = 1;
+    while (position <= samples) {
+      position = 2 * position
+          + (unsafeCompare(tree[position], key) <= threshold ? 1 : 0);
+    }
+    // Undo the trailing right turns plus one left turn to reach the first
+    // sample that does not precede the result, if any.
+    position >>>= Integer.numberOfTrailingZeros(~position) + 1;
+    int sample = (position == 0) ? samples : sampleNumbers[position];
+    if (sample == 0) {
+      return 0;
+    }
+
+    // Sample (sample - 1) precedes the result and sample (sample) does not.
+    int low = (sample - 1) * BLOCK_SIZE + 1;
+    int high = Math.min(sample * BLOCK_SIZE, elements.size());
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (unsafeCompare(elements.get(middle), key) <= threshold) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  @SuppressWarnings("unchecked") // the comparator throws CCE on bad keys
+  private int unsafeCompare(Object element, Object key) {
+    return ((Comparator<Object>) comparator).compare(element, key);
+  }
+}
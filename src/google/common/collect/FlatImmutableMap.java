@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+
+import google.common.annotations.GwtCompatible;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implementation of {@link ImmutableMap} for large maps, which keeps its keys
+ * and values in one flat array instead of one entry object per mapping.
+ *
+ * <p>Keys and values are interleaved in an open-addressed table probed
+ * linearly, the same way {@link RegularImmutableSet} stores its elements, so a
+ * successful lookup usually touches a single cache line and no other objects
+ * besides the key and value themselves. A separate {@code int[]} records the
+ * slot of each entry in insertion order, for iteration. Entries handed out by
+ * {@link #entrySet} are created on demand.
+ *
+ * <p>{@link ImmutableMap#copyOf} and {@link ImmutableMap.Builder#build} choose
+ * this layout once a map has at least {@link ImmutableMap#FLAT_LAYOUT_THRESHOLD}
+ * entries; below that, {@link RegularImmutableMap} is used.
+ */
+@GwtCompatible(serializable = true, emulated = true)
+final class FlatImmutableMap<K, V> extends ImmutableMap<K, V> {
+
+  // key of each slot at even positions, followed by its value (nulls are empty slots)
+  private final transient Object[] table;
+  // 'and' with an int to get a slot index
+  private final transient int mask;
+  // slot of each entry, in insertion order
+  private final transient int[] slots;
+  private final transient int keySetHashCode;
+
+  FlatImmutableMap(Entry<?, ?>... entries) {
+    int size = entries.length;
+    int tableSize = ImmutableSet.chooseTableSize(size);
+    checkArgument(tableSize < ImmutableSet.MAX_TABLE_SIZE, "map too large: %s", size);
+    table = new Object[tableSize * 2];
+    mask = tableSize - 1;
+    slots = new int[size];
+
+    int keySetHashCodeMutable = 0;
+    for (int entryIndex = 0; entryIndex < size; entryIndex++) {
+      Entry<?, ?> entry = entries[entryIndex];
+      Object key = entry.getKey();
+      int keyHashCode = key.hashCode();
+      keySetHashCodeMutable += keyHashCode;
+      for (int i = Hashing.smear(keyHashCode); ; i++) {
+        int slot = i & mask;
+        Object existing = table[slot * 2];
+        if (existing == null) {
+          table[slot * 2] = key;
+          table[slot * 2 + 1] = entry.getValue();
+          slots[entryIndex] = slot;
+          break;
+        }
+        checkArgument(!key.equals(existing), "duplicate key: %s", key);
+      }
+    }
+    keySetHashCode = keySetHashCodeMutable;
+  }
+
+  /**
+   * Creates a map from a table already filled in the layout described above,
+   * such as by {@link ParallelConstruction}.
+   */
+  FlatImmutableMap(Object[] table, int mask, int[] slots, int keySetHashCode) {
+    this.table = table;
+    this.mask = mask;
+    this.slots = slots;
+    this.keySetHashCode = keySetHashCode;
+  }
+
+  @SuppressWarnings("unchecked") // only K's are stored at even positions
+  K keyAt(int entryIndex) {
+    return (K) table[slots[entryIndex] * 2];
+  }
+
+  @SuppressWarnings("unchecked") // only V's are stored at odd positions
+  V valueAt(int entryIndex) {
+    return (V) table[slots[entryIndex] * 2 + 1];
+  }
+
+  Entry<K, V> entryAt(int entryIndex) {
+    int slot = slots[entryIndex];
+    @SuppressWarnings("unchecked") // only K's are stored at even positions
+    K key = (K) table[slot * 2];
+    @SuppressWarnings("unchecked") // only V's are stored at odd positions
+    V value = (V) table[slot * 2 + 1];
+    return new ImmutableEntry<K, V>(key, value);
+  }
+
+  public V get(@Nullable Object key) {
+    if (key == null) {
+      return null;
+    }
+    for (int i = Hashing.smear(key.hashCode()); ; i++) {
+      int slot = i & mask;
+      Object candidate = table[slot * 2];
+      if (candidate == null) {
+        return null;
+      }
+      if (key.equals(candidate)) {
+        @SuppressWarnings("unchecked") // only V's are stored at odd positions
+        V value = (V) table[slot * 2 + 1];
+        return value;
+      }
+    }
+  }
+
+  public int size() {
+    return slots.length;
+  }
+
+  public boolean isEmpty() {
+    return false;
+  }
+
+  public boolean containsValue(@Nullable Object value) {
+    if (value == null) {
+      return false;
+    }
+    for (int slot : slots) {
+      if (value.equals(table[slot * 2 + 1])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean isPartialView() {
+    return false;
+  }
+
+  ImmutableSet<Entry<K, V>> createEntrySet() {
+    return new EntrySet();
+  }
+
+  @SuppressWarnings("serial") // uses writeReplace(), not default serialization
+  private class EntrySet extends ImmutableMapEntrySet<K, V> {
+    ImmutableMap<K, V> map() {
+      return FlatImmutableMap.this;
+    }
+
+    public UnmodifiableIterator<Entry<K, V>> iterator() {
+      return asList().iterator();
+    }
+
+    ImmutableList<Entry<K, V>> createAsList() {
+      return new ImmutableAsList<Entry<K, V>>() {
+        public Entry<K, V> get(int index) {
+          checkElementIndex(index, slots.length);
+          return entryAt(index);
+        }
+
+        ImmutableCollection<Entry<K, V>> delegateCollection() {
+          return EntrySet.this;
+        }
+      };
+    }
+  }
+
+  /*
+   * The key set and values read the table directly rather than going through
+   * entrySet(), so that iterating them does not create an entry per mapping.
+   */
+
+  ImmutableSet<K> createKeySet() {
+    return new ImmutableMapKeySet<K, V>(entrySet(), keySetHashCode) {
+      ImmutableMap<K, V> map() {
+        return FlatImmutableMap.this;
+      }
+
+      @Override public UnmodifiableIterator<K> iterator() {
+        return asList().iterator();
+      }
+
+      @Override ImmutableList<K> createAsList() {
+        final ImmutableCollection<K> keySet = this;
+        return new ImmutableAsList<K>() {
+          public K get(int index) {
+            checkElementIndex(index, slots.length);
+            return keyAt(index);
+          }
+
+          ImmutableCollection<K> delegateCollection() {
+            return keySet;
+          }
+
+          private static final long serialVersionUID = 0;
+        };
+      }
+
+      private static final long serialVersionUID = 0;
+    };
+  }
+
+  ImmutableCollection<V> createValues() {
+    return new ImmutableMapValues<K, V>() {
+      ImmutableMap<K, V> map() {
+        return FlatImmutableMap.this;
+      }
+
+      @Override public UnmodifiableIterator<V> iterator() {
+        return asList().iterator();
+      }
+
+      @Override ImmutableList<V> createAsList() {
+        final ImmutableCollection<V> values = this;
+        return new ImmutableAsList<V>() {
+          public V get(int index) {
+            checkElementIndex(index, slots.length);
+            return valueAt(index);
+          }
+
+          ImmutableCollection<V> delegateCollection() {
+            return values;
+          }
+
+          private static final long serialVersionUID = 0;
+        };
+      }
+
+      private static final long serialVersionUID = 0;
+    };
+  }
+
+  public String toString() {
+    StringBuilder result
+        = Collections2.newStringBuilderForCollection(size()).append('{');
+    for (int i = 0; i < slots.length; i++) {
+      if (i > 0) {
+        result.append(", ");
+      }
+      result.append(keyAt(i)).append('=').append(valueAt(i));
+    }
+    return result.append('}').toString();
+  }
+
+  // This class is never actually serialized directly, but we have to make the
+  // warning go away (and suppressing would suppress for all nested classes too)
+  private static final long serialVersionUID = 0;
+}
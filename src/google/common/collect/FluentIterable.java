@@ -16,6 +16,7 @@
 
 package google.common.collect;
 
+import static google.common.base.Preconditions.checkArgument;
 import static google.common.base.Preconditions.checkNotNull;
 
 import google.common.annotations.Beta;
@@ -24,7 +25,9 @@ import google.common.annotations.GwtIncompatible;
 import google.common.base.Function;
 import google.common.base.Optional;
 import google.common.base.Predicate;
+import google.common.base.Predicates;
 
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -154,6 +157,9 @@ public abstract class FluentIterable<E> implements Iterable<E> {
    * resulting fluent iterable's iterator does not support {@code remove()}.
    */
   public final FluentIterable<E> filter(Predicate<? super E> predicate) {
+    if (this instanceof FusedIterable) {
+      return ((FusedIterable<E>) this).then(FusedIterable.FILTER, checkNotNull(predicate));
+    }
     return from(Iterables.filter(iterable, predicate));
   }
 
@@ -164,6 +170,12 @@ public abstract class FluentIterable<E> implements Iterable<E> {
    */
   @GwtIncompatible("Class.isInstance")
   public final <T> FluentIterable<T> filter(Class<T> type) {
+    if (this instanceof FusedIterable) {
+      @SuppressWarnings("unchecked") // the filter admits only T's
+      FluentIterable<T> result = (FluentIterable<T>) ((FusedIterable<E>) this)
+          .then(FusedIterable.FILTER, Predicates.instanceOf(type));
+      return result;
+    }
     return from(Iterables.filter(iterable, type));
   }
 
@@ -202,6 +214,12 @@ public abstract class FluentIterable<E> implements Iterable<E> {
    * contains the corresponding element.
    */
   public final <T> FluentIterable<T> transform(Function<? super E, T> function) {
+    if (this instanceof FusedIterable) {
+      @SuppressWarnings("unchecked") // the function returns T's
+      FluentIterable<T> result = (FluentIterable<T>) ((FusedIterable<E>) this)
+          .then(FusedIterable.TRANSFORM, checkNotNull(function));
+      return result;
+    }
     return from(Iterables.transform(iterable, function));
   }
 
@@ -294,6 +312,10 @@ public abstract class FluentIterable<E> implements Iterable<E> {
    * {@link IllegalStateException}.
    */
   public final FluentIterable<E> skip(int numberToSkip) {
+    if (this instanceof FusedIterable) {
+      checkArgument(numberToSkip >= 0, "number to skip cannot be negative");
+      return ((FusedIterable<E>) this).then(FusedIterable.SKIP, numberToSkip);
+    }
     return from(Iterables.skip(iterable, numberToSkip));
   }
 
@@ -308,6 +330,10 @@ public abstract class FluentIterable<E> implements Iterable<E> {
    * @throws IllegalArgumentException if {@code size} is negative
    */
   public final FluentIterable<E> limit(int size) {
+    if (this instanceof FusedIterable) {
+      checkArgument(size >= 0, "limit is negative");
+      return ((FusedIterable<E>) this).then(FusedIterable.LIMIT, size);
+    }
     return from(Iterables.limit(iterable, size));
   }
 
@@ -326,6 +352,291 @@ public abstract class FluentIterable<E> implements Iterable<E> {
     return ImmutableList.copyOf(iterable);
   }
 
+  /**
+   * Returns an {@code ImmutableList} containing all of the elements from this
+   * fluent iterable in proper sequence, collected into an array of {@code
+   * expectedSize} elements that grows only if the hint is too small. On a
+   * {@linkplain #fused fused} fluent iterable, the elements are pushed into
+   * the array by a single loop, without an iterator per stage.
+   *
+   * @param expectedSize the expected number of elements
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   * @throws NullPointerException if any element is null
+   * @since 14.0
+   */
+  public final ImmutableList<E> toImmutableList(int expectedSize) {
+    checkArgument(expectedSize >= 0, "expectedSize cannot be negative but was: %s",
+        expectedSize);
+    final Object[][] array = { new Object[expectedSize] };
+    final int[] size = { 0 };
+    push(new Sink<E>() {
+      
+      boolean accept(E element) {
+        Object[] contents = array[0];
+        if (size[0] == contents.length) {
+          contents = array[0] = ObjectArrays.arraysCopyOf(contents,
+              ImmutableCollection.Builder.expandedCapacity(contents.length, size[0] + 1));
+        }
+        contents[size[0]++] = element;
+        return true;
+      }
+    });
+    Object[] contents = array[0];
+    if (size[0] < contents.length) {
+      contents = ObjectArrays.arraysCopyOf(contents, size[0]);
+    }
+    return ImmutableList.asImmutableList(contents);
+  }
+
+  /**
+   * Receives each element of this fluent iterable, in sequence. See {@link
+   * #forEachElement}.
+   *
+   * @since 14.0
+   */
+  public interface Consumer<E> {
+    /** Receives the next element. */
+    void accept(@Nullable E element);
+  }
+
+  /**
+   * Combines a running result with each element of this fluent iterable, in
+   * sequence. See {@link #reduce}.
+   *
+   * @since 14.0
+   */
+  public interface Reducer<E, R> {
+    /** Returns the result of combining {@code result} with {@code element}. */
+    R reduce(@Nullable R result, @Nullable E element);
+  }
+
+  /**
+   * Passes each element of this fluent iterable to {@code consumer}, in
+   * sequence. On a {@linkplain #fused fused} fluent iterable, this runs every
+   * stage of the pipeline in a single loop, without an iterator per stage.
+   *
+   * @since 14.0
+   */
+  public final void forEachElement(final Consumer<? super E> consumer) {
+    checkNotNull(consumer);
+    push(new Sink<E>() {
+      
+      boolean accept(E element) {
+        consumer.accept(element);
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Returns the result of combining {@code initialValue} with each element of
+   * this fluent iterable in turn, using {@code reducer}, or {@code
+   * initialValue} if this fluent iterable is empty. On a {@linkplain #fused
+   * fused} fluent iterable, this runs every stage of the pipeline in a single
+   * loop, without an iterator per stage.
+   *
+   * @since 14.0
+   */
+  public final <R> R reduce(@Nullable R initialValue, final Reducer<? super E, R> reducer) {
+    checkNotNull(reducer);
+    final Object[] result = { initialValue };
+    push(new Sink<E>() {
+      
+      boolean accept(E element) {
+        @SuppressWarnings("unchecked") // result holds only R's
+        R previous = (R) result[0];
+        result[0] = reducer.reduce(previous, element);
+        return true;
+      }
+    });
+    @SuppressWarnings("unchecked") // result holds only R's
+    R reduced = (R) result[0];
+    return reduced;
+  }
+
+  /**
+   * Returns the number of elements in this fluent iterable. Unlike {@link
+   * #size}, the count is not limited to {@code Integer.MAX_VALUE}. On a
+   * {@linkplain #fused fused} fluent iterable, this runs every stage of the
+   * pipeline in a single loop, without an iterator per stage.
+   *
+   * @since 14.0
+   */
+  public final long count() {
+    if (iterable instanceof Collection) {
+      return ((Collection<?>) iterable).size();
+    }
+    final long[] count = { 0 };
+    push(new Sink<E>() {
+      
+      boolean accept(E element) {
+        count[0]++;
+        return true;
+      }
+    });
+    return count[0];
+  }
+
+  /**
+   * Returns a fluent iterable with the same elements as this one, whose
+   * {@link #filter}, {@link #transform}, {@link #skip} and {@link #limit}
+   * stages are fused: instead of wrapping one iterator per stage, a chain of
+   * these stages is evaluated by a single loop that applies each stage in turn
+   * to one element at a time. Every element then costs one {@code hasNext()}
+   * and {@code next()} call on the source, however many stages follow it. The
+   * terminal operations {@link #forEachElement}, {@link #reduce}, {@link
+   * #count} and {@link #toImmutableList(int)} go further and push elements
+   * through the loop without creating an iterator at all.
+   *
+   * <p>Other chained methods, such as {@link #cycle}, end the fused chain; call
+   * {@code fused()} again to start another. The iterators of a fused fluent
+   * iterable do not support {@code remove()}.
+   *
+   * @since 14.0
+   */
+  public final FluentIterable<E> fused() {
+    return (this instanceof FusedIterable)
+        ? this
+        : new FusedIterable<E>(iterable, new Object[0], new int[0]);
+  }
+
+  /**
+   * Receives the elements of a fluent iterable from {@link #push}. Returns
+   * {@code false} to stop receiving elements.
+   */
+  abstract static class Sink<E> {
+    abstract boolean accept(@Nullable E element);
+  }
+
+  /**
+   * Passes each element of this fluent iterable to {@code sink} until it
+   * returns {@code false}.
+   */
+  void push(Sink<? super E> sink) {
+    for (E element : iterable) {
+      if (!sink.accept(element)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * A fluent iterable that applies a chain of stages to the elements of a
+   * source iterable in a single loop. The stages are kept in two parallel
+   * arrays, so chaining one more copies the arrays rather than wrapping this
+   * iterable.
+   */
+  private static final class FusedIterable<E> extends FluentIterable<E> {
+    // kinds of stages
+    static final int FILTER = 0;
+    static final int TRANSFORM = 1;
+    static final int SKIP = 2;
+    static final int LIMIT = 3;
+
+    private final Iterable<?> source;
+    // the kind of each stage and its predicate, function or Integer count
+    private final Object[] stages;
+    private final int[] kinds;
+
+    FusedIterable(Iterable<?> source, Object[] stages, int[] kinds) {
+      this.source = source;
+      this.stages = stages;
+      this.kinds = kinds;
+    }
+
+    /** Returns a fused iterable with one more stage. */
+    FusedIterable<E> then(int kind, Object stage) {
+      int length = stages.length;
+      Object[] newStages = ObjectArrays.arraysCopyOf(stages, length + 1);
+      int[] newKinds = new int[length + 1];
+      System.arraycopy(kinds, 0, newKinds, 0, length);
+      newStages[length] = stage;
+      newKinds[length] = kind;
+      return new FusedIterable<E>(source, newStages, newKinds);
+    }
+
+    /** One pass of the source through the stages. */
+    private final class Run {
+      private final Iterator<?> iterator = source.iterator();
+      // for skip and limit stages, the number of elements left to skip or pass
+      private final int[] remaining = new int[stages.length];
+      // set once a limit stage has passed its last element
+      private boolean done;
+      E current;
+
+      Run() {
+        for (int i = 0; i < stages.length; i++) {
+          if (kinds[i] == SKIP || kinds[i] == LIMIT) {
+            remaining[i] = (Integer) stages[i];
+            done |= (kinds[i] == LIMIT && remaining[i] == 0);
+          }
+        }
+      }
+
+      /**
+       * Advances to the next element that passes every stage, storing it in
+       * {@link #current}, and returns {@code false} if there is none.
+       */
+      @SuppressWarnings("unchecked") // the stages are typed by the methods adding them
+      boolean advance() {
+        Object[] stages = FusedIterable.this.stages;
+        int[] kinds = FusedIterable.this.kinds;
+        elements:
+        while (!done && iterator.hasNext()) {
+          Object element = iterator.next();
+          for (int i = 0; i < stages.length; i++) {
+            switch (kinds[i]) {
+              case FILTER:
+                if (!((Predicate<Object>) stages[i]).apply(element)) {
+                  continue elements;
+                }
+                break;
+              case TRANSFORM:
+                element = ((Function<Object, Object>) stages[i]).apply(element);
+                break;
+              case SKIP:
+                if (remaining[i] > 0) {
+                  remaining[i]--;
+                  continue elements;
+                }
+                break;
+              case LIMIT:
+                // no later element can pass once this reaches zero
+                done |= (--remaining[i] == 0);
+                break;
+              default:
+                throw new AssertionError(kinds[i]);
+            }
+          }
+          current = (E) element;
+          return true;
+        }
+        return false;
+      }
+    }
+
+    
+    public Iterator<E> iterator() {
+      final Run run = new Run();
+      return new AbstractIterator<E>() {
+        
+        protected E computeNext() {
+          return run.advance() ? run.current : endOfData();
+        }
+      };
+    }
+
+    
+    void push(Sink<? super E> sink) {
+      Run run = new Run();
+      while (run.advance()) {
+        if (!sink.accept(run.current)) {
+          return;
+        }
+      }
+    }
+  }
+
   /**
    * Returns an {@code ImmutableList} containing all of the elements from this
    * {@code FluentIterable} in the order specified by {@code comparator}.  To produce an
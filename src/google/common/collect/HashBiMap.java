@@ -31,6 +31,9 @@ import javax.annotation.Nullable;
  * A {@link google.common.collect.BiMap} backed by two {@link java.util.HashMap} instances. This implementation
  * allows null keys and values. A {@code HashBiMap} and its inverse are both
  * serializable.
+ *
+ * <p>Each entry is stored in both maps. For bimaps with millions of entries,
+ * {@link CompactHashBiMap} uses considerably less memory.
  * 
  * <p>See the Guava User Guide article on <a href=
  * "http://code.google.com/p/guava-libraries/wiki/NewCollectionTypesExplained#BiMap">
@@ -16,9 +16,12 @@
 
 package google.common.collect;
 
+import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -172,6 +175,24 @@ public abstract class ImmutableBiMap<K, V> extends ImmutableMap<K, V>
       }
       return new RegularImmutableBiMap<K, V>(map);
     }
+
+    /**
+     * Returns a newly-created immutable bimap, using the threads of {@code
+     * executor} to hash the keys if there are many of them. The inverse is
+     * built sequentially.
+     *
+     * @throws IllegalArgumentException if duplicate keys or values were added
+     * @since 14.0
+     */
+    @Beta
+    @GwtIncompatible("java.util.concurrent")
+    @Override public ImmutableBiMap<K, V> build(ExecutorService executor) {
+      ImmutableMap<K, V> map = super.build(executor);
+      if (map.isEmpty()) {
+        return of();
+      }
+      return new RegularImmutableBiMap<K, V>(map);
+    }
   }
 
   /**
@@ -0,0 +1,557 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.io.ElementCodecs.readVarInt;
+import static google.common.io.ElementCodecs.writeVarInt;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtIncompatible;
+import google.common.io.ElementCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Codecs that write immutable collections in a compact binary form and read
+ * them back, as a faster alternative to Java serialization for large data
+ * sets.
+ *
+ * <p>Each codec is built from codecs for the elements (or keys and values),
+ * such as those in {@link google.common.io.ElementCodecs}, and is itself an
+ * {@link ElementCodec}, so collections can be nested. A collection is written
+ * as its size, as a variable-length int, followed by its contents in
+ * iteration order; maps and multimaps write each key followed by its value
+ * or values, and multisets each element followed by its count. Decoding reads
+ * the size first and then exactly that many items from the stream, using no
+ * reflection and creating no objects beyond the decoded elements and the
+ * collection itself.
+ *
+ * <p>Sorted collections do not record their comparator; the reading codec
+ * supplies it.
+ *
+ * <p>The codecs write no header, so that nested collections cost nothing
+ * extra. Top-level data that is stored or sent elsewhere should go through
+ * {@link #encode} and {@link #decode}, which add a format version that later
+ * releases will continue to read.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtIncompatible("java.io")
+public final class ImmutableCollectionCodecs {
+  private ImmutableCollectionCodecs() {}
+
+  /** Identifies encoded data: the bytes {@code "GCC"} and a zero byte. */
+  private static final int MAGIC = 0x47434300;
+
+  /** The version of the format written by {@link #encode}. */
+  static final int FORMAT_VERSION = 1;
+
+  // Caps up-front allocation for untrusted lengths, as ElementCodecs.strings()
+  // does; arrays grow as elements actually arrive.
+  private static final int MAX_PREALLOCATION = 1 << 16;
+
+  /**
+   * Writes a version header followed by {@code value} to {@code out}. The
+   * stream is flushed but not closed.
+   */
+  public static <T> void encode(ElementCodec<? super T> codec, T value,
+      OutputStream out) throws IOException {
+    DataOutputStream data =
+        new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    writeVarInt(FORMAT_VERSION, data);
+    codec.write(value, data);
+    data.flush();
+  }
+
+  /**
+   * Reads a value written by {@link #encode} from {@code in}. Reading stops at
+   * the end of the value; the stream is not closed. Since {@code in} is read
+   * in small pieces, it should be buffered.
+   *
+   * @throws IOException if {@code in} does not start with a supported header,
+   *     or if the data is malformed or cannot be read
+   */
+  public static <T> T decode(ElementCodec<T> codec, InputStream in)
+      throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not an encoded immutable collection");
+    }
+    int version = readVarInt(data);
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported format version: " + version);
+    }
+    return codec.read(data);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableList}s whose elements are handled by
+   * {@code elementCodec}.
+   */
+  public static <E> ElementCodec<ImmutableList<E>> listOf(
+      ElementCodec<E> elementCodec) {
+    return new ListCodec<E>(elementCodec);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableSet}s whose elements are handled by
+   * {@code elementCodec}. Iteration order is preserved.
+   */
+  public static <E> ElementCodec<ImmutableSet<E>> setOf(
+      ElementCodec<E> elementCodec) {
+    return new SetCodec<E>(elementCodec);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableSortedSet}s whose elements are handled
+   * by {@code elementCodec}. Decoded sets are ordered by {@code comparator}.
+   */
+  public static <E> ElementCodec<ImmutableSortedSet<E>> sortedSetOf(
+      ElementCodec<E> elementCodec, Comparator<? super E> comparator) {
+    return new SortedSetCodec<E>(elementCodec, comparator);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableMultiset}s whose elements are handled
+   * by {@code elementCodec}. Iteration order is preserved.
+   */
+  public static <E> ElementCodec<ImmutableMultiset<E>> multisetOf(
+      ElementCodec<E> elementCodec) {
+    return new MultisetCodec<E>(elementCodec);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableMap}s whose keys and values are
+   * handled by {@code keyCodec} and {@code valueCodec}. Iteration order is
+   * preserved.
+   */
+  public static <K, V> ElementCodec<ImmutableMap<K, V>> mapOf(
+      ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+    return new MapCodec<K, V>(keyCodec, valueCodec);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableSortedMap}s whose keys and values are
+   * handled by {@code keyCodec} and {@code valueCodec}. Decoded maps are
+   * ordered by {@code comparator}.
+   */
+  public static <K, V> ElementCodec<ImmutableSortedMap<K, V>> sortedMapOf(
+      ElementCodec<K> keyCodec, ElementCodec<V> valueCodec,
+      Comparator<? super K> comparator) {
+    return new SortedMapCodec<K, V>(keyCodec, valueCodec, comparator);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableBiMap}s whose keys and values are
+   * handled by {@code keyCodec} and {@code valueCodec}. Iteration order is
+   * preserved.
+   */
+  public static <K, V> ElementCodec<ImmutableBiMap<K, V>> biMapOf(
+      ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+    return new BiMapCodec<K, V>(keyCodec, valueCodec);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableListMultimap}s whose keys and values
+   * are handled by {@code keyCodec} and {@code valueCodec}. Iteration order is
+   * preserved.
+   */
+  public static <K, V> ElementCodec<ImmutableListMultimap<K, V>> listMultimapOf(
+      ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+    return new ListMultimapCodec<K, V>(keyCodec, valueCodec);
+  }
+
+  /**
+   * Returns a codec for {@code ImmutableSetMultimap}s whose keys and values
+   * are handled by {@code keyCodec} and {@code valueCodec}. Iteration order is
+   * preserved.
+   */
+  public static <K, V> ElementCodec<ImmutableSetMultimap<K, V>> setMultimapOf(
+      ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+    return new SetMultimapCodec<K, V>(keyCodec, valueCodec);
+  }
+
+  // Shared encoding steps
+
+  private static int readSize(DataInput in) throws IOException {
+    return readVarInt(in);
+  }
+
+  private static <T> T readNonNull(ElementCodec<T> codec, DataInput in)
+      throws IOException {
+    T value = codec.read(in);
+    if (value == null) {
+      throw new IOException(codec + " decoded a null value");
+    }
+    return value;
+  }
+
+  private static <E> void writeElements(Collection<E> elements,
+      ElementCodec<? super E> elementCodec, DataOutput out) throws IOException {
+    writeVarInt(elements.size(), out);
+    for (E element : elements) {
+      elementCodec.write(element, out);
+    }
+  }
+
+  /**
+   * Reads a size and that many elements into a new array, which is only
+   * ever exposed through an immutable collection.
+   */
+  private static Object[] readElements(ElementCodec<?> elementCodec,
+      DataInput in) throws IOException {
+    int size = readSize(in);
+    Object[] elements = new Object[Math.min(size, MAX_PREALLOCATION)];
+    for (int i = 0; i < size; i++) {
+      if (i == elements.length) {
+        elements = ObjectArrays.arraysCopyOf(
+            elements, (int) Math.min((long) i * 2, size));
+      }
+      elements[i] = readNonNull(elementCodec, in);
+    }
+    return elements;
+  }
+
+  private static <K, V> void writeEntries(Map<K, V> map,
+      ElementCodec<? super K> keyCodec, ElementCodec<? super V> valueCodec,
+      DataOutput out) throws IOException {
+    writeVarInt(map.size(), out);
+    for (Entry<K, V> entry : map.entrySet()) {
+      keyCodec.write(entry.getKey(), out);
+      valueCodec.write(entry.getValue(), out);
+    }
+  }
+
+  private static <K, V> void readEntries(ImmutableMap.Builder<K, V> builder,
+      ElementCodec<K> keyCodec, ElementCodec<V> valueCodec, DataInput in)
+      throws IOException {
+    int size = readSize(in);
+    for (int i = 0; i < size; i++) {
+      K key = readNonNull(keyCodec, in);
+      builder.put(key, readNonNull(valueCodec, in));
+    }
+  }
+
+  /**
+   * Writes the number of distinct keys, then each key followed by the number
+   * of its values and the values themselves.
+   */
+  private static <K, V> void writeMultimap(ImmutableMultimap<K, V> multimap,
+      ElementCodec<? super K> keyCodec, ElementCodec<? super V> valueCodec,
+      DataOutput out) throws IOException {
+    writeVarInt(multimap.asMap().size(), out);
+    for (Entry<K, ? extends Collection<V>> entry
+        : multimap.asMap().entrySet()) {
+      keyCodec.write(entry.getKey(), out);
+      writeElements(entry.getValue(), valueCodec, out);
+    }
+  }
+
+  private static <K, V> void readMultimap(
+      ImmutableMultimap.Builder<K, V> builder, ElementCodec<K> keyCodec,
+      ElementCodec<V> valueCodec, DataInput in) throws IOException {
+    int distinctKeys = readSize(in);
+    for (int i = 0; i < distinctKeys; i++) {
+      K key = readNonNull(keyCodec, in);
+      int values = readSize(in);
+      for (int j = 0; j < values; j++) {
+        builder.put(key, readNonNull(valueCodec, in));
+      }
+    }
+  }
+
+  // Codecs
+
+  private static final class ListCodec<E>
+      implements ElementCodec<ImmutableList<E>> {
+    final ElementCodec<E> elementCodec;
+
+    ListCodec(ElementCodec<E> elementCodec) {
+      this.elementCodec = checkNotNull(elementCodec);
+    }
+
+    public void write(ImmutableList<E> list, DataOutput out)
+        throws IOException {
+      writeElements(list, elementCodec, out);
+    }
+
+    public ImmutableList<E> read(DataInput in) throws IOException {
+      return ImmutableList.asImmutableList(readElements(elementCodec, in));
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.listOf(" + elementCodec + ")";
+    }
+  }
+
+  private static final class SetCodec<E>
+      implements ElementCodec<ImmutableSet<E>> {
+    final ElementCodec<E> elementCodec;
+
+    SetCodec(ElementCodec<E> elementCodec) {
+      this.elementCodec = checkNotNull(elementCodec);
+    }
+
+    public void write(ImmutableSet<E> set, DataOutput out) throws IOException {
+      writeElements(set, elementCodec, out);
+    }
+
+    public ImmutableSet<E> read(DataInput in) throws IOException {
+      return ImmutableSet.copyOf(
+          ImmutableList.<E>asImmutableList(readElements(elementCodec, in)));
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.setOf(" + elementCodec + ")";
+    }
+  }
+
+  private static final class SortedSetCodec<E>
+      implements ElementCodec<ImmutableSortedSet<E>> {
+    final ElementCodec<E> elementCodec;
+    final Comparator<? super E> comparator;
+
+    SortedSetCodec(ElementCodec<E> elementCodec,
+        Comparator<? super E> comparator) {
+      this.elementCodec = checkNotNull(elementCodec);
+      this.comparator = checkNotNull(comparator);
+    }
+
+    public void write(ImmutableSortedSet<E> set, DataOutput out)
+        throws IOException {
+      writeElements(set, elementCodec, out);
+    }
+
+    public ImmutableSortedSet<E> read(DataInput in) throws IOException {
+      Object[] elements = readElements(elementCodec, in);
+      @SuppressWarnings("unchecked") // elementCodec only decodes E's
+      E[] castElements = (E[]) elements;
+      // Already-sorted input sorts in linear time.
+      return ImmutableSortedSet.construct(
+          comparator, castElements.length, castElements);
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.sortedSetOf("
+          + elementCodec + ", " + comparator + ")";
+    }
+  }
+
+  private static final class MultisetCodec<E>
+      implements ElementCodec<ImmutableMultiset<E>> {
+    final ElementCodec<E> elementCodec;
+
+    MultisetCodec(ElementCodec<E> elementCodec) {
+      this.elementCodec = checkNotNull(elementCodec);
+    }
+
+    public void write(ImmutableMultiset<E> multiset, DataOutput out)
+        throws IOException {
+      writeVarInt(multiset.entrySet().size(), out);
+      for (Multiset.Entry<E> entry : multiset.entrySet()) {
+        elementCodec.write(entry.getElement(), out);
+        writeVarInt(entry.getCount(), out);
+      }
+    }
+
+    public ImmutableMultiset<E> read(DataInput in) throws IOException {
+      ImmutableMultiset.Builder<E> builder = ImmutableMultiset.builder();
+      int distinctElements = readSize(in);
+      for (int i = 0; i < distinctElements; i++) {
+        E element = readNonNull(elementCodec, in);
+        builder.addCopies(element, readVarInt(in));
+      }
+      return builder.build();
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.multisetOf(" + elementCodec + ")";
+    }
+  }
+
+  private static final class MapCodec<K, V>
+      implements ElementCodec<ImmutableMap<K, V>> {
+    final ElementCodec<K> keyCodec;
+    final ElementCodec<V> valueCodec;
+
+    MapCodec(ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+      this.keyCodec = checkNotNull(keyCodec);
+      this.valueCodec = checkNotNull(valueCodec);
+    }
+
+    public void write(ImmutableMap<K, V> map, DataOutput out)
+        throws IOException {
+      writeEntries(map, keyCodec, valueCodec, out);
+    }
+
+    public ImmutableMap<K, V> read(DataInput in) throws IOException {
+      int size = readSize(in);
+      Entry<?, ?>[] entries = new Entry<?, ?>[Math.min(size, MAX_PREALLOCATION)];
+      for (int i = 0; i < size; i++) {
+        if (i == entries.length) {
+          entries = ObjectArrays.arraysCopyOf(
+              entries, (int) Math.min((long) i * 2, size));
+        }
+        K key = readNonNull(keyCodec, in);
+        entries[i] = ImmutableMap.entryOf(key, readNonNull(valueCodec, in));
+      }
+      switch (size) {
+        case 0:
+          return ImmutableMap.of();
+        case 1:
+          @SuppressWarnings("unchecked") // entries only holds Entry<K, V>s
+          Entry<K, V> entry = (Entry<K, V>) entries[0];
+          return ImmutableMap.of(entry.getKey(), entry.getValue());
+        default:
+          return ImmutableMap.fromEntryArray(entries);
+      }
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.mapOf("
+          + keyCodec + ", " + valueCodec + ")";
+    }
+  }
+
+  private static final class SortedMapCodec<K, V>
+      implements ElementCodec<ImmutableSortedMap<K, V>> {
+    final ElementCodec<K> keyCodec;
+    final ElementCodec<V> valueCodec;
+    final Comparator<? super K> comparator;
+
+    SortedMapCodec(ElementCodec<K> keyCodec, ElementCodec<V> valueCodec,
+        Comparator<? super K> comparator) {
+      this.keyCodec = checkNotNull(keyCodec);
+      this.valueCodec = checkNotNull(valueCodec);
+      this.comparator = checkNotNull(comparator);
+    }
+
+    public void write(ImmutableSortedMap<K, V> map, DataOutput out)
+        throws IOException {
+      writeEntries(map, keyCodec, valueCodec, out);
+    }
+
+    public ImmutableSortedMap<K, V> read(DataInput in) throws IOException {
+      ImmutableSortedMap.Builder<K, V> builder =
+          new ImmutableSortedMap.Builder<K, V>(comparator);
+      readEntries(builder, keyCodec, valueCodec, in);
+      return builder.build();
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.sortedMapOf("
+          + keyCodec + ", " + valueCodec + ", " + comparator + ")";
+    }
+  }
+
+  private static final class BiMapCodec<K, V>
+      implements ElementCodec<ImmutableBiMap<K, V>> {
+    final ElementCodec<K> keyCodec;
+    final ElementCodec<V> valueCodec;
+
+    BiMapCodec(ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+      this.keyCodec = checkNotNull(keyCodec);
+      this.valueCodec = checkNotNull(valueCodec);
+    }
+
+    public void write(ImmutableBiMap<K, V> map, DataOutput out)
+        throws IOException {
+      writeEntries(map, keyCodec, valueCodec, out);
+    }
+
+    public ImmutableBiMap<K, V> read(DataInput in) throws IOException {
+      ImmutableBiMap.Builder<K, V> builder = ImmutableBiMap.builder();
+      readEntries(builder, keyCodec, valueCodec, in);
+      return builder.build();
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.biMapOf("
+          + keyCodec + ", " + valueCodec + ")";
+    }
+  }
+
+  private static final class ListMultimapCodec<K, V>
+      implements ElementCodec<ImmutableListMultimap<K, V>> {
+    final ElementCodec<K> keyCodec;
+    final ElementCodec<V> valueCodec;
+
+    ListMultimapCodec(ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+      this.keyCodec = checkNotNull(keyCodec);
+      this.valueCodec = checkNotNull(valueCodec);
+    }
+
+    public void write(ImmutableListMultimap<K, V> multimap, DataOutput out)
+        throws IOException {
+      writeMultimap(multimap, keyCodec, valueCodec, out);
+    }
+
+    public ImmutableListMultimap<K, V> read(DataInput in) throws IOException {
+      ImmutableListMultimap.Builder<K, V> builder =
+          ImmutableListMultimap.builder();
+      readMultimap(builder, keyCodec, valueCodec, in);
+      return builder.build();
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.listMultimapOf("
+          + keyCodec + ", " + valueCodec + ")";
+    }
+  }
+
+  private static final class SetMultimapCodec<K, V>
+      implements ElementCodec<ImmutableSetMultimap<K, V>> {
+    final ElementCodec<K> keyCodec;
+    final ElementCodec<V> valueCodec;
+
+    SetMultimapCodec(ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+      this.keyCodec = checkNotNull(keyCodec);
+      this.valueCodec = checkNotNull(valueCodec);
+    }
+
+    public void write(ImmutableSetMultimap<K, V> multimap, DataOutput out)
+        throws IOException {
+      writeMultimap(multimap, keyCodec, valueCodec, out);
+    }
+
+    public ImmutableSetMultimap<K, V> read(DataInput in) throws IOException {
+      ImmutableSetMultimap.Builder<K, V> builder =
+          ImmutableSetMultimap.builder();
+      readMultimap(builder, keyCodec, valueCodec, in);
+      return builder.build();
+    }
+
+    @Override public String toString() {
+      return "ImmutableCollectionCodecs.setMultimapOf("
+          + keyCodec + ", " + valueCodec + ")";
+    }
+  }
+}
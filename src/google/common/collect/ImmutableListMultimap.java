@@ -16,6 +16,8 @@
 
 package google.common.collect;
 
+import static google.common.base.Preconditions.checkNotNull;
+
 import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
 import google.common.annotations.GwtIncompatible;
@@ -254,6 +256,10 @@ public class ImmutableListMultimap<K, V>
       }
     }
 
+    if (multimap.keySet().size() >= COMPACT_LAYOUT_THRESHOLD) {
+      return compactCopyOf(multimap);
+    }
+
     ImmutableMap.Builder<K, ImmutableList<V>> builder = ImmutableMap.builder();
     int size = 0;
 
@@ -269,6 +275,47 @@ public class ImmutableListMultimap<K, V>
     return new ImmutableListMultimap<K, V>(builder.build(), size);
   }
 
+  /**
+   * Multimaps with at least this many keys are stored in a {@link
+   * CompactListMultimapMap}, which keeps all values in one array, rather than
+   * in a map of separate lists.
+   */
+  static final int COMPACT_LAYOUT_THRESHOLD = 1024;
+
+  private static <K, V> ImmutableListMultimap<K, V> compactCopyOf(
+      Multimap<? extends K, ? extends V> multimap) {
+    int keyCount = multimap.keySet().size();
+    Object[] keys = new Object[keyCount];
+    int[] offsets = new int[keyCount + 1];
+    Object[] values = new Object[multimap.size()];
+    int keyIndex = 0;
+    int valueIndex = 0;
+    for (Entry<? extends K, ? extends Collection<? extends V>> entry
+        : multimap.asMap().entrySet()) {
+      Collection<? extends V> collection = entry.getValue();
+      if (!collection.isEmpty()) {
+        keys[keyIndex] = checkNotNull(entry.getKey());
+        offsets[keyIndex] = valueIndex;
+        keyIndex++;
+        for (V value : collection) {
+          values[valueIndex++] = checkNotNull(value);
+        }
+      }
+    }
+    offsets[keyIndex] = valueIndex;
+    if (keyIndex < keyCount) {
+      keys = ObjectArrays.arraysCopyOf(keys, keyIndex);
+      int[] trimmedOffsets = new int[keyIndex + 1];
+      System.arraycopy(offsets, 0, trimmedOffsets, 0, keyIndex + 1);
+      offsets = trimmedOffsets;
+    }
+    if (valueIndex < values.length) {
+      values = ObjectArrays.arraysCopyOf(values, valueIndex);
+    }
+    return new ImmutableListMultimap<K, V>(
+        new CompactListMultimapMap<K, V>(keys, offsets, values), valueIndex);
+  }
+
   ImmutableListMultimap(ImmutableMap<K, ImmutableList<V>> map, int size) {
     super(map, size);
   }
@@ -352,8 +399,8 @@ public class ImmutableListMultimap<K, V>
     if (keyCount < 0) {
       throw new InvalidObjectException("Invalid key count " + keyCount);
     }
-    ImmutableMap.Builder<Object, ImmutableList<Object>> builder
-        = ImmutableMap.builder();
+    Object[] keys = new Object[keyCount];
+    Object[][] valueArrays = new Object[keyCount][];
     int tmpSize = 0;
 
     for (int i = 0; i < keyCount; i++) {
@@ -367,13 +414,29 @@ public class ImmutableListMultimap<K, V>
       for (int j = 0; j < valueCount; j++) {
         array[j] = stream.readObject();
       }
-      builder.put(key, ImmutableList.copyOf(array));
+      keys[i] = key;
+      valueArrays[i] = array;
       tmpSize += valueCount;
     }
 
     ImmutableMap<Object, ImmutableList<Object>> tmpMap;
     try {
-      tmpMap = builder.build();
+      if (keyCount >= COMPACT_LAYOUT_THRESHOLD) {
+        int[] offsets = new int[keyCount + 1];
+        Object[] values = new Object[tmpSize];
+        for (int i = 0; i < keyCount; i++) {
+          System.arraycopy(valueArrays[i], 0, values, offsets[i], valueArrays[i].length);
+          offsets[i + 1] = offsets[i] + valueArrays[i].length;
+        }
+        tmpMap = new CompactListMultimapMap<Object, Object>(keys, offsets, values);
+      } else {
+        ImmutableMap.Builder<Object, ImmutableList<Object>> builder
+            = ImmutableMap.builder();
+        for (int i = 0; i < keyCount; i++) {
+          builder.put(keys[i], ImmutableList.copyOf(valueArrays[i]));
+        }
+        tmpMap = builder.build();
+      }
     } catch (IllegalArgumentException e) {
       throw (InvalidObjectException)
           new InvalidObjectException(e.getMessage()).initCause(e);
@@ -19,12 +19,15 @@ package google.common.collect;
 import static google.common.base.Preconditions.checkNotNull;
 import static google.common.collect.Iterables.getOnlyElement;
 
+import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -233,6 +236,30 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
       return fromEntryList(entries);
     }
 
+    /**
+     * Returns a newly-created immutable map, using the threads of {@code
+     * executor} to hash the keys if there are many of them. The result is
+     * equal to, and iterates in the same order as, the result of {@link
+     * #build()}.
+     *
+     * <p>This method submits tasks to {@code executor} and waits for them, so
+     * it must not be called from a thread of {@code executor} if that could
+     * leave no thread free to run them.
+     *
+     * @throws IllegalArgumentException if duplicate keys were added
+     * @since 14.0
+     */
+    @Beta
+    @GwtIncompatible("java.util.concurrent")
+    public ImmutableMap<K, V> build(ExecutorService executor) {
+      checkNotNull(executor);
+      if (entries.size() < ParallelConstruction.THRESHOLD) {
+        return build();
+      }
+      return ParallelConstruction.buildFlatMap(
+          entries.toArray(new Entry<?, ?>[entries.size()]), executor);
+    }
+
     private static <K, V> ImmutableMap<K, V> fromEntryList(
         List<Entry<K, V>> entries) {
       int size = entries.size();
@@ -244,7 +271,7 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
         default:
           Entry<?, ?>[] entryArray
               = entries.toArray(new Entry<?, ?>[entries.size()]);
-          return new RegularImmutableMap<K, V>(entryArray);
+          return fromEntryArray(entryArray);
       }
     }
   }
@@ -288,10 +315,28 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
           V v = entries[i].getValue();
           entries[i] = entryOf(k, v);
         }
-        return new RegularImmutableMap<K, V>(entries);
+        return fromEntryArray(entries);
     }
   }
 
+  /**
+   * Maps with at least this many entries are stored in a {@link
+   * FlatImmutableMap}, whose single array of keys and values avoids the
+   * per-entry objects of {@link RegularImmutableMap}. Below it, the entry
+   * objects are too few to matter and lookups cost about the same.
+   */
+  static final int FLAT_LAYOUT_THRESHOLD = 1024;
+
+  /**
+   * Creates a map with two or more entries, choosing its layout by size.
+   * {@code entries} must contain only non-null, immutable {@code Entry<K, V>}s.
+   */
+  static <K, V> ImmutableMap<K, V> fromEntryArray(Entry<?, ?>[] entries) {
+    return (entries.length >= FLAT_LAYOUT_THRESHOLD)
+        ? new FlatImmutableMap<K, V>(entries)
+        : new RegularImmutableMap<K, V>(entries);
+  }
+
   ImmutableMap() {}
 
   /**
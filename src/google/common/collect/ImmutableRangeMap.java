@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
+import google.common.base.Function;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable mapping from disjoint ranges of keys to values, for lookups
+ * that are read-only after loading, such as by IP address or price tier. This
+ * implementation does not support null values.
+ *
+ * <p>Unlike {@link RangeMap}, which keeps a tree map entry per range, the lower
+ * bounds, upper bounds and values of the ranges are stored in three flat
+ * arrays sorted by lower bound. {@link #get} is a binary search over the lower
+ * bounds that compares the key with each bound in place, so it does not
+ * allocate.
+ */
+@GwtCompatible(serializable = true)
+final class ImmutableRangeMap<K extends Comparable, V>
+    implements Function<K, V>, Serializable {
+
+  private static final ImmutableRangeMap<Comparable<?>, Object> EMPTY =
+      new Builder<Comparable<?>, Object>().build();
+
+  /**
+   * Returns an empty immutable range map.
+   */
+  @SuppressWarnings("unchecked") // the empty map holds no K's or V's
+  public static <K extends Comparable, V> ImmutableRangeMap<K, V> of() {
+    return (ImmutableRangeMap<K, V>) (ImmutableRangeMap<?, ?>) EMPTY;
+  }
+
+  /**
+   * Returns an immutable range map mapping each key in {@code range} to
+   * {@code value}.
+   *
+   * @throws IllegalArgumentException if {@code range} is empty
+   */
+  public static <K extends Comparable, V> ImmutableRangeMap<K, V> of(
+      Range<K> range, V value) {
+    return new Builder<K, V>().put(range, value).build();
+  }
+
+  /**
+   * Returns an immutable copy of the current associations of {@code rangeMap}.
+   */
+  @GwtIncompatible("RangeMap")
+  public static <K extends Comparable, V> ImmutableRangeMap<K, V> copyOf(
+      RangeMap<K, V> rangeMap) {
+    Builder<K, V> builder = new Builder<K, V>();
+    for (Entry<Range<K>, V> entry : rangeMap.rangeEntries()) {
+      builder.put(entry.getKey(), entry.getValue());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns a new builder for an immutable range map.
+   */
+  public static <K extends Comparable, V> Builder<K, V> builder() {
+    return new Builder<K, V>();
+  }
+
+  /**
+   * A builder for immutable range maps. Ranges may be put in any order, but
+   * may not overlap.
+   */
+  public static final class Builder<K extends Comparable, V> {
+    private final List<Entry<Range<K>, V>> entries = Lists.newArrayList();
+
+    /**
+     * Associates {@code value} with every key contained in {@code range}.
+     *
+     * @throws IllegalArgumentException if {@code range} is empty
+     */
+    public Builder<K, V> put(Range<K> range, V value) {
+      checkNotNull(range);
+      checkNotNull(value);
+      checkArgument(!range.isEmpty(), "Range must not be empty, but was %s", range);
+      entries.add(Maps.immutableEntry(range, value));
+      return this;
+    }
+
+    /**
+     * Returns a newly-created immutable range map. This sorts the ranges by
+     * lower bound and then checks neighbors for overlaps, which takes {@code
+     * O(n log n)} time.
+     *
+     * @throws IllegalArgumentException if any two ranges overlap
+     */
+    public ImmutableRangeMap<K, V> build() {
+      @SuppressWarnings("unchecked") // only Entry<Range<K>, V>s are stored
+      Entry<Range<K>, V>[] sorted = (Entry<Range<K>, V>[])
+          entries.toArray(new Entry<?, ?>[entries.size()]);
+      Arrays.sort(sorted, new Comparator<Entry<Range<K>, V>>() {
+        public int compare(Entry<Range<K>, V> a, Entry<Range<K>, V> b) {
+          return a.getKey().lowerBound.compareTo(b.getKey().lowerBound);
+        }
+      });
+
+      int size = sorted.length;
+      @SuppressWarnings("unchecked") // generic array creation
+      Cut<K>[] lowerBounds = (Cut<K>[]) new Cut<?>[size];
+      @SuppressWarnings("unchecked") // generic array creation
+      Cut<K>[] upperBounds = (Cut<K>[]) new Cut<?>[size];
+      Object[] values = new Object[size];
+      for (int i = 0; i < size; i++) {
+        Range<K> range = sorted[i].getKey();
+        if (i > 0) {
+          Range<K> previous = sorted[i - 1].getKey();
+          checkArgument(previous.upperBound.compareTo(range.lowerBound) <= 0,
+              "Overlapping ranges: %s and %s", previous, range);
+        }
+        lowerBounds[i] = range.lowerBound;
+        upperBounds[i] = range.upperBound;
+        values[i] = sorted[i].getValue();
+      }
+      return new ImmutableRangeMap<K, V>(lowerBounds, upperBounds, values);
+    }
+  }
+
+  // the bounds and value of each range, ordered by lower bound
+  private final Cut<K>[] lowerBounds;
+  private final Cut<K>[] upperBounds;
+  private final Object[] values;
+
+  private ImmutableRangeMap(Cut<K>[] lowerBounds, Cut<K>[] upperBounds, Object[] values) {
+    this.lowerBounds = lowerBounds;
+    this.upperBounds = upperBounds;
+    this.values = values;
+  }
+
+  /**
+   * Equivalent to {@link #get(Comparable) get(K)}, provided only to satisfy the {@link Function}
+   * interface. When using a reference of type {@code ImmutableRangeMap}, always invoke
+   * {@link #get(Comparable) get(K)} directly instead.
+   */
+  public V apply(K input) {
+    return get(input);
+  }
+
+  /**
+   * Returns the value associated with {@code key}, or {@code null} if there is no such value.
+   *
+   * <p>This method takes <i>O(log n)</i> time.
+   */
+  @Nullable
+  public V get(K key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    @SuppressWarnings("unchecked") // only V's are stored
+    V value = (V) values[index];
+    return value;
+  }
+
+  /**
+   * Returns the range containing {@code key} and its associated value, or {@code null} if there
+   * is no such range.
+   */
+  @Nullable
+  public Entry<Range<K>, V> getEntry(K key) {
+    int index = indexOf(key);
+    return (index < 0) ? null : entryAt(index);
+  }
+
+  /** Returns the index of the range containing {@code key}, or -1. */
+  private int indexOf(K key) {
+    checkNotNull(key);
+    // Find the last range whose lower bound is below the key.
+    int low = 0;
+    int high = lowerBounds.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (lowerBounds[mid].isLessThan(key)) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return (high >= 0 && !upperBounds[high].isLessThan(key)) ? high : -1;
+  }
+
+  private Entry<Range<K>, V> entryAt(int index) {
+    @SuppressWarnings("unchecked") // only V's are stored
+    V value = (V) values[index];
+    return Maps.immutableEntry(new Range<K>(lowerBounds[index], upperBounds[index]), value);
+  }
+
+  /**
+   * Returns the number of ranges in this map.
+   */
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Returns an immutable map from the ranges of this map to their values, iterating in order of
+   * lower bound.
+   */
+  public ImmutableMap<Range<K>, V> asMapOfRanges() {
+    ImmutableMap.Builder<Range<K>, V> builder = ImmutableMap.builder();
+    for (int i = 0; i < values.length; i++) {
+      Entry<Range<K>, V> entry = entryAt(i);
+      builder.put(entry.getKey(), entry.getValue());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns {@code true} if {@code o} is an immutable range map with the same ranges and values.
+   */
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (o instanceof ImmutableRangeMap) {
+      ImmutableRangeMap<?, ?> other = (ImmutableRangeMap<?, ?>) o;
+      return Arrays.equals(lowerBounds, other.lowerBounds)
+          && Arrays.equals(upperBounds, other.upperBounds)
+          && Arrays.equals(values, other.values);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return asMapOfRanges().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return asMapOfRanges().toString();
+  }
+
+  private static final long serialVersionUID = 0L;
+}
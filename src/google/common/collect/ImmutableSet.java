@@ -19,7 +19,9 @@ package google.common.collect;
 import static google.common.base.Preconditions.checkArgument;
 import static google.common.base.Preconditions.checkNotNull;
 
+import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
 import google.common.annotations.VisibleForTesting;
 import google.common.primitives.Ints;
 
@@ -28,6 +30,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -620,5 +623,31 @@ public abstract class ImmutableSet<E> extends ImmutableCollection<E>
       size = result.size();
       return result;
     }
+
+    /**
+     * Returns a newly-created {@code ImmutableSet} based on the contents of
+     * the {@code Builder}, using the threads of {@code executor} to hash and
+     * deduplicate the elements if there are many of them. The result is equal
+     * to, and iterates in the same order as, the result of {@link #build()}.
+     *
+     * <p>This method submits tasks to {@code executor} and waits for them, so
+     * it must not be called from a thread of {@code executor} if that could
+     * leave no thread free to run them.
+     *
+     * @since 14.0
+     */
+    @Beta
+    @GwtIncompatible("java.util.concurrent")
+    public ImmutableSet<E> build(ExecutorService executor) {
+      checkNotNull(executor);
+      if (size < ParallelConstruction.THRESHOLD) {
+        return build();
+      }
+      ImmutableSet<E> result =
+          ParallelConstruction.buildSet(contents, size, executor);
+      // buildSet has the side effect of deduping contents, like construct
+      size = result.size();
+      return result;
+    }
   }
 }
@@ -20,7 +20,9 @@ import static google.common.base.Preconditions.checkArgument;
 import static google.common.base.Preconditions.checkNotNull;
 import static google.common.collect.Maps.keyOrNull;
 
+import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -30,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -283,6 +286,21 @@ public abstract class ImmutableSortedMap<K, V>
     return fromSortedEntries(comparator, list);
   }
 
+  /**
+   * Returns a comparator of {@code Entry} objects, given as {@code Object}s,
+   * by key.
+   */
+  @SuppressWarnings("unchecked") // callers only pass entries with K keys
+  private static <K> Comparator<Object> entryComparator(
+      final Comparator<? super K> comparator) {
+    return new Comparator<Object>() {
+      public int compare(Object entry1, Object entry2) {
+        return comparator.compare(((Entry<K, ?>) entry1).getKey(),
+            ((Entry<K, ?>) entry2).getKey());
+      }
+    };
+  }
+
   private static <K, V> void sortEntries(
       List<Entry<K, V>> entries, final Comparator<? super K> comparator) {
     Comparator<Entry<K, V>> entryComparator = new Comparator<Entry<K, V>>() {
@@ -425,6 +443,34 @@ public abstract class ImmutableSortedMap<K, V>
       validateEntries(entries, comparator);
       return fromSortedEntries(comparator, entries);
     }
+
+    /**
+     * Returns a newly-created immutable sorted map, using the threads of
+     * {@code executor} to sort the entries if there are many of them. The
+     * result is identical to the result of {@link #build()}.
+     *
+     * <p>This method submits tasks to {@code executor} and waits for them, so
+     * it must not be called from a thread of {@code executor} if that could
+     * leave no thread free to run them.
+     *
+     * @throws IllegalArgumentException if any two keys are equal according to
+     *     the comparator (which might be the keys' natural order)
+     * @since 14.0
+     */
+    @Beta
+    @GwtIncompatible("java.util.concurrent")
+    @Override public ImmutableSortedMap<K, V> build(ExecutorService executor) {
+      checkNotNull(executor);
+      if (entries.size() < ParallelConstruction.THRESHOLD) {
+        return build();
+      }
+      Object[] array = entries.toArray();
+      @SuppressWarnings("unchecked") // the array only holds Entry<K, V>s
+      List<Entry<K, V>> sorted = (List) Arrays.asList(ParallelConstruction.sort(
+          array, array.length, entryComparator(comparator), executor));
+      validateEntries(sorted, comparator);
+      return fromSortedEntries(comparator, sorted);
+    }
   }
 
   ImmutableSortedMap() {
@@ -19,6 +19,7 @@ package google.common.collect;
 import static google.common.base.Preconditions.checkArgument;
 import static google.common.base.Preconditions.checkNotNull;
 
+import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
 import google.common.annotations.GwtIncompatible;
 
@@ -34,6 +35,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -593,6 +595,31 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
       this.size = result.size(); // we eliminated duplicates in-place in contentsArray
       return result;
     }
+
+    /**
+     * Returns a newly-created {@code ImmutableSortedSet} based on the contents
+     * of the {@code Builder} and its comparator, using the threads of {@code
+     * executor} to sort and deduplicate the elements if there are many of
+     * them. The result is identical to the result of {@link #build()}.
+     *
+     * <p>This method submits tasks to {@code executor} and waits for them, so
+     * it must not be called from a thread of {@code executor} if that could
+     * leave no thread free to run them.
+     *
+     * @since 14.0
+     */
+    @Beta
+    @GwtIncompatible("java.util.concurrent")
+    @Override public ImmutableSortedSet<E> build(ExecutorService executor) {
+      checkNotNull(executor);
+      if (size < ParallelConstruction.THRESHOLD) {
+        return build();
+      }
+      // Unlike build(), this leaves the contents in an unspecified order with
+      // their duplicates, so size stays as it is.
+      return ParallelConstruction.buildSortedSet(
+          comparator, contents, size, executor);
+    }
   }
 
   int unsafeCompare(Object a, Object b) {
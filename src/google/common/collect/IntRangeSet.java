@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable set of {@code int} values made up of disjoint closed ranges,
+ * stored as two sorted {@code int[]} arrays of lower and upper bounds.
+ *
+ * <p>Compared to a {@code TreeRangeSet<Integer>}, which keeps a boxed {@link
+ * Range} and two {@link Cut} objects per range in a tree map, this uses 8
+ * bytes per range, and {@link #contains} and {@link #indexOf} are a binary
+ * search over a primitive array that allocates nothing. Set operations such as
+ * {@link #union} and {@link #intersection} work on the arrays in linear time.
+ *
+ * <p>Adjacent ranges are coalesced: {@code [1..3]} and {@code [4..6]} are stored
+ * as {@code [1..6]}. Ranges can be converted to and from {@code Range<Integer>}
+ * with {@link #copyOf} and {@link #asRanges}. See {@link LongRangeSet} for
+ * {@code long} values.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible
+public final class IntRangeSet implements Serializable {
+  private static final IntRangeSet EMPTY =
+      new IntRangeSet(new int[0], new int[0]);
+  private static final IntRangeSet ALL =
+      new IntRangeSet(new int[] {Integer.MIN_VALUE}, new int[] {Integer.MAX_VALUE});
+
+  /** Returns the empty set. */
+  public static IntRangeSet of() {
+    return EMPTY;
+  }
+
+  /** Returns the set of all {@code int} values. */
+  public static IntRangeSet all() {
+    return ALL;
+  }
+
+  /**
+   * Returns the set of values in the closed range {@code [lower..upper]}.
+   *
+   * @throws IllegalArgumentException if {@code lower > upper}
+   */
+  public static IntRangeSet closed(int lower, int upper) {
+    checkArgument(lower <= upper, "Invalid range: [%s..%s]", lower, upper);
+    return new IntRangeSet(new int[] {lower}, new int[] {upper});
+  }
+
+  /**
+   * Returns the set of values contained in any of {@code ranges}. Unbounded
+   * ranges extend to {@link Integer#MIN_VALUE} or {@link Integer#MAX_VALUE}.
+   */
+  public static IntRangeSet copyOf(Iterable<Range<Integer>> ranges) {
+    Builder builder = builder();
+    for (Range<Integer> range : ranges) {
+      builder.add(range);
+    }
+    return builder.build();
+  }
+
+  /** Returns the set of values contained in {@code rangeSet}. */
+  static IntRangeSet copyOf(RangeSet<Integer> rangeSet) {
+    return copyOf(rangeSet.asRanges());
+  }
+
+  /** Returns a new builder. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for {@link IntRangeSet} instances. Ranges may be added in any
+   * order and may overlap; {@link #build} sorts and coalesces them in {@code
+   * O(n log n)} time without boxing.
+   *
+   * @since 14.0
+   */
+  public static final class Builder {
+    private int[] lowers = new int[16];
+    private int[] uppers = new int[16];
+    private int count;
+
+    Builder() {}
+
+    /**
+     * Adds the closed range {@code [lower..upper]}.
+     *
+     * @throws IllegalArgumentException if {@code lower > upper}
+     */
+    public Builder add(int lower, int upper) {
+      checkArgument(lower <= upper, "Invalid range: [%s..%s]", lower, upper);
+      if (count == lowers.length) {
+        int newCapacity = ImmutableCollection.Builder.expandedCapacity(count, count + 1);
+        lowers = copyOf(lowers, newCapacity);
+        uppers = copyOf(uppers, newCapacity);
+      }
+      lowers[count] = lower;
+      uppers[count] = upper;
+      count++;
+      return this;
+    }
+
+    /** Adds the single value {@code value}. */
+    public Builder add(int value) {
+      return add(value, value);
+    }
+
+    /**
+     * Adds the values in {@code range}, which may be open, closed or
+     * unbounded at either end. Empty ranges are ignored.
+     */
+    public Builder add(Range<Integer> range) {
+      int lower = Integer.MIN_VALUE;
+      if (range.hasLowerBound()) {
+        lower = range.lowerEndpoint();
+        if (range.lowerBoundType() == BoundType.OPEN) {
+          if (lower == Integer.MAX_VALUE) {
+            return this;
+          }
+          lower++;
+        }
+      }
+      int upper = Integer.MAX_VALUE;
+      if (range.hasUpperBound()) {
+        upper = range.upperEndpoint();
+        if (range.upperBoundType() == BoundType.OPEN) {
+          if (upper == Integer.MIN_VALUE) {
+            return this;
+          }
+          upper--;
+        }
+      }
+      return (lower <= upper) ? add(lower, upper) : this;
+    }
+
+    /** Adds all values of {@code set}. */
+    public Builder addAll(IntRangeSet set) {
+      for (int i = 0; i < set.lowers.length; i++) {
+        add(set.lowers[i], set.uppers[i]);
+      }
+      return this;
+    }
+
+    /** Returns a set of all the values added so far. */
+    public IntRangeSet build() {
+      int[] sortedLowers = copyOf(lowers, count);
+      int[] sortedUppers = copyOf(uppers, count);
+      Arrays.sort(sortedLowers);
+      Arrays.sort(sortedUppers);
+      return coalesce(sortedLowers, sortedUppers);
+    }
+  }
+
+  /**
+   * Returns the union of the ranges given by their bounds, each sorted on its
+   * own. The union only depends on where ranges start and end, not on which
+   * lower bound goes with which upper bound, so the two arrays need not be
+   * sorted together.
+   */
+  private static IntRangeSet coalesce(int[] lowers, int[] uppers) {
+    int n = lowers.length;
+    if (n == 0) {
+      return EMPTY;
+    }
+    int[] resultLowers = new int[n];
+    int[] resultUppers = new int[n];
+    int count = 0;
+    int depth = 0;
+    int start = 0;
+    for (int i = 0, j = 0; j < n; ) {
+      // A range starting right after another ends is merged with it.
+      if (i < n && (lowers[i] <= uppers[j] || lowers[i] - 1 == uppers[j])) {
+        if (depth++ == 0) {
+          start = lowers[i];
+        }
+        i++;
+      } else {
+        if (--depth == 0) {
+          resultLowers[count] = start;
+          resultUppers[count] = uppers[j];
+          count++;
+        }
+        j++;
+      }
+    }
+    return create(resultLowers, resultUppers, count);
+  }
+
+  private static IntRangeSet create(int[] lowers, int[] uppers, int count) {
+    if (count == 0) {
+      return EMPTY;
+    }
+    if (count < lowers.length) {
+      lowers = copyOf(lowers, count);
+      uppers = copyOf(uppers, count);
+    }
+    return new IntRangeSet(lowers, uppers);
+  }
+
+  private static int[] copyOf(int[] array, int length) {
+    int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  // bounds of each range, inclusive; sorted, and with gaps between ranges
+  private final int[] lowers;
+  private final int[] uppers;
+
+  private IntRangeSet(int[] lowers, int[] uppers) {
+    this.lowers = lowers;
+    this.uppers = uppers;
+  }
+
+  /** Returns {@code true} if this set contains {@code value}. */
+  public boolean contains(int value) {
+    return indexOf(value) >= 0;
+  }
+
+  /**
+   * Returns the index of the range containing {@code value}, for use with
+   * {@link #lowerEndpoint} and {@link #upperEndpoint}, or {@code -1} if there
+   * is none. This takes {@code O(log n)} time and does not allocate.
+   */
+  public int indexOf(int value) {
+    int index = Arrays.binarySearch(lowers, value);
+    if (index >= 0) {
+      return index;
+    }
+    index = -index - 2;
+    return (index >= 0 && value <= uppers[index]) ? index : -1;
+  }
+
+  /**
+   * Returns {@code true} if every value of the closed range {@code
+   * [lower..upper]} is in this set.
+   *
+   * @throws IllegalArgumentException if {@code lower > upper}
+   */
+  public boolean encloses(int lower, int upper) {
+    checkArgument(lower <= upper, "Invalid range: [%s..%s]", lower, upper);
+    int index = indexOf(lower);
+    return index >= 0 && upper <= uppers[index];
+  }
+
+  /**
+   * Returns the range of this set containing {@code value}, as a closed
+   * {@code Range}, or {@code null} if {@code value} is not in this set.
+   */
+  @Nullable
+  public Range<Integer> rangeContaining(int value) {
+    int index = indexOf(value);
+    return (index < 0) ? null : rangeAt(index);
+  }
+
+  /** Returns the number of disjoint ranges in this set. */
+  public int rangeCount() {
+    return lowers.length;
+  }
+
+  /** Returns {@code true} if this set contains no values. */
+  public boolean isEmpty() {
+    return lowers.length == 0;
+  }
+
+  /**
+   * Returns the least value of the {@code index}th range, in ascending order.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is negative or not
+   *     less than {@link #rangeCount}
+   */
+  public int lowerEndpoint(int index) {
+    checkElementIndex(index, lowers.length);
+    return lowers[index];
+  }
+
+  /**
+   * Returns the greatest value of the {@code index}th range, in ascending
+   * order.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is negative or not
+   *     less than {@link #rangeCount}
+   */
+  public int upperEndpoint(int index) {
+    checkElementIndex(index, lowers.length);
+    return uppers[index];
+  }
+
+  private Range<Integer> rangeAt(int index) {
+    return Ranges.closed(lowers[index], uppers[index]);
+  }
+
+  /** Returns the set of values in this set or in {@code other}. */
+  public IntRangeSet union(IntRangeSet other) {
+    if (other.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    return coalesce(merge(lowers, other.lowers), merge(uppers, other.uppers));
+  }
+
+  /** Merges two sorted arrays. */
+  private static int[] merge(int[] a, int[] b) {
+    int[] result = new int[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < a.length && j < b.length) {
+      result[k++] = (a[i] <= b[j]) ? a[i++] : b[j++];
+    }
+    System.arraycopy(a, i, result, k, a.length - i);
+    System.arraycopy(b, j, result, k + a.length - i, b.length - j);
+    return result;
+  }
+
+  /** Returns the set of values in both this set and {@code other}. */
+  public IntRangeSet intersection(IntRangeSet other) {
+    int capacity = lowers.length + other.lowers.length;
+    int[] resultLowers = new int[capacity];
+    int[] resultUppers = new int[capacity];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < lowers.length && j < other.lowers.length) {
+      int lower = Math.max(lowers[i], other.lowers[j]);
+      int upper = Math.min(uppers[i], other.uppers[j]);
+      if (lower <= upper) {
+        // Both inputs have gaps between ranges, so the pieces do too.
+        resultLowers[count] = lower;
+        resultUppers[count] = upper;
+        count++;
+      }
+      if (uppers[i] < other.uppers[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return create(resultLowers, resultUppers, count);
+  }
+
+  /** Returns the set of {@code int} values not in this set. */
+  public IntRangeSet complement() {
+    int n = lowers.length;
+    if (n == 0) {
+      return ALL;
+    }
+    int[] resultLowers = new int[n + 1];
+    int[] resultUppers = new int[n + 1];
+    int count = 0;
+    if (lowers[0] != Integer.MIN_VALUE) {
+      resultLowers[count] = Integer.MIN_VALUE;
+      resultUppers[count] = lowers[0] - 1;
+      count++;
+    }
+    for (int i = 1; i < n; i++) {
+      resultLowers[count] = uppers[i - 1] + 1;
+      resultUppers[count] = lowers[i] - 1;
+      count++;
+    }
+    if (uppers[n - 1] != Integer.MAX_VALUE) {
+      resultLowers[count] = uppers[n - 1] + 1;
+      resultUppers[count] = Integer.MAX_VALUE;
+      count++;
+    }
+    return create(resultLowers, resultUppers, count);
+  }
+
+  /** Returns the set of values in this set but not in {@code other}. */
+  public IntRangeSet difference(IntRangeSet other) {
+    return other.isEmpty() ? this : intersection(other.complement());
+  }
+
+  /**
+   * Returns the ranges of this set as closed {@code Range<Integer>} instances, in
+   * ascending order. The ranges are created on demand.
+   */
+  public Set<Range<Integer>> asRanges() {
+    return new AbstractSet<Range<Integer>>() {
+      @Override public Iterator<Range<Integer>> iterator() {
+        return new AbstractIndexedListIterator<Range<Integer>>(lowers.length) {
+          @Override protected Range<Integer> get(int index) {
+            return rangeAt(index);
+          }
+        };
+      }
+
+      @Override public int size() {
+        return lowers.length;
+      }
+    };
+  }
+
+  /** Returns a new {@code RangeSet} with the same values as this set. */
+  @GwtIncompatible("TreeRangeSet")
+  RangeSet<Integer> toRangeSet() {
+    RangeSet<Integer> result = TreeRangeSet.create();
+    for (int i = 0; i < lowers.length; i++) {
+      result.add(rangeAt(i));
+    }
+    return result;
+  }
+
+  @Override public boolean equals(@Nullable Object object) {
+    if (object instanceof IntRangeSet) {
+      IntRangeSet other = (IntRangeSet) object;
+      return Arrays.equals(lowers, other.lowers)
+          && Arrays.equals(uppers, other.uppers);
+    }
+    return false;
+  }
+
+  @Override public int hashCode() {
+    return 31 * Arrays.hashCode(lowers) + Arrays.hashCode(uppers);
+  }
+
+  /**
+   * Returns a string representation of this set: its ranges, each formatted
+   * by {@link Range#toString}, within braces.
+   */
+  @Override public String toString() {
+    StringBuilder builder = new StringBuilder().append('{');
+    for (int i = 0; i < lowers.length; i++) {
+      builder.append(rangeAt(i));
+    }
+    return builder.append('}').toString();
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,1267 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+import google.common.annotations.GwtIncompatible;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable set of {@code int} values stored as a compressed bitmap, in the
+ * manner of Roaring bitmaps, for large sets such as posting lists that are
+ * combined with {@link #and}, {@link #or} and {@link #andNot}.
+ *
+ * <p>The values are split by their upper 16 bits into chunks of up to 65536
+ * values, and each nonempty chunk is stored in whichever of three containers
+ * is smallest for its contents: a sorted {@code char[]} of the lower 16 bits
+ * (up to 4096 values), a bitmap of 1024 {@code long}s, or a sorted array of
+ * runs of consecutive values. Set operations combine only the chunks present
+ * in both operands, using word-wide operations on bitmaps and merges on
+ * arrays and runs, without boxing. {@link #andCardinality} counts an
+ * intersection without creating it, and {@link #rank} and {@link #select}
+ * take time proportional to one chunk, not the whole set.
+ *
+ * <p>A set can be read as a {@code Set<Integer>} through {@link #asSet}, and
+ * converted to and from the ranges of an {@link IntRangeSet} with {@link
+ * #toIntRangeSet} and {@link #copyOf(IntRangeSet)}. Values iterate in
+ * ascending signed order.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible
+public final class IntSet implements Serializable {
+  private static final IntSet EMPTY = new IntSet(new char[0], new Container[0], 0);
+
+  /** Returns the empty set. */
+  public static IntSet of() {
+    return EMPTY;
+  }
+
+  /** Returns a set of the given values. */
+  public static IntSet of(int... values) {
+    return builder().addAll(values).build();
+  }
+
+  /**
+   * Returns the set of values in the closed range {@code [lower‥upper]}.
+   *
+   * @throws IllegalArgumentException if {@code lower > upper}
+   */
+  public static IntSet closed(int lower, int upper) {
+    return copyOf(IntRangeSet.closed(lower, upper));
+  }
+
+  /** Returns a set of the values in {@code values}. */
+  public static IntSet copyOf(Iterable<Integer> values) {
+    if (values instanceof ValueSet) {
+      return ((ValueSet) values).set();
+    }
+    return builder().addAll(values).build();
+  }
+
+  /** Returns the set of values contained in the ranges of {@code ranges}. */
+  public static IntSet copyOf(IntRangeSet ranges) {
+    Assembler assembler = new Assembler(ranges.rangeCount());
+    int currentKey = -1;
+    char[] starts = new char[8];
+    char[] ends = new char[8];
+    int runCount = 0;
+    for (int i = 0; i < ranges.rangeCount(); i++) {
+      int lower = flip(ranges.lowerEndpoint(i));
+      int upper = flip(ranges.upperEndpoint(i));
+      int lowerKey = lower >>> 16;
+      int upperKey = upper >>> 16;
+      for (int key = lowerKey; key <= upperKey; key++) {
+        if (key != currentKey) {
+          if (runCount > 0) {
+            assembler.add(currentKey, fromRuns(starts, ends, runCount));
+          }
+          currentKey = key;
+          runCount = 0;
+        }
+        if (runCount == starts.length) {
+          starts = copyOf(starts, runCount * 2);
+          ends = copyOf(ends, runCount * 2);
+        }
+        starts[runCount] = (char) ((key == lowerKey) ? lower : 0);
+        ends[runCount] = (char) ((key == upperKey) ? upper : 0xFFFF);
+        runCount++;
+      }
+    }
+    if (runCount > 0) {
+      assembler.add(currentKey, fromRuns(starts, ends, runCount));
+    }
+    return assembler.build();
+  }
+
+  /** Returns the set of values contained in {@code rangeSet}. */
+  static IntSet copyOf(RangeSet<Integer> rangeSet) {
+    return copyOf(IntRangeSet.copyOf(rangeSet));
+  }
+
+  /** Returns a new builder. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for {@link IntSet} instances. Values may be added in any order
+   * and more than once; {@link #build} sorts them in {@code O(n log n)} time
+   * without boxing.
+   *
+   * @since 14.0
+   */
+  public static final class Builder {
+    private int[] values = new int[16];
+    private int count;
+    @Nullable private IntRangeSet.Builder ranges;
+
+    Builder() {}
+
+    /** Adds {@code value}. */
+    public Builder add(int value) {
+      if (count == values.length) {
+        values = copyOf(values,
+            ImmutableCollection.Builder.expandedCapacity(count, count + 1));
+      }
+      values[count++] = value;
+      return this;
+    }
+
+    /**
+     * Adds the values in the closed range {@code [lower‥upper]}, which are
+     * stored as runs rather than one at a time.
+     *
+     * @throws IllegalArgumentException if {@code lower > upper}
+     */
+    public Builder add(int lower, int upper) {
+      if (ranges == null) {
+        ranges = IntRangeSet.builder();
+      }
+      ranges.add(lower, upper);
+      return this;
+    }
+
+    /** Adds each of {@code values}. */
+    public Builder addAll(int... values) {
+      for (int value : values) {
+        add(value);
+      }
+      return this;
+    }
+
+    /** Adds each of {@code values}. */
+    public Builder addAll(Iterable<Integer> values) {
+      for (Integer value : values) {
+        add(value);
+      }
+      return this;
+    }
+
+    /** Adds the values of {@code set}. */
+    public Builder addAll(IntSet set) {
+      if (ranges == null) {
+        ranges = IntRangeSet.builder();
+      }
+      ranges.addAll(set.toIntRangeSet());
+      return this;
+    }
+
+    /** Returns a set of all the values added so far. */
+    public IntSet build() {
+      int[] sorted = copyOf(values, count);
+      // signed order is the order of the flipped values compared as unsigned
+      Arrays.sort(sorted);
+      Assembler assembler = new Assembler(8);
+      char[] lows = new char[Math.min(count, CHUNK_SIZE)];
+      for (int i = 0; i < count; ) {
+        int key = flip(sorted[i]) >>> 16;
+        int lowCount = 0;
+        for (; i < count && (flip(sorted[i]) >>> 16) == key; i++) {
+          char low = (char) flip(sorted[i]);
+          if (lowCount == 0 || lows[lowCount - 1] != low) {
+            lows[lowCount++] = low;
+          }
+        }
+        assembler.add(key, fromSortedArray(lows, lowCount));
+      }
+      IntSet result = assembler.build();
+      return (ranges == null) ? result : result.or(copyOf(ranges.build()));
+    }
+  }
+
+  private static final int CHUNK_SIZE = 1 << 16;
+  // the largest array container, which is as large as a bitmap container
+  private static final int MAX_ARRAY_SIZE = 4096;
+  private static final int BITMAP_WORDS = CHUNK_SIZE / 64;
+
+  /**
+   * Maps a value to an int that, compared as unsigned, orders like the value
+   * does as signed, and back.
+   */
+  private static int flip(int value) {
+    return value ^ Integer.MIN_VALUE;
+  }
+
+  // upper 16 bits of the flipped values of each chunk, in ascending order
+  private final char[] keys;
+  private final Container[] containers;
+  // number of values in the chunks before each chunk, and in all of them
+  private final long[] cumulativeCardinalities;
+
+  private IntSet(char[] keys, Container[] containers, int size) {
+    this.keys = keys;
+    this.containers = containers;
+    this.cumulativeCardinalities = new long[size + 1];
+    for (int i = 0; i < size; i++) {
+      cumulativeCardinalities[i + 1] =
+          cumulativeCardinalities[i] + containers[i].cardinality();
+    }
+  }
+
+  /** Collects the chunks of a new set in ascending key order. */
+  private static final class Assembler {
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    Assembler(int expectedSize) {
+      keys = new char[Math.max(expectedSize, 1)];
+      containers = new Container[keys.length];
+    }
+
+    /** Adds a chunk, unless {@code container} is null for an empty chunk. */
+    void add(int key, @Nullable Container container) {
+      if (container == null) {
+        return;
+      }
+      if (size == keys.length) {
+        int newCapacity = ImmutableCollection.Builder.expandedCapacity(size, size + 1);
+        keys = copyOf(keys, newCapacity);
+        containers = ObjectArrays.arraysCopyOf(containers, newCapacity);
+      }
+      keys[size] = (char) key;
+      containers[size] = container;
+      size++;
+    }
+
+    IntSet build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      if (size < keys.length) {
+        keys = copyOf(keys, size);
+        containers = ObjectArrays.arraysCopyOf(containers, size);
+      }
+      return new IntSet(keys, containers, size);
+    }
+  }
+
+  // Queries
+
+  /** Returns {@code true} if this set contains {@code value}. */
+  public boolean contains(int value) {
+    int flipped = flip(value);
+    int index = Arrays.binarySearch(keys, (char) (flipped >>> 16));
+    return index >= 0 && containers[index].contains(flipped & 0xFFFF);
+  }
+
+  /** Returns the number of values in this set, which may exceed {@code Integer.MAX_VALUE}. */
+  public long cardinality() {
+    return cumulativeCardinalities[keys.length];
+  }
+
+  /** Returns {@code true} if this set contains no values. */
+  public boolean isEmpty() {
+    return keys.length == 0;
+  }
+
+  /**
+   * Returns the number of values in this set that are less than or equal to
+   * {@code value}.
+   */
+  public long rank(int value) {
+    int flipped = flip(value);
+    int index = Arrays.binarySearch(keys, (char) (flipped >>> 16));
+    if (index < 0) {
+      return cumulativeCardinalities[-index - 1];
+    }
+    return cumulativeCardinalities[index] + containers[index].rank(flipped & 0xFFFF);
+  }
+
+  /**
+   * Returns the value at position {@code index} when the values of this set
+   * are in ascending order, so that {@code select(rank(v) - 1) == v} for every
+   * {@code v} in the set.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is negative or not less
+   *     than {@link #cardinality}
+   */
+  public int select(long index) {
+    if (index < 0 || index >= cardinality()) {
+      throw new IndexOutOfBoundsException(
+          "index (" + index + ") must be less than cardinality (" + cardinality() + ")");
+    }
+    // the last chunk whose values start at or before the index
+    int chunk = Arrays.binarySearch(cumulativeCardinalities, index);
+    chunk = (chunk >= 0) ? chunk : -chunk - 2;
+    // chunks are never empty, so an exact match is the chunk that starts there
+    int low = containers[chunk].select((int) (index - cumulativeCardinalities[chunk]));
+    return flip((keys[chunk] << 16) | low);
+  }
+
+  // Set operations
+
+  /** Returns the set of values in both this set and {@code other}. */
+  public IntSet and(IntSet other) {
+    Assembler assembler = new Assembler(Math.min(keys.length, other.keys.length));
+    for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        assembler.add(keys[i], and(containers[i], other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return assembler.build();
+  }
+
+  /** Returns the set of values in this set or {@code other}. */
+  public IntSet or(IntSet other) {
+    if (other.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    Assembler assembler = new Assembler(keys.length + other.keys.length);
+    int i = 0;
+    int j = 0;
+    while (i < keys.length || j < other.keys.length) {
+      if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+        assembler.add(keys[i], containers[i]);
+        i++;
+      } else if (i == keys.length || keys[i] > other.keys[j]) {
+        assembler.add(other.keys[j], other.containers[j]);
+        j++;
+      } else {
+        assembler.add(keys[i], or(containers[i], other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return assembler.build();
+  }
+
+  /** Returns the set of values in this set but not in {@code other}. */
+  public IntSet andNot(IntSet other) {
+    if (other.isEmpty()) {
+      return this;
+    }
+    Assembler assembler = new Assembler(keys.length);
+    for (int i = 0, j = 0; i < keys.length; i++) {
+      while (j < other.keys.length && other.keys[j] < keys[i]) {
+        j++;
+      }
+      if (j < other.keys.length && other.keys[j] == keys[i]) {
+        assembler.add(keys[i], andNot(containers[i], other.containers[j]));
+      } else {
+        assembler.add(keys[i], containers[i]);
+      }
+    }
+    return assembler.build();
+  }
+
+  /**
+   * Returns the number of values in both this set and {@code other}, which
+   * is {@code and(other).cardinality()}, without creating the intersection.
+   */
+  public long andCardinality(IntSet other) {
+    long result = 0;
+    for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        result += andCardinality(containers[i], other.containers[j]);
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /** Returns {@code true} if this set and {@code other} have a value in common. */
+  public boolean intersects(IntSet other) {
+    for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else if (andCardinality(containers[i], other.containers[j]) > 0) {
+        return true;
+      } else {
+        i++;
+        j++;
+      }
+    }
+    return false;
+  }
+
+  // Conversions
+
+  /**
+   * Returns the values of this set in ascending order.
+   *
+   * @throws IllegalStateException if this set has more values than an array
+   *     can hold
+   */
+  public int[] toArray() {
+    long cardinality = cardinality();
+    if (cardinality > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("too many values for an array: " + cardinality);
+    }
+    int[] result = new int[(int) cardinality];
+    int offset = 0;
+    for (int i = 0; i < keys.length; i++) {
+      offset = containers[i].fill(result, offset, keys[i] << 16);
+    }
+    return result;
+  }
+
+  /**
+   * Returns an unmodifiable view of this set as a {@code Set<Integer>}, which
+   * iterates in ascending order. Its {@code contains} method does not box.
+   * If this set has more than {@code Integer.MAX_VALUE} values, the view's
+   * {@code size()} is {@code Integer.MAX_VALUE}.
+   */
+  public Set<Integer> asSet() {
+    return new ValueSet();
+  }
+
+  private final class ValueSet extends AbstractSet<Integer> {
+    IntSet set() {
+      return IntSet.this;
+    }
+
+    @Override public boolean contains(@Nullable Object object) {
+      return (object instanceof Integer) && IntSet.this.contains((Integer) object);
+    }
+
+    @Override public int size() {
+      return (int) Math.min(cardinality(), Integer.MAX_VALUE);
+    }
+
+    @Override public boolean isEmpty() {
+      return IntSet.this.isEmpty();
+    }
+
+    @Override public Iterator<Integer> iterator() {
+      return new UnmodifiableIterator<Integer>() {
+        // the values of one chunk at a time
+        private int[] buffer = new int[0];
+        private int position;
+        private int limit;
+        private int chunk;
+
+        public boolean hasNext() {
+          while (position == limit && chunk < keys.length) {
+            Container container = containers[chunk];
+            if (buffer.length < container.cardinality()) {
+              buffer = new int[container.cardinality()];
+            }
+            limit = container.fill(buffer, 0, keys[chunk] << 16);
+            position = 0;
+            chunk++;
+          }
+          return position < limit;
+        }
+
+        public Integer next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return buffer[position++];
+        }
+      };
+    }
+  }
+
+  /**
+   * Returns the values of this set as the union of disjoint ranges. Runs of
+   * consecutive values become single ranges.
+   */
+  public IntRangeSet toIntRangeSet() {
+    IntRangeSet.Builder builder = IntRangeSet.builder();
+    for (int i = 0; i < keys.length; i++) {
+      containers[i].addRanges(builder, keys[i] << 16);
+    }
+    return builder.build();
+  }
+
+  /** Returns a new {@code RangeSet} with the same values as this set. */
+  @GwtIncompatible("TreeRangeSet")
+  RangeSet<Integer> toRangeSet() {
+    return toIntRangeSet().toRangeSet();
+  }
+
+  /**
+   * Returns {@code true} if {@code object} is an {@code IntSet} with the same
+   * values. Every set of values has exactly one representation, so this
+   * compares containers directly.
+   */
+  @Override public boolean equals(@Nullable Object object) {
+    if (object instanceof IntSet) {
+      IntSet other = (IntSet) object;
+      return Arrays.equals(keys, other.keys)
+          && Arrays.equals(containers, other.containers);
+    }
+    return false;
+  }
+
+  @Override public int hashCode() {
+    return 31 * Arrays.hashCode(keys) + Arrays.hashCode(containers);
+  }
+
+  /**
+   * Returns a string representation of the ranges of this set, such as {@code
+   * "{[1‥3][5‥5]}"}.
+   */
+  @Override public String toString() {
+    return toIntRangeSet().toString();
+  }
+
+  // Containers
+
+  /**
+   * The lower 16 bits of the values of one chunk, of which there is at least
+   * one. The containers for the same values are always of the same kind, so
+   * that equal containers are equal arrays.
+   */
+  abstract static class Container implements Serializable {
+    abstract int cardinality();
+
+    abstract boolean contains(int low);
+
+    /** Returns the number of values less than or equal to {@code low}. */
+    abstract int rank(int low);
+
+    /** Returns the value at position {@code index}, in ascending order. */
+    abstract int select(int index);
+
+    /** Sets the bits of the values of this container in {@code bits}. */
+    abstract void orInto(long[] bits);
+
+    /** Clears the bits of the values of this container in {@code bits}. */
+    abstract void andNotFrom(long[] bits);
+
+    /**
+     * Stores the values {@code flip(high | low)} in {@code dest}, starting at
+     * {@code offset}, and returns the offset after the last one.
+     */
+    abstract int fill(int[] dest, int offset, int high);
+
+    /** Adds the values {@code flip(high | low)} to {@code builder} as ranges. */
+    abstract void addRanges(IntRangeSet.Builder builder, int high);
+
+    /** Returns a new bitmap of the values of this container. */
+    long[] toBitmap() {
+      long[] bits = new long[BITMAP_WORDS];
+      orInto(bits);
+      return bits;
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static final class ArrayContainer extends Container {
+    final char[] values;
+
+    ArrayContainer(char[] values) {
+      this.values = values;
+    }
+
+    int cardinality() {
+      return values.length;
+    }
+
+    boolean contains(int low) {
+      return Arrays.binarySearch(values, (char) low) >= 0;
+    }
+
+    int rank(int low) {
+      int index = Arrays.binarySearch(values, (char) low);
+      return (index >= 0) ? index + 1 : -index - 1;
+    }
+
+    int select(int index) {
+      return values[index];
+    }
+
+    void orInto(long[] bits) {
+      for (char value : values) {
+        bits[value >>> 6] |= 1L << value;
+      }
+    }
+
+    void andNotFrom(long[] bits) {
+      for (char value : values) {
+        bits[value >>> 6] &= ~(1L << value);
+      }
+    }
+
+    int fill(int[] dest, int offset, int high) {
+      for (char value : values) {
+        dest[offset++] = flip(high | value);
+      }
+      return offset;
+    }
+
+    void addRanges(IntRangeSet.Builder builder, int high) {
+      for (int i = 0; i < values.length; ) {
+        int start = values[i];
+        int end = start;
+        for (i++; i < values.length && values[i] == end + 1; i++) {
+          end++;
+        }
+        builder.add(flip(high | start), flip(high | end));
+      }
+    }
+
+    @Override public boolean equals(@Nullable Object object) {
+      return (object instanceof ArrayContainer)
+          && Arrays.equals(values, ((ArrayContainer) object).values);
+    }
+
+    @Override public int hashCode() {
+      return Arrays.hashCode(values);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static final class BitmapContainer extends Container {
+    final long[] bits;
+    final int cardinality;
+
+    BitmapContainer(long[] bits, int cardinality) {
+      this.bits = bits;
+      this.cardinality = cardinality;
+    }
+
+    int cardinality() {
+      return cardinality;
+    }
+
+    boolean contains(int low) {
+      return (bits[low >>> 6] & (1L << low)) != 0;
+    }
+
+    int rank(int low) {
+      int word = low >>> 6;
+      int result = 0;
+      for (int i = 0; i < word; i++) {
+        result += Long.bitCount(bits[i]);
+      }
+      // bits 0 through low % 64 of the last word
+      return result + Long.bitCount(bits[word] & ((2L << low) - 1));
+    }
+
+    int select(int index) {
+      for (int i = 0; ; i++) {
+        long word = bits[i];
+        int count = Long.bitCount(word);
+        if (index < count) {
+          for (; index > 0; index--) {
+            word &= word - 1;
+          }
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        index -= count;
+      }
+    }
+
+    void orInto(long[] bits) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        bits[i] |= this.bits[i];
+      }
+    }
+
+    void andNotFrom(long[] bits) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        bits[i] &= ~this.bits[i];
+      }
+    }
+
+    @Override long[] toBitmap() {
+      return bits.clone();
+    }
+
+    int fill(int[] dest, int offset, int high) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        for (long word = bits[i]; word != 0; word &= word - 1) {
+          dest[offset++] = flip(high | (i << 6) | Long.numberOfTrailingZeros(word));
+        }
+      }
+      return offset;
+    }
+
+    void addRanges(IntRangeSet.Builder builder, int high) {
+      // adjacent single-value ranges are coalesced by the builder
+      char[] starts = new char[runCount(bits)];
+      char[] ends = new char[starts.length];
+      runs(bits, starts, ends);
+      for (int i = 0; i < starts.length; i++) {
+        builder.add(flip(high | starts[i]), flip(high | ends[i]));
+      }
+    }
+
+    @Override public boolean equals(@Nullable Object object) {
+      return (object instanceof BitmapContainer)
+          && Arrays.equals(bits, ((BitmapContainer) object).bits);
+    }
+
+    @Override public int hashCode() {
+      return Arrays.hashCode(bits);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static final class RunContainer extends Container {
+    // first and last value of each run, in ascending order, with gaps between runs
+    final char[] starts;
+    final char[] ends;
+    final int cardinality;
+
+    RunContainer(char[] starts, char[] ends, int cardinality) {
+      this.starts = starts;
+      this.ends = ends;
+      this.cardinality = cardinality;
+    }
+
+    int cardinality() {
+      return cardinality;
+    }
+
+    /** Returns the index of the last run starting at or before {@code low}, or -1. */
+    private int runIndex(int low) {
+      int index = Arrays.binarySearch(starts, (char) low);
+      return (index >= 0) ? index : -index - 2;
+    }
+
+    boolean contains(int low) {
+      int index = runIndex(low);
+      return index >= 0 && low <= ends[index];
+    }
+
+    int rank(int low) {
+      int index = runIndex(low);
+      if (index < 0) {
+        return 0;
+      }
+      int result = 0;
+      for (int i = 0; i < index; i++) {
+        result += ends[i] - starts[i] + 1;
+      }
+      return result + Math.min(low, ends[index]) - starts[index] + 1;
+    }
+
+    int select(int index) {
+      for (int i = 0; ; i++) {
+        int length = ends[i] - starts[i] + 1;
+        if (index < length) {
+          return starts[i] + index;
+        }
+        index -= length;
+      }
+    }
+
+    void orInto(long[] bits) {
+      for (int i = 0; i < starts.length; i++) {
+        setRange(bits, starts[i], ends[i]);
+      }
+    }
+
+    void andNotFrom(long[] bits) {
+      for (int i = 0; i < starts.length; i++) {
+        clearRange(bits, starts[i], ends[i]);
+      }
+    }
+
+    int fill(int[] dest, int offset, int high) {
+      for (int i = 0; i < starts.length; i++) {
+        for (int low = starts[i]; low <= ends[i]; low++) {
+          dest[offset++] = flip(high | low);
+        }
+      }
+      return offset;
+    }
+
+    void addRanges(IntRangeSet.Builder builder, int high) {
+      for (int i = 0; i < starts.length; i++) {
+        builder.add(flip(high | starts[i]), flip(high | ends[i]));
+      }
+    }
+
+    @Override public boolean equals(@Nullable Object object) {
+      if (object instanceof RunContainer) {
+        RunContainer other = (RunContainer) object;
+        return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+      }
+      return false;
+    }
+
+    @Override public int hashCode() {
+      return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  // Container construction, always through the smallest representation
+
+  private static final int RUN = 0;
+  private static final int ARRAY = 1;
+  private static final int BITMAP = 2;
+
+  /** Returns the smallest kind of container for the given contents. */
+  private static int chooseKind(int cardinality, int runCount) {
+    int arrayBytes = (cardinality <= MAX_ARRAY_SIZE) ? 2 * cardinality : Integer.MAX_VALUE;
+    int bitmapBytes = BITMAP_WORDS * 8;
+    int runBytes = 4 * runCount;
+    if (runBytes <= arrayBytes && runBytes <= bitmapBytes) {
+      return RUN;
+    }
+    return (arrayBytes <= bitmapBytes) ? ARRAY : BITMAP;
+  }
+
+  /**
+   * Returns a container of the first {@code count} values of a sorted array
+   * without duplicates, or null if {@code count} is zero.
+   */
+  @Nullable private static Container fromSortedArray(char[] values, int count) {
+    if (count == 0) {
+      return null;
+    }
+    int runCount = 1;
+    for (int i = 1; i < count; i++) {
+      if (values[i] != values[i - 1] + 1) {
+        runCount++;
+      }
+    }
+    switch (chooseKind(count, runCount)) {
+      case RUN:
+        char[] starts = new char[runCount];
+        char[] ends = new char[runCount];
+        int run = 0;
+        starts[0] = values[0];
+        for (int i = 1; i < count; i++) {
+          if (values[i] != values[i - 1] + 1) {
+            ends[run++] = values[i - 1];
+            starts[run] = values[i];
+          }
+        }
+        ends[run] = values[count - 1];
+        return new RunContainer(starts, ends, count);
+      case ARRAY:
+        return new ArrayContainer(copyOf(values, count));
+      default:
+        long[] bits = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+          bits[values[i] >>> 6] |= 1L << values[i];
+        }
+        return new BitmapContainer(bits, count);
+    }
+  }
+
+  /**
+   * Returns a container of the set bits of {@code bits}, which it may keep, or
+   * null if none are set.
+   */
+  @Nullable private static Container fromBitmap(long[] bits) {
+    int cardinality = 0;
+    for (long word : bits) {
+      cardinality += Long.bitCount(word);
+    }
+    if (cardinality == 0) {
+      return null;
+    }
+    int runCount = runCount(bits);
+    switch (chooseKind(cardinality, runCount)) {
+      case RUN:
+        char[] starts = new char[runCount];
+        char[] ends = new char[runCount];
+        runs(bits, starts, ends);
+        return new RunContainer(starts, ends, cardinality);
+      case ARRAY:
+        char[] values = new char[cardinality];
+        int count = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          for (long word = bits[i]; word != 0; word &= word - 1) {
+            values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+          }
+        }
+        return new ArrayContainer(values);
+      default:
+        return new BitmapContainer(bits, cardinality);
+    }
+  }
+
+  /**
+   * Returns a container of the first {@code count} runs of the given arrays,
+   * which must be sorted with gaps between runs, or null if {@code count} is
+   * zero.
+   */
+  @Nullable private static Container fromRuns(char[] starts, char[] ends, int count) {
+    if (count == 0) {
+      return null;
+    }
+    int cardinality = 0;
+    for (int i = 0; i < count; i++) {
+      cardinality += ends[i] - starts[i] + 1;
+    }
+    switch (chooseKind(cardinality, count)) {
+      case RUN:
+        return new RunContainer(copyOf(starts, count), copyOf(ends, count), cardinality);
+      case ARRAY:
+        char[] values = new char[cardinality];
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+          for (int low = starts[i]; low <= ends[i]; low++) {
+            values[index++] = (char) low;
+          }
+        }
+        return new ArrayContainer(values);
+      default:
+        long[] bits = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+          setRange(bits, starts[i], ends[i]);
+        }
+        return new BitmapContainer(bits, cardinality);
+    }
+  }
+
+  /** Returns the number of runs of consecutive set bits. */
+  private static int runCount(long[] bits) {
+    int count = 0;
+    long previous = 0;
+    for (long word : bits) {
+      // bits that are set but whose lower neighbor is not
+      count += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+      previous = word;
+    }
+    return count;
+  }
+
+  /** Stores the first and last bit of each run of set bits. */
+  private static void runs(long[] bits, char[] starts, char[] ends) {
+    int run = 0;
+    int low = 0;
+    while (low < CHUNK_SIZE) {
+      int start = nextBit(bits, low, true);
+      if (start == CHUNK_SIZE) {
+        break;
+      }
+      int end = nextBit(bits, start, false);
+      starts[run] = (char) start;
+      ends[run] = (char) (end - 1);
+      run++;
+      low = end;
+    }
+  }
+
+  /**
+   * Returns the first bit at or after {@code from} that is set, or clear if
+   * {@code set} is false, or {@link #CHUNK_SIZE} if there is none.
+   */
+  private static int nextBit(long[] bits, int from, boolean set) {
+    int i = from >>> 6;
+    long word = (set ? bits[i] : ~bits[i]) & (-1L << from);
+    while (word == 0) {
+      if (++i == BITMAP_WORDS) {
+        return CHUNK_SIZE;
+      }
+      word = set ? bits[i] : ~bits[i];
+    }
+    return (i << 6) + Long.numberOfTrailingZeros(word);
+  }
+
+  private static void setRange(long[] bits, int start, int end) {
+    int first = start >>> 6;
+    int last = end >>> 6;
+    long firstMask = -1L << start;
+    long lastMask = -1L >>> (63 - (end & 63));
+    if (first == last) {
+      bits[first] |= firstMask & lastMask;
+      return;
+    }
+    bits[first] |= firstMask;
+    for (int i = first + 1; i < last; i++) {
+      bits[i] = -1L;
+    }
+    bits[last] |= lastMask;
+  }
+
+  private static void clearRange(long[] bits, int start, int end) {
+    int first = start >>> 6;
+    int last = end >>> 6;
+    long firstMask = -1L << start;
+    long lastMask = -1L >>> (63 - (end & 63));
+    if (first == last) {
+      bits[first] &= ~(firstMask & lastMask);
+      return;
+    }
+    bits[first] &= ~firstMask;
+    for (int i = first + 1; i < last; i++) {
+      bits[i] = 0;
+    }
+    bits[last] &= ~lastMask;
+  }
+
+  // Container operations; each returns null for an empty result
+
+  @Nullable private static Container and(Container a, Container b) {
+    if (a instanceof ArrayContainer) {
+      return filter((ArrayContainer) a, b, true);
+    } else if (b instanceof ArrayContainer) {
+      return filter((ArrayContainer) b, a, true);
+    } else if (a instanceof RunContainer && b instanceof RunContainer) {
+      return andRuns((RunContainer) a, (RunContainer) b);
+    }
+    long[] bits = a.toBitmap();
+    if (b instanceof BitmapContainer) {
+      long[] other = ((BitmapContainer) b).bits;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        bits[i] &= other[i];
+      }
+    } else {
+      long[] other = b.toBitmap();
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        bits[i] &= other[i];
+      }
+    }
+    return fromBitmap(bits);
+  }
+
+  @Nullable private static Container or(Container a, Container b) {
+    if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+      return orArrays((ArrayContainer) a, (ArrayContainer) b);
+    } else if (a instanceof RunContainer && b instanceof RunContainer) {
+      return orRuns((RunContainer) a, (RunContainer) b);
+    }
+    long[] bits = a.toBitmap();
+    b.orInto(bits);
+    return fromBitmap(bits);
+  }
+
+  @Nullable private static Container andNot(Container a, Container b) {
+    if (a instanceof ArrayContainer) {
+      return filter((ArrayContainer) a, b, false);
+    }
+    long[] bits = a.toBitmap();
+    b.andNotFrom(bits);
+    return fromBitmap(bits);
+  }
+
+  private static int andCardinality(Container a, Container b) {
+    if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+      char[] x = ((ArrayContainer) a).values;
+      char[] y = ((ArrayContainer) b).values;
+      if (x.length > y.length) {
+        char[] t = x;
+        x = y;
+        y = t;
+      }
+      int count = 0;
+      if (y.length > 16 * x.length) {
+        for (char value : x) {
+          if (Arrays.binarySearch(y, value) >= 0) {
+            count++;
+          }
+        }
+        return count;
+      }
+      for (int i = 0, j = 0; i < x.length && j < y.length; ) {
+        if (x[i] < y[j]) {
+          i++;
+        } else if (x[i] > y[j]) {
+          j++;
+        } else {
+          count++;
+          i++;
+          j++;
+        }
+      }
+      return count;
+    } else if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+      ArrayContainer array = (ArrayContainer) ((a instanceof ArrayContainer) ? a : b);
+      Container other = (array == a) ? b : a;
+      int count = 0;
+      for (char value : array.values) {
+        if (other.contains(value)) {
+          count++;
+        }
+      }
+      return count;
+    }
+    long[] x = (a instanceof BitmapContainer) ? ((BitmapContainer) a).bits : a.toBitmap();
+    long[] y = (b instanceof BitmapContainer) ? ((BitmapContainer) b).bits : b.toBitmap();
+    int count = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      count += Long.bitCount(x[i] & y[i]);
+    }
+    return count;
+  }
+
+  /** Returns the values of {@code a} that {@code b} contains, or does not contain. */
+  @Nullable private static Container filter(ArrayContainer a, Container b, boolean contained) {
+    char[] values = a.values;
+    char[] result = new char[values.length];
+    int count = 0;
+    if (contained && b instanceof ArrayContainer
+        && ((ArrayContainer) b).values.length <= 16 * values.length) {
+      // merge two arrays of similar size
+      char[] other = ((ArrayContainer) b).values;
+      for (int i = 0, j = 0; i < values.length && j < other.length; ) {
+        if (values[i] < other[j]) {
+          i++;
+        } else if (values[i] > other[j]) {
+          j++;
+        } else {
+          result[count++] = values[i];
+          i++;
+          j++;
+        }
+      }
+    } else {
+      for (char value : values) {
+        if (b.contains(value) == contained) {
+          result[count++] = value;
+        }
+      }
+    }
+    return fromSortedArray(result, count);
+  }
+
+  @Nullable private static Container orArrays(ArrayContainer a, ArrayContainer b) {
+    char[] x = a.values;
+    char[] y = b.values;
+    if (x.length + y.length > MAX_ARRAY_SIZE) {
+      long[] bits = a.toBitmap();
+      b.orInto(bits);
+      return fromBitmap(bits);
+    }
+    char[] result = new char[x.length + y.length];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < x.length && j < y.length) {
+      if (x[i] < y[j]) {
+        result[count++] = x[i++];
+      } else if (x[i] > y[j]) {
+        result[count++] = y[j++];
+      } else {
+        result[count++] = x[i++];
+        j++;
+      }
+    }
+    while (i < x.length) {
+      result[count++] = x[i++];
+    }
+    while (j < y.length) {
+      result[count++] = y[j++];
+    }
+    return fromSortedArray(result, count);
+  }
+
+  @Nullable private static Container andRuns(RunContainer a, RunContainer b) {
+    char[] starts = new char[a.starts.length + b.starts.length];
+    char[] ends = new char[starts.length];
+    int count = 0;
+    for (int i = 0, j = 0; i < a.starts.length && j < b.starts.length; ) {
+      int start = Math.max(a.starts[i], b.starts[j]);
+      int end = Math.min(a.ends[i], b.ends[j]);
+      if (start <= end) {
+        starts[count] = (char) start;
+        ends[count] = (char) end;
+        count++;
+      }
+      if (a.ends[i] < b.ends[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return fromRuns(starts, ends, count);
+  }
+
+  @Nullable private static Container orRuns(RunContainer a, RunContainer b) {
+    char[] starts = new char[a.starts.length + b.starts.length];
+    char[] ends = new char[starts.length];
+    int count = 0;
+    for (int i = 0, j = 0; i < a.starts.length || j < b.starts.length; ) {
+      int start;
+      int end;
+      if (j == b.starts.length || (i < a.starts.length && a.starts[i] <= b.starts[j])) {
+        start = a.starts[i];
+        end = a.ends[i];
+        i++;
+      } else {
+        start = b.starts[j];
+        end = b.ends[j];
+        j++;
+      }
+      // merge with the previous run if they overlap or touch
+      if (count > 0 && start <= ends[count - 1] + 1) {
+        ends[count - 1] = (char) Math.max(ends[count - 1], end);
+      } else {
+        starts[count] = (char) start;
+        ends[count] = (char) end;
+        count++;
+      }
+    }
+    return fromRuns(starts, ends, count);
+  }
+
+  private static char[] copyOf(char[] array, int length) {
+    char[] result = new char[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  private static int[] copyOf(int[] array, int length) {
+    int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -1056,6 +1056,36 @@ public final class Iterables {
     return new UnmodifiableIterable<T>(iterable);
   }
 
+  /**
+   * Returns an iterable over the merged contents of all given
+   * {@code iterables} in which each run of equivalent elements is collapsed
+   * into one, as described in {@link Iterators#mergeSorted(Iterable,
+   * Comparator, Function)}.
+   *
+   * <p>Callers must ensure that the source {@code iterables} are in
+   * non-descending order as this method does not sort its input.
+   *
+   * @since 14.0
+   */
+  @Beta
+  public static <T> Iterable<T> mergeSorted(
+      final Iterable<? extends Iterable<? extends T>> iterables,
+      final Comparator<? super T> comparator,
+      final Function<? super List<T>, ? extends T> combiner) {
+    checkNotNull(iterables, "iterables");
+    checkNotNull(comparator, "comparator");
+    checkNotNull(combiner, "combiner");
+    Iterable<T> iterable = new FluentIterable<T>() {
+      
+      public Iterator<T> iterator() {
+        return Iterators.mergeSorted(
+            Iterables.transform(iterables, Iterables.<T>toIterator()),
+            comparator, combiner);
+      }
+    };
+    return new UnmodifiableIterable<T>(iterable);
+  }
+
   // TODO(user): Is this the best place for this? Move to fluent functions?
   // Useful as a public method?
   private static <T> Function<Iterable<? extends T>, Iterator<? extends T>>
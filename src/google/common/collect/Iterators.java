@@ -1345,6 +1345,10 @@ public final class Iterators {
    * <p>For any equivalent elements across all {@code iterators}, it is
    * undefined which element is returned first.
    *
+   * <p>Each element takes about {@code log(M)} comparisons, where M is the
+   * number of iterators. Merges of many iterators use a loser tree, which
+   * needs no allocation per element and half the comparisons of a heap.
+   *
    * @since 11.0
    */
   @Beta
@@ -1354,9 +1358,51 @@ public final class Iterators {
     checkNotNull(iterators, "iterators");
     checkNotNull(comparator, "comparator");
 
-    return new MergingIterator<T>(iterators, comparator);
+    List<Iterator<? extends T>> nonEmpty = Lists.newArrayList();
+    for (Iterator<? extends T> iterator : iterators) {
+      if (iterator.hasNext()) {
+        nonEmpty.add(iterator);
+      }
+    }
+    if (nonEmpty.size() >= LOSER_TREE_THRESHOLD) {
+      return new LoserTreeIterator<T>(nonEmpty, comparator);
+    }
+    return new MergingIterator<T>(nonEmpty, comparator);
+  }
+
+  /**
+   * Returns an iterator over the merged contents of all given
+   * {@code iterators} in which each run of equivalent elements is collapsed
+   * into one. The elements of a run of two or more, in the order the merge
+   * produced them, are passed to {@code combiner} and its result is returned
+   * in their place; an element with no equivalents is returned unchanged.
+   * For example, merging sorted runs of word counts with a combiner that sums
+   * the counts yields one total per word.
+   *
+   * <p>Callers must ensure that the source {@code iterators} are in
+   * non-descending order as this method does not sort its input. The results
+   * of {@code combiner} are not compared again, so a combiner that returns
+   * an element not equivalent to its inputs may leave the output unsorted.
+   *
+   * @since 14.0
+   */
+  @Beta
+  public static <T> UnmodifiableIterator<T> mergeSorted(
+      Iterable<? extends Iterator<? extends T>> iterators,
+      Comparator<? super T> comparator,
+      Function<? super List<T>, ? extends T> combiner) {
+    checkNotNull(combiner, "combiner");
+    return new CombiningIterator<T>(
+        peekingIterator(mergeSorted(iterators, comparator)),
+        comparator, combiner);
   }
 
+  /**
+   * Merges of at least this many non-empty iterators use a {@link
+   * LoserTreeIterator}; for fewer, a heap has less setup cost.
+   */
+  static final int LOSER_TREE_THRESHOLD = 8;
+
   /**
    * An iterator that performs a lazy N-way merge, calculating the next value
    * each time the iterator is polled. This amortizes the sorting cost over the
@@ -1410,6 +1456,136 @@ public final class Iterators {
     }
   }
 
+  /**
+   * A lazy N-way merge over a loser tree (tournament tree). Each internal node
+   * of the tree remembers which of its two subtrees lost the last match, and
+   * the overall winner is kept apart. After the winner's source advances, only
+   * the matches on the path from its leaf to the root are replayed, which
+   * takes exactly ceil(log2(M)) comparisons, where a heap takes up to twice
+   * that. The tree is a pair of arrays, so no objects are created per element.
+   *
+   * <p>Ties are broken by source index, so equivalent elements come out in
+   * the order of their iterators.
+   */
+  private static final class LoserTreeIterator<T> extends AbstractIterator<T> {
+    final Comparator<? super T> comparator;
+    final Iterator<? extends T>[] sources;
+    // the current element of each source, valid unless it is exhausted
+    final Object[] heads;
+    final boolean[] exhausted;
+    /*
+     * tree[0] is the source of the overall winner; tree[n] for n in [1, M) is
+     * the source that lost the match at internal node n. The children of node
+     * n are 2n and 2n + 1, and the leaf of source i is node M + i.
+     */
+    final int[] tree;
+
+    LoserTreeIterator(List<Iterator<? extends T>> iterators,
+        Comparator<? super T> comparator) {
+      this.comparator = comparator;
+      int size = iterators.size();
+      @SuppressWarnings("unchecked") // generic array creation
+      Iterator<? extends T>[] array =
+          (Iterator<? extends T>[]) iterators.toArray(new Iterator<?>[size]);
+      sources = array;
+      heads = new Object[size];
+      exhausted = new boolean[size];
+      for (int i = 0; i < size; i++) {
+        heads[i] = sources[i].next();
+      }
+
+      tree = new int[size];
+      int[] winners = new int[2 * size];
+      for (int i = 0; i < size; i++) {
+        winners[size + i] = i;
+      }
+      for (int node = size - 1; node > 0; node--) {
+        int left = winners[2 * node];
+        int right = winners[2 * node + 1];
+        if (beats(left, right)) {
+          winners[node] = left;
+          tree[node] = right;
+        } else {
+          winners[node] = right;
+          tree[node] = left;
+        }
+      }
+      tree[0] = (size == 1) ? 0 : winners[1];
+    }
+
+    /** Returns whether source {@code a} should come out before source {@code b}. */
+    boolean beats(int a, int b) {
+      if (exhausted[a] || exhausted[b]) {
+        return !exhausted[a];
+      }
+      @SuppressWarnings("unchecked") // only T's are stored in heads
+      int result = comparator.compare((T) heads[a], (T) heads[b]);
+      return result < 0 || (result == 0 && a < b);
+    }
+
+    protected T computeNext() {
+      int winner = tree[0];
+      if (exhausted[winner]) {
+        return endOfData();
+      }
+      @SuppressWarnings("unchecked") // only T's are stored in heads
+      T next = (T) heads[winner];
+
+      Iterator<? extends T> source = sources[winner];
+      if (source.hasNext()) {
+        heads[winner] = source.next();
+      } else {
+        heads[winner] = null;
+        exhausted[winner] = true;
+      }
+
+      // Replay the matches on the path from the winner's leaf to the root.
+      for (int node = (winner + tree.length) >>> 1; node > 0; node >>>= 1) {
+        int loser = tree[node];
+        if (beats(loser, winner)) {
+          tree[node] = winner;
+          winner = loser;
+        }
+      }
+      tree[0] = winner;
+      return next;
+    }
+  }
+
+  /**
+   * Collapses each run of equivalent elements of a sorted iterator with a
+   * combining function.
+   */
+  private static final class CombiningIterator<T> extends AbstractIterator<T> {
+    final PeekingIterator<T> merged;
+    final Comparator<? super T> comparator;
+    final Function<? super List<T>, ? extends T> combiner;
+
+    CombiningIterator(PeekingIterator<T> merged,
+        Comparator<? super T> comparator,
+        Function<? super List<T>, ? extends T> combiner) {
+      this.merged = merged;
+      this.comparator = comparator;
+      this.combiner = combiner;
+    }
+
+    protected T computeNext() {
+      if (!merged.hasNext()) {
+        return endOfData();
+      }
+      T first = merged.next();
+      if (!merged.hasNext() || comparator.compare(first, merged.peek()) != 0) {
+        return first;
+      }
+      ImmutableList.Builder<T> run = ImmutableList.builder();
+      run.add(first);
+      do {
+        run.add(merged.next());
+      } while (merged.hasNext() && comparator.compare(first, merged.peek()) == 0);
+      return combiner.apply(run.build());
+    }
+  }
+
   /**
    * Precondition tester for {@code Iterator.remove()} that throws an exception with a consistent
    * error message.
@@ -29,12 +29,14 @@ import google.common.annotations.GwtIncompatible;
 import google.common.annotations.VisibleForTesting;
 import google.common.base.Function;
 import google.common.base.Objects;
+import google.common.math.IntMath;
 import google.common.primitives.Ints;
 
 import java.io.Serializable;
 import java.util.AbstractList;
 import java.util.AbstractSequentialList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -569,6 +571,231 @@ public final class Lists {
     }
   }
 
+  /**
+   * Returns every possible list that can be formed by choosing one element
+   * from each of the given lists in order; the "n-ary
+   * <a href="http://en.wikipedia.org/wiki/Cartesian_product">Cartesian
+   * product</a>" of the lists. For example: <pre>   {@code
+   *
+   *   Lists.cartesianProduct(ImmutableList.of(
+   *       ImmutableList.of(1, 2),
+   *       ImmutableList.of("A", "B", "C")))}</pre>
+   *
+   * returns a list containing six lists in the following order:
+   *
+   * <ul>
+   * <li>{@code ImmutableList.of(1, "A")}
+   * <li>{@code ImmutableList.of(1, "B")}
+   * <li>{@code ImmutableList.of(1, "C")}
+   * <li>{@code ImmutableList.of(2, "A")}
+   * <li>{@code ImmutableList.of(2, "B")}
+   * <li>{@code ImmutableList.of(2, "C")}
+   * </ul>
+   *
+   * The result is guaranteed to be in the "traditional", lexicographical
+   * order for Cartesian products that you would get from nesting for loops:
+   * <pre>   {@code
+   *
+   *   for (B b0 : lists.get(0)) {
+   *     for (B b1 : lists.get(1)) {
+   *       ...
+   *       ImmutableList<B> tuple = ImmutableList.of(b0, b1, ...);
+   *       // operate on tuple
+   *     }
+   *   }}</pre>
+   *
+   * Note that if any input list is empty, the Cartesian product will also be
+   * empty. If no lists at all are provided (an empty list), the resulting
+   * Cartesian product has one element, an empty list (counter-intuitive, but
+   * mathematically consistent).
+   *
+   * <p>Unlike {@link Sets#cartesianProduct(List)}, the result is a
+   * random-access list: {@code get(i)} computes the {@code i}-th tuple
+   * directly, and iterating any {@linkplain List#subList sublist} computes
+   * only its first tuple that way and each following one incrementally. A
+   * search over the product can therefore be split among workers by giving
+   * each a contiguous sublist, for example one of {@link #partition}.
+   *
+   * <p><i>Performance notes:</i> while the cartesian product of lists of size
+   * {@code m, n, p} is a list of size {@code m x n x p}, its actual memory
+   * consumption is much smaller. When the cartesian product is constructed,
+   * the input lists are merely copied. Only as the resulting list is iterated
+   * are the individual lists created, and these are not retained after
+   * iteration.
+   *
+   * @param lists the lists to choose elements from, in the order that the
+   *     elements chosen from those lists should appear in the resulting lists
+   * @param <B> any common base class shared by all axes (often just {@link
+   *     Object})
+   * @return the Cartesian product, as an immutable list containing immutable
+   *     lists
+   * @throws IllegalArgumentException if the size of the cartesian product
+   *     would be greater than {@link Integer#MAX_VALUE}
+   * @throws NullPointerException if {@code lists}, any one of the {@code
+   *     lists}, or any element of a provided list is null
+   * @since 14.0
+   */
+  @Beta public static <B> List<List<B>> cartesianProduct(
+      List<? extends List<? extends B>> lists) {
+    ImmutableList.Builder<ImmutableList<? extends B>> axesBuilder =
+        ImmutableList.builder();
+    for (List<? extends B> list : lists) {
+      ImmutableList<? extends B> copy = ImmutableList.copyOf(list);
+      if (copy.isEmpty()) {
+        return ImmutableList.of();
+      }
+      axesBuilder.add(copy);
+    }
+    return new CartesianList<B>(axesBuilder.build());
+  }
+
+  /**
+   * Returns every possible list that can be formed by choosing one element
+   * from each of the given lists in order, in lexicographical order, as a
+   * random-access list; see {@link #cartesianProduct(List)}.
+   *
+   * @param lists the lists to choose elements from, in the order that the
+   *     elements chosen from those lists should appear in the resulting lists
+   * @param <B> any common base class shared by all axes (often just {@link
+   *     Object})
+   * @return the Cartesian product, as an immutable list containing immutable
+   *     lists
+   * @throws IllegalArgumentException if the size of the cartesian product
+   *     would be greater than {@link Integer#MAX_VALUE}
+   * @throws NullPointerException if {@code lists}, any one of the {@code
+   *     lists}, or any element of a provided list is null
+   * @since 14.0
+   */
+  @Beta public static <B> List<List<B>> cartesianProduct(
+      List<? extends B>... lists) {
+    return cartesianProduct(Arrays.asList(lists));
+  }
+
+  private static final class CartesianList<B> extends AbstractList<List<B>>
+      implements RandomAccess {
+    final ImmutableList<ImmutableList<? extends B>> axes;
+    // axesSizeProduct[i] is the product of the sizes of the axes from i on
+    final int[] axesSizeProduct;
+
+    CartesianList(ImmutableList<ImmutableList<? extends B>> axes) {
+      this.axes = axes;
+      int[] axesSizeProduct = new int[axes.size() + 1];
+      axesSizeProduct[axes.size()] = 1;
+      try {
+        for (int i = axes.size() - 1; i >= 0; i--) {
+          axesSizeProduct[i] =
+              IntMath.checkedMultiply(axesSizeProduct[i + 1], axes.get(i).size());
+        }
+      } catch (ArithmeticException overflow) {
+        throw new IllegalArgumentException(
+            "Cartesian product too large; must have size at most Integer.MAX_VALUE");
+      }
+      this.axesSizeProduct = axesSizeProduct;
+    }
+
+    /** Returns the position in each axis of the elements of a tuple. */
+    int[] axisIndexes(int index) {
+      int[] axisIndexes = new int[axes.size()];
+      for (int i = 0; i < axisIndexes.length; i++) {
+        axisIndexes[i] = (index / axesSizeProduct[i + 1]) % axes.get(i).size();
+      }
+      return axisIndexes;
+    }
+
+    /** Advances {@code axisIndexes} to the next tuple, like an odometer. */
+    void increment(int[] axisIndexes) {
+      for (int i = axisIndexes.length - 1; i >= 0; i--) {
+        if (++axisIndexes[i] < axes.get(i).size()) {
+          return;
+        }
+        axisIndexes[i] = 0;
+      }
+    }
+
+    List<B> tuple(int[] axisIndexes) {
+      Object[] tuple = new Object[axisIndexes.length];
+      for (int i = 0; i < tuple.length; i++) {
+        tuple[i] = axes.get(i).get(axisIndexes[i]);
+      }
+      return ImmutableList.asImmutableList(tuple);
+    }
+
+    
+    public List<B> get(int index) {
+      checkElementIndex(index, size());
+      return tuple(axisIndexes(index));
+    }
+
+    
+    public int size() {
+      return axesSizeProduct[0];
+    }
+
+    
+    public ListIterator<List<B>> listIterator(int index) {
+      return new AbstractIndexedListIterator<List<B>>(size(), index) {
+        int[] current;
+        int currentIndex;
+
+        
+        protected List<B> get(int index) {
+          if (current != null && index == currentIndex + 1) {
+            increment(current);
+          } else {
+            current = axisIndexes(index);
+          }
+          currentIndex = index;
+          return tuple(current);
+        }
+      };
+    }
+
+    
+    public int indexOf(@Nullable Object o) {
+      if (!(o instanceof List)) {
+        return -1;
+      }
+      List<?> tuple = (List<?>) o;
+      if (tuple.size() != axes.size()) {
+        return -1;
+      }
+      int index = 0;
+      for (int i = 0; i < axes.size(); i++) {
+        int axisIndex = axes.get(i).indexOf(tuple.get(i));
+        if (axisIndex == -1) {
+          return -1;
+        }
+        index += axisIndex * axesSizeProduct[i + 1];
+      }
+      return index;
+    }
+
+    
+    public int lastIndexOf(@Nullable Object o) {
+      if (!(o instanceof List)) {
+        return -1;
+      }
+      List<?> tuple = (List<?>) o;
+      if (tuple.size() != axes.size()) {
+        return -1;
+      }
+      int index = 0;
+      for (int i = 0; i < axes.size(); i++) {
+        int axisIndex = axes.get(i).lastIndexOf(tuple.get(i));
+        if (axisIndex == -1) {
+          return -1;
+        }
+        index += axisIndex * axesSizeProduct[i + 1];
+      }
+      return index;
+    }
+
+    
+    public boolean contains(@Nullable Object o) {
+      return indexOf(o) != -1;
+    }
+  }
+
   /**
    * Returns a view of the specified string as an immutable list of {@code
    * Character} values.
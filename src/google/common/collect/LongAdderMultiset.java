@@ -0,0 +1,579 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.base.Preconditions.checkState;
+import static google.common.collect.Multisets.checkNonnegative;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtIncompatible;
+import google.common.collect.Serialization.FieldSetter;
+import google.common.primitives.Ints;
+import google.common.util.concurrent.LongAdder;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * A concurrent multiset for workloads in which many threads add occurrences
+ * of the same few elements. Where {@link ConcurrentHashMultiset} keeps one
+ * {@code AtomicInteger} per element, whose compare-and-set loop becomes a
+ * bottleneck when every thread increments the same hot element, this class
+ * keeps a {@code LongAdder} per element, which spreads contended updates over
+ * extra cells.
+ *
+ * <p>Additions ({@code add}) take no lock. Operations that lower a count
+ * ({@code remove}, {@code setCount}, {@link #removeExactly}) lock a stripe
+ * chosen by the element's hash, so they are atomic with respect to each other
+ * and never drive a count below zero. When such an operation brings a count
+ * to zero, the element's entry is removed, unless an addition to it is in
+ * progress; an addition that finds the entry removed retries against a fresh
+ * one, so no occurrence is ever lost or counted twice.
+ *
+ * <p>Reading a count adds up the element's cells, so reads are not atomic
+ * with respect to concurrent additions: {@link #count}, {@link #size},
+ * {@link #snapshot} and {@link #topN} reflect every addition that completed
+ * before the read began, and may or may not reflect additions made during it.
+ * Likewise, the count returned by {@link #add(Object, int)} is only a recent
+ * count; prefer {@link #add(Object)} when the result is not needed, since it
+ * skips the read entirely. Iterators and views are weakly consistent.
+ *
+ * <p>Null elements are not supported.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent")
+public final class LongAdderMultiset<E> extends AbstractMultiset<E> implements Serializable {
+
+  private static final int LOCK_STRIPES = 64;
+
+  /** The number of occurrences of each element. */
+  private final transient ConcurrentHashMap<E, Counter> countMap;
+
+  /** Locks guarding decrements and removals, striped by element hash. */
+  private final transient Object[] locks;
+
+  // This constant allows the deserialization code to set a final field. This holder class
+  // makes sure it is not initialized unless an instance is deserialized.
+  private static class FieldSettersHolder {
+    static final FieldSetter<LongAdderMultiset> COUNT_MAP_FIELD_SETTER =
+        Serialization.getFieldSetter(LongAdderMultiset.class, "countMap");
+    static final FieldSetter<LongAdderMultiset> LOCKS_FIELD_SETTER =
+        Serialization.getFieldSetter(LongAdderMultiset.class, "locks");
+  }
+
+  /**
+   * Creates a new, empty {@code LongAdderMultiset}.
+   */
+  public static <E> LongAdderMultiset<E> create() {
+    return new LongAdderMultiset<E>();
+  }
+
+  /**
+   * Creates a new {@code LongAdderMultiset} containing the specified elements.
+   *
+   * <p>This implementation is highly efficient when {@code elements} is itself a {@link Multiset}.
+   *
+   * @param elements the elements that the multiset should contain
+   */
+  public static <E> LongAdderMultiset<E> create(Iterable<? extends E> elements) {
+    LongAdderMultiset<E> multiset = create();
+    Iterables.addAll(multiset, elements);
+    return multiset;
+  }
+
+  private LongAdderMultiset() {
+    this.countMap = new ConcurrentHashMap<E, Counter>();
+    this.locks = newLocks();
+  }
+
+  private static Object[] newLocks() {
+    Object[] locks = new Object[LOCK_STRIPES];
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
+    }
+    return locks;
+  }
+
+  /**
+   * The count of one element. {@code state} is the number of additions in
+   * progress, or {@code RETIRED} while a removal, under the element's lock,
+   * checks whether the count is zero; it stays {@code RETIRED} if the counter
+   * is then removed from the map. Since an addition registers in {@code
+   * state} before it touches the adder, a retired counter cannot change.
+   */
+  private static final class Counter {
+    static final int RETIRED = -1;
+
+    final LongAdder adder = new LongAdder();
+    final AtomicInteger state = new AtomicInteger();
+
+    int get() {
+      return Ints.saturatedCast(Math.max(0L, adder.sum()));
+    }
+
+    /** Adds {@code occurrences}, or returns false if the counter is retired. */
+    boolean tryAdd(int occurrences) {
+      while (true) {
+        int current = state.get();
+        if (current == RETIRED) {
+          return false;
+        }
+        if (state.compareAndSet(current, current + 1)) {
+          break;
+        }
+      }
+      try {
+        adder.add(occurrences);
+      } finally {
+        state.decrementAndGet();
+      }
+      return true;
+    }
+  }
+
+  private Object lockFor(Object element) {
+    return locks[Hashing.smear(element.hashCode()) & (LOCK_STRIPES - 1)];
+  }
+
+  @Nullable private Counter safeGet(@Nullable Object element) {
+    if (element == null) {
+      return null;
+    }
+    try {
+      return countMap.get(element);
+    } catch (ClassCastException e) {
+      return null;
+    }
+  }
+
+  // Query Operations
+
+  /**
+   * Returns the number of occurrences of {@code element} in this multiset.
+   *
+   * @param element the element to look for
+   * @return the nonnegative number of occurrences of the element
+   */
+  @Override public int count(@Nullable Object element) {
+    Counter counter = safeGet(element);
+    return (counter == null) ? 0 : counter.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If the data in the multiset is modified by any other threads during this method,
+   * it is undefined which (if any) of these modifications will be reflected in the result.
+   */
+  @Override public int size() {
+    long sum = 0L;
+    for (Counter counter : countMap.values()) {
+      sum += counter.get();
+    }
+    return Ints.saturatedCast(sum);
+  }
+
+  @Override public boolean isEmpty() {
+    for (Counter counter : countMap.values()) {
+      if (counter.get() > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Note: the superclass toArray() methods assume that size() gives a correct
+   * answer, which ours does not.
+   */
+
+  @Override public Object[] toArray() {
+    return snapshot().toArray();
+  }
+
+  @Override public <T> T[] toArray(T[] array) {
+    return snapshot().toArray(array);
+  }
+
+  /**
+   * Returns an immutable copy of this multiset, reading each element's count
+   * once.
+   */
+  public ImmutableMultiset<E> snapshot() {
+    ImmutableMultiset.Builder<E> builder = ImmutableMultiset.builder();
+    for (Map.Entry<E, Counter> entry : countMap.entrySet()) {
+      int count = entry.getValue().get();
+      if (count > 0) {
+        builder.addCopies(entry.getKey(), count);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the {@code n} entries with the highest counts, highest first, as
+   * of a {@link #snapshot}. Ties are broken arbitrarily.
+   *
+   * @throws IllegalArgumentException if {@code n} is negative
+   */
+  public List<Multiset.Entry<E>> topN(int n) {
+    checkArgument(n >= 0, "n (%s) must be >= 0", n);
+    return ImmutableList.copyOf(BY_COUNT.greatestOf(snapshot().entrySet(), n));
+  }
+
+  private static final Ordering<Multiset.Entry<?>> BY_COUNT = new Ordering<Multiset.Entry<?>>() {
+    @Override public int compare(Multiset.Entry<?> left, Multiset.Entry<?> right) {
+      return Ints.compare(left.getCount(), right.getCount());
+    }
+  };
+
+  // Modification Operations
+
+  /**
+   * Adds a single occurrence of {@code element} to this multiset, without
+   * reading its previous count.
+   *
+   * @return {@code true} always
+   */
+  @Override public boolean add(E element) {
+    checkNotNull(element);
+    addOccurrences(element, 1);
+    return true;
+  }
+
+  /**
+   * Adds a number of occurrences of the specified element to this multiset.
+   *
+   * @param element the element to add
+   * @param occurrences the number of occurrences to add
+   * @return a recent count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative, or if
+   *     the resulting amount would exceed {@link Integer#MAX_VALUE}
+   */
+  @Override public int add(E element, int occurrences) {
+    checkNotNull(element);
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(occurrences > 0, "Invalid occurrences: %s", occurrences);
+    int oldCount = count(element);
+    checkArgument((long) oldCount + occurrences <= Integer.MAX_VALUE,
+        "Overflow adding " + occurrences + " occurrences to a count of " + oldCount);
+    addOccurrences(element, occurrences);
+    return oldCount;
+  }
+
+  private void addOccurrences(E element, int occurrences) {
+    while (true) {
+      Counter counter = countMap.get(element);
+      if (counter == null) {
+        Counter newCounter = new Counter();
+        counter = countMap.putIfAbsent(element, newCounter);
+        if (counter == null) {
+          counter = newCounter;
+        }
+      }
+      if (counter.tryAdd(occurrences)) {
+        return;
+      }
+      // A removal is deciding whether this counter is empty. Wait until it
+      // has removed the counter, or kept it, and retry.
+      while (counter.state.get() == Counter.RETIRED
+          && countMap.get(element) == counter) {
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * Removes {@code counter} from the map if its count is zero and no addition
+   * to it is in progress. Must be called with the element's lock held. An
+   * empty counter left in the map is removed by a later removal.
+   */
+  private void removeIfEmpty(Object element, Counter counter) {
+    if (counter.state.compareAndSet(0, Counter.RETIRED)) {
+      if (counter.adder.sum() == 0L) {
+        countMap.remove(element, counter);
+      } else {
+        counter.state.set(0);
+      }
+    }
+  }
+
+  /**
+   * Removes a number of occurrences of the specified element from this multiset. If the multiset
+   * contains fewer than this number of occurrences to begin with, all occurrences will be removed.
+   *
+   * @param element the element whose occurrences should be removed
+   * @param occurrences the number of occurrences of the element to remove
+   * @return the count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative
+   */
+  @Override public int remove(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(occurrences > 0, "Invalid occurrences: %s", occurrences);
+    if (safeGet(element) == null) {
+      return 0;
+    }
+    synchronized (lockFor(element)) {
+      Counter counter = countMap.get(element);
+      if (counter == null) {
+        return 0;
+      }
+      int oldCount = counter.get();
+      int numberRemoved = Math.min(oldCount, occurrences);
+      counter.adder.add(-numberRemoved);
+      if (numberRemoved == oldCount) {
+        removeIfEmpty(element, counter);
+      }
+      return oldCount;
+    }
+  }
+
+  /**
+   * Removes exactly the specified number of occurrences of {@code element}, or makes no
+   * change if this is not possible.
+   *
+   * <p>This method, in contrast to {@link #remove(Object, int)}, has no effect when the
+   * element count is smaller than {@code occurrences}.
+   *
+   * @param element the element to remove
+   * @param occurrences the number of occurrences of {@code element} to remove
+   * @return {@code true} if the removal was possible (including if {@code occurrences} is zero)
+   */
+  public boolean removeExactly(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return true;
+    }
+    checkArgument(occurrences > 0, "Invalid occurrences: %s", occurrences);
+    if (safeGet(element) == null) {
+      return false;
+    }
+    synchronized (lockFor(element)) {
+      Counter counter = countMap.get(element);
+      if (counter == null) {
+        return false;
+      }
+      int oldCount = counter.get();
+      if (oldCount < occurrences) {
+        return false;
+      }
+      counter.adder.add(-occurrences);
+      if (oldCount == occurrences) {
+        removeIfEmpty(element, counter);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Adds or removes occurrences of {@code element} such that the {@link #count} of the
+   * element becomes {@code count}.
+   *
+   * @return the count of {@code element} in the multiset before this call
+   * @throws IllegalArgumentException if {@code count} is negative
+   */
+  @Override public int setCount(E element, int count) {
+    checkNotNull(element);
+    checkNonnegative(count, "count");
+    synchronized (lockFor(element)) {
+      Counter counter = countMap.get(element);
+      int oldCount = (counter == null) ? 0 : counter.get();
+      applyUnderLock(element, counter, oldCount, count);
+      return oldCount;
+    }
+  }
+
+  /**
+   * Sets the number of occurrences of {@code element} to {@code newCount}, but only if
+   * the count is currently {@code expectedOldCount}. If {@code element} does not appear
+   * in the multiset exactly {@code expectedOldCount} times, no changes will be made.
+   *
+   * @return {@code true} if the change was successful. This usually indicates
+   *     that the multiset has been modified, but not always: in the case that
+   *     {@code expectedOldCount == newCount}, the method will return {@code true} if
+   *     the condition was met.
+   * @throws IllegalArgumentException if {@code expectedOldCount} or {@code newCount} is negative
+   */
+  @Override public boolean setCount(E element, int expectedOldCount, int newCount) {
+    checkNotNull(element);
+    checkNonnegative(expectedOldCount, "oldCount");
+    checkNonnegative(newCount, "newCount");
+    synchronized (lockFor(element)) {
+      Counter counter = countMap.get(element);
+      int oldCount = (counter == null) ? 0 : counter.get();
+      if (oldCount != expectedOldCount) {
+        return false;
+      }
+      applyUnderLock(element, counter, oldCount, newCount);
+      return true;
+    }
+  }
+
+  private void applyUnderLock(
+      E element, @Nullable Counter counter, int oldCount, int newCount) {
+    if (newCount > oldCount) {
+      // additions never need the lock, and share its retry logic
+      addOccurrences(element, newCount - oldCount);
+    } else {
+      if (newCount < oldCount) {
+        counter.adder.add(newCount - oldCount);
+      }
+      if (newCount == 0 && counter != null) {
+        removeIfEmpty(element, counter);
+      }
+    }
+  }
+
+  @Override public void clear() {
+    for (E element : countMap.keySet()) {
+      setCount(element, 0);
+    }
+  }
+
+  // Views
+
+  private transient EntrySet entrySet;
+
+  @Override public Set<Multiset.Entry<E>> entrySet() {
+    EntrySet result = entrySet;
+    if (result == null) {
+      entrySet = result = new EntrySet();
+    }
+    return result;
+  }
+
+  @Override int distinctElements() {
+    int distinct = 0;
+    for (Counter counter : countMap.values()) {
+      if (counter.get() > 0) {
+        distinct++;
+      }
+    }
+    return distinct;
+  }
+
+  @Override Iterator<Entry<E>> entryIterator() {
+    // AbstractIterator makes this fairly clean, but it doesn't support remove(). To support
+    // remove(), we create an AbstractIterator, and then use ForwardingIterator to delegate to it.
+    final Iterator<Entry<E>> readOnlyIterator =
+        new AbstractIterator<Entry<E>>() {
+          private Iterator<Map.Entry<E, Counter>> mapEntries = countMap.entrySet().iterator();
+
+          @Override protected Entry<E> computeNext() {
+            while (true) {
+              if (!mapEntries.hasNext()) {
+                return endOfData();
+              }
+              Map.Entry<E, Counter> mapEntry = mapEntries.next();
+              int count = mapEntry.getValue().get();
+              if (count != 0) {
+                return Multisets.immutableEntry(mapEntry.getKey(), count);
+              }
+            }
+          }
+        };
+
+    return new ForwardingIterator<Entry<E>>() {
+      private Entry<E> last;
+
+      @Override protected Iterator<Entry<E>> delegate() {
+        return readOnlyIterator;
+      }
+
+      @Override public Entry<E> next() {
+        last = super.next();
+        return last;
+      }
+
+      @Override public void remove() {
+        checkState(last != null);
+        LongAdderMultiset.this.setCount(last.getElement(), 0);
+        last = null;
+      }
+    };
+  }
+
+  private class EntrySet extends AbstractMultiset<E>.EntrySet {
+    @Override LongAdderMultiset<E> multiset() {
+      return LongAdderMultiset.this;
+    }
+
+    /*
+     * Note: the superclass toArray() methods assume that size() gives a correct
+     * answer, which ours does not.
+     */
+
+    @Override public Object[] toArray() {
+      return snapshot().entrySet().toArray();
+    }
+
+    @Override public <T> T[] toArray(T[] array) {
+      return snapshot().entrySet().toArray(array);
+    }
+
+    @Override public boolean remove(Object object) {
+      if (object instanceof Multiset.Entry) {
+        Multiset.Entry<?> entry = (Multiset.Entry<?>) object;
+        Object element = entry.getElement();
+        int entryCount = entry.getCount();
+        if (entryCount != 0 && element != null) {
+          // Safe as long as we never add a new entry, which we won't.
+          @SuppressWarnings("unchecked")
+          Multiset<Object> multiset = (Multiset) multiset();
+          return multiset.setCount(element, entryCount, 0);
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * @serialData the number of distinct elements, the first element, its count,
+   *     the second element, its count, and so on
+   */
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    Serialization.writeMultiset(snapshot(), stream);
+  }
+
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    FieldSettersHolder.COUNT_MAP_FIELD_SETTER.set(this, new ConcurrentHashMap<E, Counter>());
+    FieldSettersHolder.LOCKS_FIELD_SETTER.set(this, newLocks());
+    int distinctElements = Serialization.readCount(stream);
+    Serialization.populateMultiset(this, stream, distinctElements);
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -54,6 +54,7 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.annotation.Nullable;
 
@@ -1049,6 +1050,60 @@ public final class Maps {
     return Synchronized.biMap(bimap, null);
   }
 
+  /**
+   * Returns a thread-safe map backed by the specified map and guarded by
+   * {@code lock}. In order to guarantee safe access, it is critical that
+   * <b>all</b> access to the backing map is accomplished through the returned
+   * map, even while holding {@code lock}.
+   *
+   * <p>Methods that modify the map hold the write lock, and those that read
+   * it hold the read lock, so that, unlike with {@code
+   * Collections.synchronizedMap}, readers do not wait for one another. The
+   * read methods of the backing map must therefore not modify it, as {@code
+   * get} of an access-ordered {@code LinkedHashMap} and every method of a
+   * {@code WeakHashMap} do. {@code size} and {@code isEmpty} first read the
+   * size of the backing map without locking at all, and read it again under
+   * the read lock if a write overlapped them, so its {@code size} must be
+   * safe to call during a write, as it is in {@code HashMap} and {@code
+   * TreeMap}, which return a field.
+   *
+   * <p>It is imperative that the user hold the read lock when iterating over
+   * any of its collection views, and the write lock when modifying the map
+   * through an iterator or entry: <pre>   {@code
+   *
+   *   ReadWriteLock lock = new ReentrantReadWriteLock();
+   *   Map<Long, String> map = Maps.readWriteLockedMap(
+   *       Maps.<Long, String>newHashMap(), lock);
+   *   ...
+   *   lock.readLock().lock();
+   *   try {
+   *     for (Long key : map.keySet()) {
+   *       foo(key);
+   *     }
+   *   } finally {
+   *     lock.readLock().unlock();
+   *   }}</pre>
+   *
+   * Failure to follow this advice may result in non-deterministic behavior.
+   * The lock must not be held for reading when a method of the returned map
+   * that modifies it is called, since a {@code ReentrantReadWriteLock} cannot
+   * be upgraded from reading to writing.
+   *
+   * <p>The returned map will be serializable if the specified map and lock
+   * are serializable.
+   *
+   * @param map the map to be wrapped
+   * @param lock the lock that guards the returned map and its views
+   * @return a read-write-locked view of the specified map
+   * @since 14.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent.locks")
+  public static <K, V> Map<K, V> readWriteLockedMap(
+      Map<K, V> map, ReadWriteLock lock) {
+    return ReadWriteLocked.map(map, new ReadWriteLocked.Guard(lock, map));
+  }
+
   /**
    * Returns an unmodifiable view of the specified bimap. This method allows
    * modules to provide users with "read-only" access to internal bimaps. Query
@@ -22,12 +22,14 @@ import static google.common.base.Preconditions.checkPositionIndex;
 import static google.common.base.Preconditions.checkState;
 
 import google.common.annotations.Beta;
+import google.common.annotations.GwtIncompatible;
 import google.common.annotations.VisibleForTesting;
 import google.common.math.IntMath;
 
 import java.util.AbstractQueue;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -197,18 +199,34 @@ public final class MinMaxPriorityQueue<E> extends AbstractQueue<E> {
 
     /**
      * Builds a new min-max priority queue using the previously specified
-     * options, and having the given initial elements.
+     * options, and having the given initial elements. This takes linear time
+     * in the number of initial elements.
      */
     public <T extends B> MinMaxPriorityQueue<T> create(
         Iterable<? extends T> initialContents) {
       MinMaxPriorityQueue<T> queue = new MinMaxPriorityQueue<T>(
           this, initialQueueSize(expectedSize, maximumSize, initialContents));
-      for (T element : initialContents) {
-        queue.offer(element);
-      }
+      queue.bulkAdd(initialContents.iterator());
       return queue;
     }
 
+    /**
+     * Builds a new {@link ConcurrentTopK} that keeps the least {@code
+     * maximumSize} elements offered to it according to the previously
+     * specified comparator. The expected size is ignored.
+     *
+     * @throws IllegalStateException if no maximum size, or one greater than
+     *     {@code Integer.MAX_VALUE / 2}, was specified
+     * @since 14.0
+     */
+    @GwtIncompatible("java.util.concurrent.locks")
+    public <T extends B> ConcurrentTopK<T> createConcurrent() {
+      checkState(maximumSize <= Integer.MAX_VALUE / 2,
+          "a concurrent queue requires a maximum size of at most %s",
+          Integer.MAX_VALUE / 2);
+      return new ConcurrentTopK<T>(this.<T>ordering(), maximumSize);
+    }
+
     @SuppressWarnings("unchecked") // safe "contravariant cast"
     private <T extends B> Ordering<T> ordering() {
       return Ordering.from((Comparator<T>) comparator);
@@ -251,13 +269,84 @@ public final class MinMaxPriorityQueue<E> extends AbstractQueue<E> {
     return true;
   }
 
+  /**
+   * Adds all of the given elements to this queue. If this queue has a maximum
+   * size, the greatest elements are then evicted as by {@link #add}.
+   *
+   * <p>If there are at least as many new elements as existing ones, the heap
+   * is rebuilt in linear time rather than adding the elements one at a time.
+   */
    public boolean addAll(Collection<? extends E> newElements) {
-    boolean modified = false;
-    for (E element : newElements) {
-      offer(element);
-      modified = true;
+    if (newElements.isEmpty()) {
+      return false;
+    }
+    if (newElements.size() < size) {
+      for (E element : newElements) {
+        offer(element);
+      }
+    } else {
+      bulkAdd(newElements.iterator());
+    }
+    return true;
+  }
+
+  /**
+   * Appends the given elements and restores the heap invariant with a single
+   * linear-time pass. If the result would exceed the maximum size, only the
+   * least {@code maximumSize} elements are kept, as chosen by a
+   * {@link TopKSelector}, which is also linear.
+   *
+   * <p>If an element is null, or the comparator throws, the queue is restored
+   * to its previous elements. Copying them costs no more than the elements
+   * added, since {@link #addAll} only calls this method when there are at
+   * least as many of those.
+   */
+  private void bulkAdd(Iterator<? extends E> newElements) {
+    int oldSize = size;
+    Object[] oldElements = ObjectArrays.arraysCopyOf(queue, oldSize);
+    modCount++;
+    boolean threw = true;
+    try {
+      while (size < maximumSize && newElements.hasNext()) {
+        E element = checkNotNull(newElements.next());
+        size++;
+        growIfNeeded();
+        queue[size - 1] = element;
+      }
+      if (newElements.hasNext()) {
+        TopKSelector<E> selector =
+            TopKSelector.least(maximumSize, minHeap.ordering);
+        for (int i = 0; i < size; i++) {
+          selector.offer(elementData(i));
+        }
+        while (newElements.hasNext()) {
+          selector.offer(checkNotNull(newElements.next()));
+        }
+        List<E> least = selector.topK();
+        for (int i = 0; i < size; i++) {
+          queue[i] = least.get(i);
+        }
+      }
+      heapify();
+      threw = false;
+    } finally {
+      if (threw) {
+        Arrays.fill(queue, 0, size, null);
+        System.arraycopy(oldElements, 0, queue, 0, oldSize);
+        size = oldSize;
+      }
+    }
+  }
+
+  /**
+   * Turns the first {@code size} elements of the queue array into a min-max
+   * heap by trickling down each parent, starting from the last one (Floyd's
+   * method as adapted by Atkinson et al.). This takes {@code O(size)} time.
+   */
+  private void heapify() {
+    for (int i = (size >>> 1) - 1; i >= 0; i--) {
+      heapForIndex(i).trickleDown(i);
     }
-    return modified;
   }
 
   /**
@@ -683,6 +772,49 @@ public final class MinMaxPriorityQueue<E> extends AbstractQueue<E> {
       return crossOverUp(index, x);
     }
 
+    /**
+     * Moves the element at {@code index} down until the subtree rooted there
+     * is a min-max heap, assuming the subtrees of its children already are.
+     * Only used while building a heap in bulk.
+     */
+    void trickleDown(int index) {
+      E x = elementData(index);
+      while (true) {
+        int leftChildIndex = getLeftChildIndex(index);
+        if (leftChildIndex >= size) {
+          break;
+        }
+        int minChildIndex = findMin(leftChildIndex, 2);
+        int minGrandchildIndex = findMin(getLeftChildIndex(leftChildIndex), 4);
+        if (minGrandchildIndex > 0
+            && compareElements(minGrandchildIndex, minChildIndex) < 0) {
+          E grandchild = elementData(minGrandchildIndex);
+          if (ordering.compare(grandchild, x) >= 0) {
+            break;
+          }
+          queue[index] = grandchild;
+          index = minGrandchildIndex;
+          // x passes its parent, which belongs to the other heap.
+          int parentIndex = getParentIndex(index);
+          E parent = elementData(parentIndex);
+          if (ordering.compare(x, parent) > 0) {
+            queue[parentIndex] = x;
+            x = parent;
+          }
+        } else {
+          E child = elementData(minChildIndex);
+          if (ordering.compare(child, x) < 0) {
+            // The child is the extreme of its subtree in the other heap's
+            // order, so x is a valid replacement for it.
+            queue[index] = child;
+            index = minChildIndex;
+          }
+          break;
+        }
+      }
+      queue[index] = x;
+    }
+
     /**
      * Fills the hole at {@code index} by moving in the least of its
      * grandchildren to this position, then recursively filling the new hole
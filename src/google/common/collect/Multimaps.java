@@ -20,6 +20,7 @@ import static google.common.base.Preconditions.checkArgument;
 import static google.common.base.Preconditions.checkNotNull;
 import static google.common.base.Preconditions.checkState;
 
+import google.common.annotations.Beta;
 import google.common.annotations.GwtCompatible;
 import google.common.annotations.GwtIncompatible;
 import google.common.base.Function;
@@ -48,6 +49,7 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.annotation.Nullable;
 
@@ -449,6 +451,65 @@ public final class Multimaps {
     return Synchronized.multimap(multimap, null);
   }
 
+  /**
+   * Returns a thread-safe multimap backed by the specified multimap and
+   * guarded by {@code lock}. In order to guarantee safe access, it is
+   * critical that <b>all</b> access to the backing multimap is accomplished
+   * through the returned multimap, even while holding {@code lock}.
+   *
+   * <p>Methods that modify the multimap hold the write lock, and those that
+   * read it hold the read lock, so that, unlike with {@code
+   * Multimaps.synchronizedMultimap}, readers do not wait for one another. The
+   * read methods of the backing multimap must therefore not modify it.
+   * {@code size} and {@code isEmpty} first read the size of the backing
+   * multimap without locking at all, and read it again under the read lock
+   * if a write overlapped them, so its {@code size} must be safe to call
+   * during a write, as it is in {@code HashMultimap} and {@code
+   * ArrayListMultimap}, which return a field.
+   *
+   * <p>It is imperative that the user hold the read lock when iterating over
+   * any of its collection views, including those returned by {@code get}, and
+   * the write lock when modifying the multimap through an iterator or entry:
+   * <pre>   {@code
+   *
+   *   ReadWriteLock lock = new ReentrantReadWriteLock();
+   *   Multimap<K, V> multimap = Multimaps.readWriteLockedMultimap(
+   *       HashMultimap.<K, V>create(), lock);
+   *   ...
+   *   lock.readLock().lock();
+   *   try {
+   *     for (V value : multimap.get(key)) {
+   *       foo(value);
+   *     }
+   *   } finally {
+   *     lock.readLock().unlock();
+   *   }}</pre>
+   *
+   * Failure to follow this advice may result in non-deterministic behavior.
+   * The lock must not be held for reading when a method of the returned
+   * multimap that modifies it is called, since a {@code
+   * ReentrantReadWriteLock} cannot be upgraded from reading to writing.
+   *
+   * <p>Note that the generated multimap's {@link Multimap#removeAll} and
+   * {@link Multimap#replaceValues} methods return collections that aren't
+   * guarded by the lock.
+   *
+   * <p>The returned multimap will be serializable if the specified multimap
+   * and lock are serializable.
+   *
+   * @param multimap the multimap to be wrapped
+   * @param lock the lock that guards the returned multimap and its views
+   * @return a read-write-locked view of the specified multimap
+   * @since 14.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent.locks")
+  public static <K, V> Multimap<K, V> readWriteLockedMultimap(
+      Multimap<K, V> multimap, ReadWriteLock lock) {
+    return ReadWriteLocked.multimap(
+        multimap, new ReadWriteLocked.Guard(lock, multimap));
+  }
+
   /**
    * Returns an unmodifiable view of the specified multimap. Query operations on
    * the returned multimap "read through" to the specified multimap, and
@@ -743,6 +804,29 @@ public final class Multimaps {
     return Synchronized.setMultimap(multimap, null);
   }
 
+  /**
+   * Returns a thread-safe {@code SetMultimap} backed by the specified
+   * multimap and guarded by {@code lock}.
+   *
+   * <p>You must follow the warnings described in {@link
+   * #readWriteLockedMultimap}.
+   *
+   * <p>The returned multimap will be serializable if the specified multimap
+   * and lock are serializable.
+   *
+   * @param multimap the multimap to be wrapped
+   * @param lock the lock that guards the returned multimap and its views
+   * @return a read-write-locked view of the specified multimap
+   * @since 14.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent.locks")
+  public static <K, V> SetMultimap<K, V> readWriteLockedSetMultimap(
+      SetMultimap<K, V> multimap, ReadWriteLock lock) {
+    return ReadWriteLocked.setMultimap(
+        multimap, new ReadWriteLocked.Guard(lock, multimap));
+  }
+
   /**
    * Returns an unmodifiable view of the specified {@code SetMultimap}. Query
    * operations on the returned multimap "read through" to the specified
@@ -838,6 +922,29 @@ public final class Multimaps {
     return Synchronized.listMultimap(multimap, null);
   }
 
+  /**
+   * Returns a thread-safe {@code ListMultimap} backed by the specified
+   * multimap and guarded by {@code lock}.
+   *
+   * <p>You must follow the warnings described in {@link
+   * #readWriteLockedMultimap}.
+   *
+   * <p>The returned multimap will be serializable if the specified multimap
+   * and lock are serializable.
+   *
+   * @param multimap the multimap to be wrapped
+   * @param lock the lock that guards the returned multimap and its views
+   * @return a read-write-locked view of the specified multimap
+   * @since 14.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent.locks")
+  public static <K, V> ListMultimap<K, V> readWriteLockedListMultimap(
+      ListMultimap<K, V> multimap, ReadWriteLock lock) {
+    return ReadWriteLocked.listMultimap(
+        multimap, new ReadWriteLocked.Guard(lock, multimap));
+  }
+
   /**
    * Returns an unmodifiable view of the specified {@code ListMultimap}. Query
    * operations on the returned multimap "read through" to the specified
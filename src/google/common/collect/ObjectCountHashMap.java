@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+
+import google.common.annotations.GwtCompatible;
+import google.common.base.Objects;
+import google.common.primitives.Ints;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * A hash map from objects to positive {@code int} counts that stores its
+ * entries in parallel arrays instead of in one {@code Map.Entry} object (plus
+ * one mutable counter) per key.
+ *
+ * <p>Entries live densely in positions {@code [0, size())} of the
+ * {@code keys}, {@code values} and {@code hashes} arrays, in no particular
+ * order. Lookups go through a separate open-addressed {@code int[]} table,
+ * probed linearly, whose slots hold an entry index plus one (zero marks an
+ * empty slot). Removal fills the hole left in the table by shifting later
+ * probe-sequence members backwards, so no tombstones are needed, and fills
+ * the hole left in the entry arrays by moving the last entry into it.
+ *
+ * <p>Null keys are permitted. This class is not thread-safe.
+ */
+@GwtCompatible
+final class ObjectCountHashMap<K> {
+  private static final int DEFAULT_SIZE = 3;
+  private static final int MAX_TABLE_SIZE = Ints.MAX_POWER_OF_TWO;
+
+  // Lookups stay short while at most three quarters of the table is in use.
+  private static final double MAX_LOAD = 0.75;
+
+  static <K> ObjectCountHashMap<K> create() {
+    return new ObjectCountHashMap<K>(DEFAULT_SIZE);
+  }
+
+  static <K> ObjectCountHashMap<K> createWithExpectedSize(int expectedSize) {
+    return new ObjectCountHashMap<K>(expectedSize);
+  }
+
+  private Object[] keys;
+  private int[] values;
+  private int[] hashes;
+  private int[] table;
+  private int size;
+
+  /** Incremented on every structural change, for fail-fast iteration. */
+  int modCount;
+
+  ObjectCountHashMap(int expectedSize) {
+    checkArgument(expectedSize >= 0, "Initial capacity must be non-negative");
+    int capacity = Math.max(expectedSize, 1);
+    this.keys = new Object[capacity];
+    this.values = new int[capacity];
+    this.hashes = new int[capacity];
+    this.table = new int[tableSizeFor(capacity)];
+  }
+
+  static int tableSizeFor(int expectedSize) {
+    int tableSize = Integer.highestOneBit(Math.max(expectedSize, 2) - 1) << 1;
+    while (tableSize < MAX_TABLE_SIZE && tableSize * MAX_LOAD < expectedSize) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  private static int hash(@Nullable Object key) {
+    return Hashing.smear((key == null) ? 0 : key.hashCode());
+  }
+
+  int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked") // only K's are ever stored in keys
+  K getKey(int index) {
+    checkElementIndex(index, size);
+    return (K) keys[index];
+  }
+
+  int getValue(int index) {
+    checkElementIndex(index, size);
+    return values[index];
+  }
+
+  void setValue(int index, int value) {
+    checkElementIndex(index, size);
+    values[index] = value;
+  }
+
+  /**
+   * Returns the position of {@code key} in the entry arrays, or {@code -1} if
+   * it is absent.
+   */
+  int indexOf(@Nullable Object key) {
+    int hash = hash(key);
+    int mask = table.length - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      int index = table[slot] - 1;
+      if (index < 0) {
+        return -1;
+      }
+      if (hashes[index] == hash && Objects.equal(key, keys[index])) {
+        return index;
+      }
+    }
+  }
+
+  boolean containsKey(@Nullable Object key) {
+    return indexOf(key) != -1;
+  }
+
+  /** Returns the count associated with {@code key}, or zero if it is absent. */
+  int get(@Nullable Object key) {
+    int index = indexOf(key);
+    return (index == -1) ? 0 : values[index];
+  }
+
+  /**
+   * Associates {@code value} with {@code key}, returning the count previously
+   * associated with it, or zero if there was none.
+   */
+  int put(@Nullable K key, int value) {
+    int hash = hash(key);
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    for (; ; slot = (slot + 1) & mask) {
+      int index = table[slot] - 1;
+      if (index < 0) {
+        break;
+      }
+      if (hashes[index] == hash && Objects.equal(key, keys[index])) {
+        int oldValue = values[index];
+        values[index] = value;
+        return oldValue;
+      }
+    }
+    int newIndex = size;
+    if (newIndex == keys.length) {
+      growEntries();
+    }
+    keys[newIndex] = key;
+    values[newIndex] = value;
+    hashes[newIndex] = hash;
+    table[slot] = newIndex + 1;
+    size = newIndex + 1;
+    modCount++;
+    if (size > table.length * MAX_LOAD && table.length < MAX_TABLE_SIZE) {
+      rehash(table.length * 2);
+    }
+    return 0;
+  }
+
+  /**
+   * Removes {@code key}, returning the count previously associated with it,
+   * or zero if it was absent.
+   */
+  int remove(@Nullable Object key) {
+    int index = indexOf(key);
+    return (index == -1) ? 0 : removeEntry(index);
+  }
+
+  /**
+   * Removes the entry at {@code index} and returns its count. The entry
+   * previously at position {@code size() - 1}, if different, takes its place.
+   */
+  int removeEntry(int index) {
+    checkElementIndex(index, size);
+    int oldValue = values[index];
+    deleteSlot(slotOf(index));
+    int last = size - 1;
+    if (index < last) {
+      int lastSlot = slotOf(last);
+      keys[index] = keys[last];
+      values[index] = values[last];
+      hashes[index] = hashes[last];
+      table[lastSlot] = index + 1;
+    }
+    keys[last] = null;
+    values[last] = 0;
+    size = last;
+    modCount++;
+    return oldValue;
+  }
+
+  void clear() {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(values, 0, size, 0);
+    Arrays.fill(table, 0);
+    size = 0;
+    modCount++;
+  }
+
+  /** Returns the table slot that points at entry {@code index}. */
+  private int slotOf(int index) {
+    int mask = table.length - 1;
+    int slot = hashes[index] & mask;
+    while (table[slot] != index + 1) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Empties table slot {@code hole}, then walks the rest of its probe run,
+   * moving back every entry whose home slot is not between the hole and its
+   * current slot, so that every remaining entry stays reachable.
+   */
+  private void deleteSlot(int hole) {
+    int mask = table.length - 1;
+    int slot = hole;
+    while (true) {
+      slot = (slot + 1) & mask;
+      int index = table[slot] - 1;
+      if (index < 0) {
+        table[hole] = 0;
+        return;
+      }
+      int home = hashes[index] & mask;
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        table[hole] = table[slot];
+        hole = slot;
+      }
+    }
+  }
+
+  private void growEntries() {
+    int oldCapacity = keys.length;
+    int newCapacity = oldCapacity + Math.max(1, oldCapacity >>> 1);
+    if (newCapacity < 0) {
+      newCapacity = Integer.MAX_VALUE;
+    }
+    keys = ObjectArrays.arraysCopyOf(keys, newCapacity);
+    values = Ints.ensureCapacity(values, newCapacity, 0);
+    hashes = Ints.ensureCapacity(hashes, newCapacity, 0);
+  }
+
+  private void rehash(int newTableSize) {
+    int[] newTable = new int[newTableSize];
+    int mask = newTableSize - 1;
+    for (int index = 0; index < size; index++) {
+      int slot = hashes[index] & mask;
+      while (newTable[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      newTable[slot] = index + 1;
+    }
+    table = newTable;
+  }
+
+  /**
+   * Returns a {@link Multiset.Entry} for the key at {@code index} whose
+   * {@code getCount()} reflects later changes to this map, even after the
+   * entry has moved.
+   */
+  Multiset.Entry<K> getEntry(int index) {
+    return new MapEntry(index);
+  }
+
+  class MapEntry extends Multisets.AbstractEntry<K> {
+    @Nullable final K key;
+    int lastKnownIndex;
+
+    MapEntry(int index) {
+      this.key = getKey(index);
+      this.lastKnownIndex = index;
+    }
+
+    public K getElement() {
+      return key;
+    }
+
+    public int getCount() {
+      if (lastKnownIndex == -1 || lastKnownIndex >= size
+          || !Objects.equal(key, keys[lastKnownIndex])) {
+        lastKnownIndex = indexOf(key);
+      }
+      return (lastKnownIndex == -1) ? 0 : values[lastKnownIndex];
+    }
+  }
+}
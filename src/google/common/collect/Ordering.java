@@ -24,7 +24,9 @@ import google.common.annotations.GwtCompatible;
 import google.common.annotations.VisibleForTesting;
 import google.common.base.Function;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -578,6 +580,10 @@ public abstract class Ordering<T> implements Comparator<T> {
    * algorithm; when multiple elements are equivalent, it is undefined which
    * will come first.
    *
+   * <p>Unless {@code iterable} is a small collection, its elements are read
+   * through {@link #leastOf(Iterator, int)}, so the memory used is {@code
+   * O(min(n, k))} for {@code n} elements.
+   *
    * @return an immutable {@code RandomAccess} list of the {@code k} least
    *     elements in ascending order
    * @throws IllegalArgumentException if {@code k} is negative
@@ -585,29 +591,81 @@ public abstract class Ordering<T> implements Comparator<T> {
    */
   @Beta
   public <E extends T> List<E> leastOf(Iterable<E> iterable, int k) {
-    checkArgument(k >= 0, "%d is negative", k);
+    if (iterable instanceof Collection) {
+      Collection<E> collection = (Collection<E>) iterable;
+      if (collection.size() <= 2L * k) {
+        // Sorting a copy is cheaper than selecting when k is close to the size.
+        checkArgument(k >= 0, "%d is negative", k);
+
+        // values is not an E[], but we use it as such for readability. Hack.
+        @SuppressWarnings("unchecked")
+        E[] values = (E[]) collection.toArray();
+        Arrays.sort(values, this);
+        if (values.length > k) {
+          values = ObjectArrays.arraysCopyOf(values, k);
+        }
+        return Collections.unmodifiableList(Arrays.asList(values));
+      }
+    }
+    return leastOf(iterable.iterator(), k);
+  }
 
-    // values is not an E[], but we use it as such for readability. Hack.
-    @SuppressWarnings("unchecked")
-    E[] values = (E[]) Iterables.toArray(iterable);
-
-    // TODO(nshupe): also sort whole list if k is *near* values.length?
-    // TODO(kevinb): benchmark this impl against hand-coded heap
-    E[] resultArray;
-    if (values.length <= k) {
-      Arrays.sort(values, this);
-      resultArray = values;
-    } else {
-      quicksortLeastK(values, 0, values.length - 1, k);
-
-      // this is not an E[], but we use it as such for readability. Hack.
-      @SuppressWarnings("unchecked")
-      E[] tmp = (E[]) new Object[k];
-      resultArray = tmp;
-      System.arraycopy(values, 0, resultArray, 0, k);
+  /**
+   * Returns the {@code k} least elements from the given iterator according to
+   * this ordering, in order from least to greatest.  If there are fewer than
+   * {@code k} elements present, all will be included.
+   *
+   * <p>The iterator is consumed in a single pass. Unless {@code k} is at least
+   * {@code Integer.MAX_VALUE / 2}, in which case all elements are sorted,
+   * this holds {@code O(min(n, k))} of the {@code n} elements at a time, so it
+   * works for inputs much larger than memory, in {@code O(n + k log k)} time.
+   * To process parts of the input separately, for example in parallel, use
+   * {@link TopKSelector}.
+   *
+   * <p>The implementation does not necessarily use a <i>stable</i> sorting
+   * algorithm; when multiple elements are equivalent, it is undefined which
+   * will come first.
+   *
+   * @return an immutable {@code RandomAccess} list of the {@code k} least
+   *     elements in ascending order
+   * @throws IllegalArgumentException if {@code k} is negative
+   * @since 14.0
+   */
+  @Beta
+  public <E extends T> List<E> leastOf(Iterator<E> elements, int k) {
+    checkNotNull(elements);
+    checkArgument(k >= 0, "%d is negative", k);
+    if (k >= Integer.MAX_VALUE / 2) {
+      // the selector could not hold 2k elements; sort them all instead
+      return sortedPrefix(Lists.newArrayList(elements), k);
     }
+    // Only read ahead as far as the input goes, so that a large k costs
+    // nothing for a small input.
+    ArrayList<E> first = Lists.newArrayList();
+    while (first.size() <= k && elements.hasNext()) {
+      first.add(elements.next());
+    }
+    if (first.size() <= k) {
+      return sortedPrefix(first, k);
+    }
+    TopKSelector<E> selector = TopKSelector.least(k, this);
+    selector.offerAll(first);
+    first = null;
+    selector.offerAll(elements);
+    return selector.topK();
+  }
 
-    return Collections.unmodifiableList(Arrays.asList(resultArray));
+  /**
+   * Sorts {@code list} by this ordering and returns an unmodifiable view of
+   * its first {@code k} elements.
+   */
+  private <E extends T> List<E> sortedPrefix(ArrayList<E> list, int k) {
+    Collections.sort(list, this);
+    if (list.size() > k) {
+      list.subList(k, list.size()).clear();
+    }
+    list.trimToSize();
+    return Collections.unmodifiableList(list);
   }
 
   /**
@@ -631,34 +689,26 @@ public abstract class Ordering<T> implements Comparator<T> {
     return reverse().leastOf(iterable, k);
   }
 
-  private <E extends T> void quicksortLeastK(
-      E[] values, int left, int right, int k) {
-    if (right > left) {
-      int pivotIndex = (left + right) >>> 1; // left + ((right - left) / 2)
-      int pivotNewIndex = partition(values, left, right, pivotIndex);
-      quicksortLeastK(values, left, pivotNewIndex - 1, k);
-      if (pivotNewIndex < k) {
-        quicksortLeastK(values, pivotNewIndex + 1, right, k);
-      }
-    }
-  }
-
-  private <E extends T> int partition(
-      E[] values, int left, int right, int pivotIndex) {
-    E pivotValue = values[pivotIndex];
-
-    values[pivotIndex] = values[right];
-    values[right] = pivotValue;
-
-    int storeIndex = left;
-    for (int i = left; i < right; i++) {
-      if (compare(values[i], pivotValue) < 0) {
-        ObjectArrays.swap(values, storeIndex, i);
-        storeIndex++;
-      }
-    }
-    ObjectArrays.swap(values, right, storeIndex);
-    return storeIndex;
+  /**
+   * Returns the {@code k} greatest elements from the given iterator according
+   * to this ordering, in order from greatest to least. If there are fewer
+   * than {@code k} elements present, all will be included.
+   *
+   * <p>Like {@link #leastOf(Iterator, int)}, this holds {@code O(min(n, k))}
+   * of the {@code n} elements of the iterator at a time.
+   *
+   * <p>The implementation does not necessarily use a <i>stable</i> sorting
+   * algorithm; when multiple elements are equivalent, it is undefined which
+   * will come first.
+   *
+   * @return an immutable {@code RandomAccess} list of the {@code k} greatest
+   *     elements in <i>descending order</i>
+   * @throws IllegalArgumentException if {@code k} is negative
+   * @since 14.0
+   */
+  @Beta
+  public <E extends T> List<E> greatestOf(Iterator<E> elements, int k) {
+    return reverse().leastOf(elements, k);
   }
 
   /**
@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.GwtIncompatible;
+import google.common.base.Throwables;
+import google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+/**
+ * Builds very large immutable sets and maps using the threads of an {@link
+ * ExecutorService}. Each method returns a collection that is equal to, and
+ * iterates in the same order as, the one the corresponding sequential
+ * construction would return; only internal layout, such as the positions of
+ * elements in a hash table, may differ.
+ *
+ * <p>Hashed collections are built by splitting the hash table into
+ * contiguous ranges of slots and giving each range to one task, which inserts
+ * the elements whose hashes fall into it. Since equal elements have equal
+ * hashes, each task can also find duplicates on its own. The few elements
+ * whose probe sequence runs off the end of their range are inserted
+ * afterwards, in order, by the calling thread. Sorted collections are built by
+ * sorting chunks in parallel, merging them stably in parallel rounds, and then
+ * removing duplicates.
+ *
+ * <p>Tasks are submitted to the executor and awaited by the calling thread,
+ * so the executor must not be one whose threads are all busy waiting for the
+ * calling thread.
+ */
+@GwtIncompatible("java.util.concurrent")
+final class ParallelConstruction {
+  private ParallelConstruction() {}
+
+  /** Inputs smaller than this are built sequentially. */
+  static final int THRESHOLD = 1 << 16;
+
+  /** The smallest amount of work worth its own task. */
+  private static final int MIN_CHUNK_SIZE = 1 << 14;
+
+  private static final int MAX_TASKS = 64;
+
+  private static final int PARTITION_BITS = 6;
+
+  /**
+   * Returns the equivalent of {@code ImmutableSet.construct(n, elements)}.
+   * May modify {@code elements}.
+   */
+  static <E> ImmutableSet<E> buildSet(
+      Object[] elements, int n, ExecutorService executor) {
+    int tableSize = ImmutableSet.chooseTableSize(n);
+    Object[] table = new Object[tableSize];
+    int[] hashes = new int[n];
+    boolean[] duplicate = new boolean[n];
+    int duplicates = insertAll(
+        elements, null, n, table, tableSize, hashes, duplicate, null, executor);
+
+    int uniques = 0;
+    int hashCode = 0;
+    for (int i = 0; i < n; i++) {
+      if (!duplicate[i]) {
+        elements[uniques++] = elements[i];
+        hashCode += hashes[i];
+      }
+    }
+    Arrays.fill(elements, uniques, n, null);
+    if (uniques == 1) {
+      @SuppressWarnings("unchecked") // elements only holds E's
+      E element = (E) elements[0];
+      return new SingletonImmutableSet<E>(element, hashCode);
+    } else if (tableSize != ImmutableSet.chooseTableSize(uniques)) {
+      // Too many duplicates for this table size; start over with the uniques.
+      return (uniques < THRESHOLD)
+          ? ImmutableSet.<E>copyOf(ImmutableList.<E>asImmutableList(
+              ObjectArrays.arraysCopyOf(elements, uniques)))
+          : ParallelConstruction.<E>buildSet(elements, uniques, executor);
+    }
+    Object[] uniqueElements = (uniques < elements.length)
+        ? ObjectArrays.arraysCopyOf(elements, uniques)
+        : elements;
+    return new RegularImmutableSet<E>(
+        uniqueElements, hashCode, table, tableSize - 1);
+  }
+
+  /**
+   * Returns the equivalent of {@code new FlatImmutableMap<K, V>(entries)}.
+   *
+   * @throws IllegalArgumentException if two entries have equal keys
+   */
+  static <K, V> ImmutableMap<K, V> buildFlatMap(
+      Entry<?, ?>[] entries, ExecutorService executor) {
+    int n = entries.length;
+    Object[] keys = new Object[n];
+    Object[] values = new Object[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = entries[i].getKey();
+      values[i] = entries[i].getValue();
+    }
+    int tableSize = ImmutableSet.chooseTableSize(n);
+    checkArgument(tableSize < ImmutableSet.MAX_TABLE_SIZE,
+        "map too large: %s", n);
+    Object[] table = new Object[tableSize * 2];
+    int[] hashes = new int[n];
+    int[] slots = new int[n];
+    insertAll(keys, values, n, table, tableSize, hashes, null, slots, executor);
+    int keySetHashCode = 0;
+    for (int hash : hashes) {
+      keySetHashCode += hash;
+    }
+    return new FlatImmutableMap<K, V>(
+        table, tableSize - 1, slots, keySetHashCode);
+  }
+
+  /**
+   * Inserts the first {@code n} keys, and their values if {@code values} is
+   * present, into an open-addressed table of {@code tableSize} slots, probed
+   * linearly, each slot taking one array position per key or per key and
+   * value. Stores the hash code of each key in {@code hashes} and, if {@code
+   * slots} is present, the slot of each key in {@code slots}.
+   *
+   * <p>If {@code duplicate} is present, keys equal to an earlier key are
+   * marked in it and skipped, and the number of such keys is returned.
+   * Otherwise equal keys cause an {@code IllegalArgumentException}.
+   */
+  private static int insertAll(final Object[] keys,
+      @Nullable final Object[] values, final int n, final Object[] table,
+      int tableSize, final int[] hashes, @Nullable final boolean[] duplicate,
+      @Nullable final int[] slots, ExecutorService executor) {
+    final int mask = tableSize - 1;
+    final int partitionBits =
+        Math.min(PARTITION_BITS, Integer.numberOfTrailingZeros(tableSize));
+    final int partitions = 1 << partitionBits;
+    final int shift = Integer.numberOfTrailingZeros(tableSize) - partitionBits;
+    final int chunks = chunks(n);
+
+    // Hash every key, and count the keys of each chunk for each partition.
+    final int[] positions = new int[chunks * partitions];
+    List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(chunks);
+    for (int c = 0; c < chunks; c++) {
+      final int chunk = c;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          int base = chunk * partitions;
+          for (int i = start(chunk, chunks, n), end = start(chunk + 1, chunks, n);
+              i < end; i++) {
+            int hash = ObjectArrays.checkElementNotNull(keys[i], i).hashCode();
+            hashes[i] = hash;
+            positions[base + ((Hashing.smear(hash) & mask) >>> shift)]++;
+          }
+          return null;
+        }
+      });
+    }
+    runAll(tasks, executor);
+
+    // Lay out the keys of each partition consecutively, in increasing order.
+    final int[] partitionStarts = new int[partitions + 1];
+    int position = 0;
+    for (int p = 0; p < partitions; p++) {
+      partitionStarts[p] = position;
+      for (int c = 0; c < chunks; c++) {
+        int count = positions[c * partitions + p];
+        positions[c * partitions + p] = position;
+        position += count;
+      }
+    }
+    partitionStarts[partitions] = position;
+    final int[] order = new int[n];
+    tasks.clear();
+    for (int c = 0; c < chunks; c++) {
+      final int chunk = c;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          int base = chunk * partitions;
+          for (int i = start(chunk, chunks, n), end = start(chunk + 1, chunks, n);
+              i < end; i++) {
+            int partition = (Hashing.smear(hashes[i]) & mask) >>> shift;
+            order[positions[base + partition]++] = i;
+          }
+          return null;
+        }
+      });
+    }
+    runAll(tasks, executor);
+
+    // Insert each partition's keys into its own range of slots.
+    final int[][] overflows = new int[partitions][];
+    final int[] overflowCounts = new int[partitions];
+    final int[] duplicateCounts = new int[partitions];
+    tasks.clear();
+    for (int p = 0; p < partitions; p++) {
+      final int partition = p;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          int end = (partition + 1) << shift;
+          int[] overflow = new int[16];
+          int overflowCount = 0;
+          int duplicateCount = 0;
+          for (int k = partitionStarts[partition];
+              k < partitionStarts[partition + 1]; k++) {
+            int i = order[k];
+            int result = insert(keys, values, i, hashes[i], table, mask, end,
+                duplicate != null, slots);
+            if (result == DUPLICATE) {
+              duplicate[i] = true;
+              duplicateCount++;
+            } else if (result == OVERFLOW) {
+              if (overflowCount == overflow.length) {
+                overflow = Ints.ensureCapacity(overflow, overflowCount * 2, 0);
+              }
+              overflow[overflowCount++] = i;
+            }
+          }
+          overflows[partition] = overflow;
+          overflowCounts[partition] = overflowCount;
+          duplicateCounts[partition] = duplicateCount;
+          return null;
+        }
+      });
+    }
+    runAll(tasks, executor);
+
+    // Insert keys that ran past the end of their range, wrapping around.
+    int duplicates = 0;
+    for (int p = 0; p < partitions; p++) {
+      duplicates += duplicateCounts[p];
+      for (int k = 0; k < overflowCounts[p]; k++) {
+        int i = overflows[p][k];
+        if (insert(keys, values, i, hashes[i], table, mask, -1,
+            duplicate != null, slots) == DUPLICATE) {
+          duplicate[i] = true;
+          duplicates++;
+        }
+      }
+    }
+    return duplicates;
+  }
+
+  private static final int INSERTED = 0;
+  private static final int DUPLICATE = 1;
+  private static final int OVERFLOW = 2;
+
+  /**
+   * Inserts key {@code i} by probing from its home slot up to, but excluding,
+   * slot {@code end}, or around the whole table if {@code end} is negative.
+   * The probe is compared with {@code end} before it wraps, so that the keys
+   * of the last range overflow rather than probe the slots of the first.
+   */
+  private static int insert(Object[] keys, @Nullable Object[] values, int i,
+      int hash, Object[] table, int mask, int end, boolean allowDuplicates,
+      @Nullable int[] slots) {
+    Object key = keys[i];
+    int stride = (values == null) ? 1 : 2;
+    for (int j = Hashing.smear(hash) & mask; ; j++) {
+      if (j == end) {
+        return OVERFLOW;
+      }
+      int slot = j & mask;
+      Object existing = table[slot * stride];
+      if (existing == null) {
+        table[slot * stride] = key;
+        if (values != null) {
+          table[slot * stride + 1] = values[i];
+        }
+        if (slots != null) {
+          slots[i] = slot;
+        }
+        return INSERTED;
+      } else if (key.equals(existing)) {
+        checkArgument(allowDuplicates, "duplicate key: %s", key);
+        return DUPLICATE;
+      }
+    }
+  }
+
+  /**
+   * Sorts the first {@code n} elements of {@code elements} stably, like {@link
+   * Arrays#sort(Object[], int, int, Comparator)}, returning an array holding
+   * the result in its first {@code n} positions. May modify {@code elements}.
+   */
+  static Object[] sort(final Object[] elements, final int n,
+      final Comparator<Object> comparator, ExecutorService executor) {
+    final int chunks = chunks(n);
+    List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(chunks);
+    for (int c = 0; c < chunks; c++) {
+      final int chunk = c;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          Arrays.sort(elements, start(chunk, chunks, n),
+              start(chunk + 1, chunks, n), comparator);
+          return null;
+        }
+      });
+    }
+    runAll(tasks, executor);
+
+    // Merge adjacent runs, doubling their length each round.
+    Object[] source = elements;
+    Object[] target = new Object[n];
+    for (int width = 1; width < chunks; width *= 2) {
+      tasks.clear();
+      for (int c = 0; c < chunks; c += 2 * width) {
+        final Object[] from = source;
+        final Object[] to = target;
+        final int low = start(c, chunks, n);
+        final int middle = start(Math.min(c + width, chunks), chunks, n);
+        final int high = start(Math.min(c + 2 * width, chunks), chunks, n);
+        tasks.add(new Callable<Void>() {
+          public Void call() {
+            merge(from, low, middle, high, to, comparator);
+            return null;
+          }
+        });
+      }
+      runAll(tasks, executor);
+      Object[] swap = source;
+      source = target;
+      target = swap;
+    }
+    return source;
+  }
+
+  /**
+   * Merges the sorted ranges {@code [low, middle)} and {@code [middle, high)}
+   * of {@code from} into the same positions of {@code to}, taking from the
+   * first range on ties.
+   */
+  private static void merge(Object[] from, int low, int middle, int high,
+      Object[] to, Comparator<Object> comparator) {
+    int left = low;
+    int right = middle;
+    for (int i = low; i < high; i++) {
+      if (right == high
+          || (left < middle && comparator.compare(from[left], from[right]) <= 0)) {
+        to[i] = from[left++];
+      } else {
+        to[i] = from[right++];
+      }
+    }
+  }
+
+  /**
+   * Returns the equivalent of {@code ImmutableSortedSet.construct(comparator,
+   * n, contents)}. May modify {@code contents}.
+   */
+  static <E> ImmutableSortedSet<E> buildSortedSet(
+      Comparator<? super E> comparator, Object[] contents, int n,
+      ExecutorService executor) {
+    for (int i = 0; i < n; i++) {
+      ObjectArrays.checkElementNotNull(contents[i], i);
+    }
+    @SuppressWarnings("unchecked") // contents only holds E's
+    final Comparator<Object> unsafeComparator = (Comparator<Object>) comparator;
+    final Object[] sorted = sort(contents, n, unsafeComparator, executor);
+
+    // An element is kept if it differs from the one before it.
+    final int chunks = chunks(n);
+    final int[] kept = new int[chunks + 1];
+    List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(chunks);
+    for (int c = 0; c < chunks; c++) {
+      final int chunk = c;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          int count = 0;
+          for (int i = start(chunk, chunks, n), end = start(chunk + 1, chunks, n);
+              i < end; i++) {
+            if (i == 0 || unsafeComparator.compare(sorted[i - 1], sorted[i]) != 0) {
+              count++;
+            }
+          }
+          kept[chunk + 1] = count;
+          return null;
+        }
+      });
+    }
+    runAll(tasks, executor);
+    for (int c = 0; c < chunks; c++) {
+      kept[c + 1] += kept[c];
+    }
+    final Object[] uniques = new Object[kept[chunks]];
+    tasks.clear();
+    for (int c = 0; c < chunks; c++) {
+      final int chunk = c;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          int position = kept[chunk];
+          for (int i = start(chunk, chunks, n), end = start(chunk + 1, chunks, n);
+              i < end; i++) {
+            if (i == 0 || unsafeComparator.compare(sorted[i - 1], sorted[i]) != 0) {
+              uniques[position++] = sorted[i];
+            }
+          }
+          return null;
+        }
+      });
+    }
+    runAll(tasks, executor);
+    return new RegularImmutableSortedSet<E>(
+        ImmutableList.<E>asImmutableList(uniques), comparator);
+  }
+
+  private static int chunks(int n) {
+    return Math.max(1, Math.min(MAX_TASKS, n / MIN_CHUNK_SIZE));
+  }
+
+  /** Returns the first index of chunk {@code c} of the range {@code [0, n)}. */
+  private static int start(int c, int chunks, int n) {
+    return (int) ((long) n * c / chunks);
+  }
+
+  /**
+   * Runs {@code tasks} on {@code executor} and waits for all of them to
+   * finish, rethrowing the first failure. If the calling thread is
+   * interrupted, it keeps waiting and restores its interrupt status on return.
+   */
+  private static void runAll(
+      List<Callable<Void>> tasks, ExecutorService executor) {
+    checkNotNull(executor);
+    List<Future<Void>> futures = Lists.newArrayListWithCapacity(tasks.size());
+    boolean interrupted = false;
+    try {
+      for (Callable<Void> task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      for (Future<Void> future : futures) {
+        while (true) {
+          try {
+            future.get();
+            break;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      for (Future<Void> future : futures) {
+        future.cancel(false);
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
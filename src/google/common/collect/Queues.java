@@ -248,7 +248,58 @@ public final class Queues {
   public static <E> SynchronousQueue<E> newSynchronousQueue() {
     return new SynchronousQueue<E>();
   }
-  
+
+  // Ring buffers
+
+  /**
+   * Creates an empty, bounded {@code BlockingQueue} of the given capacity, for exactly one producer
+   * thread and one consumer thread. It keeps its elements in a ring buffer, and unlike {@link
+   * ArrayBlockingQueue} takes no lock: an insertion or removal costs a couple of volatile reads and
+   * writes, and the counters of the producer and the consumer are padded onto separate cache lines.
+   * {@link BlockingQueue#drainTo(Collection, int) drainTo}, and therefore {@link #drain drain},
+   * transfers a batch of elements for the price of one removal.
+   *
+   * <p>The insertion methods ({@code offer}, {@code add} and {@code put}) may only be called by the
+   * producer, and the removal and inspection methods ({@code poll}, {@code take}, {@code peek},
+   * {@code drainTo} and {@code iterator}) only by the consumer; one thread may take over either role
+   * from another once it has stopped, if they synchronize. The blocking methods wait by spinning,
+   * then yielding, then parking for at most 100 microseconds at a time, so they may react to the
+   * other side a little later than those of a lock-based queue. The queue does not support null
+   * elements nor {@code remove(Object)}.
+   *
+   * @param capacity the maximum number of elements in the queue
+   * @return a new, empty single-producer, single-consumer queue
+   * @throws IllegalArgumentException if {@code capacity} is not positive, or greater than
+   *     2<sup>30</sup>
+   * @since 14.0
+   */
+  public static <E> BlockingQueue<E> newSingleProducerSingleConsumerQueue(int capacity) {
+    return new RingBufferQueue.SingleProducer<E>(capacity);
+  }
+
+  /**
+   * Creates an empty, bounded {@code BlockingQueue} of the given capacity, for any number of
+   * producer threads and one consumer thread. It is the same as {@link
+   * #newSingleProducerSingleConsumerQueue}, except that producers claim slots with a
+   * compare-and-set, so that any thread may insert elements. It suits many threads handing work,
+   * such as log records or metric samples, to one background thread.
+   *
+   * <p>The removal and inspection methods ({@code poll}, {@code take}, {@code peek}, {@code
+   * drainTo} and {@code iterator}) may only be called by the consumer. The blocking methods wait in
+   * the same way, by spinning, then yielding, then parking. A producer that is suspended between
+   * claiming a slot and filling it holds up the consumer at that slot. The queue does not support
+   * null elements nor {@code remove(Object)}.
+   *
+   * @param capacity the maximum number of elements in the queue
+   * @return a new, empty multi-producer, single-consumer queue
+   * @throws IllegalArgumentException if {@code capacity} is not positive, or greater than
+   *     2<sup>30</sup>
+   * @since 14.0
+   */
+  public static <E> BlockingQueue<E> newMultiProducerSingleConsumerQueue(int capacity) {
+    return new RingBufferQueue.MultiProducer<E>(capacity);
+  }
+
   /**
    * Drains the queue as {@link java.util.concurrent.BlockingQueue#drainTo(java.util.Collection, int)}, but if the requested
    * {@code numElements} elements are not available, it will wait for them up to the specified
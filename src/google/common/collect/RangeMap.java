@@ -21,6 +21,7 @@ import google.common.base.Function;
 
 import java.io.Serializable;
 import java.util.AbstractMap;
+import java.util.Collection;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
@@ -96,6 +97,14 @@ import javax.annotation.Nullable;
     }
   }
 
+  /**
+   * Returns the associations of this {@code RangeMap}, ordered by the lower bounds of their
+   * ranges.
+   */
+  Collection<? extends Entry<Range<K>, V>> rangeEntries() {
+    return map.values();
+  }
+
   /**
    * Clears all associations from this {@code RangeMap}.
    */
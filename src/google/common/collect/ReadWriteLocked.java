@@ -0,0 +1,1426 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.GwtIncompatible;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Collection views guarded by a {@link ReadWriteLock}, the counterparts of
+ * those of {@link Synchronized}. Methods that modify the collection hold the
+ * write lock; methods that read it hold the read lock, so readers run in
+ * parallel with one another.
+ *
+ * <p>{@code size} and {@code isEmpty} of the backing collection itself, but
+ * not of its views, first run without any lock, as in a sequence lock: the
+ * size is accepted if no write started while it was read, and is otherwise
+ * read again under the read lock. This relies on the backing collection
+ * keeping its size in a field, and on every write going through these views,
+ * including their iterators and entries, which count as writes. Any other
+ * read, such as {@code contains} or {@code get}, could follow links that a
+ * concurrent write is rearranging, and always holds the read lock.
+ *
+ * <p>A view and the views created from it share the same {@link Guard}. The
+ * views are serializable if the backing collection and the lock are
+ * serializable.
+ *
+ * <p>This class should be used by other collection classes only.
+ */
+@GwtIncompatible("java.util.concurrent.locks")
+final class ReadWriteLocked {
+  private ReadWriteLocked() {}
+
+  /**
+   * The lock of a collection and its views, and the state that detects
+   * whether a write overlapped an unlocked read of the size of {@code
+   * backing}.
+   */
+  static final class Guard implements Serializable {
+    static final long WRITING = -1;
+
+    final ReadWriteLock lock;
+    final Object backing;
+    // the number of writes in progress
+    private final AtomicInteger writers = new AtomicInteger();
+    // advanced at the start and at the end of every write
+    private final AtomicLong sequence = new AtomicLong();
+
+    Guard(ReadWriteLock lock, Object backing) {
+      this.lock = checkNotNull(lock);
+      this.backing = checkNotNull(backing);
+    }
+
+    void lockRead() {
+      lock.readLock().lock();
+    }
+
+    void unlockRead() {
+      lock.readLock().unlock();
+    }
+
+    void lockWrite() {
+      lock.writeLock().lock();
+      beginWrite();
+    }
+
+    void unlockWrite() {
+      endWrite();
+      lock.writeLock().unlock();
+    }
+
+    /** Marks the start of a write by a caller that holds the write lock. */
+    void beginWrite() {
+      writers.incrementAndGet();
+      sequence.incrementAndGet();
+    }
+
+    void endWrite() {
+      sequence.incrementAndGet();
+      writers.decrementAndGet();
+    }
+
+    /**
+     * Returns a stamp to {@link #validate} after an unlocked read, or {@link
+     * #WRITING} if a write is in progress.
+     */
+    long tryOptimisticRead() {
+      long stamp = sequence.get();
+      return (writers.get() == 0) ? stamp : WRITING;
+    }
+
+    /**
+     * Returns {@code true} if no write started since {@code stamp} was
+     * returned. A compare-and-set, unlike a plain volatile read, keeps the
+     * unlocked reads of the collection that precede it from being reordered
+     * after it.
+     */
+    boolean validate(long stamp) {
+      return sequence.compareAndSet(stamp, stamp);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  abstract static class LockedObject implements Serializable {
+    final Object delegate;
+    final Guard guard;
+
+    LockedObject(Object delegate, Guard guard) {
+      this.delegate = checkNotNull(delegate);
+      this.guard = guard;
+    }
+
+    Object delegate() {
+      return delegate;
+    }
+
+    /** Returns the size of the delegate. */
+    abstract int delegateSize();
+
+    /**
+     * Returns the size of the delegate, read without a lock, or -1 if the
+     * delegate is not the backing collection, whose size is a field read, or
+     * if a write is in progress or started during the read.
+     */
+    final int unlockedSize() {
+      if (delegate == guard.backing) {
+        long stamp = guard.tryOptimisticRead();
+        if (stamp != Guard.WRITING) {
+          int size = delegateSize();
+          if (guard.validate(stamp)) {
+            return size;
+          }
+        }
+      }
+      return -1;
+    }
+
+    // No equals and hashCode; see ForwardingObject for details.
+
+    @Override public String toString() {
+      guard.lockRead();
+      try {
+        return delegate.toString();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+      guard.lockRead();
+      try {
+        stream.defaultWriteObject();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /**
+   * Returns an iterator whose {@code remove} is counted as a write, to be
+   * called while holding the write lock.
+   */
+  private static <E> Iterator<E> writeCountingIterator(
+      final Iterator<E> iterator, final Guard guard) {
+    return new ForwardingIterator<E>() {
+      @Override protected Iterator<E> delegate() {
+        return iterator;
+      }
+
+      @Override public void remove() {
+        guard.beginWrite();
+        try {
+          iterator.remove();
+        } finally {
+          guard.endWrite();
+        }
+      }
+    };
+  }
+
+  private static <E> ListIterator<E> writeCountingListIterator(
+      final ListIterator<E> iterator, final Guard guard) {
+    return new ForwardingListIterator<E>() {
+      @Override protected ListIterator<E> delegate() {
+        return iterator;
+      }
+
+      @Override public void remove() {
+        guard.beginWrite();
+        try {
+          iterator.remove();
+        } finally {
+          guard.endWrite();
+        }
+      }
+
+      @Override public void set(E e) {
+        guard.beginWrite();
+        try {
+          iterator.set(e);
+        } finally {
+          guard.endWrite();
+        }
+      }
+
+      @Override public void add(E e) {
+        guard.beginWrite();
+        try {
+          iterator.add(e);
+        } finally {
+          guard.endWrite();
+        }
+      }
+    };
+  }
+
+  static <E> Collection<E> collection(Collection<E> collection, Guard guard) {
+    return new LockedCollection<E>(collection, guard);
+  }
+
+  static class LockedCollection<E> extends LockedObject
+      implements Collection<E> {
+    LockedCollection(Collection<E> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override Collection<E> delegate() {
+      return (Collection<E>) super.delegate();
+    }
+
+    @Override int delegateSize() {
+      return delegate().size();
+    }
+
+    public boolean add(E e) {
+      guard.lockWrite();
+      try {
+        return delegate().add(e);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean addAll(Collection<? extends E> c) {
+      guard.lockWrite();
+      try {
+        return delegate().addAll(c);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public void clear() {
+      guard.lockWrite();
+      try {
+        delegate().clear();
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean contains(Object o) {
+      guard.lockRead();
+      try {
+        return delegate().contains(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean containsAll(Collection<?> c) {
+      guard.lockRead();
+      try {
+        return delegate().containsAll(c);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean isEmpty() {
+      int size = unlockedSize();
+      if (size >= 0) {
+        return size == 0;
+      }
+      guard.lockRead();
+      try {
+        return delegate().isEmpty();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public Iterator<E> iterator() {
+      return writeCountingIterator(delegate().iterator(), guard); // manually locked
+    }
+
+    public boolean remove(Object o) {
+      guard.lockWrite();
+      try {
+        return delegate().remove(o);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean removeAll(Collection<?> c) {
+      guard.lockWrite();
+      try {
+        return delegate().removeAll(c);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean retainAll(Collection<?> c) {
+      guard.lockWrite();
+      try {
+        return delegate().retainAll(c);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public int size() {
+      int size = unlockedSize();
+      if (size >= 0) {
+        return size;
+      }
+      guard.lockRead();
+      try {
+        return delegate().size();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public Object[] toArray() {
+      guard.lockRead();
+      try {
+        return delegate().toArray();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public <T> T[] toArray(T[] a) {
+      guard.lockRead();
+      try {
+        return delegate().toArray(a);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static <E> Set<E> set(Set<E> set, Guard guard) {
+    return new LockedSet<E>(set, guard);
+  }
+
+  static class LockedSet<E> extends LockedCollection<E> implements Set<E> {
+    LockedSet(Set<E> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override Set<E> delegate() {
+      return (Set<E>) super.delegate();
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      guard.lockRead();
+      try {
+        return delegate().equals(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    @Override public int hashCode() {
+      guard.lockRead();
+      try {
+        return delegate().hashCode();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  private static <E> SortedSet<E> sortedSet(SortedSet<E> set, Guard guard) {
+    return new LockedSortedSet<E>(set, guard);
+  }
+
+  static class LockedSortedSet<E> extends LockedSet<E>
+      implements SortedSet<E> {
+    LockedSortedSet(SortedSet<E> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override SortedSet<E> delegate() {
+      return (SortedSet<E>) super.delegate();
+    }
+
+    public Comparator<? super E> comparator() {
+      return delegate().comparator();
+    }
+
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+      return sortedSet(delegate().subSet(fromElement, toElement), guard);
+    }
+
+    public SortedSet<E> headSet(E toElement) {
+      return sortedSet(delegate().headSet(toElement), guard);
+    }
+
+    public SortedSet<E> tailSet(E fromElement) {
+      return sortedSet(delegate().tailSet(fromElement), guard);
+    }
+
+    public E first() {
+      guard.lockRead();
+      try {
+        return delegate().first();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public E last() {
+      guard.lockRead();
+      try {
+        return delegate().last();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static <E> NavigableSet<E> navigableSet(NavigableSet<E> set, Guard guard) {
+    return new LockedNavigableSet<E>(set, guard);
+  }
+
+  static class LockedNavigableSet<E> extends LockedSortedSet<E>
+      implements NavigableSet<E> {
+    LockedNavigableSet(NavigableSet<E> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override NavigableSet<E> delegate() {
+      return (NavigableSet<E>) super.delegate();
+    }
+
+    public E ceiling(E e) {
+      guard.lockRead();
+      try {
+        return delegate().ceiling(e);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public Iterator<E> descendingIterator() {
+      return writeCountingIterator(delegate().descendingIterator(), guard); // manually locked
+    }
+
+    public NavigableSet<E> descendingSet() {
+      return navigableSet(delegate().descendingSet(), guard);
+    }
+
+    public E floor(E e) {
+      guard.lockRead();
+      try {
+        return delegate().floor(e);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+      return navigableSet(delegate().headSet(toElement, inclusive), guard);
+    }
+
+    public E higher(E e) {
+      guard.lockRead();
+      try {
+        return delegate().higher(e);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public E lower(E e) {
+      guard.lockRead();
+      try {
+        return delegate().lower(e);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public E pollFirst() {
+      guard.lockWrite();
+      try {
+        return delegate().pollFirst();
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public E pollLast() {
+      guard.lockWrite();
+      try {
+        return delegate().pollLast();
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive,
+        E toElement, boolean toInclusive) {
+      return navigableSet(delegate().subSet(
+          fromElement, fromInclusive, toElement, toInclusive), guard);
+    }
+
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+      return navigableSet(delegate().tailSet(fromElement, inclusive), guard);
+    }
+
+    @Override public SortedSet<E> headSet(E toElement) {
+      return headSet(toElement, false);
+    }
+
+    @Override public SortedSet<E> subSet(E fromElement, E toElement) {
+      return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override public SortedSet<E> tailSet(E fromElement) {
+      return tailSet(fromElement, true);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  private static <E> List<E> list(List<E> list, Guard guard) {
+    return (list instanceof RandomAccess)
+        ? new LockedRandomAccessList<E>(list, guard)
+        : new LockedList<E>(list, guard);
+  }
+
+  private static class LockedList<E> extends LockedCollection<E>
+      implements List<E> {
+    LockedList(List<E> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override List<E> delegate() {
+      return (List<E>) super.delegate();
+    }
+
+    public void add(int index, E element) {
+      guard.lockWrite();
+      try {
+        delegate().add(index, element);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean addAll(int index, Collection<? extends E> c) {
+      guard.lockWrite();
+      try {
+        return delegate().addAll(index, c);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public E get(int index) {
+      guard.lockRead();
+      try {
+        return delegate().get(index);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public int indexOf(Object o) {
+      guard.lockRead();
+      try {
+        return delegate().indexOf(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public int lastIndexOf(Object o) {
+      guard.lockRead();
+      try {
+        return delegate().lastIndexOf(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public ListIterator<E> listIterator() {
+      return writeCountingListIterator(delegate().listIterator(), guard); // manually locked
+    }
+
+    public ListIterator<E> listIterator(int index) {
+      return writeCountingListIterator(delegate().listIterator(index), guard); // manually locked
+    }
+
+    public E remove(int index) {
+      guard.lockWrite();
+      try {
+        return delegate().remove(index);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public E set(int index, E element) {
+      guard.lockWrite();
+      try {
+        return delegate().set(index, element);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public List<E> subList(int fromIndex, int toIndex) {
+      return list(delegate().subList(fromIndex, toIndex), guard);
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      guard.lockRead();
+      try {
+        return delegate().equals(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    @Override public int hashCode() {
+      guard.lockRead();
+      try {
+        return delegate().hashCode();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  private static class LockedRandomAccessList<E> extends LockedList<E>
+      implements RandomAccess {
+    LockedRandomAccessList(List<E> list, Guard guard) {
+      super(list, guard);
+    }
+    private static final long serialVersionUID = 0;
+  }
+
+  private static <E> Multiset<E> multiset(Multiset<E> multiset, Guard guard) {
+    return new LockedMultiset<E>(multiset, guard);
+  }
+
+  private static class LockedMultiset<E> extends LockedCollection<E>
+      implements Multiset<E> {
+    transient Set<E> elementSet;
+    transient Set<Multiset.Entry<E>> entrySet;
+
+    LockedMultiset(Multiset<E> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override Multiset<E> delegate() {
+      return (Multiset<E>) super.delegate();
+    }
+
+    public int count(Object o) {
+      guard.lockRead();
+      try {
+        return delegate().count(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public int add(E e, int n) {
+      guard.lockWrite();
+      try {
+        return delegate().add(e, n);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public int remove(Object o, int n) {
+      guard.lockWrite();
+      try {
+        return delegate().remove(o, n);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public int setCount(E element, int count) {
+      guard.lockWrite();
+      try {
+        return delegate().setCount(element, count);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean setCount(E element, int oldCount, int newCount) {
+      guard.lockWrite();
+      try {
+        return delegate().setCount(element, oldCount, newCount);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public Set<E> elementSet() {
+      if (elementSet == null) {
+        elementSet = typePreservingSet(delegate().elementSet(), guard);
+      }
+      return elementSet;
+    }
+
+    public Set<Multiset.Entry<E>> entrySet() {
+      if (entrySet == null) {
+        entrySet = set(delegate().entrySet(), guard);
+      }
+      return entrySet;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      guard.lockRead();
+      try {
+        return delegate().equals(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    @Override public int hashCode() {
+      guard.lockRead();
+      try {
+        return delegate().hashCode();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static <K, V> Map<K, V> map(Map<K, V> map, Guard guard) {
+    return new LockedMap<K, V>(map, guard);
+  }
+
+  static class LockedMap<K, V> extends LockedObject implements Map<K, V> {
+    transient Set<K> keySet;
+    transient Collection<V> values;
+    transient Set<Entry<K, V>> entrySet;
+
+    LockedMap(Map<K, V> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override Map<K, V> delegate() {
+      return (Map<K, V>) super.delegate();
+    }
+
+    @Override int delegateSize() {
+      return delegate().size();
+    }
+
+    public void clear() {
+      guard.lockWrite();
+      try {
+        delegate().clear();
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean containsKey(Object key) {
+      guard.lockRead();
+      try {
+        return delegate().containsKey(key);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean containsValue(Object value) {
+      guard.lockRead();
+      try {
+        return delegate().containsValue(value);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public Set<Entry<K, V>> entrySet() {
+      if (entrySet == null) {
+        entrySet = new LockedEntrySet<K, V>(delegate().entrySet(), guard);
+      }
+      return entrySet;
+    }
+
+    public V get(Object key) {
+      guard.lockRead();
+      try {
+        return delegate().get(key);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean isEmpty() {
+      int size = unlockedSize();
+      if (size >= 0) {
+        return size == 0;
+      }
+      guard.lockRead();
+      try {
+        return delegate().isEmpty();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public Set<K> keySet() {
+      if (keySet == null) {
+        keySet = set(delegate().keySet(), guard);
+      }
+      return keySet;
+    }
+
+    public V put(K key, V value) {
+      guard.lockWrite();
+      try {
+        return delegate().put(key, value);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public void putAll(Map<? extends K, ? extends V> map) {
+      guard.lockWrite();
+      try {
+        delegate().putAll(map);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public V remove(Object key) {
+      guard.lockWrite();
+      try {
+        return delegate().remove(key);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public int size() {
+      int size = unlockedSize();
+      if (size >= 0) {
+        return size;
+      }
+      guard.lockRead();
+      try {
+        return delegate().size();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public Collection<V> values() {
+      if (values == null) {
+        values = collection(delegate().values(), guard);
+      }
+      return values;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      guard.lockRead();
+      try {
+        return delegate().equals(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    @Override public int hashCode() {
+      guard.lockRead();
+      try {
+        return delegate().hashCode();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /**
+   * The entry set of a map, whose iterator's entries count {@code setValue}
+   * as a write, to be called while holding the write lock.
+   */
+  private static class LockedEntrySet<K, V> extends LockedSet<Entry<K, V>> {
+    LockedEntrySet(Set<Entry<K, V>> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override public Iterator<Entry<K, V>> iterator() {
+      final Iterator<Entry<K, V>> iterator = super.iterator(); // manually locked
+      return new ForwardingIterator<Entry<K, V>>() {
+        @Override protected Iterator<Entry<K, V>> delegate() {
+          return iterator;
+        }
+
+        @Override public Entry<K, V> next() {
+          final Entry<K, V> entry = super.next();
+          return new ForwardingMapEntry<K, V>() {
+            @Override protected Entry<K, V> delegate() {
+              return entry;
+            }
+
+            @Override public V setValue(V value) {
+              guard.beginWrite();
+              try {
+                return entry.setValue(value);
+              } finally {
+                guard.endWrite();
+              }
+            }
+          };
+        }
+      };
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static <K, V> Multimap<K, V> multimap(Multimap<K, V> multimap, Guard guard) {
+    if (multimap instanceof ImmutableMultimap) {
+      return multimap;
+    }
+    return new LockedMultimap<K, V>(multimap, guard);
+  }
+
+  private static class LockedMultimap<K, V> extends LockedObject
+      implements Multimap<K, V> {
+    transient Set<K> keySet;
+    transient Collection<V> valuesCollection;
+    transient Collection<Entry<K, V>> entries;
+    transient Map<K, Collection<V>> asMap;
+    transient Multiset<K> keys;
+
+    LockedMultimap(Multimap<K, V> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override Multimap<K, V> delegate() {
+      return (Multimap<K, V>) super.delegate();
+    }
+
+    @Override int delegateSize() {
+      return delegate().size();
+    }
+
+    public int size() {
+      int size = unlockedSize();
+      if (size >= 0) {
+        return size;
+      }
+      guard.lockRead();
+      try {
+        return delegate().size();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean isEmpty() {
+      int size = unlockedSize();
+      if (size >= 0) {
+        return size == 0;
+      }
+      guard.lockRead();
+      try {
+        return delegate().isEmpty();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean containsKey(Object key) {
+      guard.lockRead();
+      try {
+        return delegate().containsKey(key);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean containsValue(Object value) {
+      guard.lockRead();
+      try {
+        return delegate().containsValue(value);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean containsEntry(Object key, Object value) {
+      guard.lockRead();
+      try {
+        return delegate().containsEntry(key, value);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public Collection<V> get(K key) {
+      guard.lockRead();
+      try {
+        return typePreservingCollection(delegate().get(key), guard);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    public boolean put(K key, V value) {
+      guard.lockWrite();
+      try {
+        return delegate().put(key, value);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean putAll(K key, Iterable<? extends V> values) {
+      guard.lockWrite();
+      try {
+        return delegate().putAll(key, values);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean putAll(Multimap<? extends K, ? extends V> multimap) {
+      guard.lockWrite();
+      try {
+        return delegate().putAll(multimap);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public Collection<V> replaceValues(K key, Iterable<? extends V> values) {
+      guard.lockWrite();
+      try {
+        return delegate().replaceValues(key, values); // copy not locked
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public boolean remove(Object key, Object value) {
+      guard.lockWrite();
+      try {
+        return delegate().remove(key, value);
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public Collection<V> removeAll(Object key) {
+      guard.lockWrite();
+      try {
+        return delegate().removeAll(key); // copy not locked
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public void clear() {
+      guard.lockWrite();
+      try {
+        delegate().clear();
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    public Set<K> keySet() {
+      if (keySet == null) {
+        keySet = typePreservingSet(delegate().keySet(), guard);
+      }
+      return keySet;
+    }
+
+    public Collection<V> values() {
+      if (valuesCollection == null) {
+        valuesCollection = collection(delegate().values(), guard);
+      }
+      return valuesCollection;
+    }
+
+    public Collection<Entry<K, V>> entries() {
+      if (entries == null) {
+        entries = typePreservingCollection(delegate().entries(), guard);
+      }
+      return entries;
+    }
+
+    public Map<K, Collection<V>> asMap() {
+      if (asMap == null) {
+        asMap = new LockedAsMap<K, V>(delegate().asMap(), guard);
+      }
+      return asMap;
+    }
+
+    public Multiset<K> keys() {
+      if (keys == null) {
+        keys = multiset(delegate().keys(), guard);
+      }
+      return keys;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      guard.lockRead();
+      try {
+        return delegate().equals(o);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    @Override public int hashCode() {
+      guard.lockRead();
+      try {
+        return delegate().hashCode();
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static <K, V> ListMultimap<K, V> listMultimap(
+      ListMultimap<K, V> multimap, Guard guard) {
+    if (multimap instanceof ImmutableListMultimap) {
+      return multimap;
+    }
+    return new LockedListMultimap<K, V>(multimap, guard);
+  }
+
+  private static class LockedListMultimap<K, V>
+      extends LockedMultimap<K, V> implements ListMultimap<K, V> {
+    LockedListMultimap(ListMultimap<K, V> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override ListMultimap<K, V> delegate() {
+      return (ListMultimap<K, V>) super.delegate();
+    }
+
+    @Override public List<V> get(K key) {
+      guard.lockRead();
+      try {
+        return list(delegate().get(key), guard);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    @Override public List<V> removeAll(Object key) {
+      guard.lockWrite();
+      try {
+        return delegate().removeAll(key); // copy not locked
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    @Override public List<V> replaceValues(K key, Iterable<? extends V> values) {
+      guard.lockWrite();
+      try {
+        return delegate().replaceValues(key, values); // copy not locked
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  static <K, V> SetMultimap<K, V> setMultimap(
+      SetMultimap<K, V> multimap, Guard guard) {
+    if (multimap instanceof ImmutableSetMultimap) {
+      return multimap;
+    }
+    return new LockedSetMultimap<K, V>(multimap, guard);
+  }
+
+  private static class LockedSetMultimap<K, V>
+      extends LockedMultimap<K, V> implements SetMultimap<K, V> {
+    transient Set<Entry<K, V>> entrySet;
+
+    LockedSetMultimap(SetMultimap<K, V> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override SetMultimap<K, V> delegate() {
+      return (SetMultimap<K, V>) super.delegate();
+    }
+
+    @Override public Set<V> get(K key) {
+      guard.lockRead();
+      try {
+        return typePreservingSet(delegate().get(key), guard);
+      } finally {
+        guard.unlockRead();
+      }
+    }
+
+    @Override public Set<V> removeAll(Object key) {
+      guard.lockWrite();
+      try {
+        return delegate().removeAll(key); // copy not locked
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    @Override public Set<V> replaceValues(K key, Iterable<? extends V> values) {
+      guard.lockWrite();
+      try {
+        return delegate().replaceValues(key, values); // copy not locked
+      } finally {
+        guard.unlockWrite();
+      }
+    }
+
+    @Override public Set<Entry<K, V>> entries() {
+      if (entrySet == null) {
+        entrySet = set(delegate().entries(), guard);
+      }
+      return entrySet;
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  private static <E> Collection<E> typePreservingCollection(
+      Collection<E> collection, Guard guard) {
+    if (collection instanceof SortedSet) {
+      return sortedSet((SortedSet<E>) collection, guard);
+    }
+    if (collection instanceof Set) {
+      return set((Set<E>) collection, guard);
+    }
+    if (collection instanceof List) {
+      return list((List<E>) collection, guard);
+    }
+    return collection(collection, guard);
+  }
+
+  private static <E> Set<E> typePreservingSet(Set<E> set, Guard guard) {
+    if (set instanceof SortedSet) {
+      return sortedSet((SortedSet<E>) set, guard);
+    } else {
+      return set(set, guard);
+    }
+  }
+
+  /**
+   * The {@code asMap} view of a multimap, whose value collections are guarded
+   * by the same lock.
+   */
+  private static class LockedAsMap<K, V> extends LockedMap<K, Collection<V>> {
+    transient Set<Entry<K, Collection<V>>> asMapEntrySet;
+    transient Collection<Collection<V>> asMapValues;
+
+    LockedAsMap(Map<K, Collection<V>> delegate, Guard guard) {
+      super(delegate, guard);
+    }
+
+    @Override public Collection<V> get(Object key) {
+      Collection<V> collection = super.get(key);
+      return (collection == null)
+          ? null : typePreservingCollection(collection, guard);
+    }
+
+    @Override public Set<Entry<K, Collection<V>>> entrySet() {
+      if (asMapEntrySet == null) {
+        asMapEntrySet = new LockedSet<Entry<K, Collection<V>>>(
+            delegate().entrySet(), guard) {
+          @Override public Iterator<Entry<K, Collection<V>>> iterator() {
+            // Must be manually locked.
+            final Iterator<Entry<K, Collection<V>>> iterator = super.iterator();
+            return new ForwardingIterator<Entry<K, Collection<V>>>() {
+              @Override protected Iterator<Entry<K, Collection<V>>> delegate() {
+                return iterator;
+              }
+
+              @Override public Entry<K, Collection<V>> next() {
+                final Entry<K, Collection<V>> entry = super.next();
+                return new ForwardingMapEntry<K, Collection<V>>() {
+                  @Override protected Entry<K, Collection<V>> delegate() {
+                    return entry;
+                  }
+
+                  @Override public Collection<V> getValue() {
+                    return typePreservingCollection(entry.getValue(), guard);
+                  }
+                };
+              }
+            };
+          }
+
+          private static final long serialVersionUID = 0;
+        };
+      }
+      return asMapEntrySet;
+    }
+
+    @Override public Collection<Collection<V>> values() {
+      if (asMapValues == null) {
+        asMapValues = new LockedCollection<Collection<V>>(
+            delegate().values(), guard) {
+          @Override public Iterator<Collection<V>> iterator() {
+            // Must be manually locked.
+            final Iterator<Collection<V>> iterator = super.iterator();
+            return new ForwardingIterator<Collection<V>>() {
+              @Override protected Iterator<Collection<V>> delegate() {
+                return iterator;
+              }
+
+              @Override public Collection<V> next() {
+                return typePreservingCollection(super.next(), guard);
+              }
+            };
+          }
+
+          private static final long serialVersionUID = 0;
+        };
+      }
+      return asMapValues;
+    }
+
+    @Override public boolean containsValue(Object o) {
+      // values() and its contains implementations are both O(n)
+      return values().contains(o);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+}
@@ -48,13 +48,52 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
 
   private transient final ImmutableList<E> elements;
 
+  /*
+   * Large sets search through an index instead of binary searching elements.
+   * Subsets share the index of the set they came from; elements starts at
+   * position indexOffset of the indexed list.
+   */
+  @Nullable private transient final EytzingerIndex<E> index;
+  private transient final int indexOffset;
+
   RegularImmutableSortedSet(
       ImmutableList<E> elements, Comparator<? super E> comparator) {
+    this(elements, comparator,
+        (elements.size() >= EytzingerIndex.THRESHOLD)
+            ? new EytzingerIndex<E>(elements, comparator)
+            : null,
+        0);
+  }
+
+  private RegularImmutableSortedSet(ImmutableList<E> elements,
+      Comparator<? super E> comparator, @Nullable EytzingerIndex<E> index,
+      int indexOffset) {
     super(comparator);
     this.elements = elements;
+    this.index = index;
+    this.indexOffset = indexOffset;
     checkArgument(!elements.isEmpty());
   }
 
+  /**
+   * Returns the position in this set of the first element greater than
+   * {@code key}, if {@code strict}, or not less than it otherwise. Must only
+   * be called when {@code index} is present.
+   */
+  private int searchIndex(Object key, boolean strict) {
+    int position = index.search(key, strict) - indexOffset;
+    return Math.max(0, Math.min(position, elements.size()));
+  }
+
+  /**
+   * Returns the position of {@code key} through the index, or {@code -1}.
+   */
+  private int indexedIndexOf(Object key) {
+    int position = searchIndex(key, false);
+    return (position < elements.size()
+        && unsafeCompare(elements.get(position), key) == 0) ? position : -1;
+  }
+
    public UnmodifiableIterator<E> iterator() {
     return elements.iterator();
   }
@@ -126,6 +165,9 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   }
 
   private int unsafeBinarySearch(Object key) throws ClassCastException {
+    if (index != null) {
+      return indexedIndexOf(key);
+    }
     return Collections.binarySearch(elements, key, unsafeComparator());
   }
 
@@ -192,6 +234,9 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   }
 
   int headIndex(E toElement, boolean inclusive) {
+    if (index != null) {
+      return searchIndex(checkNotNull(toElement), inclusive);
+    }
     return SortedLists.binarySearch(
         elements, checkNotNull(toElement), comparator(),
         inclusive ? FIRST_AFTER : FIRST_PRESENT, NEXT_HIGHER);
@@ -210,6 +255,9 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   }
 
   int tailIndex(E fromElement, boolean inclusive) {
+    if (index != null) {
+      return searchIndex(checkNotNull(fromElement), !inclusive);
+    }
     return SortedLists.binarySearch(
         elements,
         checkNotNull(fromElement),
@@ -230,7 +278,8 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
       return this;
     } else if (newFromIndex < newToIndex) {
       return new RegularImmutableSortedSet<E>(
-          elements.subList(newFromIndex, newToIndex), comparator);
+          elements.subList(newFromIndex, newToIndex), comparator, index,
+          indexOffset + newFromIndex);
     } else {
       return emptySet(comparator);
     }
@@ -242,6 +291,9 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
     }
     int position;
     try {
+      if (index != null) {
+        return indexedIndexOf(target);
+      }
       position = SortedLists.binarySearch(elements, target, unsafeComparator(),
           ANY_PRESENT, INVERTED_INSERTION_INDEX);
     } catch (ClassCastException e) {
@@ -256,7 +308,8 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
 
   
   ImmutableSortedSet<E> createDescendingSet() {
+    // The index only answers searches in ascending order.
     return new RegularImmutableSortedSet<E>(elements.reverse(),
-        Ordering.from(comparator).reverse());
+        Ordering.from(comparator).reverse(), null, 0);
   }
 }
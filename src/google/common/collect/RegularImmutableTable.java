@@ -17,6 +17,7 @@
 package google.common.collect;
 
 import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
 import static google.common.base.Preconditions.checkNotNull;
 
 import google.common.annotations.GwtCompatible;
@@ -24,6 +25,7 @@ import google.common.annotations.VisibleForTesting;
 import google.common.base.Function;
 import google.common.base.Objects;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -41,9 +43,16 @@ import javax.annotation.concurrent.Immutable;
 @GwtCompatible
 abstract class RegularImmutableTable<R, C, V> extends ImmutableTable<R, C, V> {
   // TODO(user): split DenseImmutableTable, SparseImmutableTable into their own classes
-  private final ImmutableSet<Cell<R, C, V>> cellSet;
+  // null for tables that override cellSet() with a view of their own storage
+  @Nullable private final ImmutableSet<Cell<R, C, V>> cellSet;
 
-  private RegularImmutableTable(ImmutableSet<Cell<R, C, V>> cellSet) {
+  /**
+   * The number of cells at which a sparse table is stored in compressed form
+   * rather than as nested maps.
+   */
+  static final int COMPRESSED_LAYOUT_THRESHOLD = 1024;
+
+  private RegularImmutableTable(@Nullable ImmutableSet<Cell<R, C, V>> cellSet) {
     this.cellSet = cellSet;
   }
 
@@ -62,7 +71,7 @@ abstract class RegularImmutableTable<R, C, V> extends ImmutableTable<R, C, V> {
 
   @Nullable private transient volatile ImmutableList<V> valueList;
 
-   public final ImmutableCollection<V> values() {
+   public ImmutableCollection<V> values() {
     ImmutableList<V> result = valueList;
     if (result == null) {
       valueList = result = ImmutableList.copyOf(
@@ -83,7 +92,7 @@ abstract class RegularImmutableTable<R, C, V> extends ImmutableTable<R, C, V> {
     return false;
   }
 
-   public final ImmutableSet<Cell<R, C, V>> cellSet() {
+   public ImmutableSet<Cell<R, C, V>> cellSet() {
     return cellSet;
   }
 
@@ -123,6 +132,19 @@ abstract class RegularImmutableTable<R, C, V> extends ImmutableTable<R, C, V> {
     return forCellsInternal(cells, null, null);
   }
 
+  /**
+   * Maps each element of {@code set} to its position in iteration order.
+   */
+  private static <E> ImmutableMap<E, Integer> makeIndex(ImmutableSet<E> set) {
+    ImmutableMap.Builder<E, Integer> indexBuilder = ImmutableMap.builder();
+    int i = 0;
+    for (E key : set) {
+      indexBuilder.put(key, i);
+      i++;
+    }
+    return indexBuilder.build();
+  }
+
   /**
    * A factory that chooses the most space-efficient representation of the
    * table.
@@ -156,9 +178,13 @@ abstract class RegularImmutableTable<R, C, V> extends ImmutableTable<R, C, V> {
 
     // use a dense table if more than half of the cells have values
     // TODO(gak): tune this condition based on empirical evidence
-    return (cellSet.size() > ((rowSpace.size() * columnSpace.size()) / 2 )) ?
-        new DenseImmutableTable<R, C, V>(cellSet, rowSpace, columnSpace) :
-        new SparseImmutableTable<R, C, V>(cellSet, rowSpace, columnSpace);
+    if (cellSet.size() > (((long) rowSpace.size() * columnSpace.size()) / 2)) {
+      return new DenseImmutableTable<R, C, V>(cellSet, rowSpace, columnSpace);
+    } else if (cellSet.size() >= COMPRESSED_LAYOUT_THRESHOLD) {
+      return new CompressedImmutableTable<R, C, V>(cellSet, rowSpace, columnSpace);
+    } else {
+      return new SparseImmutableTable<R, C, V>(cellSet, rowSpace, columnSpace);
+    }
   }
 
   /**
@@ -370,18 +396,6 @@ abstract class RegularImmutableTable<R, C, V> extends ImmutableTable<R, C, V> {
     private final int[] columnCounts;
     private final V[][] values;
 
-    private static <E> ImmutableMap<E, Integer> makeIndex(
-        ImmutableSet<E> set) {
-      ImmutableMap.Builder<E, Integer> indexBuilder =
-          ImmutableMap.builder();
-      int i = 0;
-      for (E key : set) {
-        indexBuilder.put(key, i);
-        i++;
-      }
-      return indexBuilder.build();
-    }
-
     DenseImmutableTable(ImmutableSet<Cell<R, C, V>> cellSet,
         ImmutableSet<R> rowSpace, ImmutableSet<C> columnSpace) {
       super(cellSet);
@@ -556,4 +570,504 @@ abstract class RegularImmutableTable<R, C, V> extends ImmutableTable<R, C, V> {
       return rowMap;
     }
   }
+
+  /**
+   * A {@code RegularImmutableTable} for large sparse data, stored in
+   * compressed sparse row form: the cells are grouped by row, and their column
+   * indexes and values are kept in two flat arrays, with an array of offsets
+   * marking where each row starts. Rows are found through a row key index, and
+   * a cell within a row by binary search on its column index, so {@link #get}
+   * and {@link #row} take {@code O(log n)} time without allocating a map per
+   * row or a map entry per cell.
+   *
+   * <p>The same cells grouped by column, which {@link #column} and {@link
+   * #columnMap} need, are indexed on the first call to either of them.
+   */
+  @Immutable @VisibleForTesting
+  static final class CompressedImmutableTable<R, C, V>
+      extends RegularImmutableTable<R, C, V> {
+
+    private final ImmutableMap<R, Integer> rowKeyToIndex;
+    private final ImmutableMap<C, Integer> columnKeyToIndex;
+    private final ImmutableList<R> rowKeys;
+    private final ImmutableList<C> columnKeys;
+    // the cells of row i are at positions rowOffsets[i] up to rowOffsets[i + 1]
+    private final int[] rowOffsets;
+    // the column index and value of the cell at each position
+    private final int[] columnIndices;
+    private final Object[] values;
+    /*
+     * For each row, the positions of its cells relative to the start of the
+     * row, in column index order; null if every row is already in that order.
+     */
+    @Nullable private final int[] rowSortOrder;
+    // the position of each cell of cellSet(), or null if they are the same
+    @Nullable private final int[] cellOrder;
+    private final ImmutableMap<R, Map<C, V>> rowMap;
+    private final ImmutableMap<C, Map<R, V>> columnMap;
+    @Nullable private transient volatile ColumnIndex columnIndex;
+    @Nullable private transient ImmutableSet<Cell<R, C, V>> cellSetView;
+
+    CompressedImmutableTable(ImmutableSet<Cell<R, C, V>> cellSet,
+        ImmutableSet<R> rowSpace, ImmutableSet<C> columnSpace) {
+      super(null);
+      this.rowKeyToIndex = makeIndex(rowSpace);
+      this.columnKeyToIndex = makeIndex(columnSpace);
+      this.rowKeys = rowSpace.asList();
+      this.columnKeys = columnSpace.asList();
+      int size = cellSet.size();
+
+      int[] cellRows = new int[size];
+      int[] cellColumns = new int[size];
+      rowOffsets = new int[rowKeys.size() + 1];
+      int i = 0;
+      for (Cell<R, C, V> cell : cellSet) {
+        int rowIndex = rowKeyToIndex.get(cell.getRowKey());
+        cellRows[i] = rowIndex;
+        cellColumns[i] = columnKeyToIndex.get(cell.getColumnKey());
+        rowOffsets[rowIndex + 1]++;
+        i++;
+      }
+      for (int rowIndex = 0; rowIndex < rowKeys.size(); rowIndex++) {
+        rowOffsets[rowIndex + 1] += rowOffsets[rowIndex];
+      }
+
+      // place each cell after the earlier cells of its row
+      int[] nextPositions = rowOffsets.clone();
+      columnIndices = new int[size];
+      values = new Object[size];
+      int[] order = new int[size];
+      boolean inOrder = true;
+      i = 0;
+      for (Cell<R, C, V> cell : cellSet) {
+        int position = nextPositions[cellRows[i]]++;
+        columnIndices[position] = cellColumns[i];
+        values[position] = cell.getValue();
+        order[i] = position;
+        inOrder &= (position == i);
+        i++;
+      }
+      this.cellOrder = inOrder ? null : order;
+      this.rowSortOrder = sortRows();
+      this.rowMap = new RowMap();
+      this.columnMap = new ColumnMap();
+    }
+
+    /**
+     * Returns the value of {@link #rowSortOrder}, checking that no row has two
+     * cells in the same column.
+     */
+    @Nullable private int[] sortRows() {
+      boolean sorted = true;
+      for (int position = 1; position < values.length; position++) {
+        if (columnIndices[position - 1] >= columnIndices[position]
+            && !isRowStart(position)) {
+          sorted = false;
+          break;
+        }
+      }
+      if (sorted) {
+        return null;
+      }
+      int[] sortOrder = new int[values.length];
+      for (int rowIndex = 0; rowIndex < rowKeys.size(); rowIndex++) {
+        int start = rowOffsets[rowIndex];
+        int length = rowOffsets[rowIndex + 1] - start;
+        // sort (column index, relative position) pairs packed into longs
+        long[] keys = new long[length];
+        for (int i = 0; i < length; i++) {
+          keys[i] = ((long) columnIndices[start + i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < length; i++) {
+          int columnIndex = (int) (keys[i] >>> 32);
+          checkArgument(i == 0 || columnIndex != (int) (keys[i - 1] >>> 32),
+              "duplicate key: (%s, %s)", rowKeys.get(rowIndex),
+              columnKeys.get(columnIndex));
+          sortOrder[start + i] = (int) keys[i];
+        }
+      }
+      return sortOrder;
+    }
+
+    private boolean isRowStart(int position) {
+      return Arrays.binarySearch(rowOffsets, position) >= 0;
+    }
+
+    /** Returns the index of the row holding the cell at {@code position}. */
+    private int rowIndexOf(int position) {
+      // rows are never empty, so the offsets are strictly increasing
+      int index = Arrays.binarySearch(rowOffsets, position);
+      return (index >= 0) ? index : -index - 2;
+    }
+
+    /**
+     * Returns the position of the cell at the given row and column indexes, or
+     * -1 if there is none.
+     */
+    private int positionOf(int rowIndex, int columnIndex) {
+      int start = rowOffsets[rowIndex];
+      int low = 0;
+      int high = rowOffsets[rowIndex + 1] - start - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int position = start
+            + ((rowSortOrder == null) ? mid : rowSortOrder[start + mid]);
+        int midColumnIndex = columnIndices[position];
+        if (midColumnIndex < columnIndex) {
+          low = mid + 1;
+        } else if (midColumnIndex > columnIndex) {
+          high = mid - 1;
+        } else {
+          return position;
+        }
+      }
+      return -1;
+    }
+
+    @SuppressWarnings("unchecked") // only V's are stored
+    private V valueAt(int position) {
+      return (V) values[position];
+    }
+
+    /**
+     * The cells grouped by column, in cell set order within each column.
+     */
+    private static final class ColumnIndex {
+      // the cells of column j are at slots columnOffsets[j] up to columnOffsets[j + 1]
+      final int[] columnOffsets;
+      // the row index and position of the cell in each slot
+      final int[] rowIndices;
+      final int[] positions;
+
+      ColumnIndex(int[] columnOffsets, int[] rowIndices, int[] positions) {
+        this.columnOffsets = columnOffsets;
+        this.rowIndices = rowIndices;
+        this.positions = positions;
+      }
+    }
+
+    private ColumnIndex columnIndex() {
+      // racing threads build equal indexes, so no locking is needed
+      ColumnIndex result = columnIndex;
+      if (result == null) {
+        columnIndex = result = buildColumnIndex();
+      }
+      return result;
+    }
+
+    private ColumnIndex buildColumnIndex() {
+      int size = values.length;
+      int[] columnOffsets = new int[columnKeys.size() + 1];
+      for (int position = 0; position < size; position++) {
+        columnOffsets[columnIndices[position] + 1]++;
+      }
+      for (int columnIndex = 0; columnIndex < columnKeys.size(); columnIndex++) {
+        columnOffsets[columnIndex + 1] += columnOffsets[columnIndex];
+      }
+      int[] nextSlots = columnOffsets.clone();
+      int[] rowIndices = new int[size];
+      int[] positions = new int[size];
+      int rowIndex = 0;
+      for (int i = 0; i < size; i++) {
+        int position;
+        if (cellOrder == null) {
+          position = i;
+          while (rowOffsets[rowIndex + 1] <= position) {
+            rowIndex++;
+          }
+        } else {
+          position = cellOrder[i];
+          rowIndex = rowIndexOf(position);
+        }
+        int slot = nextSlots[columnIndices[position]]++;
+        rowIndices[slot] = rowIndex;
+        positions[slot] = position;
+      }
+      return new ColumnIndex(columnOffsets, rowIndices, positions);
+    }
+
+    /**
+     * An immutable map over a run of cells in one row or column.
+     */
+    private abstract class Slice<K> extends ImmutableMap<K, V> {
+      abstract K keyAt(int index);
+
+      abstract V valueAt(int index);
+
+      
+      boolean isPartialView() {
+        return true;
+      }
+
+      
+      ImmutableSet<Entry<K, V>> createEntrySet() {
+        return new ImmutableMapEntrySet<K, V>() {
+           ImmutableMap<K, V> map() {
+            return Slice.this;
+          }
+
+          
+          public UnmodifiableIterator<Entry<K, V>> iterator() {
+            return new AbstractIndexedListIterator<Entry<K, V>>(size()) {
+              
+              protected Entry<K, V> get(int index) {
+                return Maps.immutableEntry(keyAt(index), valueAt(index));
+              }
+            };
+          }
+
+          private static final long serialVersionUID = 0;
+        };
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+
+    private final class Row extends Slice<C> {
+      private final int rowIndex;
+      private final int start;
+
+      Row(int rowIndex) {
+        this.rowIndex = rowIndex;
+        this.start = rowOffsets[rowIndex];
+      }
+
+      
+      public int size() {
+        return rowOffsets[rowIndex + 1] - start;
+      }
+
+      
+      C keyAt(int index) {
+        return columnKeys.get(columnIndices[start + index]);
+      }
+
+      
+      V valueAt(int index) {
+        return CompressedImmutableTable.this.valueAt(start + index);
+      }
+
+      
+      public V get(@Nullable Object columnKey) {
+        Integer columnIndex = columnKeyToIndex.get(columnKey);
+        if (columnIndex == null) {
+          return null;
+        }
+        int position = positionOf(rowIndex, columnIndex);
+        return (position < 0) ? null
+            : CompressedImmutableTable.this.valueAt(position);
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+
+    private final class Column extends Slice<R> {
+      private final int columnIndex;
+      private final ColumnIndex index;
+      private final int start;
+
+      Column(int columnIndex) {
+        this.columnIndex = columnIndex;
+        this.index = columnIndex();
+        this.start = index.columnOffsets[columnIndex];
+      }
+
+      
+      public int size() {
+        return index.columnOffsets[columnIndex + 1] - start;
+      }
+
+      
+      R keyAt(int i) {
+        return rowKeys.get(index.rowIndices[start + i]);
+      }
+
+      
+      V valueAt(int i) {
+        return CompressedImmutableTable.this.valueAt(index.positions[start + i]);
+      }
+
+      
+      public V get(@Nullable Object rowKey) {
+        Integer rowIndex = rowKeyToIndex.get(rowKey);
+        if (rowIndex == null) {
+          return null;
+        }
+        int position = positionOf(rowIndex, columnIndex);
+        return (position < 0) ? null
+            : CompressedImmutableTable.this.valueAt(position);
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+
+    private final class RowMap extends ImmutableArrayMap<R, Map<C, V>> {
+      private RowMap() {
+        super(rowKeys.size());
+      }
+
+      
+      ImmutableMap<R, Integer> keyToIndex() {
+        return rowKeyToIndex;
+      }
+
+      
+      Map<C, V> getValue(int keyIndex) {
+        return new Row(keyIndex);
+      }
+
+      
+      boolean isPartialView() {
+        return false;
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+
+    private final class ColumnMap extends ImmutableArrayMap<C, Map<R, V>> {
+      private ColumnMap() {
+        super(columnKeys.size());
+      }
+
+      
+      ImmutableMap<C, Integer> keyToIndex() {
+        return columnKeyToIndex;
+      }
+
+      
+      Map<R, V> getValue(int keyIndex) {
+        return new Column(keyIndex);
+      }
+
+      
+      boolean isPartialView() {
+        return false;
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+
+    private final class CellSet extends ImmutableSet<Cell<R, C, V>> {
+      
+      public int size() {
+        return values.length;
+      }
+
+      
+      public UnmodifiableIterator<Cell<R, C, V>> iterator() {
+        return asList().iterator();
+      }
+
+      
+      ImmutableList<Cell<R, C, V>> createAsList() {
+        return new ImmutableAsList<Cell<R, C, V>>() {
+          
+          public Cell<R, C, V> get(int index) {
+            checkElementIndex(index, values.length);
+            int position = (cellOrder == null) ? index : cellOrder[index];
+            return Tables.immutableCell(rowKeys.get(rowIndexOf(position)),
+                columnKeys.get(columnIndices[position]), valueAt(position));
+          }
+
+          
+          ImmutableCollection<Cell<R, C, V>> delegateCollection() {
+            return CellSet.this;
+          }
+
+          private static final long serialVersionUID = 0;
+        };
+      }
+
+      
+      public boolean contains(@Nullable Object object) {
+        if (object instanceof Cell) {
+          Cell<?, ?, ?> cell = (Cell<?, ?, ?>) object;
+          V value = CompressedImmutableTable.this.get(
+              cell.getRowKey(), cell.getColumnKey());
+          return (value != null) && value.equals(cell.getValue());
+        }
+        return false;
+      }
+
+      
+      boolean isPartialView() {
+        return false;
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+
+    
+    public ImmutableSet<Cell<R, C, V>> cellSet() {
+      ImmutableSet<Cell<R, C, V>> result = cellSetView;
+      return (result == null) ? cellSetView = new CellSet() : result;
+    }
+
+    
+    public ImmutableCollection<V> values() {
+      // the values array is already in cell set order
+      return (cellOrder == null)
+          ? ImmutableList.<V>asImmutableList(values) : super.values();
+    }
+
+     public ImmutableMap<R, V> column(C columnKey) {
+      Integer columnIndex = columnKeyToIndex.get(checkNotNull(columnKey));
+      if (columnIndex == null) {
+        return ImmutableMap.of();
+      } else {
+        return new Column(columnIndex);
+      }
+    }
+
+     public ImmutableSet<C> columnKeySet() {
+      return columnKeyToIndex.keySet();
+    }
+
+     public ImmutableMap<C, Map<R, V>> columnMap() {
+      return columnMap;
+    }
+
+     public boolean contains(@Nullable Object rowKey,
+        @Nullable Object columnKey) {
+      return (get(rowKey, columnKey) != null);
+    }
+
+     public boolean containsColumn(@Nullable Object columnKey) {
+      return columnKeyToIndex.containsKey(columnKey);
+    }
+
+     public boolean containsRow(@Nullable Object rowKey) {
+      return rowKeyToIndex.containsKey(rowKey);
+    }
+
+     public V get(@Nullable Object rowKey,
+        @Nullable Object columnKey) {
+      Integer rowIndex = rowKeyToIndex.get(rowKey);
+      Integer columnIndex = columnKeyToIndex.get(columnKey);
+      if ((rowIndex == null) || (columnIndex == null)) {
+        return null;
+      }
+      int position = positionOf(rowIndex, columnIndex);
+      return (position < 0) ? null : valueAt(position);
+    }
+
+     public ImmutableMap<C, V> row(R rowKey) {
+      checkNotNull(rowKey);
+      Integer rowIndex = rowKeyToIndex.get(rowKey);
+      if (rowIndex == null) {
+        return ImmutableMap.of();
+      } else {
+        return new Row(rowIndex);
+      }
+    }
+
+     public ImmutableSet<R> rowKeySet() {
+      return rowKeyToIndex.keySet();
+    }
+
+     public ImmutableMap<R, Map<C, V>> rowMap() {
+      return rowMap;
+    }
+  }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.GwtIncompatible;
+import google.common.math.IntMath;
+import google.common.primitives.Ints;
+
+import java.math.RoundingMode;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, array-based {@code BlockingQueue} for a single consumer thread,
+ * which takes no locks. Elements live in a power-of-two ring of slots,
+ * addressed by two ever-increasing sequence numbers: {@code head}, the next
+ * slot to take from, written only by the consumer, and {@code tail}, the next
+ * slot to fill, advanced by producers. A slot is null until its element is
+ * published, and is cleared by the consumer before {@code head} moves past it,
+ * so a producer never overwrites an element that has not been taken.
+ *
+ * <p>Subclasses implement {@link #offer(Object)} for one producer or for many.
+ * {@link #poll}, {@link #peek}, {@link #drainTo} and the methods built on them
+ * may only be called by one thread at a time. The blocking methods wait by
+ * spinning, then yielding, then parking for at most {@link #MAX_PARK_NANOS} at
+ * a time, so an idle queue costs little and a busy one reacts quickly, without
+ * producers ever having to signal the consumer.
+ */
+@GwtIncompatible("java.util.concurrent")
+abstract class RingBufferQueue<E> extends AbstractQueue<E>
+    implements BlockingQueue<E> {
+  private static final int SPINS = 64;
+  private static final int YIELDS = 64;
+  static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  final int capacity;
+  final int mask;
+  final AtomicReferenceArray<E> slots;
+
+  /** The sequence number of the next slot to take from. */
+  final AtomicLong head = new PaddedAtomicLong();
+
+  /** The sequence number of the next slot to be claimed by a producer. */
+  final AtomicLong tail = new PaddedAtomicLong();
+
+  RingBufferQueue(int capacity) {
+    checkArgument(capacity > 0 && capacity <= Ints.MAX_POWER_OF_TWO,
+        "capacity (%s) must be in [1, %s]", capacity, Ints.MAX_POWER_OF_TWO);
+    this.capacity = capacity;
+    int length = 1 << IntMath.log2(capacity, RoundingMode.CEILING);
+    this.mask = length - 1;
+    this.slots = new AtomicReferenceArray<E>(length);
+  }
+
+  /**
+   * Inserts the specified element if the queue is not full. Depending on the
+   * implementation, may only be called by one thread at a time.
+   *
+   * @throws NullPointerException if {@code e} is null
+   */
+  public abstract boolean offer(E e);
+
+  /**
+   * Retrieves and removes the head of this queue, or returns null if it is
+   * empty. If a producer has claimed the head slot but not yet published its
+   * element, waits for it.
+   */
+  public E poll() {
+    long h = head.get();
+    int index = (int) h & mask;
+    E e = awaitSlot(h, index);
+    if (e != null) {
+      slots.set(index, null);
+      head.set(h + 1);
+    }
+    return e;
+  }
+
+  public E peek() {
+    long h = head.get();
+    return awaitSlot(h, (int) h & mask);
+  }
+
+  /**
+   * Returns the element in slot {@code index} for sequence number {@code h},
+   * or null if the queue is empty.
+   */
+  private E awaitSlot(long h, int index) {
+    E e = slots.get(index);
+    if (e == null && h != tail.get()) {
+      // the slot is claimed; its producer is about to publish the element
+      for (int attempt = 0; (e = slots.get(index)) == null; attempt++) {
+        if (attempt >= SPINS) {
+          Thread.yield();
+        }
+      }
+    }
+    return e;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The size is only an estimate while producers are active, and counts
+   * elements whose producers have claimed slots but not yet published them.
+   */
+  @Override public int size() {
+    long h = head.get();
+    long size = tail.get() - h;
+    return (int) Math.max(0, Math.min(size, capacity));
+  }
+
+  @Override public boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+
+  public int remainingCapacity() {
+    return capacity - size();
+  }
+
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Transfers the elements that are already published, and moves {@code
+   * head} once for the whole batch.
+   */
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    checkNotNull(c);
+    checkArgument(c != this);
+    long h = head.get();
+    long start = h;
+    try {
+      while (h - start < maxElements) {
+        int index = (int) h & mask;
+        E e = slots.get(index);
+        if (e == null) {
+          break; // empty, or the next element is not published yet
+        }
+        c.add(e);
+        slots.set(index, null);
+        h++;
+      }
+    } finally {
+      head.set(h);
+    }
+    return (int) (h - start);
+  }
+
+  public void put(E e) throws InterruptedException {
+    checkNotNull(e);
+    for (int attempt = 0; !offer(e); attempt++) {
+      idle(attempt, MAX_PARK_NANOS);
+    }
+  }
+
+  public boolean offer(E e, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    checkNotNull(e);
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (int attempt = 0; !offer(e); attempt++) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      idle(attempt, remaining);
+    }
+    return true;
+  }
+
+  public E take() throws InterruptedException {
+    E e;
+    for (int attempt = 0; (e = poll()) == null; attempt++) {
+      idle(attempt, MAX_PARK_NANOS);
+    }
+    return e;
+  }
+
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    E e;
+    for (int attempt = 0; (e = poll()) == null; attempt++) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      idle(attempt, remaining);
+    }
+    return e;
+  }
+
+  /**
+   * Waits a little before the next attempt of a blocking operation: not at
+   * all for the first attempts, then by yielding, then by parking for at
+   * most {@code maxNanos}.
+   */
+  private static void idle(int attempt, long maxNanos)
+      throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (attempt < SPINS) {
+      return;
+    }
+    if (attempt < SPINS + YIELDS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(Math.min(maxNanos, MAX_PARK_NANOS));
+    }
+  }
+
+  /**
+   * Returns an iterator over the elements between {@code head} and {@code
+   * tail} when it is created, skipping those taken since. It is only
+   * reliable in the consumer thread, and does not support {@code remove}, nor
+   * therefore does {@link #remove(Object)}.
+   */
+  @Override public Iterator<E> iterator() {
+    final long end = tail.get();
+    return new UnmodifiableIterator<E>() {
+      long next = head.get();
+      E nextElement = advance();
+
+      private E advance() {
+        next = Math.max(next, head.get());
+        while (next < end) {
+          E e = slots.get((int) next++ & mask);
+          if (e != null) {
+            return e;
+          }
+        }
+        return null;
+      }
+
+      public boolean hasNext() {
+        return nextElement != null;
+      }
+
+      public E next() {
+        E result = nextElement;
+        if (result == null) {
+          throw new NoSuchElementException();
+        }
+        nextElement = advance();
+        return result;
+      }
+    };
+  }
+
+  /**
+   * A ring buffer for a single producer thread, which publishes an element
+   * with two volatile writes and reads {@code head} only when the ring looks
+   * full.
+   */
+  static final class SingleProducer<E> extends RingBufferQueue<E> {
+    /** The producer's last reading of {@code head}. */
+    private long headCache;
+
+    SingleProducer(int capacity) {
+      super(capacity);
+    }
+
+    @Override public boolean offer(E e) {
+      checkNotNull(e);
+      long t = tail.get();
+      if (t - headCache >= capacity) {
+        headCache = head.get();
+        if (t - headCache >= capacity) {
+          return false;
+        }
+      }
+      slots.set((int) t & mask, e);
+      tail.set(t + 1);
+      return true;
+    }
+  }
+
+  /**
+   * A ring buffer for any number of producer threads, which claim slots by
+   * compare-and-set on {@code tail} and then publish their elements into them.
+   */
+  static final class MultiProducer<E> extends RingBufferQueue<E> {
+    MultiProducer(int capacity) {
+      super(capacity);
+    }
+
+    @Override public boolean offer(E e) {
+      checkNotNull(e);
+      while (true) {
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+          return false;
+        }
+        if (tail.compareAndSet(t, t + 1)) {
+          slots.set((int) t & mask, e);
+          return true;
+        }
+      }
+    }
+  }
+
+  private static final class PaddedAtomicLong extends AtomicLong {
+    /*
+     * Padding from 24 into 64 bytes, so that head, tail and their neighbors do
+     * not share a cache line, and producers and the consumer do not slow each
+     * other down by writing to adjacent counters.
+     */
+    @SuppressWarnings("unused")
+    long q1, q2, q3, q4, q5;
+
+    private static final long serialVersionUID = 0;
+  }
+}
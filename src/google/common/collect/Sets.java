@@ -17,6 +17,7 @@
 package google.common.collect;
 
 import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
 import static google.common.base.Preconditions.checkNotNull;
 
 import google.common.annotations.Beta;
@@ -30,6 +31,7 @@ import google.common.math.IntMath;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Collection;
@@ -43,10 +45,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.annotation.Nullable;
 
@@ -967,7 +971,9 @@ public final class Sets {
    * {@code m, n, p} is a set of size {@code m x n x p}, its actual memory
    * consumption is much smaller. When the cartesian set is constructed, the
    * input sets are merely copied. Only as the resulting set is iterated are the
-   * individual lists created, and these are not retained after iteration.
+   * individual lists created, and these are not retained after iteration. To
+   * compute any element directly by its index, or to split the product among
+   * workers, use {@link Lists#cartesianProduct(List)}.
    *
    * @param sets the sets to choose elements from, in the order that
    *     the elements chosen from those sets should appear in the resulting
@@ -1180,6 +1186,7 @@ public final class Sets {
    * power set is constructed, the input set is merely copied. Only as the
    * power set is iterated are the individual subsets created, and these subsets
    * themselves occupy only a few bytes of memory regardless of their size.
+   * To access the subsets by index, use {@link #powerSetList}.
    *
    * @param set the set of elements to construct a power set from
    * @return the power set, as an immutable set of immutable sets
@@ -1219,19 +1226,31 @@ public final class Sets {
 
      public Iterator<Set<E>> iterator() {
       return new AbstractIndexedListIterator<Set<E>>(powerSetSize) {
-         protected Set<E> get(final int setBits) {
-          return new AbstractSet<E>() {
-             public int size() {
-              return Integer.bitCount(setBits);
-            }
-             public Iterator<E> iterator() {
-              return new BitFilteredSetIterator<E>(inputList, setBits);
-            }
-          };
+         protected Set<E> get(int setBits) {
+          return new BitFilteredSet<E>(inputList, setBits);
         }
       };
     }
 
+    /** The subset of the elements at the positions of the one bits. */
+    static final class BitFilteredSet<E> extends AbstractSet<E> {
+      final ImmutableList<E> input;
+      final int setBits;
+
+      BitFilteredSet(ImmutableList<E> input, int setBits) {
+        this.input = input;
+        this.setBits = setBits;
+      }
+
+       public int size() {
+        return Integer.bitCount(setBits);
+      }
+
+       public Iterator<E> iterator() {
+        return new BitFilteredSetIterator<E>(input, setBits);
+      }
+    }
+
     private static final class BitFilteredSetIterator<E>
         extends UnmodifiableIterator<E> {
       final ImmutableList<E> input;
@@ -1288,6 +1307,85 @@ public final class Sets {
     }
   }
 
+  /**
+   * Returns the set of all possible subsets of {@code set} as an immutable
+   * random-access list, in the order that {@link #powerSet} iterates them:
+   * the subset at index {@code i} contains the elements of {@code set} whose
+   * positions in its iteration order are those of the one bits of {@code i}.
+   * For example, {@code powerSetList(ImmutableSet.of(1, 2))} returns the list
+   * {@code [{}, {1}, {2}, {1, 2}]}.
+   *
+   * <p>{@code get(i)} takes constant time, so a search over the subsets can be
+   * split among workers by giving each a contiguous {@linkplain List#subList
+   * sublist}, without enumerating the subsets before it.
+   *
+   * <p>The subsets use {@code equals} to decide whether two elements are
+   * identical, even if the input set uses a different concept of equivalence.
+   * Each takes only a few bytes of memory regardless of its size.
+   *
+   * @param set the set of elements to construct a power set from
+   * @return the power set, as an immutable list of immutable sets
+   * @throws IllegalArgumentException if {@code set} has more than 30 unique
+   *     elements (causing the power set size to exceed the {@code int} range)
+   * @throws NullPointerException if {@code set} is or contains {@code null}
+   * @since 14.0
+   */
+  @Beta
+  @GwtCompatible(serializable = false)
+  public static <E> List<Set<E>> powerSetList(Set<E> set) {
+    ImmutableSet<E> input = ImmutableSet.copyOf(set);
+    checkArgument(input.size() <= 30,
+        "Too many elements to create power set: %s > 30", input.size());
+    return new PowerSetList<E>(input);
+  }
+
+  private static final class PowerSetList<E> extends AbstractList<Set<E>>
+      implements RandomAccess {
+    final ImmutableSet<E> inputSet;
+    final ImmutableList<E> inputList;
+
+    PowerSetList(ImmutableSet<E> input) {
+      this.inputSet = input;
+      this.inputList = input.asList();
+    }
+
+     public Set<E> get(int index) {
+      checkElementIndex(index, size());
+      return new PowerSet.BitFilteredSet<E>(inputList, index);
+    }
+
+     public int size() {
+      return 1 << inputList.size();
+    }
+
+     public int indexOf(@Nullable Object obj) {
+      if (!(obj instanceof Set)) {
+        return -1;
+      }
+      int setBits = 0;
+      for (Object element : (Set<?>) obj) {
+        int position = inputList.indexOf(element);
+        if (position == -1) {
+          return -1;
+        }
+        setBits |= 1 << position;
+      }
+      return setBits;
+    }
+
+     public int lastIndexOf(@Nullable Object obj) {
+      return indexOf(obj);
+    }
+
+     public boolean contains(@Nullable Object obj) {
+      return indexOf(obj) != -1;
+    }
+
+     public String toString() {
+      return "powerSetList(" + inputSet + ")";
+    }
+  }
+
   /**
    * An implementation for {@link java.util.Set#hashCode()}.
    */
@@ -1485,6 +1583,113 @@ public final class Sets {
     return Synchronized.navigableSet(navigableSet);
   }
 
+  /**
+   * Returns a thread-safe set backed by the specified set and guarded by
+   * {@code lock}. In order to guarantee safe access, it is critical that
+   * <b>all</b> access to the backing set is accomplished through the returned
+   * set, even while holding {@code lock}.
+   *
+   * <p>Methods that modify the set hold the write lock, and those that read
+   * it hold the read lock, so that, unlike with {@code
+   * Collections.synchronizedSet}, readers do not wait for one another. The
+   * read methods of the backing set must therefore not modify it, as those of
+   * a set backed by a {@code WeakHashMap} do. {@code size} and {@code
+   * isEmpty} first read the size of the backing set without locking at all,
+   * and read it again under the read lock if a write overlapped them, so its
+   * {@code size} must be safe to call during a write, as it is in {@code
+   * HashSet} and {@code TreeSet}, which return a field.
+   *
+   * <p>It is imperative that the user hold the read lock when iterating over
+   * the set, and the write lock when modifying it through an iterator or
+   * entry: <pre>   {@code
+   *
+   *   ReadWriteLock lock = new ReentrantReadWriteLock();
+   *   Set<String> set = Sets.readWriteLockedSet(
+   *       Sets.<String>newHashSet(), lock);
+   *   ...
+   *   lock.readLock().lock();
+   *   try {
+   *     for (String element : set) {
+   *       foo(element);
+   *     }
+   *   } finally {
+   *     lock.readLock().unlock();
+   *   }}</pre>
+   *
+   * Failure to follow this advice may result in non-deterministic behavior.
+   * The lock must not be held for reading when a method of the returned set
+   * that modifies it is called, since a {@code ReentrantReadWriteLock} cannot
+   * be upgraded from reading to writing.
+   *
+   * <p>The returned set will be serializable if the specified set and lock
+   * are serializable.
+   *
+   * @param set the set to be wrapped
+   * @param lock the lock that guards the returned set and its views
+   * @return a read-write-locked view of the specified set
+   * @since 14.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent.locks")
+  public static <E> Set<E> readWriteLockedSet(Set<E> set, ReadWriteLock lock) {
+    return ReadWriteLocked.set(set, new ReadWriteLocked.Guard(lock, set));
+  }
+
+  /**
+   * Returns a thread-safe navigable set backed by the specified navigable set
+   * and guarded by {@code lock}. In order to guarantee safe access, it is
+   * critical that <b>all</b> access to the backing navigable set is
+   * accomplished through the returned navigable set, even while holding
+   * {@code lock}.
+   *
+   * <p>Methods that modify the navigable set hold the write lock, and those
+   * that read it hold the read lock, so that, unlike with {@code
+   * Sets.synchronizedNavigableSet}, readers do not wait for one another. The
+   * read methods of the backing navigable set must therefore not modify it.
+   * {@code size} and {@code isEmpty} of the returned navigable set, but not
+   * of its views, first read the size of the backing navigable set without
+   * locking at all, and read it again under the read lock if a write
+   * overlapped them, so its {@code size} must be safe to call during a
+   * write, as it is in {@code TreeSet}, which returns a field.
+   *
+   * <p>It is imperative that the user hold the read lock when iterating over
+   * the set or any of its views, and the write lock when modifying them
+   * through an iterator or entry: <pre>   {@code
+   *
+   *   ReadWriteLock lock = new ReentrantReadWriteLock();
+   *   NavigableSet<String> set = Sets.readWriteLockedNavigableSet(
+   *       Sets.<String>newTreeSet(), lock);
+   *   ...
+   *   lock.readLock().lock();
+   *   try {
+   *     for (String element : set.headSet("m", true)) {
+   *       foo(element);
+   *     }
+   *   } finally {
+   *     lock.readLock().unlock();
+   *   }}</pre>
+   *
+   * Failure to follow this advice may result in non-deterministic behavior.
+   * The lock must not be held for reading when a method of the returned
+   * navigable set that modifies it is called, since a {@code
+   * ReentrantReadWriteLock} cannot be upgraded from reading to writing.
+   *
+   * <p>The returned navigable set will be serializable if the specified
+   * navigable set and lock are serializable.
+   *
+   * @param navigableSet the navigable set to be wrapped
+   * @param lock the lock that guards the returned navigable set and its views
+   * @return a read-write-locked view of the specified navigable set
+   * @since 14.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent.locks")
+  public static <E> NavigableSet<E> readWriteLockedNavigableSet(
+      NavigableSet<E> navigableSet, ReadWriteLock lock) {
+    return ReadWriteLocked.navigableSet(
+        navigableSet, new ReadWriteLocked.Guard(lock, navigableSet));
+  }
+
   /**
    * Remove each element in an iterable from a set.
    */
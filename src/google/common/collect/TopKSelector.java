@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.collect;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+import google.common.math.IntMath;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * An accumulator that keeps the {@code k} least elements offered to it
+ * according to a comparator, using {@code O(k)} memory no matter how many
+ * elements are offered.
+ *
+ * <p>Elements are collected in a buffer of {@code 2k} slots. Whenever the
+ * buffer fills up, a quickselect moves the {@code k} least elements to its
+ * front and the rest are discarded, so each element costs amortized
+ * constant time, plus one comparison against the greatest element kept so far
+ * once {@code k} elements have been seen. Offering {@code n} elements takes
+ * {@code O(n + k log k)} time in total.
+ *
+ * <p>Selectors for different parts of the input can be filled independently,
+ * for example on different threads, and then merged with {@link #combine}.
+ * A single selector is not thread-safe.
+ *
+ * <p>This is the implementation of {@link Ordering#leastOf(Iterator, int)}
+ * and {@link Ordering#greatestOf(Iterator, int)}.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible
+public final class TopKSelector<T> {
+
+  /**
+   * Returns a selector that keeps the {@code k} least elements offered to it
+   * according to {@code comparator}.
+   *
+   * @throws IllegalArgumentException if {@code k} is negative or greater than
+   *     {@code Integer.MAX_VALUE / 2}
+   */
+  public static <T> TopKSelector<T> least(
+      int k, Comparator<? super T> comparator) {
+    return new TopKSelector<T>(comparator, k);
+  }
+
+  /**
+   * Returns a selector that keeps the {@code k} greatest elements offered to
+   * it according to {@code comparator}. {@link #topK} returns them from
+   * greatest to least.
+   *
+   * @throws IllegalArgumentException if {@code k} is negative or greater than
+   *     {@code Integer.MAX_VALUE / 2}
+   */
+  public static <T> TopKSelector<T> greatest(
+      int k, Comparator<? super T> comparator) {
+    return new TopKSelector<T>(Ordering.from(comparator).reverse(), k);
+  }
+
+  private final int k;
+  private final Comparator<? super T> comparator;
+
+  /*
+   * The first bufferSize positions hold candidates. Once k elements have been
+   * seen, threshold is the greatest of the k least candidates, so that later
+   * elements not less than it can be dropped without touching the buffer.
+   */
+  private final T[] buffer;
+  private int bufferSize;
+  @Nullable private T threshold;
+
+  private TopKSelector(Comparator<? super T> comparator, int k) {
+    this.comparator = checkNotNull(comparator, "comparator");
+    this.k = k;
+    checkArgument(k >= 0, "k must be nonnegative, was %s", k);
+    checkArgument(k <= Integer.MAX_VALUE / 2, "k (%s) must be <= Integer.MAX_VALUE / 2", k);
+    @SuppressWarnings("unchecked") // only T's are stored, and the array never escapes
+    T[] buffer = (T[]) new Object[k * 2];
+    this.buffer = buffer;
+    this.bufferSize = 0;
+    this.threshold = null;
+  }
+
+  /**
+   * Adds {@code element} as a candidate for the top {@code k} elements. This
+   * takes amortized constant time.
+   */
+  public void offer(@Nullable T element) {
+    if (k == 0) {
+      return;
+    } else if (bufferSize == 0) {
+      buffer[0] = element;
+      threshold = element;
+      bufferSize = 1;
+    } else if (bufferSize < k) {
+      buffer[bufferSize++] = element;
+      if (comparator.compare(element, threshold) > 0) {
+        threshold = element;
+      }
+    } else if (comparator.compare(element, threshold) < 0) {
+      // The buffer holds at least k elements; only keep ones that might
+      // still make the cut.
+      buffer[bufferSize++] = element;
+      if (bufferSize == 2 * k) {
+        trim();
+      }
+    }
+  }
+
+  /**
+   * Adds each element of {@code elements} as a candidate for the top {@code
+   * k} elements.
+   */
+  public void offerAll(Iterable<? extends T> elements) {
+    offerAll(elements.iterator());
+  }
+
+  /**
+   * Adds each remaining element of {@code elements} as a candidate for the
+   * top {@code k} elements.
+   */
+  public void offerAll(Iterator<? extends T> elements) {
+    while (elements.hasNext()) {
+      offer(elements.next());
+    }
+  }
+
+  /**
+   * Adds the candidates kept by {@code other}, which may have been filled
+   * independently, to this selector. Afterwards this selector holds the top
+   * {@code k} elements of everything offered to either selector, provided
+   * that both use the same comparator and {@code other} keeps at least {@code
+   * k} elements. {@code other} is not modified.
+   *
+   * @return this selector
+   */
+  public TopKSelector<T> combine(TopKSelector<? extends T> other) {
+    for (int i = 0; i < other.bufferSize; i++) {
+      offer(other.buffer[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Moves the k least elements of the buffer to its front, in no particular
+   * order, and discards the rest.
+   */
+  private void trim() {
+    int left = 0;
+    int right = 2 * k - 1;
+
+    // Every element of [0, thresholdSearchStart) is known to be no greater
+    // than the element at thresholdSearchStart, once partitioning is done.
+    int thresholdSearchStart = 0;
+
+    // Bound the work of an unlucky run of pivots by falling back to sorting.
+    int iterations = 0;
+    int maxIterations = IntMath.log2(right - left, RoundingMode.CEILING) * 3;
+    while (left < right) {
+      int pivotIndex = (left + right + 1) >>> 1;
+      int pivotNewIndex = partition(left, right, pivotIndex);
+      if (pivotNewIndex > k) {
+        right = pivotNewIndex - 1;
+      } else if (pivotNewIndex < k) {
+        left = Math.max(pivotNewIndex, left + 1);
+        thresholdSearchStart = pivotNewIndex;
+      } else {
+        break;
+      }
+      iterations++;
+      if (iterations >= maxIterations) {
+        Arrays.sort(buffer, left, right + 1, comparator);
+        break;
+      }
+    }
+    Arrays.fill(buffer, k, bufferSize, null);
+    bufferSize = k;
+
+    threshold = buffer[thresholdSearchStart];
+    for (int i = thresholdSearchStart + 1; i < k; i++) {
+      if (comparator.compare(buffer[i], threshold) > 0) {
+        threshold = buffer[i];
+      }
+    }
+  }
+
+  /**
+   * Partitions {@code [left, right]} around the element at {@code
+   * pivotIndex}: afterwards the pivot is at the returned position, every
+   * element before it is less than it, and every element after it is not.
+   */
+  private int partition(int left, int right, int pivotIndex) {
+    T pivotValue = buffer[pivotIndex];
+    buffer[pivotIndex] = buffer[right];
+
+    int pivotNewIndex = left;
+    for (int i = left; i < right; i++) {
+      if (comparator.compare(buffer[i], pivotValue) < 0) {
+        ObjectArrays.swap(buffer, pivotNewIndex, i);
+        pivotNewIndex++;
+      }
+    }
+    buffer[right] = buffer[pivotNewIndex];
+    buffer[pivotNewIndex] = pivotValue;
+    return pivotNewIndex;
+  }
+
+  /**
+   * Returns the top {@code k} elements offered so far, or all of them if
+   * fewer than {@code k} have been offered, in order from the first to the
+   * {@code k}th according to this selector's comparator. The order of
+   * equivalent elements is undefined.
+   *
+   * <p>The returned list is an unmodifiable, {@code RandomAccess} snapshot;
+   * this selector can continue to accept elements afterwards. This takes
+   * {@code O(k log k)} time.
+   */
+  public List<T> topK() {
+    Arrays.sort(buffer, 0, bufferSize, comparator);
+    if (bufferSize > k) {
+      Arrays.fill(buffer, k, bufferSize, null);
+      bufferSize = k;
+      threshold = buffer[k - 1];
+    }
+    // Up to bufferSize, the buffer is now sorted, so copying it keeps it
+    // usable for further offers.
+    return Collections.unmodifiableList(
+        Arrays.asList(ObjectArrays.arraysCopyOf(buffer, bufferSize)));
+  }
+}
@@ -18,13 +18,12 @@ package google.common.eventbus;
 
 import google.common.annotations.Beta;
 import google.common.annotations.VisibleForTesting;
-import google.common.base.Supplier;
 import google.common.base.Throwables;
 import google.common.cache.CacheBuilder;
 import google.common.cache.CacheLoader;
 import google.common.cache.LoadingCache;
+import google.common.collect.ConcurrentHashMultimap;
 import google.common.collect.Multimap;
-import google.common.collect.Multimaps;
 import google.common.collect.SetMultimap;
 import google.common.reflect.TypeToken;
 
@@ -32,9 +31,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -114,13 +111,7 @@ public class EventBus {
    * All registered event handlers, indexed by event type.
    */
   private final SetMultimap<Class<?>, EventHandler> handlersByType =
-      Multimaps.newSetMultimap(new ConcurrentHashMap<Class<?>, Collection<EventHandler>>(),
-          new Supplier<Set<EventHandler>>() {
-            
-            public Set<EventHandler> get() {
-              return newHandlerSet();
-            }
-          });
+      ConcurrentHashMultimap.create();
 
   /**
    * Logger for event dispatch failures.  Named by the fully-qualified name of
@@ -318,17 +309,6 @@ public class EventBus {
     return handlersByType.get(type);
   }
 
-  /**
-   * Creates a new Set for insertion into the handler map.  This is provided
-   * as an override point for subclasses. The returned set should support
-   * concurrent access.
-   *
-   * @return a new, mutable set for handlers.
-   */
-  Set<EventHandler> newHandlerSet() {
-    return new CopyOnWriteArraySet<EventHandler>();
-  }
-
   /**
    * Flattens a class's type hierarchy into a set of Class objects.  The set
    * will include all superclasses (transitively), and all interfaces
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.io;
+
+import google.common.annotations.Beta;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes values of one type to a binary stream and reads them back, without
+ * going through Java serialization.
+ *
+ * <p>Codecs for common types are available from {@link ElementCodecs}, and
+ * codecs for the immutable collections, which can be nested, from
+ * {@link google.common.collect.ImmutableCollectionCodecs}.
+ *
+ * @since 14.0
+ */
+@Beta
+public interface ElementCodec<T> {
+  /**
+   * Writes {@code value} to {@code out}, in a form that {@link #read} can
+   * decode.
+   */
+  void write(T value, DataOutput out) throws IOException;
+
+  /**
+   * Reads one value written by {@link #write} from {@code in}.
+   *
+   * @throws java.io.EOFException if the input ends before the value does
+   * @throws IOException if the input is malformed or cannot be read
+   */
+  T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.io;
+
+import static google.common.base.Preconditions.checkArgument;
+
+import google.common.annotations.Beta;
+import google.common.base.Charsets;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Static factories for {@link ElementCodec} instances, plus the variable-length
+ * integer encoding that the codecs use for lengths.
+ *
+ * <p>Numbers are written big-endian, as {@link DataOutput} does. Strings are
+ * written as a length followed by their UTF-8 bytes, so unlike {@link
+ * DataOutput#writeUTF} they have no length limit. No codec here accepts null
+ * values.
+ *
+ * @since 14.0
+ */
+@Beta
+public final class ElementCodecs {
+  private ElementCodecs() {}
+
+  /**
+   * Returns a codec for {@code Boolean} values, one byte each.
+   */
+  public static ElementCodec<Boolean> booleans() {
+    return BooleanCodec.INSTANCE;
+  }
+
+  /**
+   * Returns a codec for {@code Integer} values, four bytes each.
+   */
+  public static ElementCodec<Integer> integers() {
+    return IntegerCodec.INSTANCE;
+  }
+
+  /**
+   * Returns a codec for {@code Long} values, eight bytes each.
+   */
+  public static ElementCodec<Long> longs() {
+    return LongCodec.INSTANCE;
+  }
+
+  /**
+   * Returns a codec for {@code Float} values, four bytes each.
+   */
+  public static ElementCodec<Float> floats() {
+    return FloatCodec.INSTANCE;
+  }
+
+  /**
+   * Returns a codec for {@code Double} values, eight bytes each.
+   */
+  public static ElementCodec<Double> doubles() {
+    return DoubleCodec.INSTANCE;
+  }
+
+  /**
+   * Returns a codec for strings of any length, written as their length in
+   * bytes followed by their UTF-8 encoding.
+   */
+  public static ElementCodec<String> strings() {
+    return StringCodec.INSTANCE;
+  }
+
+  /**
+   * Writes a nonnegative {@code int} in one to five bytes: seven bits per
+   * byte, least significant group first, with the high bit of each byte set
+   * if more bytes follow.
+   *
+   * @throws IllegalArgumentException if {@code value} is negative
+   */
+  public static void writeVarInt(int value, DataOutput out) throws IOException {
+    checkArgument(value >= 0, "value (%s) must be >= 0", value);
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Reads an {@code int} written by {@link #writeVarInt}.
+   *
+   * @throws IOException if the encoded value does not fit in a nonnegative
+   *     {@code int}
+   */
+  public static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0 || (shift == 28 && b > 0x07)) {
+          break;
+        }
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length int");
+  }
+
+  private enum BooleanCodec implements ElementCodec<Boolean> {
+    INSTANCE;
+
+    public void write(Boolean value, DataOutput out) throws IOException {
+      out.writeBoolean(value);
+    }
+
+    public Boolean read(DataInput in) throws IOException {
+      return in.readBoolean();
+    }
+
+    @Override public String toString() {
+      return "ElementCodecs.booleans()";
+    }
+  }
+
+  private enum IntegerCodec implements ElementCodec<Integer> {
+    INSTANCE;
+
+    public void write(Integer value, DataOutput out) throws IOException {
+      out.writeInt(value);
+    }
+
+    public Integer read(DataInput in) throws IOException {
+      return in.readInt();
+    }
+
+    @Override public String toString() {
+      return "ElementCodecs.integers()";
+    }
+  }
+
+  private enum LongCodec implements ElementCodec<Long> {
+    INSTANCE;
+
+    public void write(Long value, DataOutput out) throws IOException {
+      out.writeLong(value);
+    }
+
+    public Long read(DataInput in) throws IOException {
+      return in.readLong();
+    }
+
+    @Override public String toString() {
+      return "ElementCodecs.longs()";
+    }
+  }
+
+  private enum FloatCodec implements ElementCodec<Float> {
+    INSTANCE;
+
+    public void write(Float value, DataOutput out) throws IOException {
+      out.writeFloat(value);
+    }
+
+    public Float read(DataInput in) throws IOException {
+      return in.readFloat();
+    }
+
+    @Override public String toString() {
+      return "ElementCodecs.floats()";
+    }
+  }
+
+  private enum DoubleCodec implements ElementCodec<Double> {
+    INSTANCE;
+
+    public void write(Double value, DataOutput out) throws IOException {
+      out.writeDouble(value);
+    }
+
+    public Double read(DataInput in) throws IOException {
+      return in.readDouble();
+    }
+
+    @Override public String toString() {
+      return "ElementCodecs.doubles()";
+    }
+  }
+
+  private enum StringCodec implements ElementCodec<String> {
+    INSTANCE;
+
+    /*
+     * A corrupt or hostile length should fail with an EOFException once the
+     * data runs out, not with an OutOfMemoryError, so the buffer is only
+     * allocated up front up to this size and grown as bytes actually arrive.
+     */
+    private static final int MAX_PREALLOCATION = 1 << 16;
+
+    public void write(String value, DataOutput out) throws IOException {
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+      writeVarInt(bytes.length, out);
+      out.write(bytes);
+    }
+
+    public String read(DataInput in) throws IOException {
+      int length = readVarInt(in);
+      byte[] bytes = new byte[Math.min(length, MAX_PREALLOCATION)];
+      in.readFully(bytes);
+      while (bytes.length < length) {
+        byte[] grown = new byte[(int) Math.min(2L * bytes.length, length)];
+        System.arraycopy(bytes, 0, grown, 0, bytes.length);
+        in.readFully(grown, bytes.length, grown.length - bytes.length);
+        bytes = grown;
+      }
+      return new String(bytes, Charsets.UTF_8);
+    }
+
+    @Override public String toString() {
+      return "ElementCodecs.strings()";
+    }
+  }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.io;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.base.Preconditions.checkState;
+
+import google.common.annotations.Beta;
+import google.common.base.Throwables;
+import google.common.collect.AbstractIterator;
+import google.common.collect.Iterators;
+import google.common.collect.Lists;
+import google.common.collect.Ordering;
+import google.common.collect.UnmodifiableIterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.Nullable;
+
+/**
+ * Sorts more elements than fit in memory. Elements are added to a buffer;
+ * whenever the buffer holds {@linkplain Builder#maxElementsInMemory the
+ * configured number} of elements, it is sorted and written out as a run
+ * through an {@link ElementCodec} to a {@link FileBackedOutputStream}, which
+ * moves it to a temporary file. {@link #sortedIterator} then merges the runs
+ * lazily with {@link Iterators#mergeSorted}, reading each run sequentially. At
+ * most {@value #MAX_FAN_IN} runs are read at once: if there are more, the
+ * oldest are first merged into longer runs, so the open files and read
+ * buffers stay bounded however many runs were written.
+ *
+ * <p>If an {@link Executor} is supplied, runs are sorted and written on it
+ * while the next buffer is being filled. At most one run is in flight at a
+ * time, so at most twice the configured number of elements is held in memory.
+ *
+ * <p>Typical use: <pre>   {@code
+ *
+ *   ExternalSorter<String> sorter = ExternalSorter
+ *       .builder(Ordering.natural(), ElementCodecs.strings())
+ *       .maxElementsInMemory(1000000)
+ *       .build();
+ *   try {
+ *     sorter.addAll(lines);
+ *     for (Iterator<String> it = sorter.sortedIterator(); it.hasNext(); ) {
+ *       process(it.next());
+ *     }
+ *   } finally {
+ *     sorter.close();
+ *   }}</pre>
+ *
+ * <p>An {@code IOException} while reading a run back during iteration is
+ * rethrown from the iterator wrapped in a {@code RuntimeException}. The
+ * sorting is not stable. This class is not thread-safe.
+ *
+ * @since 14.0
+ */
+@Beta
+public final class ExternalSorter<T> implements Closeable {
+  /** The maximum number of runs merged at once. */
+  static final int MAX_FAN_IN = 64;
+
+  /**
+   * Returns a builder for a sorter that orders elements by {@code comparator}
+   * and writes them to disk with {@code codec}.
+   */
+  public static <T> Builder<T> builder(
+      Comparator<? super T> comparator, ElementCodec<T> codec) {
+    return new Builder<T>(comparator, codec);
+  }
+
+  /**
+   * A builder for {@link ExternalSorter} instances.
+   *
+   * @since 14.0
+   */
+  @Beta
+  public static final class Builder<T> {
+    private static final int DEFAULT_MAX_ELEMENTS_IN_MEMORY = 1 << 20;
+
+    private final Comparator<? super T> comparator;
+    private final ElementCodec<T> codec;
+    private int maxElementsInMemory = DEFAULT_MAX_ELEMENTS_IN_MEMORY;
+    private int fileThreshold = 0;
+    private Executor executor;
+
+    private Builder(Comparator<? super T> comparator, ElementCodec<T> codec) {
+      this.comparator = checkNotNull(comparator, "comparator");
+      this.codec = checkNotNull(codec, "codec");
+    }
+
+    /**
+     * Sets the number of elements buffered before a run is sorted and
+     * written out. The default is {@code 2^20}.
+     *
+     * @throws IllegalArgumentException if {@code maxElementsInMemory} is not
+     *     positive
+     */
+    public Builder<T> maxElementsInMemory(int maxElementsInMemory) {
+      checkArgument(maxElementsInMemory > 0,
+          "maxElementsInMemory (%s) must be positive", maxElementsInMemory);
+      this.maxElementsInMemory = maxElementsInMemory;
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes of each written run kept in memory before it
+     * moves to a temporary file; see {@link
+     * FileBackedOutputStream#FileBackedOutputStream(int)}. The default is
+     * zero, so that every run goes to a file.
+     *
+     * @throws IllegalArgumentException if {@code fileThreshold} is negative
+     */
+    public Builder<T> fileThreshold(int fileThreshold) {
+      checkArgument(fileThreshold >= 0,
+          "fileThreshold (%s) must be nonnegative", fileThreshold);
+      this.fileThreshold = fileThreshold;
+      return this;
+    }
+
+    /**
+     * Sorts and writes runs on {@code executor} instead of the thread adding
+     * the elements.
+     */
+    public Builder<T> sortOn(Executor executor) {
+      this.executor = checkNotNull(executor, "executor");
+      return this;
+    }
+
+    /** Returns a new, empty sorter. */
+    public ExternalSorter<T> build() {
+      return new ExternalSorter<T>(this);
+    }
+  }
+
+  /** A sorted run written to a stream. */
+  private static final class Run {
+    final FileBackedOutputStream data;
+    final long size;
+
+    Run(FileBackedOutputStream data, long size) {
+      this.data = data;
+      this.size = size;
+    }
+  }
+
+  private final Ordering<? super T> ordering;
+  private final ElementCodec<T> codec;
+  private final int maxElementsInMemory;
+  private final int fileThreshold;
+  @Nullable private final Executor executor;
+
+  private List<T> buffer;
+  private final List<Run> runs = Lists.newArrayList();
+  @Nullable private FutureTask<Run> pendingRun;
+  private final List<Closeable> openInputs = Lists.newArrayList();
+  private boolean iterated;
+  private boolean closed;
+
+  private ExternalSorter(Builder<T> builder) {
+    this.ordering = Ordering.from(builder.comparator);
+    this.codec = builder.codec;
+    this.maxElementsInMemory = builder.maxElementsInMemory;
+    this.fileThreshold = builder.fileThreshold;
+    this.executor = builder.executor;
+    this.buffer = newBuffer();
+  }
+
+  private List<T> newBuffer() {
+    return Lists.newArrayListWithCapacity(Math.min(maxElementsInMemory, 1 << 16));
+  }
+
+  /**
+   * Adds {@code element} to the elements to sort.
+   *
+   * @throws IOException if writing a run fails
+   * @throws IllegalStateException if {@link #sortedIterator} or {@link #close}
+   *     has been called
+   */
+  public void add(T element) throws IOException {
+    checkNotNull(element);
+    checkState(!iterated && !closed, "sorter can no longer accept elements");
+    buffer.add(element);
+    if (buffer.size() >= maxElementsInMemory) {
+      spill();
+    }
+  }
+
+  /**
+   * Adds each element of {@code elements} to the elements to sort.
+   *
+   * @throws IOException if writing a run fails
+   * @throws IllegalStateException if {@link #sortedIterator} or {@link #close}
+   *     has been called
+   */
+  public void addAll(Iterable<? extends T> elements) throws IOException {
+    addAll(elements.iterator());
+  }
+
+  /**
+   * Adds each remaining element of {@code elements} to the elements to sort.
+   *
+   * @throws IOException if writing a run fails
+   * @throws IllegalStateException if {@link #sortedIterator} or {@link #close}
+   *     has been called
+   */
+  public void addAll(Iterator<? extends T> elements) throws IOException {
+    while (elements.hasNext()) {
+      add(elements.next());
+    }
+  }
+
+  /** Hands the full buffer off to be sorted and written as a run. */
+  private void spill() throws IOException {
+    final List<T> full = buffer;
+    buffer = newBuffer();
+    if (executor == null) {
+      runs.add(writeRun(full));
+      return;
+    }
+    awaitPendingRun();
+    pendingRun = new FutureTask<Run>(new Callable<Run>() {
+      public Run call() throws IOException {
+        return writeRun(full);
+      }
+    });
+    executor.execute(pendingRun);
+  }
+
+  private void awaitPendingRun() throws IOException {
+    if (pendingRun == null) {
+      return;
+    }
+    FutureTask<Run> task = pendingRun;
+    pendingRun = null;
+    try {
+      runs.add(task.get());
+    } catch (InterruptedException e) {
+      task.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while writing a run");
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private Run writeRun(List<T> elements) throws IOException {
+    Collections.sort(elements, ordering);
+    return writeRun(elements.iterator(), elements.size());
+  }
+
+  /** Writes the {@code size} elements of {@code elements}, in order. */
+  private Run writeRun(Iterator<T> elements, long size) throws IOException {
+    FileBackedOutputStream data = new FileBackedOutputStream(fileThreshold, true);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(data));
+    boolean threw = true;
+    try {
+      while (elements.hasNext()) {
+        codec.write(elements.next(), out);
+      }
+      threw = false;
+    } finally {
+      Closeables.close(out, threw);
+      if (threw) {
+        data.reset();
+      }
+    }
+    return new Run(data, size);
+  }
+
+  /**
+   * Merges the oldest runs into one until at most {@code MAX_FAN_IN - 1} are
+   * left, which the iterator merges with the buffer. Each merge appends its
+   * run at the end and deletes the runs it read, so that every element is
+   * rewritten about {@code log(runs) / log(MAX_FAN_IN)} times.
+   */
+  private void mergeRuns() throws IOException {
+    while (runs.size() >= MAX_FAN_IN) {
+      List<Run> oldest = Lists.newArrayList(runs.subList(0, MAX_FAN_IN));
+      List<Closeable> inputs = Lists.newArrayListWithCapacity(MAX_FAN_IN);
+      List<Iterator<T>> sources = Lists.newArrayListWithCapacity(MAX_FAN_IN);
+      long size = 0;
+      Run merged;
+      try {
+        for (Run run : oldest) {
+          DataInputStream in = open(run);
+          inputs.add(in);
+          sources.add(new RunIterator(in, run.size));
+          size += run.size;
+        }
+        merged = writeRun(Iterators.mergeSorted(sources, ordering), size);
+      } catch (RuntimeException e) {
+        // RunIterator wraps the IOExceptions of reading a run
+        Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+        throw e;
+      } finally {
+        for (Closeable input : inputs) {
+          Closeables.closeQuietly(input);
+        }
+      }
+      runs.add(merged);
+      for (Run run : oldest) {
+        run.data.reset();
+      }
+      runs.subList(0, MAX_FAN_IN).clear();
+    }
+  }
+
+  private static DataInputStream open(Run run) throws IOException {
+    return new DataInputStream(
+        new BufferedInputStream(run.data.getSupplier().getInput()));
+  }
+
+  /**
+   * Returns an iterator over all added elements in sorted order. The runs
+   * written so far are merged lazily with the elements still buffered, which
+   * are sorted in memory; if no run was written, no I/O takes place. If there
+   * are {@value #MAX_FAN_IN} runs or more, the oldest are first merged into
+   * longer runs before this method returns.
+   *
+   * <p>This may only be called once, after which no more elements can be
+   * added. Call {@link #close} once the iterator is no longer needed, whether
+   * or not it was exhausted.
+   *
+   * @throws IOException if writing a pending run, or merging or opening the
+   *     runs, fails
+   * @throws IllegalStateException if this method or {@link #close} has
+   *     already been called
+   */
+  public UnmodifiableIterator<T> sortedIterator() throws IOException {
+    checkState(!iterated && !closed, "sortedIterator() may only be called once");
+    iterated = true;
+    awaitPendingRun();
+
+    Collections.sort(buffer, ordering);
+    if (runs.isEmpty()) {
+      return Iterators.unmodifiableIterator(buffer.iterator());
+    }
+    mergeRuns();
+    List<Iterator<T>> sources = Lists.newArrayListWithCapacity(runs.size() + 1);
+    for (Run run : runs) {
+      DataInputStream in = open(run);
+      openInputs.add(in);
+      sources.add(new RunIterator(in, run.size));
+    }
+    sources.add(buffer.iterator());
+    return Iterators.mergeSorted(sources, ordering);
+  }
+
+  /** Reads back the elements of one run, closing its stream at the end. */
+  private final class RunIterator extends AbstractIterator<T> {
+    final DataInputStream in;
+    long remaining;
+
+    RunIterator(DataInputStream in, long size) {
+      this.in = in;
+      this.remaining = size;
+    }
+
+    protected T computeNext() {
+      try {
+        if (remaining == 0) {
+          in.close();
+          return endOfData();
+        }
+        remaining--;
+        return codec.read(in);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+  }
+
+  /**
+   * Closes any runs being read and deletes their temporary files. A sorter
+   * cannot be used after it is closed; closing it again has no effect.
+   *
+   * @throws IOException if a run cannot be closed or deleted
+   */
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    buffer = Collections.emptyList();
+    IOException failure = null;
+    if (pendingRun != null) {
+      try {
+        awaitPendingRun();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    for (Closeable input : openInputs) {
+      try {
+        input.close();
+      } catch (IOException e) {
+        failure = (failure == null) ? e : failure;
+      }
+    }
+    for (Run run : runs) {
+      try {
+        run.data.reset();
+      } catch (IOException e) {
+        failure = (failure == null) ? e : failure;
+      }
+    }
+    openInputs.clear();
+    runs.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.primitives;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.base.Preconditions.checkPositionIndex;
+import static google.common.base.Preconditions.checkPositionIndexes;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+/**
+ * A growable list of {@code double} values backed by a primitive {@code double[]},
+ * unlike {@link Doubles#asList}, which is a fixed-size view.
+ *
+ * <p>The list implements {@code List<Double>}, boxing values only when they
+ * are read or written through that interface; the {@code getDouble},
+ * {@code setDouble} and {@code addDouble} methods, and the bulk operations taking
+ * {@code double[]} or {@link ImmutableDoubleArray}, never box. {@link Doubles#toArray}
+ * and {@link ImmutableDoubleArray#copyOf(Collection)} recognize instances of this
+ * class and copy out of them directly.
+ *
+ * <p>Null elements are not permitted; attempting to add or set one results in
+ * a {@link NullPointerException}. Like {@link java.util.ArrayList}, this class
+ * is not thread-safe.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible
+public final class DoubleArrayList extends AbstractList<Double>
+    implements RandomAccess, Serializable {
+
+  /** Creates a new, empty {@code DoubleArrayList} with the default initial capacity. */
+  public static DoubleArrayList create() {
+    return new DoubleArrayList(new double[10], 0);
+  }
+
+  /**
+   * Creates a new, empty {@code DoubleArrayList} able to hold
+   * {@code expectedSize} values without resizing.
+   *
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static DoubleArrayList createWithExpectedSize(int expectedSize) {
+    checkArgument(expectedSize >= 0, "Invalid expectedSize: %s", expectedSize);
+    return new DoubleArrayList(new double[expectedSize], 0);
+  }
+
+  /** Creates a new {@code DoubleArrayList} containing the given values, in order. */
+  public static DoubleArrayList copyOf(double... values) {
+    return new DoubleArrayList(Doubles.concat(values), values.length);
+  }
+
+  /**
+   * Creates a new {@code DoubleArrayList} containing the given values, in order.
+   *
+   * @throws NullPointerException if any element of {@code values} is null
+   */
+  public static DoubleArrayList copyOf(Collection<? extends Number> values) {
+    double[] array = Doubles.toArray(values);
+    return new DoubleArrayList(array, array.length);
+  }
+
+  private double[] array;
+  private int size;
+
+  private DoubleArrayList(double[] array, int size) {
+    this.array = array;
+    this.size = size;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the value at {@code index} without boxing it.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public double getDouble(int index) {
+    checkElementIndex(index, size);
+    return array[index];
+  }
+
+  /**
+   * Replaces the value at {@code index}, returning the previous value.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public double setDouble(int index, double value) {
+    checkElementIndex(index, size);
+    double oldValue = array[index];
+    array[index] = value;
+    return oldValue;
+  }
+
+  /** Appends {@code value} to the end of this list. */
+  public void addDouble(double value) {
+    ensureRoomFor(1);
+    array[size++] = value;
+    modCount++;
+  }
+
+  /**
+   * Inserts {@code value} at {@code index}, shifting later values to the right.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public void addDouble(int index, double value) {
+    checkPositionIndex(index, size);
+    ensureRoomFor(1);
+    System.arraycopy(array, index, array, index + 1, size - index);
+    array[index] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Removes the value at {@code index}, shifting later values to the left, and
+   * returns it.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public double removeDoubleAt(int index) {
+    checkElementIndex(index, size);
+    double oldValue = array[index];
+    System.arraycopy(array, index + 1, array, index, size - index - 1);
+    size--;
+    modCount++;
+    return oldValue;
+  }
+
+  /** Appends all of {@code values}, in order, to the end of this list. */
+  public void addAll(double... values) {
+    insertAt(size, values, 0, values.length);
+  }
+
+  /** Appends all of {@code values}, in order, to the end of this list. */
+  public void addAll(ImmutableDoubleArray values) {
+    ensureRoomFor(values.length());
+    values.copyInto(array, size);
+    size += values.length();
+    modCount++;
+  }
+
+  /** Returns {@code true} if {@code target} is present in this list. */
+  public boolean contains(double target) {
+    return indexOf(target) >= 0;
+  }
+
+  /**
+   * Returns the index of the first occurrence of {@code target} in this list,
+   * or {@code -1} if there is none.
+   */
+  public int indexOf(double target) {
+    for (int i = 0; i < size; i++) {
+      if (areEqual(array[i], target)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the last occurrence of {@code target} in this list,
+   * or {@code -1} if there is none.
+   */
+  public int lastIndexOf(double target) {
+    for (int i = size - 1; i >= 0; i--) {
+      if (areEqual(array[i], target)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Sorts the values of this list into ascending numerical order. */
+  public void sort() {
+    Arrays.sort(array, 0, size);
+    modCount++;
+  }
+
+  /** Returns a new {@code double[]} containing the values of this list, in order. */
+  public double[] toDoubleArray() {
+    double[] result = new double[size];
+    System.arraycopy(array, 0, result, 0, size);
+    return result;
+  }
+
+  /** Returns an immutable snapshot of the values currently in this list. */
+  public ImmutableDoubleArray toImmutableArray() {
+    return ImmutableDoubleArray.copyOf(this);
+  }
+
+  void copyInto(double[] dest, int destPos) {
+    System.arraycopy(array, 0, dest, destPos, size);
+  }
+
+  /**
+   * Increases the capacity of this list, if necessary, so that it can hold at
+   * least {@code minCapacity} values without resizing.
+   */
+  public void ensureCapacity(int minCapacity) {
+    if (minCapacity > array.length) {
+      array = Doubles.ensureCapacity(array, minCapacity, 0);
+    }
+  }
+
+  /** Shrinks the backing array so that its length equals the size of this list. */
+  public void trimToSize() {
+    if (size < array.length) {
+      array = toDoubleArray();
+    }
+  }
+
+  private void ensureRoomFor(int numberToAdd) {
+    int newSize = size + numberToAdd;
+    if (newSize < 0) {
+      throw new AssertionError("cannot store more than MAX_VALUE elements");
+    }
+    if (newSize > array.length) {
+      // grow by half, but never overflow past MAX_VALUE
+      int newCapacity = Math.max(newSize, array.length + (array.length >> 1) + 1);
+      array = Doubles.ensureCapacity(array, newCapacity < 0 ? Integer.MAX_VALUE : newCapacity, 0);
+    }
+  }
+
+  private void insertAt(int index, double[] values, int from, int length) {
+    ensureRoomFor(length);
+    System.arraycopy(array, index, array, index + length, size - index);
+    System.arraycopy(values, from, array, index, length);
+    size += length;
+    modCount++;
+  }
+
+  @Override
+  public Double get(int index) {
+    return getDouble(index);
+  }
+
+  @Override
+  public Double set(int index, Double element) {
+    // checkNotNull for GWT (do not optimize)
+    return setDouble(index, checkNotNull(element));
+  }
+
+  @Override
+  public boolean add(Double element) {
+    addDouble(checkNotNull(element));
+    return true;
+  }
+
+  @Override
+  public void add(int index, Double element) {
+    addDouble(index, checkNotNull(element));
+  }
+
+  @Override
+  public Double remove(int index) {
+    return removeDoubleAt(index);
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends Double> collection) {
+    return addAll(size, collection);
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends Double> collection) {
+    checkPositionIndex(index, size);
+    // Doubles.toArray copies DoubleArrayList and ImmutableDoubleArray views without boxing
+    double[] values = Doubles.toArray(collection);
+    insertAt(index, values, 0, values.length);
+    return values.length != 0;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    checkPositionIndexes(fromIndex, toIndex, size);
+    System.arraycopy(array, toIndex, array, fromIndex, size - toIndex);
+    size -= toIndex - fromIndex;
+    modCount++;
+  }
+
+  @Override
+  public boolean contains(Object target) {
+    // Overridden to prevent a ton of boxing
+    return (target instanceof Double) && indexOf(((Double) target).doubleValue()) >= 0;
+  }
+
+  @Override
+  public int indexOf(Object target) {
+    // Overridden to prevent a ton of boxing
+    return (target instanceof Double) ? indexOf(((Double) target).doubleValue()) : -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object target) {
+    // Overridden to prevent a ton of boxing
+    return (target instanceof Double) ? lastIndexOf(((Double) target).doubleValue()) : -1;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (object instanceof DoubleArrayList) {
+      DoubleArrayList that = (DoubleArrayList) object;
+      if (that.size != size) {
+        return false;
+      }
+      for (int i = 0; i < size; i++) {
+        if (!areEqual(array[i], that.array[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return super.equals(object);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = 0; i < size; i++) {
+      result = 31 * result + Doubles.hashCode(array[i]);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    if (size == 0) {
+      return "[]";
+    }
+    StringBuilder builder = new StringBuilder(size * 5);
+    builder.append('[').append(array[0]);
+    for (int i = 1; i < size; i++) {
+      builder.append(", ").append(array[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  /**
+   * Compares values the way {@link Double#equals} does, so that {@code NaN}
+   * equals itself and {@code 0.0} does not equal {@code -0.0}; this keeps
+   * {@code equals} consistent with {@code hashCode}.
+   */
+  private static boolean areEqual(double a, double b) {
+    return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+  }
+
+  private static final long serialVersionUID = 0;
+}
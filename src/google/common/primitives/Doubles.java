@@ -373,6 +373,12 @@ public final class Doubles {
     if (collection instanceof DoubleArrayAsList) {
       return ((DoubleArrayAsList) collection).toDoubleArray();
     }
+    if (collection instanceof DoubleArrayList) {
+      return ((DoubleArrayList) collection).toDoubleArray();
+    }
+    if (collection instanceof ImmutableDoubleArray.AsList) {
+      return ((ImmutableDoubleArray.AsList) collection).parent.toArray();
+    }
 
     Object[] boxedArray = collection.toArray();
     int len = boxedArray.length;
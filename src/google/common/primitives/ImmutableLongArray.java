@@ -0,0 +1,449 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.primitives;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+import static google.common.base.Preconditions.checkPositionIndexes;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable array of {@code long} values, taking up less memory than an
+ * equivalent {@code ImmutableList<Long>} and avoiding boxing on every read.
+ *
+ * <p>Instances may share a backing array with the instance they were derived
+ * from (see {@link #subArray}); use {@link #trimmed} to obtain an instance
+ * that holds on to no more memory than it needs.
+ *
+ * <p>Use {@link #asList} for a {@code List<Long>} view when an API
+ * demands one; {@link Longs#toArray} and {@link LongArrayList} recognize that
+ * view and copy out of it without boxing.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible
+public final class ImmutableLongArray implements Serializable {
+  private static final ImmutableLongArray EMPTY = new ImmutableLongArray(new long[0]);
+
+  /** Returns the empty array. */
+  public static ImmutableLongArray of() {
+    return EMPTY;
+  }
+
+  /** Returns an immutable array containing the given values, in order. */
+  public static ImmutableLongArray of(long... values) {
+    return copyOf(values);
+  }
+
+  /** Returns an immutable array containing the given values, in order. */
+  public static ImmutableLongArray copyOf(long[] values) {
+    return values.length == 0
+        ? EMPTY
+        : new ImmutableLongArray(Longs.concat(values));
+  }
+
+  /**
+   * Returns an immutable array containing the given values, in order. If
+   * {@code values} is an {@link LongArrayList} or the {@link #asList} view of
+   * another immutable array, no boxing takes place.
+   *
+   * @throws NullPointerException if {@code values} or any of its elements is
+   *     null
+   */
+  public static ImmutableLongArray copyOf(Collection<? extends Number> values) {
+    if (values instanceof AsList) {
+      return ((AsList) values).parent;
+    }
+    return values.isEmpty() ? EMPTY : new ImmutableLongArray(Longs.toArray(values));
+  }
+
+  /**
+   * Returns an immutable array containing the given values, in order.
+   *
+   * @throws NullPointerException if {@code values} or any of its elements is
+   *     null
+   */
+  public static ImmutableLongArray copyOf(Iterable<? extends Number> values) {
+    if (values instanceof Collection) {
+      return copyOf((Collection<? extends Number>) values);
+    }
+    return builder().addAll(values).build();
+  }
+
+  /**
+   * Returns a new, empty builder for {@link ImmutableLongArray} instances,
+   * sized to hold up to {@code initialCapacity} values without resizing.
+   *
+   * @throws IllegalArgumentException if {@code initialCapacity} is negative
+   */
+  public static Builder builder(int initialCapacity) {
+    checkArgument(initialCapacity >= 0, "Invalid initialCapacity: %s", initialCapacity);
+    return new Builder(initialCapacity);
+  }
+
+  /** Returns a new, empty builder for {@link ImmutableLongArray} instances. */
+  public static Builder builder() {
+    return new Builder(10);
+  }
+
+  /**
+   * A builder for {@link ImmutableLongArray} instances. Values are appended to
+   * a growable {@code long[]}; nothing is boxed unless the caller passes boxed
+   * values in.
+   *
+   * @since 14.0
+   */
+  public static final class Builder {
+    private long[] array;
+    private int count = 0;
+
+    Builder(int initialCapacity) {
+      array = new long[initialCapacity];
+    }
+
+    /** Appends {@code value} to the end of the values the built array will contain. */
+    public Builder add(long value) {
+      ensureRoomFor(1);
+      array[count] = value;
+      count += 1;
+      return this;
+    }
+
+    /** Appends {@code values}, in order, to the end of the values the built array will contain. */
+    public Builder addAll(long[] values) {
+      ensureRoomFor(values.length);
+      System.arraycopy(values, 0, array, count, values.length);
+      count += values.length;
+      return this;
+    }
+
+    /** Appends {@code values}, in order, to the end of the values the built array will contain. */
+    public Builder addAll(ImmutableLongArray values) {
+      ensureRoomFor(values.length());
+      System.arraycopy(values.array, values.start, array, count, values.length());
+      count += values.length();
+      return this;
+    }
+
+    /**
+     * Appends {@code values}, in order, to the end of the values the built
+     * array will contain.
+     *
+     * @throws NullPointerException if any element of {@code values} is null
+     */
+    public Builder addAll(Iterable<? extends Number> values) {
+      if (values instanceof AsList) {
+        return addAll(((AsList) values).parent);
+      }
+      if (values instanceof LongArrayList) {
+        LongArrayList list = (LongArrayList) values;
+        ensureRoomFor(list.size());
+        list.copyInto(array, count);
+        count += list.size();
+        return this;
+      }
+      if (values instanceof Collection) {
+        return addAll(Longs.toArray((Collection<? extends Number>) values));
+      }
+      for (Number value : values) {
+        add(value.longValue());
+      }
+      return this;
+    }
+
+    private void ensureRoomFor(int numberToAdd) {
+      int newCount = count + numberToAdd;
+      if (newCount < 0) {
+        throw new AssertionError("cannot store more than MAX_VALUE elements");
+      }
+      if (newCount > array.length) {
+        // grow by half, but never overflow past MAX_VALUE
+        int newCapacity = Math.max(newCount, array.length + (array.length >> 1) + 1);
+        array = Longs.ensureCapacity(array, newCapacity < 0 ? Integer.MAX_VALUE : newCapacity, 0);
+      }
+    }
+
+    /**
+     * Returns a new immutable array. The builder can continue to be used
+     * after this call, to append more values and build again.
+     */
+    public ImmutableLongArray build() {
+      if (count == 0) {
+        return EMPTY;
+      }
+      long[] values = new long[count];
+      System.arraycopy(array, 0, values, 0, count);
+      return new ImmutableLongArray(values);
+    }
+  }
+
+  private final long[] array;
+  private final transient int start; // it happens that we only serialize instances where this is 0
+  private final int end; // exclusive
+
+  private ImmutableLongArray(long[] array) {
+    this(array, 0, array.length);
+  }
+
+  private ImmutableLongArray(long[] array, int start, int end) {
+    this.array = array;
+    this.start = start;
+    this.end = end;
+  }
+
+  /** Returns the number of values in this array. */
+  public int length() {
+    return end - start;
+  }
+
+  /** Returns {@code true} if there are no values in this array. */
+  public boolean isEmpty() {
+    return end == start;
+  }
+
+  /**
+   * Returns the {@code long} value present at the given index.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is negative, or greater
+   *     than or equal to {@link #length}
+   */
+  public long get(int index) {
+    checkElementIndex(index, length());
+    return array[start + index];
+  }
+
+  /**
+   * Returns the smallest index for which {@link #get} returns {@code target},
+   * or {@code -1} if no such index exists.
+   */
+  public int indexOf(long target) {
+    for (int i = start; i < end; i++) {
+      if (array[i] == target) {
+        return i - start;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the largest index for which {@link #get} returns {@code target},
+   * or {@code -1} if no such index exists.
+   */
+  public int lastIndexOf(long target) {
+    for (int i = end - 1; i >= start; i--) {
+      if (array[i] == target) {
+        return i - start;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns {@code true} if {@code target} is present at any index in this array. */
+  public boolean contains(long target) {
+    return indexOf(target) >= 0;
+  }
+
+  /** Returns a new, mutable copy of this array's values, as a primitive {@code long[]}. */
+  public long[] toArray() {
+    long[] result = new long[length()];
+    System.arraycopy(array, start, result, 0, result.length);
+    return result;
+  }
+
+  /**
+   * Copies this array's values into {@code dest}, starting at
+   * {@code destPos}.
+   *
+   * @throws IndexOutOfBoundsException if {@code dest} is too small
+   */
+  public void copyInto(long[] dest, int destPos) {
+    System.arraycopy(array, start, dest, destPos, length());
+  }
+
+  /**
+   * Returns a new immutable array containing the values in the specified
+   * range. The returned array shares this array's backing storage; call
+   * {@link #trimmed} on it to release the rest.
+   *
+   * @throws IndexOutOfBoundsException if {@code startIndex} or
+   *     {@code endIndex} is out of range, or {@code startIndex > endIndex}
+   */
+  public ImmutableLongArray subArray(int startIndex, int endIndex) {
+    checkPositionIndexes(startIndex, endIndex, length());
+    return startIndex == endIndex
+        ? EMPTY
+        : new ImmutableLongArray(array, start + startIndex, start + endIndex);
+  }
+
+  /**
+   * Returns an immutable array containing the same values as {@code this}
+   * array, but guaranteed to use no more memory than necessary. This is a
+   * no-op if the backing array is already exactly the right size.
+   */
+  public ImmutableLongArray trimmed() {
+    return isPartialView() ? new ImmutableLongArray(toArray()) : this;
+  }
+
+  private boolean isPartialView() {
+    return start > 0 || end < array.length;
+  }
+
+  /**
+   * Returns an immutable <i>view</i> of this array's values as a
+   * {@code List<Long>}. Values are boxed as they are read.
+   */
+  public List<Long> asList() {
+    return new AsList(this);
+  }
+
+  static final class AsList extends AbstractList<Long>
+      implements RandomAccess, Serializable {
+    final ImmutableLongArray parent;
+
+    private AsList(ImmutableLongArray parent) {
+      this.parent = parent;
+    }
+
+    @Override
+    public int size() {
+      return parent.length();
+    }
+
+    @Override
+    public Long get(int index) {
+      return parent.get(index);
+    }
+
+    @Override
+    public boolean contains(Object target) {
+      // Overridden to prevent a ton of boxing
+      return indexOf(target) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object target) {
+      // Overridden to prevent a ton of boxing
+      return (target instanceof Long) ? parent.indexOf((Long) target) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object target) {
+      // Overridden to prevent a ton of boxing
+      return (target instanceof Long) ? parent.lastIndexOf((Long) target) : -1;
+    }
+
+    @Override
+    public List<Long> subList(int fromIndex, int toIndex) {
+      return parent.subArray(fromIndex, toIndex).asList();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      if (object instanceof AsList) {
+        return parent.equals(((AsList) object).parent);
+      }
+      return super.equals(object);
+    }
+
+    @Override
+    public int hashCode() {
+      return parent.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return parent.toString();
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /**
+   * Returns {@code true} if {@code object} is a {@code ImmutableLongArray}
+   * containing the same values as this one, in the same order.
+   */
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (!(object instanceof ImmutableLongArray)) {
+      return false;
+    }
+    ImmutableLongArray that = (ImmutableLongArray) object;
+    if (this.length() != that.length()) {
+      return false;
+    }
+    for (int i = 0; i < length(); i++) {
+      if (this.array[this.start + i] != that.array[that.start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns an unspecified hash code for the contents of this immutable
+   * array; consistent with the hash code of {@link #asList}.
+   */
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = start; i < end; i++) {
+      result = 31 * result + Longs.hashCode(array[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Returns a string representation of this array in the same form as
+   * {@link java.util.Arrays#toString(long[])}, for example {@code "[1, 2, 3]"}.
+   */
+  @Override
+  public String toString() {
+    if (isEmpty()) {
+      return "[]";
+    }
+    StringBuilder builder = new StringBuilder(length() * 5);
+    builder.append('[').append(array[start]);
+    for (int i = start + 1; i < end; i++) {
+      builder.append(", ").append(array[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  Object writeReplace() {
+    return trimmed();
+  }
+
+  Object readResolve() {
+    return isEmpty() ? EMPTY : this;
+  }
+
+  private static final long serialVersionUID = 0;
+}
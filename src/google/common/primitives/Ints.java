@@ -437,6 +437,12 @@ public final class Ints {
     if (collection instanceof IntArrayAsList) {
       return ((IntArrayAsList) collection).toIntArray();
     }
+    if (collection instanceof IntArrayList) {
+      return ((IntArrayList) collection).toIntArray();
+    }
+    if (collection instanceof ImmutableIntArray.AsList) {
+      return ((ImmutableIntArray.AsList) collection).parent.toArray();
+    }
 
     Object[] boxedArray = collection.toArray();
     int len = boxedArray.length;
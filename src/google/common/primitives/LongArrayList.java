@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.primitives;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkElementIndex;
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.base.Preconditions.checkPositionIndex;
+import static google.common.base.Preconditions.checkPositionIndexes;
+
+import google.common.annotations.Beta;
+import google.common.annotations.GwtCompatible;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+/**
+ * A growable list of {@code long} values backed by a primitive {@code long[]},
+ * unlike {@link Longs#asList}, which is a fixed-size view.
+ *
+ * <p>The list implements {@code List<Long>}, boxing values only when they
+ * are read or written through that interface; the {@code getLong},
+ * {@code setLong} and {@code addLong} methods, and the bulk operations taking
+ * {@code long[]} or {@link ImmutableLongArray}, never box. {@link Longs#toArray}
+ * and {@link ImmutableLongArray#copyOf(Collection)} recognize instances of this
+ * class and copy out of them directly.
+ *
+ * <p>Null elements are not permitted; attempting to add or set one results in
+ * a {@link NullPointerException}. Like {@link java.util.ArrayList}, this class
+ * is not thread-safe.
+ *
+ * @since 14.0
+ */
+@Beta
+@GwtCompatible
+public final class LongArrayList extends AbstractList<Long>
+    implements RandomAccess, Serializable {
+
+  /** Creates a new, empty {@code LongArrayList} with the default initial capacity. */
+  public static LongArrayList create() {
+    return new LongArrayList(new long[10], 0);
+  }
+
+  /**
+   * Creates a new, empty {@code LongArrayList} able to hold
+   * {@code expectedSize} values without resizing.
+   *
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static LongArrayList createWithExpectedSize(int expectedSize) {
+    checkArgument(expectedSize >= 0, "Invalid expectedSize: %s", expectedSize);
+    return new LongArrayList(new long[expectedSize], 0);
+  }
+
+  /** Creates a new {@code LongArrayList} containing the given values, in order. */
+  public static LongArrayList copyOf(long... values) {
+    return new LongArrayList(Longs.concat(values), values.length);
+  }
+
+  /**
+   * Creates a new {@code LongArrayList} containing the given values, in order.
+   *
+   * @throws NullPointerException if any element of {@code values} is null
+   */
+  public static LongArrayList copyOf(Collection<? extends Number> values) {
+    long[] array = Longs.toArray(values);
+    return new LongArrayList(array, array.length);
+  }
+
+  private long[] array;
+  private int size;
+
+  private LongArrayList(long[] array, int size) {
+    this.array = array;
+    this.size = size;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the value at {@code index} without boxing it.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public long getLong(int index) {
+    checkElementIndex(index, size);
+    return array[index];
+  }
+
+  /**
+   * Replaces the value at {@code index}, returning the previous value.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public long setLong(int index, long value) {
+    checkElementIndex(index, size);
+    long oldValue = array[index];
+    array[index] = value;
+    return oldValue;
+  }
+
+  /** Appends {@code value} to the end of this list. */
+  public void addLong(long value) {
+    ensureRoomFor(1);
+    array[size++] = value;
+    modCount++;
+  }
+
+  /**
+   * Inserts {@code value} at {@code index}, shifting later values to the right.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public void addLong(int index, long value) {
+    checkPositionIndex(index, size);
+    ensureRoomFor(1);
+    System.arraycopy(array, index, array, index + 1, size - index);
+    array[index] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Removes the value at {@code index}, shifting later values to the left, and
+   * returns it.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public long removeLongAt(int index) {
+    checkElementIndex(index, size);
+    long oldValue = array[index];
+    System.arraycopy(array, index + 1, array, index, size - index - 1);
+    size--;
+    modCount++;
+    return oldValue;
+  }
+
+  /** Appends all of {@code values}, in order, to the end of this list. */
+  public void addAll(long... values) {
+    insertAt(size, values, 0, values.length);
+  }
+
+  /** Appends all of {@code values}, in order, to the end of this list. */
+  public void addAll(ImmutableLongArray values) {
+    ensureRoomFor(values.length());
+    values.copyInto(array, size);
+    size += values.length();
+    modCount++;
+  }
+
+  /** Returns {@code true} if {@code target} is present in this list. */
+  public boolean contains(long target) {
+    return indexOf(target) >= 0;
+  }
+
+  /**
+   * Returns the index of the first occurrence of {@code target} in this list,
+   * or {@code -1} if there is none.
+   */
+  public int indexOf(long target) {
+    for (int i = 0; i < size; i++) {
+      if (array[i] == target) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the last occurrence of {@code target} in this list,
+   * or {@code -1} if there is none.
+   */
+  public int lastIndexOf(long target) {
+    for (int i = size - 1; i >= 0; i--) {
+      if (array[i] == target) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Sorts the values of this list into ascending numerical order. */
+  public void sort() {
+    Arrays.sort(array, 0, size);
+    modCount++;
+  }
+
+  /** Returns a new {@code long[]} containing the values of this list, in order. */
+  public long[] toLongArray() {
+    long[] result = new long[size];
+    System.arraycopy(array, 0, result, 0, size);
+    return result;
+  }
+
+  /** Returns an immutable snapshot of the values currently in this list. */
+  public ImmutableLongArray toImmutableArray() {
+    return ImmutableLongArray.copyOf(this);
+  }
+
+  void copyInto(long[] dest, int destPos) {
+    System.arraycopy(array, 0, dest, destPos, size);
+  }
+
+  /**
+   * Increases the capacity of this list, if necessary, so that it can hold at
+   * least {@code minCapacity} values without resizing.
+   */
+  public void ensureCapacity(int minCapacity) {
+    if (minCapacity > array.length) {
+      array = Longs.ensureCapacity(array, minCapacity, 0);
+    }
+  }
+
+  /** Shrinks the backing array so that its length equals the size of this list. */
+  public void trimToSize() {
+    if (size < array.length) {
+      array = toLongArray();
+    }
+  }
+
+  private void ensureRoomFor(int numberToAdd) {
+    int newSize = size + numberToAdd;
+    if (newSize < 0) {
+      throw new AssertionError("cannot store more than MAX_VALUE elements");
+    }
+    if (newSize > array.length) {
+      // grow by half, but never overflow past MAX_VALUE
+      int newCapacity = Math.max(newSize, array.length + (array.length >> 1) + 1);
+      array = Longs.ensureCapacity(array, newCapacity < 0 ? Integer.MAX_VALUE : newCapacity, 0);
+    }
+  }
+
+  private void insertAt(int index, long[] values, int from, int length) {
+    ensureRoomFor(length);
+    System.arraycopy(array, index, array, index + length, size - index);
+    System.arraycopy(values, from, array, index, length);
+    size += length;
+    modCount++;
+  }
+
+  @Override
+  public Long get(int index) {
+    return getLong(index);
+  }
+
+  @Override
+  public Long set(int index, Long element) {
+    // checkNotNull for GWT (do not optimize)
+    return setLong(index, checkNotNull(element));
+  }
+
+  @Override
+  public boolean add(Long element) {
+    addLong(checkNotNull(element));
+    return true;
+  }
+
+  @Override
+  public void add(int index, Long element) {
+    addLong(index, checkNotNull(element));
+  }
+
+  @Override
+  public Long remove(int index) {
+    return removeLongAt(index);
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends Long> collection) {
+    return addAll(size, collection);
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends Long> collection) {
+    checkPositionIndex(index, size);
+    // Longs.toArray copies LongArrayList and ImmutableLongArray views without boxing
+    long[] values = Longs.toArray(collection);
+    insertAt(index, values, 0, values.length);
+    return values.length != 0;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    checkPositionIndexes(fromIndex, toIndex, size);
+    System.arraycopy(array, toIndex, array, fromIndex, size - toIndex);
+    size -= toIndex - fromIndex;
+    modCount++;
+  }
+
+  @Override
+  public boolean contains(Object target) {
+    // Overridden to prevent a ton of boxing
+    return (target instanceof Long) && indexOf(((Long) target).longValue()) >= 0;
+  }
+
+  @Override
+  public int indexOf(Object target) {
+    // Overridden to prevent a ton of boxing
+    return (target instanceof Long) ? indexOf(((Long) target).longValue()) : -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object target) {
+    // Overridden to prevent a ton of boxing
+    return (target instanceof Long) ? lastIndexOf(((Long) target).longValue()) : -1;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (object instanceof LongArrayList) {
+      LongArrayList that = (LongArrayList) object;
+      if (that.size != size) {
+        return false;
+      }
+      for (int i = 0; i < size; i++) {
+        if (array[i] != that.array[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return super.equals(object);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = 0; i < size; i++) {
+      result = 31 * result + Longs.hashCode(array[i]);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    if (size == 0) {
+      return "[]";
+    }
+    StringBuilder builder = new StringBuilder(size * 5);
+    builder.append('[').append(array[0]);
+    for (int i = 1; i < size; i++) {
+      builder.append(", ").append(array[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  private static final long serialVersionUID = 0;
+}
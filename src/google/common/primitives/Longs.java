@@ -417,6 +417,12 @@ public final class Longs {
     if (collection instanceof LongArrayAsList) {
       return ((LongArrayAsList) collection).toLongArray();
     }
+    if (collection instanceof LongArrayList) {
+      return ((LongArrayList) collection).toLongArray();
+    }
+    if (collection instanceof ImmutableLongArray.AsList) {
+      return ((ImmutableLongArray.AsList) collection).parent.toArray();
+    }
 
     Object[] boxedArray = collection.toArray();
     int len = boxedArray.length;
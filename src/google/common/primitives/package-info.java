@@ -61,6 +61,16 @@
  *   <li>{@link google.common.primitives.UnsignedInteger}
  *   <li>{@link google.common.primitives.UnsignedLong}
  * </ul>
+ *
+ * <h3>Primitive collections</h3>
+ * <ul>
+ *   <li>{@link google.common.primitives.ImmutableIntArray}
+ *   <li>{@link google.common.primitives.ImmutableLongArray}
+ *   <li>{@link google.common.primitives.ImmutableDoubleArray}
+ *   <li>{@link google.common.primitives.IntArrayList}
+ *   <li>{@link google.common.primitives.LongArrayList}
+ *   <li>{@link google.common.primitives.DoubleArrayList}
+ * </ul>
  */
 @ParametersAreNonnullByDefault
 package google.common.primitives;
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.util.concurrent;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+import static google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import google.common.annotations.Beta;
+import google.common.collect.Lists;
+import google.common.collect.Queues;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class for services that take elements from a {@link BlockingQueue} and
+ * process them in batches. Subclasses implement {@link #processBatch}; the
+ * service thread fills each batch until it holds {@code maxBatchSize}
+ * elements, reaches {@link #maxBatchWeight} by {@link #weigh}, or {@code
+ * maxDelay} has passed since its first element was taken, whichever comes
+ * first, in the manner of {@link Queues#drain}. A batch therefore never waits
+ * longer than {@code maxDelay} to be dispatched, and one element that alone
+ * exceeds the weight limit forms a batch of its own.
+ *
+ * <p>Batches are processed by {@link #batchExecutor}, by default on the
+ * service thread itself, with at most {@link #maxConcurrentBatches} in flight
+ * at once. While that many are in flight the service stops taking elements,
+ * so a bounded queue pushes back on its producers. {@link #stats} reports the
+ * number, size, weight, processing time and latency of the batches.
+ *
+ * <p>When the service is stopped, it stops waiting for elements, processes
+ * those already in the queue without waiting to fill their batches, and waits
+ * for the batches in flight before {@link #shutDown} is called. Elements
+ * added to the queue afterwards are not processed.
+ *
+ * @since 14.0
+ */
+@Beta
+public abstract class AbstractBatchingService<E>
+    extends AbstractExecutionThreadService {
+  private static final Logger logger =
+      Logger.getLogger(AbstractBatchingService.class.getName());
+
+  /** How long to wait for an element before checking for a stop request. */
+  private static final long IDLE_POLL_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final BlockingQueue<E> queue;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+
+  /**
+   * Elements taken from the queue but not yet added to a batch, such as those
+   * that did not fit into the previous batch by weight, in queue order.
+   * Accessed only by the service thread.
+   */
+  private final ArrayDeque<Taken<E>> carried = Queues.newArrayDeque();
+
+  private final LongAdder batchCount = new LongAdder();
+  private final LongAdder failureCount = new LongAdder();
+  private final LongAdder elementCount = new LongAdder();
+  private final LongAdder totalWeight = new LongAdder();
+  private final LongAdder totalProcessingTime = new LongAdder();
+  private final LongAdder totalLatency = new LongAdder();
+
+  /**
+   * Constructor for use by subclasses.
+   *
+   * @param queue the queue to take elements from
+   * @param maxBatchSize the maximum number of elements in a batch
+   * @param maxDelay how long to wait for more elements after taking the first
+   *     element of a batch
+   * @param unit the unit of {@code maxDelay}
+   * @throws IllegalArgumentException if {@code maxBatchSize} is not positive
+   *     or {@code maxDelay} is negative
+   */
+  protected AbstractBatchingService(BlockingQueue<E> queue, int maxBatchSize,
+      long maxDelay, TimeUnit unit) {
+    checkArgument(maxBatchSize > 0,
+        "maxBatchSize must be positive but was: %s", maxBatchSize);
+    checkArgument(maxDelay >= 0,
+        "maxDelay must not be negative but was: %s", maxDelay);
+    this.queue = checkNotNull(queue);
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = unit.toNanos(maxDelay);
+  }
+
+  /**
+   * Processes a batch of elements, in the order they were taken from the
+   * queue. This method is invoked by {@link #batchExecutor}, and may be
+   * invoked concurrently if {@link #maxConcurrentBatches} is greater than
+   * one. The list is never empty, and belongs to this method.
+   */
+  protected abstract void processBatch(List<E> batch) throws Exception;
+
+  /**
+   * Returns the weight of an element, such as its size in bytes, which counts
+   * towards {@link #maxBatchWeight}. This method is invoked on the service
+   * thread, and may be invoked more than once for an element. The weight must
+   * not be negative; otherwise the service fails with an {@code
+   * IllegalStateException}.
+   *
+   * <p>By default this method returns 0.
+   */
+  protected long weigh(E element) {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum total weight of the elements of a batch, unless its
+   * first element alone weighs more. This method is invoked once, when the
+   * service starts, and must not return a negative value.
+   *
+   * <p>By default this method returns {@link Long#MAX_VALUE}: batches are
+   * limited only by size and delay.
+   */
+  protected long maxBatchWeight() {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the {@link Executor} that processes the batches. This method is
+   * invoked once, when the service starts. If the executor rejects a batch,
+   * the batch fails with the exception.
+   *
+   * <p>By default this method returns {@link MoreExecutors#sameThreadExecutor},
+   * which processes each batch on the service thread before the next is
+   * formed.
+   */
+  protected Executor batchExecutor() {
+    return MoreExecutors.sameThreadExecutor();
+  }
+
+  /**
+   * Returns the maximum number of batches submitted to {@link #batchExecutor}
+   * but not yet processed. This method is invoked once, when the service
+   * starts.
+   *
+   * <p>By default this method returns 1.
+   */
+  protected int maxConcurrentBatches() {
+    return 1;
+  }
+
+  /**
+   * Invoked when {@link #processBatch} throws an exception, or the executor
+   * rejects a batch. The elements of the batch are not retried. Also invoked,
+   * before the service fails, with the elements taken from the queue but not
+   * yet dispatched if {@link #weigh} throws an exception.
+   *
+   * <p>By default this method logs the exception.
+   */
+  protected void batchFailed(List<E> batch, Throwable cause) {
+    logger.log(Level.SEVERE, "Could not process a batch of " + batch.size()
+        + " elements in " + getServiceName(), cause);
+  }
+
+  /**
+   * Returns a current snapshot of the statistics of the batches processed by
+   * this service.
+   */
+  public BatchingStats stats() {
+    return new BatchingStats(batchCount.sum(), failureCount.sum(),
+        elementCount.sum(), totalWeight.sum(), totalProcessingTime.sum(),
+        totalLatency.sum());
+  }
+
+  @Override protected final void run() throws InterruptedException {
+    long maxWeight = maxBatchWeight();
+    checkArgument(maxWeight >= 0,
+        "maxBatchWeight must not be negative but was: %s", maxWeight);
+    Executor executor = checkNotNull(batchExecutor());
+    int concurrency = maxConcurrentBatches();
+    checkArgument(concurrency > 0,
+        "maxConcurrentBatches must be positive but was: %s", concurrency);
+    Semaphore permits = new Semaphore(concurrency);
+
+    while (isRunning()) {
+      Batch batch = nextBatch(maxWeight, true);
+      if (batch != null) {
+        dispatch(batch, executor, permits);
+      }
+    }
+    // Process what is left, without waiting for more.
+    for (Batch batch; (batch = nextBatch(maxWeight, false)) != null; ) {
+      dispatch(batch, executor, permits);
+    }
+    permits.acquire(concurrency);
+  }
+
+  /** An element with the time it was taken from the queue. */
+  private static final class Taken<E> {
+    final E element;
+    final long nanos;
+
+    Taken(E element, long nanos) {
+      this.element = element;
+      this.nanos = nanos;
+    }
+  }
+
+  /**
+   * The elements of a batch, with their weight and the time the first was
+   * taken from the queue.
+   */
+  private final class Batch {
+    final List<E> elements = Lists.newArrayList();
+    final long maxWeight;
+    long startNanos;
+    long weight;
+    boolean full;
+
+    Batch(long maxWeight) {
+      this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Adds the element if the batch is not full and it fits, and returns
+     * whether it did. Otherwise, the batch is full from now on.
+     */
+    boolean offer(Taken<E> taken) {
+      if (!full) {
+        long w = weigh(taken.element);
+        checkState(w >= 0, "weigh returned a negative weight: %s", w);
+        if (elements.isEmpty() || w <= maxWeight - weight) {
+          if (elements.isEmpty()) {
+            startNanos = taken.nanos;
+          }
+          elements.add(taken.element);
+          weight += w;
+          full = elements.size() >= maxBatchSize;
+          return true;
+        }
+        full = true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Forms the next batch from the carried-over elements and the queue, or
+   * returns null if there are none. If {@code wait}, waits up to {@link
+   * #IDLE_POLL_NANOS} for a first element and up to {@code maxDelay} after
+   * the first was taken for more.
+   *
+   * <p>If {@link #weigh} throws, or returns a negative weight, the elements
+   * taken but not yet dispatched are passed to {@link #batchFailed} before the
+   * exception propagates.
+   */
+  private Batch nextBatch(long maxWeight, boolean wait)
+      throws InterruptedException {
+    Batch batch = new Batch(maxWeight);
+    try {
+      fill(batch);
+      if (!carried.isEmpty()) {
+        return batch;
+      }
+      if (batch.elements.isEmpty()) {
+        E first =
+            wait ? queue.poll(IDLE_POLL_NANOS, NANOSECONDS) : queue.poll();
+        if (first == null) {
+          return null;
+        }
+        carried.add(new Taken<E>(first, System.nanoTime()));
+        fill(batch);
+      }
+      // A carried-over element may have been taken during the previous batch,
+      // so the deadline can already have passed.
+      long deadline = batch.startNanos + (wait ? maxDelayNanos : 0);
+      List<E> drained = Lists.newArrayList();
+      // As in Queues.drain: take what is available at once, then wait for more.
+      while (!batch.full) {
+        queue.drainTo(drained, maxBatchSize - batch.elements.size());
+        long now = System.nanoTime();
+        for (E element : drained) {
+          carried.add(new Taken<E>(element, now));
+        }
+        drained.clear();
+        fill(batch);
+        if (batch.full) {
+          break;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          break;
+        }
+        E element = queue.poll(remaining, NANOSECONDS);
+        if (element == null) {
+          break;
+        }
+        carried.add(new Taken<E>(element, System.nanoTime()));
+        fill(batch);
+      }
+      return batch;
+    } catch (RuntimeException e) {
+      List<E> lost = Lists.newArrayList(batch.elements);
+      for (Taken<E> taken : carried) {
+        lost.add(taken.element);
+      }
+      carried.clear();
+      batchFailed(lost, e);
+      throw e;
+    }
+  }
+
+  /** Moves elements from {@link #carried} to {@code batch} while they fit. */
+  private void fill(Batch batch) {
+    while (!carried.isEmpty() && batch.offer(carried.peek())) {
+      carried.remove();
+    }
+  }
+
+  /**
+   * Submits {@code batch} to {@code executor} once fewer than {@link
+   * #maxConcurrentBatches} are in flight.
+   */
+  private void dispatch(final Batch batch, Executor executor,
+      final Semaphore permits) throws InterruptedException {
+    permits.acquire();
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            process(batch);
+          } finally {
+            permits.release();
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      permits.release();
+      record(batch, 0, e);
+    }
+  }
+
+  private void process(Batch batch) {
+    long start = System.nanoTime();
+    Exception failure = null;
+    try {
+      processBatch(batch.elements);
+    } catch (Exception e) {
+      failure = e;
+    }
+    record(batch, System.nanoTime() - start, failure);
+  }
+
+  private void record(Batch batch, long processingNanos, Exception failure) {
+    elementCount.add(batch.elements.size());
+    totalWeight.add(batch.weight);
+    totalProcessingTime.add(processingNanos);
+    totalLatency.add(System.nanoTime() - batch.startNanos);
+    if (failure != null) {
+      failureCount.increment();
+    }
+    batchCount.increment();
+    if (failure != null) {
+      batchFailed(batch.elements, failure);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.util.concurrent;
+
+import static google.common.base.Preconditions.checkArgument;
+
+import google.common.annotations.Beta;
+import google.common.base.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * Statistics about the batches processed by an {@link AbstractBatchingService}.
+ * Instances of this class are immutable.
+ *
+ * <p>Batch statistics are incremented when a batch finishes processing,
+ * successfully or not, so the figures never include batches still in flight.
+ * Subtracting an earlier snapshot with {@link #minus} gives the figures of an
+ * interval, as a metrics exporter would report them.
+ *
+ * @since 14.0
+ */
+@Beta
+public final class BatchingStats {
+  private final long batchCount;
+  private final long failureCount;
+  private final long elementCount;
+  private final long totalWeight;
+  private final long totalProcessingTime;
+  private final long totalLatency;
+
+  /**
+   * Constructs a new {@code BatchingStats} instance.
+   */
+  public BatchingStats(long batchCount, long failureCount, long elementCount,
+      long totalWeight, long totalProcessingTime, long totalLatency) {
+    checkArgument(batchCount >= 0);
+    checkArgument(failureCount >= 0);
+    checkArgument(elementCount >= 0);
+    checkArgument(totalWeight >= 0);
+    checkArgument(totalProcessingTime >= 0);
+    checkArgument(totalLatency >= 0);
+
+    this.batchCount = batchCount;
+    this.failureCount = failureCount;
+    this.elementCount = elementCount;
+    this.totalWeight = totalWeight;
+    this.totalProcessingTime = totalProcessingTime;
+    this.totalLatency = totalLatency;
+  }
+
+  /**
+   * Returns the number of batches that have finished processing, including
+   * those that failed.
+   */
+  public long batchCount() {
+    return batchCount;
+  }
+
+  /**
+   * Returns the number of batches whose processing threw an exception, or
+   * that the executor rejected.
+   */
+  public long failureCount() {
+    return failureCount;
+  }
+
+  /**
+   * Returns the ratio of failed batches to batches. This is defined as
+   * {@code failureCount / batchCount}, or {@code 0.0} when {@code batchCount
+   * == 0}.
+   */
+  public double failureRate() {
+    return (batchCount == 0) ? 0.0 : (double) failureCount / batchCount;
+  }
+
+  /**
+   * Returns the number of elements in all batches counted by {@link
+   * #batchCount}.
+   */
+  public long elementCount() {
+    return elementCount;
+  }
+
+  /**
+   * Returns the average number of elements in a batch. This is defined as
+   * {@code elementCount / batchCount}, or {@code 0.0} when {@code batchCount
+   * == 0}.
+   */
+  public double averageBatchSize() {
+    return (batchCount == 0) ? 0.0 : (double) elementCount / batchCount;
+  }
+
+  /**
+   * Returns the total weight of the elements in all batches counted by {@link
+   * #batchCount}, as computed by {@link AbstractBatchingService#weigh}.
+   */
+  public long totalWeight() {
+    return totalWeight;
+  }
+
+  /**
+   * Returns the average weight of a batch. This is defined as {@code
+   * totalWeight / batchCount}, or {@code 0.0} when {@code batchCount == 0}.
+   */
+  public double averageBatchWeight() {
+    return (batchCount == 0) ? 0.0 : (double) totalWeight / batchCount;
+  }
+
+  /**
+   * Returns the total number of nanoseconds spent in {@link
+   * AbstractBatchingService#processBatch}.
+   */
+  public long totalProcessingTime() {
+    return totalProcessingTime;
+  }
+
+  /**
+   * Returns the average number of nanoseconds spent processing a batch. This
+   * is defined as {@code totalProcessingTime / batchCount}, or {@code 0.0}
+   * when {@code batchCount == 0}.
+   */
+  public double averageProcessingTime() {
+    return (batchCount == 0) ? 0.0 : (double) totalProcessingTime / batchCount;
+  }
+
+  /**
+   * Returns the total latency of all batches, in nanoseconds. The latency of a
+   * batch runs from the moment its first element is taken from the queue to
+   * the end of its processing, so it includes the time spent filling the
+   * batch and waiting for the executor, as well as the processing time.
+   */
+  public long totalLatency() {
+    return totalLatency;
+  }
+
+  /**
+   * Returns the average latency of a batch, in nanoseconds. This is defined as
+   * {@code totalLatency / batchCount}, or {@code 0.0} when {@code batchCount
+   * == 0}.
+   */
+  public double averageLatency() {
+    return (batchCount == 0) ? 0.0 : (double) totalLatency / batchCount;
+  }
+
+  /**
+   * Returns a new {@code BatchingStats} representing the difference between
+   * this {@code BatchingStats} and {@code other}. Negative values, which
+   * aren't supported by {@code BatchingStats}, are rounded up to zero.
+   */
+  public BatchingStats minus(BatchingStats other) {
+    return new BatchingStats(
+        Math.max(0, batchCount - other.batchCount),
+        Math.max(0, failureCount - other.failureCount),
+        Math.max(0, elementCount - other.elementCount),
+        Math.max(0, totalWeight - other.totalWeight),
+        Math.max(0, totalProcessingTime - other.totalProcessingTime),
+        Math.max(0, totalLatency - other.totalLatency));
+  }
+
+  /**
+   * Returns a new {@code BatchingStats} representing the sum of this {@code
+   * BatchingStats} and {@code other}.
+   */
+  public BatchingStats plus(BatchingStats other) {
+    return new BatchingStats(
+        batchCount + other.batchCount,
+        failureCount + other.failureCount,
+        elementCount + other.elementCount,
+        totalWeight + other.totalWeight,
+        totalProcessingTime + other.totalProcessingTime,
+        totalLatency + other.totalLatency);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(batchCount, failureCount, elementCount, totalWeight,
+        totalProcessingTime, totalLatency);
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object instanceof BatchingStats) {
+      BatchingStats other = (BatchingStats) object;
+      return batchCount == other.batchCount
+          && failureCount == other.failureCount
+          && elementCount == other.elementCount
+          && totalWeight == other.totalWeight
+          && totalProcessingTime == other.totalProcessingTime
+          && totalLatency == other.totalLatency;
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("batchCount", batchCount)
+        .add("failureCount", failureCount)
+        .add("elementCount", elementCount)
+        .add("totalWeight", totalWeight)
+        .add("totalProcessingTime", totalProcessingTime)
+        .add("totalLatency", totalLatency)
+        .toString();
+  }
+}
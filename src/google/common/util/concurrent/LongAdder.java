@@ -9,7 +9,10 @@
  * http://gee.cs.oswego.edu/cgi-bin/viewcvs.cgi/jsr166/src/jsr166e/LongAdder.java?revision=1.8
  */
 
-package google.common.cache;
+package google.common.util.concurrent;
+
+import google.common.annotations.Beta;
+
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.ObjectInputStream;
@@ -39,10 +42,15 @@ import java.io.ObjectOutputStream;
  * <p><em>jsr166e note: This class is targeted to be placed in
  * java.util.concurrent.atomic<em>
  *
- * @since 1.8
+ * <p>This is the single copy of the class in these libraries, also used by
+ * the statistics of {@code google.common.cache} and by {@link
+ * google.common.collect.LongAdderMultiset}.
+ *
+ * @since 14.0
  * @author Doug Lea
  */
-final class LongAdder extends Striped64 implements Serializable {
+@Beta
+public final class LongAdder extends Striped64 implements Serializable {
     private static final long serialVersionUID = 7249069246863182397L;
 
     /**
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.util.concurrent;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.Beta;
+import google.common.collect.ImmutableList;
+import google.common.collect.ImmutableMap;
+import google.common.collect.Ordering;
+import google.common.primitives.Longs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A map from keys to {@code long} counters, like {@link AtomicLongMap}, but
+ * optimized for many threads updating the same few keys.
+ *
+ * <p>Each key's value is held in a {@code LongAdder}: while updates of a key
+ * are uncontended it behaves like a single {@code AtomicLong}, and once
+ * threads start to collide it spreads their updates over extra cells, so
+ * that increments of a hot key no longer spin on one compare-and-set. The
+ * price is that updates cannot return the resulting value, and that reading
+ * a value adds up all of its cells.
+ *
+ * <p>Reads are therefore not atomic with respect to concurrent updates:
+ * {@link #get}, {@link #sum}, {@link #snapshot} and {@link #topN} each
+ * reflect every update that completed before the read began, and may or may
+ * not reflect updates that happen during it. No update is ever lost or
+ * counted twice by {@link #add} or {@link #sumThenReset}.
+ *
+ * <p>Like {@code AtomicLongMap}, entries whose values drop to zero are not
+ * removed automatically; use {@link #removeAllZeros}.
+ *
+ * @since 14.0
+ */
+@Beta
+public final class LongAdderMap<K> {
+  private final ConcurrentHashMap<K, LongAdder> map;
+
+  private LongAdderMap(ConcurrentHashMap<K, LongAdder> map) {
+    this.map = checkNotNull(map);
+  }
+
+  /**
+   * Creates a {@code LongAdderMap}.
+   */
+  public static <K> LongAdderMap<K> create() {
+    return new LongAdderMap<K>(new ConcurrentHashMap<K, LongAdder>());
+  }
+
+  /**
+   * Creates a {@code LongAdderMap} with the same mappings as the specified {@code Map}.
+   */
+  public static <K> LongAdderMap<K> create(Map<? extends K, ? extends Long> m) {
+    LongAdderMap<K> result = create();
+    for (Map.Entry<? extends K, ? extends Long> entry : m.entrySet()) {
+      result.add(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the value associated with {@code key}, or zero if there is no value associated with
+   * {@code key}.
+   */
+  public long get(K key) {
+    LongAdder adder = map.get(key);
+    return adder == null ? 0L : adder.sum();
+  }
+
+  /**
+   * Increments by one the value currently associated with {@code key}.
+   */
+  public void increment(K key) {
+    add(key, 1L);
+  }
+
+  /**
+   * Decrements by one the value currently associated with {@code key}.
+   */
+  public void decrement(K key) {
+    add(key, -1L);
+  }
+
+  /**
+   * Adds {@code delta} to the value currently associated with {@code key}.
+   */
+  public void add(K key, long delta) {
+    adderFor(key).add(delta);
+  }
+
+  private LongAdder adderFor(K key) {
+    LongAdder adder = map.get(key);
+    if (adder == null) {
+      LongAdder newAdder = new LongAdder();
+      adder = map.putIfAbsent(key, newAdder);
+      if (adder == null) {
+        adder = newAdder;
+      }
+    }
+    return adder;
+  }
+
+  /**
+   * Subtracts the value currently associated with {@code key} and returns it,
+   * leaving the entry in place with a value of zero. Updates that race with
+   * this call are kept: they end up either in the returned value or in the
+   * value left behind, but never in both.
+   */
+  public long sumThenReset(K key) {
+    LongAdder adder = map.get(key);
+    if (adder == null) {
+      return 0L;
+    }
+    long sum = adder.sum();
+    adder.add(-sum);
+    return sum;
+  }
+
+  /**
+   * Removes all mappings from this map whose values are zero.
+   *
+   * <p>This method is not atomic: the map may be visible in intermediate states, where some
+   * of the zero values have been removed and others have not. Unlike {@link #sumThenReset}, it
+   * physically removes entries, so an update of a key that races with the removal of that key
+   * may be lost. Call it when updates to the affected keys have quiesced, such as between
+   * reporting intervals.
+   */
+  public void removeAllZeros() {
+    for (Map.Entry<K, LongAdder> entry : map.entrySet()) {
+      LongAdder adder = entry.getValue();
+      if (adder.sum() == 0L) {
+        map.remove(entry.getKey(), adder);
+      }
+    }
+  }
+
+  /**
+   * Returns the sum of all values in this map.
+   *
+   * <p>This method is not atomic: the sum may or may not include other concurrent operations.
+   */
+  public long sum() {
+    long sum = 0L;
+    for (LongAdder adder : map.values()) {
+      sum += adder.sum();
+    }
+    return sum;
+  }
+
+  /**
+   * Returns an immutable copy of the current mappings, reading each value once.
+   *
+   * <p>This method is not atomic: each value may or may not include operations that are
+   * concurrent with the call.
+   */
+  public ImmutableMap<K, Long> snapshot() {
+    ImmutableMap.Builder<K, Long> builder = ImmutableMap.builder();
+    for (Map.Entry<K, LongAdder> entry : map.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().sum());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the {@code n} entries with the highest values, highest first, as
+   * of a {@link #snapshot}. Ties are broken arbitrarily.
+   *
+   * @throws IllegalArgumentException if {@code n} is negative
+   */
+  public List<Map.Entry<K, Long>> topN(int n) {
+    checkArgument(n >= 0, "n (%s) must be >= 0", n);
+    List<Map.Entry<K, Long>> entries =
+        BY_VALUE.greatestOf(snapshot().entrySet(), n);
+    return ImmutableList.copyOf(entries);
+  }
+
+  private static final Ordering<Map.Entry<?, Long>> BY_VALUE =
+      new Ordering<Map.Entry<?, Long>>() {
+        @Override public int compare(Map.Entry<?, Long> left, Map.Entry<?, Long> right) {
+          return Longs.compare(left.getValue(), right.getValue());
+        }
+      };
+
+  /**
+   * Returns true if this map contains a mapping for the specified key.
+   */
+  public boolean containsKey(Object key) {
+    return map.containsKey(key);
+  }
+
+  /**
+   * Returns the number of key-value mappings in this map. If the map contains more than
+   * {@code Integer.MAX_VALUE} elements, returns {@code Integer.MAX_VALUE}.
+   */
+  public int size() {
+    return map.size();
+  }
+
+  /**
+   * Returns {@code true} if this map contains no key-value mappings.
+   */
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  /**
+   * Removes all of the mappings from this map. The map will be empty after this call returns.
+   *
+   * <p>This method is not atomic: the map may not be empty after returning if there were concurrent
+   * writes, and as with {@link #removeAllZeros}, updates racing with this call may be lost.
+   */
+  public void clear() {
+    map.clear();
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2012 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package google.common.util.concurrent;
+
+import static google.common.base.Preconditions.checkArgument;
+import static google.common.base.Preconditions.checkNotNull;
+
+import google.common.annotations.Beta;
+import google.common.base.Function;
+import google.common.collect.Iterables;
+import google.common.collect.Iterators;
+import google.common.collect.Lists;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Static methods for processing the elements of an {@code Iterable} or {@code
+ * Iterator} in parallel, in fixed-size partitions, on a {@link
+ * ListeningExecutorService}.
+ *
+ * <p>Unlike submitting every partition of {@link Iterables#partition} up front,
+ * these methods apply backpressure: at most {@code maxInFlight} partitions are
+ * submitted but not yet finished at any time, and the input is read only as
+ * fast as those partitions complete. The next partition is submitted by
+ * whichever thread completes one, so no thread waits for capacity, and the
+ * input must tolerate being read by several threads in turn, one at a time.
+ *
+ * <p>If the input or the processing of any partition fails, no further
+ * partitions are submitted, those in flight are cancelled, and the returned
+ * future fails with the same exception. Cancelling the returned future also
+ * stops the processing.
+ *
+ * @since 14.0
+ */
+@Beta
+public final class ParallelIterables {
+  private ParallelIterables() {}
+
+  /**
+   * Applies {@code function} to consecutive partitions of {@code elements},
+   * each of {@code partitionSize} elements except perhaps the last, on {@code
+   * executor}, with at most {@code maxInFlight} partitions in flight at once.
+   *
+   * @return a future of the results of the partitions, in partition order
+   * @throws IllegalArgumentException if {@code partitionSize} or {@code
+   *     maxInFlight} is nonpositive
+   */
+  public static <T, R> ListenableFuture<List<R>> transformPartitions(
+      Iterable<T> elements, int partitionSize,
+      Function<? super List<T>, R> function,
+      ListeningExecutorService executor, int maxInFlight) {
+    return transformPartitions(
+        elements.iterator(), partitionSize, function, executor, maxInFlight);
+  }
+
+  /**
+   * Applies {@code function} to consecutive partitions of the elements
+   * returned by {@code iterator}, each of {@code partitionSize} elements
+   * except perhaps the last, on {@code executor}, with at most {@code
+   * maxInFlight} partitions in flight at once.
+   *
+   * @return a future of the results of the partitions, in partition order
+   * @throws IllegalArgumentException if {@code partitionSize} or {@code
+   *     maxInFlight} is nonpositive
+   */
+  public static <T, R> ListenableFuture<List<R>> transformPartitions(
+      Iterator<T> iterator, int partitionSize,
+      Function<? super List<T>, R> function,
+      ListeningExecutorService executor, int maxInFlight) {
+    checkArgument(maxInFlight > 0, "maxInFlight must be positive but was: %s",
+        maxInFlight);
+    Dispatcher<T, R> dispatcher = new Dispatcher<T, R>(
+        Iterators.partition(iterator, partitionSize), checkNotNull(function),
+        checkNotNull(executor), maxInFlight);
+    dispatcher.submitMore();
+    return dispatcher.result;
+  }
+
+  /**
+   * Applies {@code function} to consecutive partitions of {@code elements} as
+   * by {@link #transformPartitions(Iterable, int, Function,
+   * ListeningExecutorService, int) transformPartitions}, and merges the
+   * results.
+   *
+   * @return a future of the concatenation of the results of the partitions, in
+   *     partition order
+   * @throws IllegalArgumentException if {@code partitionSize} or {@code
+   *     maxInFlight} is nonpositive
+   */
+  public static <T, R> ListenableFuture<List<R>> transformPartitionsAndConcat(
+      Iterable<T> elements, int partitionSize,
+      Function<? super List<T>, ? extends Iterable<? extends R>> function,
+      ListeningExecutorService executor, int maxInFlight) {
+    return transformPartitionsAndConcat(
+        elements.iterator(), partitionSize, function, executor, maxInFlight);
+  }
+
+  /**
+   * Applies {@code function} to consecutive partitions of the elements
+   * returned by {@code iterator} as by {@link #transformPartitions(Iterator,
+   * int, Function, ListeningExecutorService, int) transformPartitions}, and
+   * merges the results.
+   *
+   * @return a future of the concatenation of the results of the partitions, in
+   *     partition order
+   * @throws IllegalArgumentException if {@code partitionSize} or {@code
+   *     maxInFlight} is nonpositive
+   */
+  public static <T, R> ListenableFuture<List<R>> transformPartitionsAndConcat(
+      Iterator<T> iterator, int partitionSize,
+      Function<? super List<T>, ? extends Iterable<? extends R>> function,
+      ListeningExecutorService executor, int maxInFlight) {
+    ListenableFuture<? extends List<? extends Iterable<? extends R>>> results =
+        transformPartitions(iterator, partitionSize, function, executor, maxInFlight);
+    return Futures.transform(results,
+        new Function<List<? extends Iterable<? extends R>>, List<R>>() {
+          public List<R> apply(List<? extends Iterable<? extends R>> input) {
+            return Lists.newArrayList(Iterables.concat(input));
+          }
+        });
+  }
+
+  /**
+   * Submits the partitions of one call and collects their results.
+   */
+  private static final class Dispatcher<T, R> implements FutureCallback<R> {
+    @GuardedBy("this") private final Iterator<List<T>> partitions;
+    private final Function<? super List<T>, R> function;
+    private final ListeningExecutorService executor;
+    private final int maxInFlight;
+    @GuardedBy("this") private final List<ListenableFuture<R>> futures =
+        Lists.newArrayList();
+    @GuardedBy("this") private int inFlight;
+    // true while submitMore() is running, perhaps further up this thread's stack
+    @GuardedBy("this") private boolean dispatching;
+    @GuardedBy("this") private boolean exhausted;
+    final SettableFuture<List<R>> result = SettableFuture.create();
+
+    Dispatcher(Iterator<List<T>> partitions, Function<? super List<T>, R> function,
+        ListeningExecutorService executor, int maxInFlight) {
+      this.partitions = partitions;
+      this.function = function;
+      this.executor = executor;
+      this.maxInFlight = maxInFlight;
+      result.addListener(new Runnable() {
+        public void run() {
+          if (result.isCancelled()) {
+            cancelAll();
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * Submits partitions until {@code maxInFlight} are in flight or the input
+     * is exhausted, and completes the result once every partition has been
+     * submitted. The lock is held to claim a slot and take the next partition,
+     * but not to submit it, since {@code submit} may block until the executor
+     * has room, or run the task and its callback.
+     */
+    void submitMore() {
+      synchronized (this) {
+        // A task run by a same-thread executor completes within submit(), and
+        // its callback calls back in here; the loop below picks it up instead.
+        if (dispatching || exhausted) {
+          return;
+        }
+        dispatching = true;
+      }
+      try {
+        while (true) {
+          final List<T> partition;
+          synchronized (this) {
+            if (inFlight >= maxInFlight || result.isDone()) {
+              dispatching = false;
+              return;
+            }
+            if (!partitions.hasNext()) {
+              exhausted = true;
+              dispatching = false;
+              break;
+            }
+            partition = partitions.next();
+            inFlight++;
+          }
+          ListenableFuture<R> future = executor.submit(new Callable<R>() {
+            public R call() {
+              return function.apply(partition);
+            }
+          });
+          synchronized (this) {
+            futures.add(future);
+          }
+          if (result.isDone()) {
+            future.cancel(false); // cancelAll() may have run before the add
+          }
+          Futures.addCallback(future, this);
+        }
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          dispatching = false;
+        }
+        fail(e);
+        return;
+      }
+      List<ListenableFuture<R>> all;
+      synchronized (this) {
+        all = futures;
+      }
+      Futures.addCallback(Futures.allAsList(all), new FutureCallback<List<R>>() {
+        public void onSuccess(List<R> results) {
+          result.set(results);
+        }
+
+        public void onFailure(Throwable t) {
+          fail(t);
+        }
+      });
+    }
+
+    public void onSuccess(@Nullable R partitionResult) {
+      synchronized (this) {
+        inFlight--;
+      }
+      submitMore();
+    }
+
+    public void onFailure(Throwable t) {
+      fail(t);
+    }
+
+    private void fail(Throwable t) {
+      if (result.setException(t)) {
+        cancelAll();
+      }
+    }
+
+    private void cancelAll() {
+      List<ListenableFuture<R>> toCancel;
+      synchronized (this) {
+        toCancel = Lists.newArrayList(futures);
+      }
+      for (ListenableFuture<R> future : toCancel) {
+        future.cancel(false);
+      }
+    }
+  }
+}
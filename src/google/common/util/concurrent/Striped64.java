@@ -9,7 +9,7 @@
  * http://gee.cs.oswego.edu/cgi-bin/viewcvs.cgi/jsr166/src/jsr166e/SequenceLock.java?revision=1.17
  */
 
-package google.common.cache;
+package google.common.util.concurrent;
 import java.util.Random;
 
 /**